@@ -296,7 +296,6 @@ public class GraphIO {
 	// multiple identical strings are used as attribute values
 	private final HashMap<String, String> stringPool;
 
-	private JGraLabServer server;
 	private boolean isURL;
 
 	@SuppressWarnings("rawtypes")
@@ -816,7 +815,7 @@ public class GraphIO {
 			if (subGraph != null) {
 				pf.init(subGraph.size());
 			} else {
-				pf.init(graph.getVCount() + graph.getECount());
+				pf.init(getLocalVCount(graph) + getLocalECount(graph));
 			}
 			interval = pf.getUpdateInterval();
 		}
@@ -845,8 +844,8 @@ public class GraphIO {
 		write(" " + graph.getGraphVersion() + " ");
 		writeIdentifier(graph.getType().getQualifiedName());
 
-		long vCount = graph.getVCount();
-		long eCount = graph.getECount();
+		long vCount = getLocalVCount(graph);
+		long eCount = getLocalECount(graph);
 		// with a GraphMarker, v/eCount have to be restricted to the marked
 		// elements.
 		if (subGraph != null) {
@@ -1012,6 +1011,26 @@ public class GraphIO {
 		}
 	}
 
+	/*
+	 * the partial graphs of a disk based graph are saved separately, so only
+	 * the elements of the graph itself are counted
+	 */
+	private static long getLocalVCount(Graph graph) {
+		if (graph instanceof de.uni_koblenz.jgralab.impl.disk.GraphBaseImpl) {
+			return ((de.uni_koblenz.jgralab.impl.disk.GraphBaseImpl) graph)
+					.getLocalVCount();
+		}
+		return graph.getVCount();
+	}
+
+	private static long getLocalECount(Graph graph) {
+		if (graph instanceof de.uni_koblenz.jgralab.impl.disk.GraphBaseImpl) {
+			return ((de.uni_koblenz.jgralab.impl.disk.GraphBaseImpl) graph)
+					.getLocalECount();
+		}
+		return graph.getECount();
+	}
+
 	private void savePartialGraphs(Graph graph) throws IOException {
 		write("{");
 		for (Graph pgraph : graph.getPartialGraphs()) {
@@ -3093,13 +3112,19 @@ public class GraphIO {
 		}
 	}
 
+	/**
+	 * Loads the partial graphs listed in the graph header on their hosts. All
+	 * hosts load their partitions in parallel, elements referencing other
+	 * partitions are connected afterwards by {@link #createIncidences},
+	 * {@link #sortLambdaSequences} and {@link #setSigmas}.
+	 */
 	private void createPartialGraphs(String uniqueGraphId, ImplementationType implType)
-			throws GraphIOException, RemoteException {
-		for (Entry<Integer, String> pGraph : partialGraphHostnames.entrySet()) {
-			JGraLabServerImpl remoteServer = (JGraLabServerImpl) (server)
-					.getRemoteInstance(pGraph.getValue());
-			remoteServer.getGraphDatabase(uniqueGraphId, implType);
+			throws GraphIOException {
+		if (partialGraphHostnames.isEmpty()) {
+			return;
 		}
+		JGraLabServerImpl.getLocalInstance().loadPartialGraphs(uniqueGraphId,
+				partialGraphHostnames.values(), implType);
 	}
 
 	private void readPartialGraphs(Graph graph) throws GraphIOException,
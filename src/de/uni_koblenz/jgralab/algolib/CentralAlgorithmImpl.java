@@ -1,7 +1,6 @@
 package de.uni_koblenz.jgralab.algolib;
 
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -9,6 +8,7 @@ import java.util.Map;
 
 import de.uni_koblenz.jgralab.Graph;
 import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralab.impl.JGraLabServerImpl;
 import de.uni_koblenz.jgralab.impl.disk.GraphDatabaseElementaryMethods;
 
 /**
@@ -51,8 +51,8 @@ public abstract class CentralAlgorithmImpl implements CentralAlgorithm {
 		// create satellite algorithms for all partial graphs incl. the local
 		// one
 		try {
-			this.stub = (CentralAlgorithm) UnicastRemoteObject.exportObject(
-					this, 0);
+			this.stub = (CentralAlgorithm) JGraLabServerImpl.getTransport()
+					.exportObject(this);
 		} catch (RemoteException e) {
 			throw new RuntimeException(e);
 		}
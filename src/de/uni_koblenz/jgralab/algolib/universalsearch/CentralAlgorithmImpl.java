@@ -1,12 +1,12 @@
 package de.uni_koblenz.jgralab.algolib.universalsearch;
 
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
 import java.util.HashMap;
 import java.util.Map;
 
 import de.uni_koblenz.jgralab.Graph;
 import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralab.impl.JGraLabServerImpl;
 import de.uni_koblenz.jgralab.impl.disk.GraphDatabaseElementaryMethods;
 
 /**
@@ -37,8 +37,8 @@ public abstract class CentralAlgorithmImpl implements CentralAlgorithm {
 		// create satellite algorithms for all partial graphs incl. the local
 		// one
 		try {
-			this.stub = (CentralAlgorithm) UnicastRemoteObject.exportObject(
-					this, 0);
+			this.stub = (CentralAlgorithm) JGraLabServerImpl.getTransport()
+					.exportObject(this);
 		} catch (RemoteException e) {
 			throw new RuntimeException(e);
 		}
@@ -6,8 +6,14 @@ import java.util.TreeSet;
 
 import de.uni_koblenz.jgralab.Direction;
 import de.uni_koblenz.jgralab.schema.Attribute;
+import de.uni_koblenz.jgralab.schema.BooleanDomain;
+import de.uni_koblenz.jgralab.schema.Domain;
+import de.uni_koblenz.jgralab.schema.DoubleDomain;
 import de.uni_koblenz.jgralab.schema.GraphElementClass;
 import de.uni_koblenz.jgralab.schema.IncidenceClass;
+import de.uni_koblenz.jgralab.schema.IntegerDomain;
+import de.uni_koblenz.jgralab.schema.LongDomain;
+import de.uni_koblenz.jgralab.schema.StringDomain;
 import de.uni_koblenz.jgralab.schema.VertexClass;
 
 public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementClass<MetaClass, ?,?,?>> extends AttributedElementCodeGenerator<MetaClass> {
@@ -108,6 +114,9 @@ public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementCl
 			code.add(createReadAttributesMethod(aec.getAttributeList(), ""));
 			code.add(createReadAttributesFromStringMethod(aec.getAttributeList(), ""));
 		}
+		if (currentCycle.isDiskv2basedImpl()) {
+			code.add(createDiskv2AttributeAccessMethods());
+		}
 		if (currentCycle.isProxies()) {
 			code.add(createGetIncidenceClassForRolenameMethod());
 		}
@@ -131,7 +140,7 @@ public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementCl
 	protected CodeBlock createFields(Set<Attribute> attrSet) {
 		CodeList code = new CodeList();
 		if (currentCycle.isDiskbasedImpl())
-			code.add(new CodeSnippet("class InnerAttributeContainer extends #jgDiskImplPackage#.AttributeContainer {"));
+			code.add(new CodeSnippet("static class InnerAttributeContainer extends #jgDiskImplPackage#.AttributeContainer {"));
 		for (Attribute attr : attrSet) {
 			code.add(createField(attr));
 		}
@@ -179,7 +188,7 @@ public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementCl
 					 "\tif (attributeContainer == null) {",
 					 "\t\tattributeContainer = loadAttributeContainer();",
 					 "\t}",
-					 "\treturn attributeContainer._#name#;",
+					 "\treturn readableAttributes(attributeContainer)._#name#;",
 					 "}");
 			break;
 		case DISTRIBUTEDPROXIES:	
@@ -208,9 +217,10 @@ public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementCl
 		String dsn = attr.getDomain().getSimpleName();
 		code.setVariable("dname", dsn);
 		
-		if (dsn.equals("String")) code.setVariable("mPrefix", "string");
-		else if (dsn.startsWith("List")) code.setVariable("mPrefix", "list");
-		else code.setVariable("mPrefix", "attribute");
+		Domain domain = attr.getDomain();
+		if (domain instanceof StringDomain) code.setVariable("mPrefix", "string");
+		else if (isDiskv2Primitive(domain)) code.setVariable("mPrefix", "attribute");
+		else code.setVariable("mPrefix", "list");
 
 		switch (currentCycle) {
 		case ABSTRACT:
@@ -235,7 +245,9 @@ public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementCl
 					 "\tif (attributeContainer == null) {",
 					 "\t\tattributeContainer = loadAttributeContainer();",
 					 "\t}",
+					 "\tpreserveAttributes(attributeContainer);",
 					 "\tattributeContainer._#name# = _#name#;", 
+					 "\tattributesChanged();",
 					 "\tgraphModified();", "}");
 			break;
 		case DISTRIBUTEDPROXIES:	
@@ -255,6 +267,112 @@ public abstract class GraphElementCodeGenerator<MetaClass extends GraphElementCl
 	
 	
 	
+	/**
+	 * Checks if an attribute of the given domain is stored in the record of
+	 * a diskv2 element. Strings are stored in the String heap, all other
+	 * attributes are encoded and stored in the lists file. This must agree
+	 * with GraphElementProfile in the diskv2 implementation.
+	 */
+	private boolean isDiskv2Primitive(Domain domain) {
+		return domain instanceof BooleanDomain || domain instanceof IntegerDomain
+				|| domain instanceof LongDomain || domain instanceof DoubleDomain;
+	}
+	
+	/**
+	 * Creates the methods that diskv2 uses to write the attributes of an
+	 * element back to the disk and to restore them, without reflection. All
+	 * attributes are handled in the order of the attribute list.
+	 */
+	private CodeBlock createDiskv2AttributeAccessMethods() {
+		CodeList code = new CodeList();
+		CodeList writeTo = new CodeList();
+		CodeList readFrom = new CodeList();
+		CodeList getStrings = new CodeList();
+		CodeList restoreStrings = new CodeList();
+		CodeList getEncoded = new CodeList();
+		CodeList restoreEncoded = new CodeList();
+		int numStrings = 0;
+		int numEncoded = 0;
+		
+		for (Attribute attr : aec.getAttributeList()) {
+			Domain domain = attr.getDomain();
+			CodeSnippet write = new CodeSnippet();
+			CodeSnippet read = new CodeSnippet();
+			write.setVariable("name", attr.getName());
+			read.setVariable("name", attr.getName());
+			read.setVariable("type", domain.getJavaAttributeImplementationTypeName(schemaRootPackageName));
+			if (domain instanceof BooleanDomain) {
+				write.add("buf.put(_#name# ? (byte) 1 : (byte) 0);");
+				read.add("_#name# = buf.get() == 1;");
+			} else if (domain instanceof IntegerDomain) {
+				write.add("buf.putInt(_#name#);");
+				read.add("_#name# = buf.getInt();");
+			} else if (domain instanceof LongDomain) {
+				write.add("buf.putLong(_#name#);");
+				read.add("_#name# = buf.getLong();");
+			} else if (domain instanceof DoubleDomain) {
+				write.add("buf.putDouble(_#name#);");
+				read.add("_#name# = buf.getDouble();");
+			} else if (domain instanceof StringDomain) {
+				write.setVariable("index", Integer.toString(numStrings));
+				read.setVariable("index", Integer.toString(numStrings++));
+				write.add("strings[#index#] = _#name#;");
+				read.add("_#name# = strings[#index#];");
+				getStrings.add(write);
+				restoreStrings.add(read);
+				continue;
+			} else {
+				write.setVariable("index", Integer.toString(numEncoded));
+				read.setVariable("index", Integer.toString(numEncoded++));
+				write.add("values[#index#] = _#name#;");
+				read.add("_#name# = (#type#) values[#index#];");
+				getEncoded.add(write);
+				restoreEncoded.add(read);
+				continue;
+			}
+			writeTo.add(write);
+			readFrom.add(read);
+		}
+		
+		code.addNoIndent(new CodeSnippet(true, "@Override",
+				"public void writeAttributesTo(java.nio.ByteBuffer buf) {"));
+		code.addNoIndent(writeTo);
+		code.addNoIndent(new CodeSnippet("}"));
+		
+		code.addNoIndent(new CodeSnippet(true, "@Override",
+				"public void readAttributesFrom(java.nio.ByteBuffer buf) {"));
+		code.addNoIndent(readFrom);
+		code.addNoIndent(new CodeSnippet("}"));
+		
+		CodeSnippet snippet = new CodeSnippet(true, "@Override",
+				"public String[] getStringAttributes() {",
+				"	String[] strings = new String[#numStrings#];");
+		snippet.setVariable("numStrings", Integer.toString(numStrings));
+		code.addNoIndent(snippet);
+		code.addNoIndent(getStrings);
+		code.addNoIndent(new CodeSnippet("	return strings;", "}"));
+		
+		code.addNoIndent(new CodeSnippet(true, "@Override",
+				"public void restoreStringAttributes(String[] strings) {"));
+		code.addNoIndent(restoreStrings);
+		code.addNoIndent(new CodeSnippet("}"));
+		
+		snippet = new CodeSnippet(true, "@Override",
+				"public Object[] getEncodedAttributes() {",
+				"	Object[] values = new Object[#numEncoded#];");
+		snippet.setVariable("numEncoded", Integer.toString(numEncoded));
+		code.addNoIndent(snippet);
+		code.addNoIndent(getEncoded);
+		code.addNoIndent(new CodeSnippet("	return values;", "}"));
+		
+		code.addNoIndent(new CodeSnippet(true, "@Override",
+				"@SuppressWarnings(\"unchecked\")",
+				"public void restoreEncodedAttributes(Object[] values) {"));
+		code.addNoIndent(restoreEncoded);
+		code.addNoIndent(new CodeSnippet("}"));
+		return code;
+	}
+	
 	private CodeBlock createGetIncidenceClassForRolenameMethod() {
 		addImports("#jgSchemaPackage#.exception.SchemaException");
 		addImports("#jgSchemaPackage#.IncidenceClass");
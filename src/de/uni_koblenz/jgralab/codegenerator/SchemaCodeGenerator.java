@@ -292,6 +292,46 @@ public class SchemaCodeGenerator extends CodeGenerator {
 				"\treturn (#gcCamelName#) graphFactory.createGraph_Diskv2BasedStorage(#gcCamelName#.class, uniqueGraphId, subgraphId, graphDb, graphDb);",
 				"}",
 				"",
+				"/**",
+				" * Creates or reopens a #gcName# graph using version 2 of disk based storage. The graph is kept in the ",
+				" * directory <code>storageDirectory</code>. If that directory holds a graph which has been stored before, ",
+				" * that graph is reopened and its elements are loaded lazily.",
+				" * @param storageDirectory the directory in which the graph is stored",
+				" *",
+				"*/",
+				"public #gcName# create#gcCamelName#_Diskv2BasedStorage(java.io.File storageDirectory) {",
+				"\tString uniqueGraphId = GraphFactoryImpl.generateUniqueGraphId();",
+				"\tString hostname = null;",
+				"\ttry {",
+				"\t\thostname = InetAddress.getLocalHost().getHostAddress();",
+				"\t} catch (UnknownHostException ex) {",
+				"\t\tthrow new RuntimeException(ex);",
+				"\t}",
+				"\tlong subgraphId = #jgDiskv2ImplPackage#.GraphDatabaseElementaryMethods.GLOBAL_GRAPH_ID;",
+				"\t#jgDiskv2ImplPackage#.GraphDatabaseBaseImpl graphDb = new #jgDiskv2ImplPackage#.CompleteGraphDatabaseImpl(this, uniqueGraphId, hostname, storageDirectory);",
+				"\treturn (#gcCamelName#) graphFactory.createGraph_Diskv2BasedStorage(#gcCamelName#.class, uniqueGraphId, subgraphId, graphDb, graphDb);",
+				"}",
+				"",
+				"/**",
+				" * Creates or reopens a #gcName# graph using version 2 of disk based storage, like ",
+				" * the method without options. The storage is opened with the given options.",
+				" * @param storageDirectory the directory in which the graph is stored",
+				" * @param options the options of the storage",
+				" *",
+				"*/",
+				"public #gcName# create#gcCamelName#_Diskv2BasedStorage(java.io.File storageDirectory, #jgDiskv2ImplPackage#.StorageOptions options) {",
+				"\tString uniqueGraphId = GraphFactoryImpl.generateUniqueGraphId();",
+				"\tString hostname = null;",
+				"\ttry {",
+				"\t\thostname = InetAddress.getLocalHost().getHostAddress();",
+				"\t} catch (UnknownHostException ex) {",
+				"\t\tthrow new RuntimeException(ex);",
+				"\t}",
+				"\tlong subgraphId = #jgDiskv2ImplPackage#.GraphDatabaseElementaryMethods.GLOBAL_GRAPH_ID;",
+				"\t#jgDiskv2ImplPackage#.GraphDatabaseBaseImpl graphDb = new #jgDiskv2ImplPackage#.CompleteGraphDatabaseImpl(this, uniqueGraphId, hostname, storageDirectory, options);",
+				"\treturn (#gcCamelName#) graphFactory.createGraph_Diskv2BasedStorage(#gcCamelName#.class, uniqueGraphId, subgraphId, graphDb, graphDb);",
+				"}",
+				"",
 				//distributed storage support
 				"",
 				"/**",
@@ -0,0 +1,305 @@
+package de.uni_koblenz.jgralab.impl;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The asynchronous companion of a {@link RemoteGraphDatabaseAccess}: the
+ * read methods of the graph database return futures, so data can be
+ * requested from several partial graphs at once instead of one after the
+ * other. With a transport that allows several outstanding calls per
+ * connection, the calls to one partial graph are sent at once as well.
+ *
+ * The futures are completed by a pool of at most {@link #MAX_THREADS} daemon
+ * threads shared by all companions, further calls wait for a free thread.
+ * Data of many elements should therefore be requested by the methods
+ * reading several elements with one call, e.g.
+ * {@link #getVertexAttributes(long[], String)}. A failed remote call
+ * completes its future with the <code>RemoteException</code>,
+ * {@link #await(Future)} rethrows it as a <code>RuntimeException</code>.
+ */
+public final class AsyncGraphDatabaseAccess {
+
+	/**
+	 * The maximal number of remote calls which are executed at once
+	 */
+	public static final int MAX_THREADS = 32;
+
+	/* the idle threads are stopped after this time */
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static final ExecutorService executor = createExecutor();
+
+	private static ExecutorService createExecutor() {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS,
+				MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "JGraLab async call "
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private final RemoteGraphDatabaseAccess database;
+
+	/**
+	 * @param database
+	 *            the graph database, usually a stub of a remote one, whose
+	 *            methods are called asynchronously
+	 */
+	public AsyncGraphDatabaseAccess(RemoteGraphDatabaseAccess database) {
+		this.database = database;
+	}
+
+	/**
+	 * @return the graph database whose methods are called
+	 */
+	public RemoteGraphDatabaseAccess getGraphDatabase() {
+		return database;
+	}
+
+	/**
+	 * Waits for the result of <code>future</code>
+	 *
+	 * @return the result of the call
+	 * @throws RuntimeException
+	 *             if the call failed or the waiting thread was interrupted
+	 */
+	public static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/*
+	 * ===================================================== Counts
+	 * =====================================================
+	 */
+
+	public Future<Long> getVCount(final long globalSubgraphId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getVCount(globalSubgraphId);
+			}
+		});
+	}
+
+	public Future<Long> getECount(final long globalSubgraphId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getECount(globalSubgraphId);
+			}
+		});
+	}
+
+	public Future<Long> getICount(final long globalSubgraphId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getICount(globalSubgraphId);
+			}
+		});
+	}
+
+	/*
+	 * ===================================================== Element lookup
+	 * =====================================================
+	 */
+
+	public Future<Boolean> containsVertexId(final long vertexId) {
+		return executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws RemoteException {
+				return database.containsVertexId(vertexId);
+			}
+		});
+	}
+
+	public Future<Boolean> containsEdgeId(final long edgeId) {
+		return executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws RemoteException {
+				return database.containsEdgeId(edgeId);
+			}
+		});
+	}
+
+	public Future<Integer> getVertexTypeId(final long vertexId) {
+		return executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() throws RemoteException {
+				return database.getVertexTypeId(vertexId);
+			}
+		});
+	}
+
+	public Future<Integer> getEdgeTypeId(final long edgeId) {
+		return executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() throws RemoteException {
+				return database.getEdgeTypeId(edgeId);
+			}
+		});
+	}
+
+	public Future<Long> getFirstVertexId(final long globalSubgraphId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getFirstVertexId(globalSubgraphId);
+			}
+		});
+	}
+
+	public Future<Long> getFirstEdgeId(final long globalSubgraphId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getFirstEdgeId(globalSubgraphId);
+			}
+		});
+	}
+
+	/*
+	 * ===================================================== Incidence
+	 * navigation =====================================================
+	 */
+
+	public Future<Long> getFirstIncidenceIdAtVertexId(final long vertexId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getFirstIncidenceIdAtVertexId(vertexId);
+			}
+		});
+	}
+
+	public Future<Long> getFirstIncidenceIdAtEdgeId(final long edgeId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getFirstIncidenceIdAtEdgeId(edgeId);
+			}
+		});
+	}
+
+	public Future<Long> getEdgeIdAtIncidenceId(final long incidenceId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getEdgeIdAtIncidenceId(incidenceId);
+			}
+		});
+	}
+
+	public Future<Long> getVertexIdAtIncidenceId(final long incidenceId) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws RemoteException {
+				return database.getVertexIdAtIncidenceId(incidenceId);
+			}
+		});
+	}
+
+	/**
+	 * @see RemoteGraphDatabaseAccess#getIncidenceChainAtVertexId(long)
+	 */
+	public Future<long[]> getIncidenceChainAtVertexId(final long vertexId) {
+		return executor.submit(new Callable<long[]>() {
+			@Override
+			public long[] call() throws RemoteException {
+				return database.getIncidenceChainAtVertexId(vertexId);
+			}
+		});
+	}
+
+	/**
+	 * @see RemoteGraphDatabaseAccess#getIncidenceChainAtEdgeId(long)
+	 */
+	public Future<long[]> getIncidenceChainAtEdgeId(final long edgeId) {
+		return executor.submit(new Callable<long[]>() {
+			@Override
+			public long[] call() throws RemoteException {
+				return database.getIncidenceChainAtEdgeId(edgeId);
+			}
+		});
+	}
+
+	/*
+	 * ===================================================== Attributes
+	 * =====================================================
+	 */
+
+	public Future<Object> getVertexAttribute(final long vertexId,
+			final String attributeName) {
+		return executor.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws RemoteException {
+				return database.getVertexAttribute(vertexId, attributeName);
+			}
+		});
+	}
+
+	public Future<Object> getEdgeAttribute(final long edgeId,
+			final String attributeName) {
+		return executor.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws RemoteException {
+				return database.getEdgeAttribute(edgeId, attributeName);
+			}
+		});
+	}
+
+	/**
+	 * @see RemoteGraphDatabaseAccess#getVertexAttributes(long[], String)
+	 */
+	public Future<Object[]> getVertexAttributes(final long[] vertexIds,
+			final String attributeName) {
+		return executor.submit(new Callable<Object[]>() {
+			@Override
+			public Object[] call() throws RemoteException {
+				return database.getVertexAttributes(vertexIds, attributeName);
+			}
+		});
+	}
+
+	/**
+	 * @see RemoteGraphDatabaseAccess#getEdgeAttributes(long[], String)
+	 */
+	public Future<Object[]> getEdgeAttributes(final long[] edgeIds,
+			final String attributeName) {
+		return executor.submit(new Callable<Object[]>() {
+			@Override
+			public Object[] call() throws RemoteException {
+				return database.getEdgeAttributes(edgeIds, attributeName);
+			}
+		});
+	}
+
+}
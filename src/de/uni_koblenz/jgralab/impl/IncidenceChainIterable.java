@@ -0,0 +1,157 @@
+package de.uni_koblenz.jgralab.impl;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import de.uni_koblenz.jgralab.Direction;
+import de.uni_koblenz.jgralab.GraphElement;
+import de.uni_koblenz.jgralab.Incidence;
+
+/**
+ * This class provides an {@link Iterable} for the {@link Incidence}s of a
+ * proxy, which have been retrieved from the partial graph storing the proxied
+ * element with a single call, e.g. by
+ * {@link RemoteGraphDatabaseAccess#getIncidenceChainAtVertexId(long)}.
+ *
+ * Asking the remote partial graph for the incidence list version at every
+ * step would cost the round trips the chain saves, so the version is compared
+ * when the iteration reaches the end of the chain. An iteration over an
+ * incidence list that has been modified meanwhile fails with a
+ * {@link ConcurrentModificationException} at its end instead of at the next
+ * step.
+ */
+public class IncidenceChainIterable<I extends Incidence> implements
+		Iterable<I> {
+
+	/**
+	 * {@link GraphElement} which {@link Incidence}s are iterated.
+	 */
+	private final GraphElement<?, ?, ?, ?> graphElement;
+
+	/**
+	 * The version of the incidence list of the {@link GraphElement} before
+	 * the chain has been retrieved.
+	 */
+	private final long incidenceListVersion;
+
+	private final List<Incidence> chain;
+
+	/**
+	 * The {@link Class} of the desired {@link Incidence}s.
+	 */
+	private final Class<? extends Incidence> ic;
+
+	/**
+	 * {@link Direction} of the desired {@link Incidence}s.
+	 */
+	private final Direction dir;
+
+	/**
+	 * Creates an {@link Iterable} for the {@link Incidence}s of
+	 * <code>chain</code> which are instances of <code>ic</code>, or if
+	 * <code>ic</code> is null, have the specified <code>direction</code>.
+	 *
+	 * @param graphElement
+	 *            {@link GraphElement} which {@link Incidence}s are iterated
+	 * @param incidenceListVersion
+	 *            the version of the incidence list of
+	 *            <code>graphElement</code>, which has been read before
+	 *            <code>chain</code> was retrieved
+	 * @param chain
+	 *            the incidences of <code>graphElement</code> in the order of
+	 *            its lambda sequence, restricted to the traversal context
+	 * @param ic
+	 *            {@link Class} returned {@link Incidence}s are restricted to
+	 *            that class or subclasses, or null
+	 * @param dir
+	 *            {@link Direction} of the desired {@link Incidence}s, or null
+	 */
+	public IncidenceChainIterable(GraphElement<?, ?, ?, ?> graphElement,
+			long incidenceListVersion, List<Incidence> chain,
+			Class<? extends Incidence> ic, Direction dir) {
+		this.graphElement = graphElement;
+		this.incidenceListVersion = incidenceListVersion;
+		this.chain = chain;
+		this.ic = ic;
+		this.dir = dir;
+	}
+
+	@Override
+	public Iterator<I> iterator() {
+		return new IncidenceChainIterator();
+	}
+
+	private boolean accepts(Incidence i) {
+		if (ic != null) {
+			return ic.isInstance(i);
+		}
+		return dir == null || dir == Direction.BOTH
+				|| i.getDirection() == dir;
+	}
+
+	/**
+	 * This class provides an {@link Iterator} for the {@link Incidence}s of
+	 * the chain.
+	 */
+	class IncidenceChainIterator implements Iterator<I> {
+
+		/**
+		 * The position of the next accepted incidence in the chain.
+		 */
+		private int position = -1;
+
+		IncidenceChainIterator() {
+			advance();
+		}
+
+		private void advance() {
+			do {
+				position++;
+			} while (position < chain.size() && !accepts(chain.get(position)));
+		}
+
+		/**
+		 * Checks if the sequence of {@link Incidence}s was modified. In this
+		 * case a {@link ConcurrentModificationException} is thrown
+		 *
+		 * @throws ConcurrentModificationException
+		 */
+		private void checkConcurrentModification() {
+			if (graphElement.isIncidenceListModified(incidenceListVersion)) {
+				throw new ConcurrentModificationException(
+						"The incidence list of this graphelement has been modified - the iterator is not longer valid");
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (position < chain.size()) {
+				return true;
+			}
+			checkConcurrentModification();
+			return false;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public I next() {
+			if (position >= chain.size()) {
+				checkConcurrentModification();
+				throw new NoSuchElementException();
+			}
+			I result = (I) chain.get(position);
+			advance();
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"Cannot remove Incidences using Iterator");
+		}
+
+	}
+
+}
@@ -1,18 +1,21 @@
 package de.uni_koblenz.jgralab.impl;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.MalformedURLException;
-import java.rmi.Naming;
-import java.rmi.NotBoundException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import de.uni_koblenz.jgralab.Graph;
 import de.uni_koblenz.jgralab.GraphIO;
@@ -20,18 +23,33 @@ import de.uni_koblenz.jgralab.GraphIOException;
 import de.uni_koblenz.jgralab.ImplementationType;
 import de.uni_koblenz.jgralab.JGraLabServer;
 import de.uni_koblenz.jgralab.RemoteJGraLabServer;
+import de.uni_koblenz.jgralab.impl.transport.NioTransport;
+import de.uni_koblenz.jgralab.impl.transport.RemoteTransport;
+import de.uni_koblenz.jgralab.impl.transport.RmiTransport;
 import de.uni_koblenz.jgralab.schema.Schema;
 
 public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 
+	/**
+	 * The system property selecting the transport, either <code>rmi</code>
+	 * (the default) or <code>nio</code>
+	 */
+	public static final String TRANSPORT_PROPERTY = "jgralab.transport";
 
-	private static final String JGRALAB_SERVER_IDENTIFIER = "JGraLabServer";
+	/**
+	 * The system property holding the name of the local host, which may
+	 * contain the port the server listens on, e.g.
+	 * <code>localhost:1100</code>
+	 */
+	public static final String HOSTNAME_PROPERTY = "jgralab.hostname";
 
 	private static JGraLabServerImpl localInstance = null;
 
 	private static RemoteJGraLabServer remoteAccessToLocalInstance = null;
 
-	private static String localHostname = "141.26.70.230";
+	private static String localHostname = getDefaultHostname();
+
+	private static RemoteTransport transport = null;
 
 	private final Map<String, RemoteGraphDatabaseAccessWithInternalMethods> localGraphDatabases = new HashMap<String, RemoteGraphDatabaseAccessWithInternalMethods>();
 
@@ -43,17 +61,13 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 
 	}
 
-	public static JGraLabServerImpl getLocalInstance() {
+	public static synchronized JGraLabServerImpl getLocalInstance() {
 		try {
 			if (localInstance == null) {
 				localInstance = new JGraLabServerImpl();
-				remoteAccessToLocalInstance = (RemoteJGraLabServer) UnicastRemoteObject
-						.exportObject(localInstance, 0);
-				Registry registry = LocateRegistry.createRegistry(1099);
-				registry.bind(JGRALAB_SERVER_IDENTIFIER,
-						remoteAccessToLocalInstance);
-				// RemoteJGraLabServer remote =
-				// localInstance.getRemoteInstance(localInstance.localHostname);
+				remoteAccessToLocalInstance = (RemoteJGraLabServer) getTransport()
+						.exportObject(localInstance);
+				getTransport().bindServer(remoteAccessToLocalInstance);
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -61,19 +75,61 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 		return (JGraLabServerImpl) localInstance;
 	}
 
+	private static String getDefaultHostname() {
+		String hostname = System.getProperty(HOSTNAME_PROPERTY);
+		if (hostname != null) {
+			return hostname;
+		}
+		try {
+			return InetAddress.getLocalHost().getHostAddress();
+		} catch (UnknownHostException e) {
+			return "127.0.0.1";
+		}
+	}
+
+	/**
+	 * Sets the transport used to communicate with the other hosts, which
+	 * has to be done before the local server is started.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the transport is in use already
+	 */
+	public static synchronized void setTransport(RemoteTransport newTransport) {
+		if (transport != null) {
+			throw new IllegalStateException(
+					"The transport can't be changed while it is in use");
+		}
+		transport = newTransport;
+	}
+
+	/**
+	 * @return the transport used to communicate with the other hosts, which
+	 *         is created as selected by the system property
+	 *         {@link #TRANSPORT_PROPERTY} unless it has been set by
+	 *         {@link #setTransport(RemoteTransport)}
+	 */
+	public static synchronized RemoteTransport getTransport() {
+		if (transport == null) {
+			if ("nio".equals(System.getProperty(TRANSPORT_PROPERTY))) {
+				try {
+					transport = new NioTransport(localHostname);
+				} catch (IOException e) {
+					throw new RuntimeException("Cannot listen on "
+							+ localHostname, e);
+				}
+			} else {
+				transport = new RmiTransport(localHostname);
+			}
+		}
+		return transport;
+	}
+
 	@Override
 	public RemoteJGraLabServer getRemoteInstance(String hostname) {
 		try {
-			RemoteJGraLabServer server = (RemoteJGraLabServer) Naming
-					.lookup("rmi://" + hostname + "/"
-							+ JGRALAB_SERVER_IDENTIFIER);
-			return server;
-		} catch (MalformedURLException e) {
-			throw new RuntimeException("Error in URL", e);
+			return getTransport().lookupServer(hostname);
 		} catch (RemoteException e) {
 			throw new RuntimeException("Error in RemoteCommunicatio", e);
-		} catch (NotBoundException e) {
-			throw new RuntimeException("Error in service name", e);
 		}
 	}
 
@@ -104,6 +160,70 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 		return db;
 	}
 	
+	/**
+	 * Brings up the partial graphs of the graph identified by
+	 * <code>uid</code> on all given hosts at the same time. Every host is
+	 * told to load its partition of the graph, the method waits until all of
+	 * them are done. Incidences, sigmas and lambda sequences crossing
+	 * partitions have to be resolved by the caller afterwards, when all
+	 * partial graphs can be accessed.
+	 * 
+	 * @param uid
+	 *            the unique id of the graph
+	 * @param hostnames
+	 *            the hosts storing partial graphs of the graph, a host
+	 *            storing several partial graphs is contacted once
+	 * @throws GraphIOException
+	 *             if one of the hosts could not load its partition
+	 */
+	public void loadPartialGraphs(String uid, Collection<String> hostnames,
+			ImplementationType implType) throws GraphIOException {
+		loadPartialGraphs(getTransport(), uid, hostnames, implType);
+	}
+
+	/**
+	 * Brings up the partial graphs like
+	 * {@link #loadPartialGraphs(String, Collection, ImplementationType)},
+	 * the servers of the hosts are looked up by <code>hostTransport</code>.
+	 */
+	static void loadPartialGraphs(final RemoteTransport hostTransport,
+			final String uid, Collection<String> hostnames,
+			final ImplementationType implType) throws GraphIOException {
+		Collection<String> hosts = new LinkedHashSet<String>(hostnames);
+		final CountDownLatch barrier = new CountDownLatch(hosts.size());
+		final List<GraphIOException> failures = Collections
+				.synchronizedList(new ArrayList<GraphIOException>());
+		for (final String host : hosts) {
+			Thread loader = new Thread("Loading " + uid + " on " + host) {
+				@Override
+				public void run() {
+					try {
+						hostTransport.lookupServer(host).getGraphDatabase(uid,
+								implType);
+					} catch (Throwable e) {
+						failures.add(new GraphIOException(
+								"Cannot load partial graph of " + uid
+										+ " on host " + host, e));
+					} finally {
+						barrier.countDown();
+					}
+				}
+			};
+			loader.setDaemon(true);
+			loader.start();
+		}
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GraphIOException("Interrupted while loading partial graphs of "
+					+ uid, e);
+		}
+		if (!failures.isEmpty()) {
+			throw failures.get(0);
+		}
+	}
+
 	@Override
 	public void registerLocalDiskv2GraphDatabase(de.uni_koblenz.jgralab.impl.diskv2.GraphDatabaseBaseImpl localDb) {
 		String uniqueId = localDb.getUniqueGraphId();
@@ -111,8 +231,9 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 			localGraphDatabases.put(uniqueId, localDb);
 			RemoteGraphDatabaseAccessWithInternalMethods stub;
 			try {
-				stub = (RemoteGraphDatabaseAccessWithInternalMethods) UnicastRemoteObject
-						.exportObject(localGraphDatabases.get(uniqueId), 0);
+				stub = (RemoteGraphDatabaseAccessWithInternalMethods) getTransport()
+						.exportObject(localGraphDatabases.get(uniqueId),
+								localDb.getSchema().getClass().getClassLoader());
 				localStubs.put(uniqueId, stub);
 			} catch (RemoteException e) {
 				throw new RuntimeException(e);
@@ -128,8 +249,9 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 			localGraphDatabases.put(uniqueId, localDb);
 			RemoteGraphDatabaseAccessWithInternalMethods stub;
 			try {
-				stub = (RemoteGraphDatabaseAccessWithInternalMethods) UnicastRemoteObject
-						.exportObject(localGraphDatabases.get(uniqueId), 0);
+				stub = (RemoteGraphDatabaseAccessWithInternalMethods) getTransport()
+						.exportObject(localGraphDatabases.get(uniqueId),
+								localDb.getSchema().getClass().getClassLoader());
 				localStubs.put(uniqueId, stub);
 			} catch (RemoteException e) {
 				throw new RuntimeException(e);
@@ -145,8 +267,9 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 			localGraphDatabases.put(uniqueId, localDb);
 			RemoteGraphDatabaseAccessWithInternalMethods stub;
 			try {
-				stub = (RemoteGraphDatabaseAccessWithInternalMethods) UnicastRemoteObject
-						.exportObject(localGraphDatabases.get(uniqueId), 0);
+				stub = (RemoteGraphDatabaseAccessWithInternalMethods) getTransport()
+						.exportObject(localGraphDatabases.get(uniqueId),
+								localDb.getSchema().getClass().getClassLoader());
 				localStubs.put(uniqueId, stub);
 			} catch (RemoteException e) {
 				throw new RuntimeException(e);
@@ -264,8 +387,8 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 		Graph g = ((de.uni_koblenz.jgralab.impl.disk.GraphDatabaseBaseImpl) getLocalGraphDatabase(uniqueGraphId, ImplementationType.DISK))
 				.getGraphObject(de.uni_koblenz.jgralab.impl.disk.GraphDatabaseElementaryMethods
 						.getToplevelGraphForPartialGraphId(partialGraphId));
-		return (de.uni_koblenz.jgralab.algolib.SatelliteAlgorithmRemoteAccess) UnicastRemoteObject
-				.exportObject(de.uni_koblenz.jgralab.algolib.SatelliteAlgorithmImpl.create(g, parent), 0);
+		return (de.uni_koblenz.jgralab.algolib.SatelliteAlgorithmRemoteAccess) getTransport()
+				.exportObject(de.uni_koblenz.jgralab.algolib.SatelliteAlgorithmImpl.create(g, parent));
 	}
 	
 	public de.uni_koblenz.jgralab.algolib.universalsearch.SatelliteAlgorithmRemoteAccess createUniversalSatelliteAlgorithm(
@@ -274,8 +397,8 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 		Graph g = ((de.uni_koblenz.jgralab.impl.disk.GraphDatabaseBaseImpl) getLocalGraphDatabase(uniqueGraphId, ImplementationType.DISK))
 				.getGraphObject(de.uni_koblenz.jgralab.impl.disk.GraphDatabaseElementaryMethods
 						.getToplevelGraphForPartialGraphId(partialGraphId));
-		return (de.uni_koblenz.jgralab.algolib.universalsearch.SatelliteAlgorithmRemoteAccess) UnicastRemoteObject
-				.exportObject(de.uni_koblenz.jgralab.algolib.universalsearch.SatelliteAlgorithmImpl.create(g, parent), 0);
+		return (de.uni_koblenz.jgralab.algolib.universalsearch.SatelliteAlgorithmRemoteAccess) getTransport()
+				.exportObject(de.uni_koblenz.jgralab.algolib.universalsearch.SatelliteAlgorithmImpl.create(g, parent));
 	}
 
 	public static void main(String[] args) {
@@ -294,8 +417,7 @@ public class JGraLabServerImpl implements RemoteJGraLabServer, JGraLabServer {
 			@SuppressWarnings("unchecked")
 			Constructor m = c.getConstructor(String.class, int.class, int[].class);
 			Object o =  m.newInstance(uniqueGraphId, layers, branchingFactors);
-		return UnicastRemoteObject
-				.exportObject((Remote) o, 0);
+		return getTransport().exportObject((Remote) o);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -350,6 +350,62 @@ public interface RemoteGraphDatabaseAccess extends Remote {
 
 	public int getIncidenceTypeId(long id) throws RemoteException;
 
+	/**
+	 * The number of values that describe one incidence in the arrays returned
+	 * by the methods retrieving incidence chains and runs: the global id of
+	 * the incidence, the id of its incidence class, the global id of its edge
+	 * and the global id of its vertex
+	 */
+	public static final int INCIDENCE_RECORD_SIZE = 4;
+
+	/**
+	 * Retrieves the complete lambda sequence of a vertex with one call, so a
+	 * proxy does not need one call for every incidence of the sequence.
+	 *
+	 * @param vertexId
+	 *            the global id of the vertex
+	 * @return the records of the incidences in the order of the sequence,
+	 *         {@link #INCIDENCE_RECORD_SIZE} values for each of them
+	 */
+	public long[] getIncidenceChainAtVertexId(long vertexId)
+			throws RemoteException;
+
+	/**
+	 * Retrieves the complete lambda sequence of an edge with one call.
+	 *
+	 * @param edgeId
+	 *            the global id of the edge
+	 * @return the records of the incidences in the order of the sequence,
+	 *         {@link #INCIDENCE_RECORD_SIZE} values for each of them
+	 */
+	public long[] getIncidenceChainAtEdgeId(long edgeId) throws RemoteException;
+
+	/**
+	 * Retrieves the part of the lambda sequence of a vertex that starts at the
+	 * incidence <code>incidenceId</code> and consists of incidences stored in
+	 * the partial graph this method is called on. Used by
+	 * {@link #getIncidenceChainAtVertexId(long)} to collect the incidences
+	 * stored in other partial graphs with one call per run.
+	 *
+	 * @param incidenceId
+	 *            the global id of an incidence stored in this partial graph
+	 * @return the records of the incidences of the run, followed by the global
+	 *         id of the next incidence in the sequence, which is stored in
+	 *         another partial graph, or 0 if the run ends the sequence
+	 */
+	public long[] getIncidenceRunAtVertexId(long incidenceId)
+			throws RemoteException;
+
+	/**
+	 * Retrieves the part of the lambda sequence of an edge that starts at the
+	 * incidence <code>incidenceId</code> and consists of incidences stored in
+	 * the partial graph this method is called on.
+	 *
+	 * @see #getIncidenceRunAtVertexId(long)
+	 */
+	public long[] getIncidenceRunAtEdgeId(long incidenceId)
+			throws RemoteException;
+
 	/**
 	 * Creates a new incidence of the IncidenceClass identified by the id
 	 * <code>incidenceClassId</code> between the vertex identified by
@@ -394,6 +450,28 @@ public interface RemoteGraphDatabaseAccess extends Remote {
 	public void setEdgeAttribute(long elementId, String attributeName,
 			Object data) throws RemoteException;
 
+	/**
+	 * Retrieves the values of the attribute <code>attributeName</code> of
+	 * several vertices with one call.
+	 *
+	 * @param vertexIds
+	 *            the global ids of the vertices
+	 * @return the values in the order of <code>vertexIds</code>
+	 */
+	public Object[] getVertexAttributes(long[] vertexIds, String attributeName)
+			throws RemoteException;
+
+	/**
+	 * Retrieves the values of the attribute <code>attributeName</code> of
+	 * several edges with one call.
+	 *
+	 * @param edgeIds
+	 *            the global ids of the edges
+	 * @return the values in the order of <code>edgeIds</code>
+	 */
+	public Object[] getEdgeAttributes(long[] edgeIds, String attributeName)
+			throws RemoteException;
+
 	/*
 	 * =====================================================================
 	 * Methods to access domains
@@ -0,0 +1,429 @@
+package de.uni_koblenz.jgralab.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.uni_koblenz.jgralab.impl.StorageMetricsSnapshot.ElementStatistics;
+import de.uni_koblenz.jgralab.impl.StorageMetricsSnapshot.FileStatistics;
+
+/**
+ * Collects cache and I/O statistics of the storage of a graph database. The
+ * storage managers of the disk based implementations report every cache hit
+ * and miss, every element that is evicted from memory or written back to the
+ * disk, the time needed to reload an element, and the operations on their
+ * files. All counters are updated without locking, so they can be recorded
+ * on every access.
+ *
+ * The statistics can be read programmatically with {@link #snapshot()}, or
+ * through JMX after the metrics have been registered with
+ * {@link #register(String)}.
+ */
+public final class StorageMetrics implements StorageMetricsMXBean {
+
+	/**
+	 * The domain of the ObjectNames under which metrics are registered
+	 */
+	public static final String JMX_DOMAIN = "de.uni_koblenz.jgralab";
+
+	/**
+	 * The kinds of elements whose caching is recorded separately
+	 */
+	public enum ElementKind {
+		VERTEX, EDGE, INCIDENCE
+	}
+
+	private final String backend;
+
+	private final ElementMetrics[] elements;
+
+	/**
+	 * Metrics of the files, by the names they were created with
+	 */
+	private final Map<String, FileMetrics> files = new ConcurrentHashMap<String, FileMetrics>();
+
+	/**
+	 * The name under which these metrics are registered, or null
+	 */
+	private volatile ObjectName objectName;
+
+	/**
+	 * Creates empty metrics.
+	 *
+	 * @param backend
+	 *            the name of the storage implementation, e.g. "diskv2"
+	 */
+	public StorageMetrics(String backend) {
+		this.backend = backend;
+		elements = new ElementMetrics[ElementKind.values().length];
+		for (ElementKind kind : ElementKind.values()) {
+			elements[kind.ordinal()] = new ElementMetrics();
+		}
+	}
+
+	// ---- recording ----
+
+	/**
+	 * Records an access that found the element in memory.
+	 */
+	public void hit(ElementKind kind) {
+		elements[kind.ordinal()].hits.incrementAndGet();
+	}
+
+	/**
+	 * Records an access that didn't find the element in memory.
+	 */
+	public void miss(ElementKind kind) {
+		elements[kind.ordinal()].misses.incrementAndGet();
+	}
+
+	/**
+	 * Records that an element has been read from the disk.
+	 *
+	 * @param nanos
+	 *            the time the reload took, in nanoseconds
+	 */
+	public void reloaded(ElementKind kind, long nanos) {
+		elements[kind.ordinal()].reloadLatency.record(nanos);
+	}
+
+	/**
+	 * Records that elements have been removed from memory.
+	 *
+	 * @param count
+	 *            the number of removed elements
+	 */
+	public void evicted(ElementKind kind, int count) {
+		elements[kind.ordinal()].evictions.addAndGet(count);
+	}
+
+	/**
+	 * Records that a new or changed element has been written to the disk.
+	 */
+	public void writtenBack(ElementKind kind) {
+		elements[kind.ordinal()].writeBacks.incrementAndGet();
+	}
+
+	/**
+	 * Returns the metrics of a file, which are created on the first call
+	 * with the given name.
+	 *
+	 * @param name
+	 *            the name of the file
+	 */
+	public FileMetrics getFile(String name) {
+		FileMetrics file = files.get(name);
+		if (file == null) {
+			synchronized (files) {
+				file = files.get(name);
+				if (file == null) {
+					file = new FileMetrics();
+					files.put(name, file);
+				}
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Sets all counters and histograms to zero.
+	 */
+	@Override
+	public void reset() {
+		for (ElementMetrics element : elements) {
+			element.reset();
+		}
+		for (FileMetrics file : files.values()) {
+			file.reset();
+		}
+	}
+
+	// ---- reading ----
+
+	/**
+	 * Takes a snapshot of all counters and histograms. Counters that are
+	 * updated while the snapshot is taken may or may not be included.
+	 *
+	 * @return an immutable copy of the current statistics
+	 */
+	public StorageMetricsSnapshot snapshot() {
+		List<ElementStatistics> elementStatistics = new ArrayList<ElementStatistics>();
+		for (ElementKind kind : ElementKind.values()) {
+			ElementMetrics element = elements[kind.ordinal()];
+			elementStatistics.add(new ElementStatistics(kind.name(), element.hits.get(),
+					element.misses.get(), element.evictions.get(),
+					element.writeBacks.get(), element.reloadLatency.snapshot()));
+		}
+
+		List<FileStatistics> fileStatistics = new ArrayList<FileStatistics>();
+		for (Map.Entry<String, FileMetrics> entry : new TreeMap<String, FileMetrics>(
+				files).entrySet()) {
+			FileMetrics file = entry.getValue();
+			fileStatistics.add(new FileStatistics(entry.getKey(), file.reads.get(),
+					file.bytesRead.get(), file.writes.get(), file.bytesWritten.get(),
+					file.readLatency.snapshot(), file.writeLatency.snapshot()));
+		}
+
+		return new StorageMetricsSnapshot(backend, System.currentTimeMillis(),
+				elementStatistics, fileStatistics);
+	}
+
+	@Override
+	public String getBackend() {
+		return backend;
+	}
+
+	@Override
+	public ElementStatistics[] getElementStatistics() {
+		List<ElementStatistics> list = snapshot().getElementStatistics();
+		return list.toArray(new ElementStatistics[list.size()]);
+	}
+
+	@Override
+	public FileStatistics[] getFileStatistics() {
+		List<FileStatistics> list = snapshot().getFileStatistics();
+		return list.toArray(new FileStatistics[list.size()]);
+	}
+
+	@Override
+	public long getHits() {
+		long sum = 0;
+		for (ElementMetrics element : elements) {
+			sum += element.hits.get();
+		}
+		return sum;
+	}
+
+	@Override
+	public long getMisses() {
+		long sum = 0;
+		for (ElementMetrics element : elements) {
+			sum += element.misses.get();
+		}
+		return sum;
+	}
+
+	@Override
+	public double getHitRatio() {
+		long hits = getHits();
+		long accesses = hits + getMisses();
+		return accesses == 0 ? 1.0 : (double) hits / accesses;
+	}
+
+	@Override
+	public long getEvictions() {
+		long sum = 0;
+		for (ElementMetrics element : elements) {
+			sum += element.evictions.get();
+		}
+		return sum;
+	}
+
+	@Override
+	public long getWriteBacks() {
+		long sum = 0;
+		for (ElementMetrics element : elements) {
+			sum += element.writeBacks.get();
+		}
+		return sum;
+	}
+
+	@Override
+	public long getBytesRead() {
+		long sum = 0;
+		for (FileMetrics file : files.values()) {
+			sum += file.bytesRead.get();
+		}
+		return sum;
+	}
+
+	@Override
+	public long getBytesWritten() {
+		long sum = 0;
+		for (FileMetrics file : files.values()) {
+			sum += file.bytesWritten.get();
+		}
+		return sum;
+	}
+
+	// ---- JMX ----
+
+	/**
+	 * Registers these metrics at the platform MBeanServer, with the
+	 * ObjectName
+	 * <code>de.uni_koblenz.jgralab:type=StorageMetrics,backend=...,name=...</code>
+	 * . Metrics that are registered under the same name already are replaced.
+	 *
+	 * @param name
+	 *            a name that identifies the graph database, e.g. its ids
+	 */
+	public synchronized void register(String name) {
+		unregister();
+		try {
+			ObjectName on = new ObjectName(JMX_DOMAIN + ":type=StorageMetrics,backend="
+					+ ObjectName.quote(backend) + ",name=" + ObjectName.quote(name));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				server.registerMBean(this, on);
+			} catch (InstanceAlreadyExistsException e) {
+				// a graph database with the same ids has been created before
+				server.unregisterMBean(on);
+				server.registerMBean(this, on);
+			}
+			objectName = on;
+		} catch (JMException e) {
+			throw new RuntimeException("Unable to register storage metrics", e);
+		}
+	}
+
+	/**
+	 * Removes these metrics from the platform MBeanServer, if they have
+	 * been registered.
+	 */
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (InstanceNotFoundException e) {
+			// replaced by metrics of another graph database
+		} catch (JMException e) {
+			throw new RuntimeException("Unable to unregister storage metrics", e);
+		}
+		objectName = null;
+	}
+
+	// ---- counters ----
+
+	/**
+	 * Counters of one kind of elements
+	 */
+	private static final class ElementMetrics {
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+		final AtomicLong evictions = new AtomicLong();
+		final AtomicLong writeBacks = new AtomicLong();
+		final LatencyHistogram reloadLatency = new LatencyHistogram();
+
+		void reset() {
+			hits.set(0);
+			misses.set(0);
+			evictions.set(0);
+			writeBacks.set(0);
+			reloadLatency.reset();
+		}
+	}
+
+	/**
+	 * Counters of the operations on one file, or a group of files that is
+	 * reported under a common name.
+	 */
+	public static final class FileMetrics {
+		private final AtomicLong reads = new AtomicLong();
+		private final AtomicLong bytesRead = new AtomicLong();
+		private final AtomicLong writes = new AtomicLong();
+		private final AtomicLong bytesWritten = new AtomicLong();
+		private final LatencyHistogram readLatency = new LatencyHistogram();
+		private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+		private FileMetrics() {
+		}
+
+		/**
+		 * Records a read from the file.
+		 *
+		 * @param bytes
+		 *            the number of bytes read
+		 * @param nanos
+		 *            the time the read took, in nanoseconds
+		 */
+		public void read(long bytes, long nanos) {
+			reads.incrementAndGet();
+			bytesRead.addAndGet(bytes);
+			readLatency.record(nanos);
+		}
+
+		/**
+		 * Records a write to the file.
+		 *
+		 * @param bytes
+		 *            the number of bytes written
+		 * @param nanos
+		 *            the time the write took, in nanoseconds
+		 */
+		public void written(long bytes, long nanos) {
+			writes.incrementAndGet();
+			bytesWritten.addAndGet(bytes);
+			writeLatency.record(nanos);
+		}
+
+		void reset() {
+			reads.set(0);
+			bytesRead.set(0);
+			writes.set(0);
+			bytesWritten.set(0);
+			readLatency.reset();
+			writeLatency.reset();
+		}
+	}
+
+	/**
+	 * A histogram of durations with buckets of exponentially growing width.
+	 * Bucket 0 counts durations below one microsecond, bucket i durations
+	 * from 2^(i-1) up to 2^i microseconds, and the last bucket everything
+	 * longer.
+	 */
+	static final class LatencyHistogram {
+
+		static final int BUCKETS = 32;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void record(long nanos) {
+			long micros = nanos / 1000;
+			int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1,
+					64 - Long.numberOfLeadingZeros(micros));
+			buckets.incrementAndGet(bucket);
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+
+			long max = maxNanos.get();
+			while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+				max = maxNanos.get();
+			}
+		}
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			totalNanos.set(0);
+			maxNanos.set(0);
+		}
+
+		StorageMetricsSnapshot.LatencyStatistics snapshot() {
+			long[] counts = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+			}
+			return new StorageMetricsSnapshot.LatencyStatistics(count.get(),
+					totalNanos.get(), maxNanos.get(), counts);
+		}
+	}
+}
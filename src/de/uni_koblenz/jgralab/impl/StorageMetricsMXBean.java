@@ -0,0 +1,42 @@
+package de.uni_koblenz.jgralab.impl;
+
+import de.uni_koblenz.jgralab.impl.StorageMetricsSnapshot.ElementStatistics;
+import de.uni_koblenz.jgralab.impl.StorageMetricsSnapshot.FileStatistics;
+
+/**
+ * Management interface of {@link StorageMetrics}. The totals are summed up
+ * over all element kinds and files, the statistics arrays are exposed as
+ * composite data.
+ */
+public interface StorageMetricsMXBean {
+
+	public String getBackend();
+
+	public ElementStatistics[] getElementStatistics();
+
+	public FileStatistics[] getFileStatistics();
+
+	public long getHits();
+
+	public long getMisses();
+
+	/**
+	 * @return the fraction of accesses that found their element in memory,
+	 *         or 1.0 if there were no accesses yet
+	 */
+	public double getHitRatio();
+
+	public long getEvictions();
+
+	public long getWriteBacks();
+
+	public long getBytesRead();
+
+	public long getBytesWritten();
+
+	/**
+	 * Sets all counters and histograms to zero.
+	 */
+	public void reset();
+
+}
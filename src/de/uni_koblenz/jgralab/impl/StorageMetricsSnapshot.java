@@ -0,0 +1,319 @@
+package de.uni_koblenz.jgralab.impl;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of the statistics collected by {@link StorageMetrics} at
+ * a point in time. Snapshots are serializable, so they can be fetched from a
+ * remote graph database.
+ */
+public final class StorageMetricsSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String backend;
+
+	private final long timestamp;
+
+	private final List<ElementStatistics> elementStatistics;
+
+	private final List<FileStatistics> fileStatistics;
+
+	StorageMetricsSnapshot(String backend, long timestamp,
+			List<ElementStatistics> elementStatistics,
+			List<FileStatistics> fileStatistics) {
+		this.backend = backend;
+		this.timestamp = timestamp;
+		this.elementStatistics = Collections.unmodifiableList(elementStatistics);
+		this.fileStatistics = Collections.unmodifiableList(fileStatistics);
+	}
+
+	/**
+	 * @return the name of the storage implementation
+	 */
+	public String getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return the time the snapshot was taken, in milliseconds since the
+	 *         epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the statistics of all element kinds
+	 */
+	public List<ElementStatistics> getElementStatistics() {
+		return elementStatistics;
+	}
+
+	/**
+	 * @return the statistics of the given element kind
+	 */
+	public ElementStatistics getElementStatistics(StorageMetrics.ElementKind kind) {
+		return elementStatistics.get(kind.ordinal());
+	}
+
+	/**
+	 * @return the statistics of all files
+	 */
+	public List<FileStatistics> getFileStatistics() {
+		return fileStatistics;
+	}
+
+	/**
+	 * @return the statistics of the file with the given name, or null if
+	 *         there is no such file
+	 */
+	public FileStatistics getFileStatistics(String name) {
+		for (FileStatistics file : fileStatistics) {
+			if (file.getName().equals(name)) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(backend).append(" storage");
+		for (ElementStatistics e : elementStatistics) {
+			sb.append("\n  ").append(e);
+		}
+		for (FileStatistics f : fileStatistics) {
+			sb.append("\n  ").append(f);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Cache statistics of one kind of elements. For storages that keep
+	 * elements in containers, hits, misses, evictions and write-backs are
+	 * counted per container.
+	 */
+	public static final class ElementStatistics implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String kind;
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long writeBacks;
+		private final LatencyStatistics reloadLatency;
+
+		ElementStatistics(String kind, long hits, long misses, long evictions,
+				long writeBacks, LatencyStatistics reloadLatency) {
+			this.kind = kind;
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.writeBacks = writeBacks;
+			this.reloadLatency = reloadLatency;
+		}
+
+		public String getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return the number of accesses that found the element in memory
+		 */
+		public long getHits() {
+			return hits;
+		}
+
+		/**
+		 * @return the number of accesses that had to reload the element
+		 */
+		public long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * @return the number of elements removed from memory, either by the
+		 *         memory budget or by the garbage collector
+		 */
+		public long getEvictions() {
+			return evictions;
+		}
+
+		/**
+		 * @return the number of new or changed elements written to the disk
+		 */
+		public long getWriteBacks() {
+			return writeBacks;
+		}
+
+		/**
+		 * @return the time needed to read an element from the disk
+		 */
+		public LatencyStatistics getReloadLatency() {
+			return reloadLatency;
+		}
+
+		@Override
+		public String toString() {
+			return kind + ": hits=" + hits + " misses=" + misses
+					+ " evictions=" + evictions + " writeBacks=" + writeBacks
+					+ " reload=[" + reloadLatency + "]";
+		}
+	}
+
+	/**
+	 * I/O statistics of one file
+	 */
+	public static final class FileStatistics implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+		private final long reads;
+		private final long bytesRead;
+		private final long writes;
+		private final long bytesWritten;
+		private final LatencyStatistics readLatency;
+		private final LatencyStatistics writeLatency;
+
+		FileStatistics(String name, long reads, long bytesRead, long writes,
+				long bytesWritten, LatencyStatistics readLatency,
+				LatencyStatistics writeLatency) {
+			this.name = name;
+			this.reads = reads;
+			this.bytesRead = bytesRead;
+			this.writes = writes;
+			this.bytesWritten = bytesWritten;
+			this.readLatency = readLatency;
+			this.writeLatency = writeLatency;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getReads() {
+			return reads;
+		}
+
+		public long getBytesRead() {
+			return bytesRead;
+		}
+
+		public long getWrites() {
+			return writes;
+		}
+
+		public long getBytesWritten() {
+			return bytesWritten;
+		}
+
+		public LatencyStatistics getReadLatency() {
+			return readLatency;
+		}
+
+		public LatencyStatistics getWriteLatency() {
+			return writeLatency;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": reads=" + reads + " (" + bytesRead + " bytes)"
+					+ " writes=" + writes + " (" + bytesWritten + " bytes)"
+					+ " read=[" + readLatency + "] write=[" + writeLatency
+					+ "]";
+		}
+	}
+
+	/**
+	 * A histogram of durations. Bucket 0 counts durations below one
+	 * microsecond, bucket i durations from 2^(i-1) up to 2^i microseconds.
+	 */
+	public static final class LatencyStatistics implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long[] buckets;
+
+		LatencyStatistics(long count, long totalNanos, long maxNanos,
+				long[] buckets) {
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.buckets = buckets;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public long getMeanNanos() {
+			return count == 0 ? 0 : totalNanos / count;
+		}
+
+		/**
+		 * @return the number of durations in every bucket
+		 */
+		public long[] getBuckets() {
+			return buckets.clone();
+		}
+
+		/**
+		 * Estimates a percentile from the histogram.
+		 *
+		 * @param percentile
+		 *            a value between 0 and 100
+		 * @return the upper bound of the bucket containing the percentile, in
+		 *         nanoseconds
+		 */
+		public long getPercentileNanos(double percentile) {
+			long total = 0;
+			for (long b : buckets) {
+				total += b;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(total * percentile / 100.0);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank) {
+					return i == buckets.length - 1 ? maxNanos
+							: Math.min(maxNanos, (1L << i) * 1000);
+				}
+			}
+			return maxNanos;
+		}
+
+		public long getMedianNanos() {
+			return getPercentileNanos(50);
+		}
+
+		public long getP99Nanos() {
+			return getPercentileNanos(99);
+		}
+
+		@Override
+		public String toString() {
+			return "n=" + count + " mean=" + getMeanNanos() / 1000 + "us p50<="
+					+ getMedianNanos() / 1000 + "us p99<=" + getP99Nanos()
+					/ 1000 + "us max=" + maxNanos / 1000 + "us";
+		}
+	}
+}
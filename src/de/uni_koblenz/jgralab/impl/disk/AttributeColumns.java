@@ -0,0 +1,505 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the attribute containers of a container column by column. The
+ * attribute containers are grouped by their classes. For each group, the
+ * indices of its elements are followed by one column per attribute:
+ * primitive attributes are stored as arrays of their type, strings as a table
+ * of lengths followed by the pool of their UTF-8 bytes, and enumerations as
+ * ordinals. Only the remaining attributes, such as collections and records,
+ * are serialized. Every column starts with its name and its length, so a
+ * column can be found without decoding the others, and the columns are read
+ * in bulk from the mapped slot instead of deserializing every attribute
+ * container on its own.
+ *
+ * The layout of a slot is:
+ *
+ * <pre>
+ * int length of the following data, 0 if there are no attributes
+ * int number of groups
+ * per group:
+ *   string class name, int count, int[count] indices in the container
+ *   int number of columns
+ *   per column: string field name, byte kind, int length, data
+ * </pre>
+ */
+final class AttributeColumns {
+
+	private static final byte BOOLEAN = 0;
+	private static final byte BYTE = 1;
+	private static final byte SHORT = 2;
+	private static final byte CHAR = 3;
+	private static final byte INT = 4;
+	private static final byte LONG = 5;
+	private static final byte FLOAT = 6;
+	private static final byte DOUBLE = 7;
+	private static final byte STRING = 8;
+	private static final byte ENUM = 9;
+	private static final byte OBJECT = 10;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/* the attribute fields of every attribute container class, by name */
+	private static final Map<Class<?>, Field[]> fields = new ConcurrentHashMap<Class<?>, Field[]>();
+
+	private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
+	private static final Comparator<Field> BY_NAME = new Comparator<Field>() {
+		@Override
+		public int compare(Field f1, Field f2) {
+			return f1.getName().compareTo(f2.getName());
+		}
+	};
+
+	private AttributeColumns() {
+	}
+
+	/**
+	 * Writes the attribute containers <code>attributes</code> to
+	 * <code>slot</code>, starting at its position.
+	 *
+	 * @throws IOException
+	 *             if the attributes do not fit into the slot
+	 */
+	static void write(AttributeContainer[] attributes, ByteBuffer slot,
+			int containerId) throws IOException {
+		Map<Class<?>, List<Integer>> groups = new LinkedHashMap<Class<?>, List<Integer>>();
+		for (int i = 0; i < attributes.length; i++) {
+			if (attributes[i] != null) {
+				List<Integer> group = groups.get(attributes[i].getClass());
+				if (group == null) {
+					group = new ArrayList<Integer>();
+					groups.put(attributes[i].getClass(), group);
+				}
+				group.add(i);
+			}
+		}
+		int start = slot.position();
+		try {
+			slot.putInt(0);
+			if (groups.isEmpty()) {
+				return;
+			}
+			slot.putInt(groups.size());
+			for (Map.Entry<Class<?>, List<Integer>> group : groups.entrySet()) {
+				List<Integer> members = group.getValue();
+				AttributeContainer[] values = new AttributeContainer[members
+						.size()];
+				putString(slot, group.getKey().getName());
+				slot.putInt(values.length);
+				for (int i = 0; i < values.length; i++) {
+					int index = members.get(i);
+					slot.putInt(index);
+					values[i] = attributes[index];
+				}
+				Field[] columns = getFields(group.getKey());
+				slot.putInt(columns.length);
+				for (Field column : columns) {
+					putString(slot, column.getName());
+					slot.put(getKind(column.getType()));
+					int lengthPosition = slot.position();
+					slot.putInt(0);
+					writeColumn(column, values, slot);
+					slot.putInt(lengthPosition, slot.position() - lengthPosition
+							- 4);
+				}
+			}
+			slot.putInt(start, slot.position() - start - 4);
+		} catch (BufferOverflowException e) {
+			throw new IOException("Attributes of container " + containerId
+					+ " exceed the slot size of " + slot.capacity() + " bytes");
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads attribute containers written by
+	 * {@link #write(AttributeContainer[], ByteBuffer, int)} from
+	 * <code>slot</code>, starting at its position.
+	 *
+	 * @param size
+	 *            the number of elements in a container
+	 * @param loader
+	 *            the class loader of the schema the attribute containers
+	 *            belong to
+	 * @return the attribute containers, or null if there are none
+	 */
+	static AttributeContainer[] read(ByteBuffer slot, int size,
+			ClassLoader loader) throws IOException, ClassNotFoundException {
+		int length = slot.getInt();
+		if (length == 0) {
+			return null;
+		}
+		AttributeContainer[] attributes = new AttributeContainer[size];
+		int groupCount = slot.getInt();
+		for (int g = 0; g < groupCount; g++) {
+			Class<?> type = Class.forName(getString(slot), true, loader);
+			AttributeContainer[] values = new AttributeContainer[slot.getInt()];
+			try {
+				Constructor<?> constructor = getConstructor(type);
+				for (int i = 0; i < values.length; i++) {
+					values[i] = (AttributeContainer) constructor.newInstance();
+					attributes[slot.getInt()] = values[i];
+				}
+				Map<String, Field> byName = new LinkedHashMap<String, Field>();
+				for (Field field : getFields(type)) {
+					byName.put(field.getName(), field);
+				}
+				int columnCount = slot.getInt();
+				for (int c = 0; c < columnCount; c++) {
+					Field column = byName.get(getString(slot));
+					byte kind = slot.get();
+					int columnLength = slot.getInt();
+					if (column == null || getKind(column.getType()) != kind) {
+						// the attribute has been removed or changed its type
+						slot.position(slot.position() + columnLength);
+					} else {
+						readColumn(column, kind, values, slot, loader);
+					}
+				}
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			} catch (InstantiationException e) {
+				throw new RuntimeException(e);
+			} catch (InvocationTargetException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return attributes;
+	}
+
+	private static void writeColumn(Field field, AttributeContainer[] values,
+			ByteBuffer slot) throws IllegalAccessException, IOException {
+		int n = values.length;
+		switch (getKind(field.getType())) {
+		case BOOLEAN:
+			for (int i = 0; i < n; i++) {
+				slot.put(field.getBoolean(values[i]) ? (byte) 1 : (byte) 0);
+			}
+			break;
+		case BYTE:
+			for (int i = 0; i < n; i++) {
+				slot.put(field.getByte(values[i]));
+			}
+			break;
+		case SHORT: {
+			short[] column = new short[n];
+			for (int i = 0; i < n; i++) {
+				column[i] = field.getShort(values[i]);
+			}
+			slot.asShortBuffer().put(column);
+			slot.position(slot.position() + n * 2);
+			break;
+		}
+		case CHAR: {
+			char[] column = new char[n];
+			for (int i = 0; i < n; i++) {
+				column[i] = field.getChar(values[i]);
+			}
+			slot.asCharBuffer().put(column);
+			slot.position(slot.position() + n * 2);
+			break;
+		}
+		case INT: {
+			int[] column = new int[n];
+			for (int i = 0; i < n; i++) {
+				column[i] = field.getInt(values[i]);
+			}
+			slot.asIntBuffer().put(column);
+			slot.position(slot.position() + n * 4);
+			break;
+		}
+		case LONG: {
+			long[] column = new long[n];
+			for (int i = 0; i < n; i++) {
+				column[i] = field.getLong(values[i]);
+			}
+			slot.asLongBuffer().put(column);
+			slot.position(slot.position() + n * 8);
+			break;
+		}
+		case FLOAT: {
+			float[] column = new float[n];
+			for (int i = 0; i < n; i++) {
+				column[i] = field.getFloat(values[i]);
+			}
+			slot.asFloatBuffer().put(column);
+			slot.position(slot.position() + n * 4);
+			break;
+		}
+		case DOUBLE: {
+			double[] column = new double[n];
+			for (int i = 0; i < n; i++) {
+				column[i] = field.getDouble(values[i]);
+			}
+			slot.asDoubleBuffer().put(column);
+			slot.position(slot.position() + n * 8);
+			break;
+		}
+		case STRING: {
+			// the lengths of all strings, -1 for null, followed by the pool
+			byte[][] pool = new byte[n][];
+			int[] lengths = new int[n];
+			for (int i = 0; i < n; i++) {
+				String value = (String) field.get(values[i]);
+				pool[i] = value == null ? null : value.getBytes(UTF8);
+				lengths[i] = value == null ? -1 : pool[i].length;
+			}
+			slot.asIntBuffer().put(lengths);
+			slot.position(slot.position() + n * 4);
+			for (byte[] bytes : pool) {
+				if (bytes != null) {
+					slot.put(bytes);
+				}
+			}
+			break;
+		}
+		case ENUM: {
+			int[] ordinals = new int[n];
+			for (int i = 0; i < n; i++) {
+				Enum<?> value = (Enum<?>) field.get(values[i]);
+				ordinals[i] = value == null ? -1 : value.ordinal();
+			}
+			slot.asIntBuffer().put(ordinals);
+			slot.position(slot.position() + n * 4);
+			break;
+		}
+		default: {
+			Object[] objects = new Object[n];
+			for (int i = 0; i < n; i++) {
+				objects[i] = field.get(values[i]);
+			}
+			ByteArrayOutputStream bao = new ByteArrayOutputStream();
+			ObjectOutputStream output = new ObjectOutputStream(bao);
+			output.writeObject(objects);
+			output.close();
+			slot.put(bao.toByteArray());
+		}
+		}
+	}
+
+	private static void readColumn(Field field, byte kind,
+			AttributeContainer[] values, ByteBuffer slot,
+			final ClassLoader loader) throws IllegalAccessException,
+			IOException, ClassNotFoundException {
+		int n = values.length;
+		switch (kind) {
+		case BOOLEAN:
+			for (int i = 0; i < n; i++) {
+				field.setBoolean(values[i], slot.get() != 0);
+			}
+			break;
+		case BYTE:
+			for (int i = 0; i < n; i++) {
+				field.setByte(values[i], slot.get());
+			}
+			break;
+		case SHORT: {
+			short[] column = new short[n];
+			slot.asShortBuffer().get(column);
+			slot.position(slot.position() + n * 2);
+			for (int i = 0; i < n; i++) {
+				field.setShort(values[i], column[i]);
+			}
+			break;
+		}
+		case CHAR: {
+			char[] column = new char[n];
+			slot.asCharBuffer().get(column);
+			slot.position(slot.position() + n * 2);
+			for (int i = 0; i < n; i++) {
+				field.setChar(values[i], column[i]);
+			}
+			break;
+		}
+		case INT: {
+			int[] column = new int[n];
+			slot.asIntBuffer().get(column);
+			slot.position(slot.position() + n * 4);
+			for (int i = 0; i < n; i++) {
+				field.setInt(values[i], column[i]);
+			}
+			break;
+		}
+		case LONG: {
+			long[] column = new long[n];
+			slot.asLongBuffer().get(column);
+			slot.position(slot.position() + n * 8);
+			for (int i = 0; i < n; i++) {
+				field.setLong(values[i], column[i]);
+			}
+			break;
+		}
+		case FLOAT: {
+			float[] column = new float[n];
+			slot.asFloatBuffer().get(column);
+			slot.position(slot.position() + n * 4);
+			for (int i = 0; i < n; i++) {
+				field.setFloat(values[i], column[i]);
+			}
+			break;
+		}
+		case DOUBLE: {
+			double[] column = new double[n];
+			slot.asDoubleBuffer().get(column);
+			slot.position(slot.position() + n * 8);
+			for (int i = 0; i < n; i++) {
+				field.setDouble(values[i], column[i]);
+			}
+			break;
+		}
+		case STRING: {
+			int[] lengths = new int[n];
+			slot.asIntBuffer().get(lengths);
+			slot.position(slot.position() + n * 4);
+			for (int i = 0; i < n; i++) {
+				if (lengths[i] >= 0) {
+					byte[] bytes = new byte[lengths[i]];
+					slot.get(bytes);
+					field.set(values[i], new String(bytes, UTF8));
+				}
+			}
+			break;
+		}
+		case ENUM: {
+			int[] ordinals = new int[n];
+			slot.asIntBuffer().get(ordinals);
+			slot.position(slot.position() + n * 4);
+			Object[] constants = field.getType().getEnumConstants();
+			for (int i = 0; i < n; i++) {
+				if (ordinals[i] >= 0) {
+					field.set(values[i], constants[ordinals[i]]);
+				}
+			}
+			break;
+		}
+		default: {
+			// the stream reads exactly the serialized array, but not
+			// necessarily the whole column, so the length is taken from
+			// the column header
+			int length = slot.getInt(slot.position() - 4);
+			byte[] bytes = new byte[length];
+			slot.get(bytes);
+			ObjectInputStream input = new ObjectInputStream(
+					new ByteArrayInputStream(bytes)) {
+				@Override
+				protected Class<?> resolveClass(ObjectStreamClass desc)
+						throws IOException, ClassNotFoundException {
+					try {
+						return Class.forName(desc.getName(), false, loader);
+					} catch (ClassNotFoundException e) {
+						return super.resolveClass(desc);
+					}
+				}
+			};
+			Object[] objects = (Object[]) input.readObject();
+			input.close();
+			for (int i = 0; i < n; i++) {
+				field.set(values[i], objects[i]);
+			}
+		}
+		}
+	}
+
+	private static byte getKind(Class<?> type) {
+		if (type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == char.class) {
+			return CHAR;
+		} else if (type == int.class) {
+			return INT;
+		} else if (type == long.class) {
+			return LONG;
+		} else if (type == float.class) {
+			return FLOAT;
+		} else if (type == double.class) {
+			return DOUBLE;
+		} else if (type == String.class) {
+			return STRING;
+		} else if (type.isEnum()) {
+			return ENUM;
+		} else {
+			return OBJECT;
+		}
+	}
+
+	/*
+	 * returns the instance fields of an attribute container class and its
+	 * superclasses below AttributeContainer, sorted by their names
+	 */
+	private static Field[] getFields(Class<?> type) {
+		Field[] result = fields.get(type);
+		if (result == null) {
+			List<Field> list = new ArrayList<Field>();
+			for (Class<?> c = type; c != AttributeContainer.class
+					&& c != null; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (!Modifier.isStatic(modifiers)
+							&& !Modifier.isTransient(modifiers)) {
+						field.setAccessible(true);
+						list.add(field);
+					}
+				}
+			}
+			result = list.toArray(new Field[list.size()]);
+			Arrays.sort(result, BY_NAME);
+			fields.put(type, result);
+		}
+		return result;
+	}
+
+	private static Constructor<?> getConstructor(Class<?> type) {
+		Constructor<?> constructor = constructors.get(type);
+		if (constructor == null) {
+			try {
+				constructor = type.getDeclaredConstructor();
+			} catch (NoSuchMethodException e) {
+				throw new RuntimeException("Attribute container class "
+						+ type.getName() + " has no default constructor", e);
+			}
+			constructor.setAccessible(true);
+			constructors.put(type, constructor);
+		}
+		return constructor;
+	}
+
+	private static void putString(ByteBuffer slot, String value) {
+		byte[] bytes = value.getBytes(UTF8);
+		slot.putShort((short) bytes.length);
+		slot.put(bytes);
+	}
+
+	private static String getString(ByteBuffer slot) {
+		byte[] bytes = new byte[slot.getShort() & 0xFFFF];
+		slot.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
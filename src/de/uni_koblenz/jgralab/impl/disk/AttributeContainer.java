@@ -1,10 +1,30 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
+import java.io.Serializable;
 
+/*
+ * the attribute containers of a container are written column by column by
+ * AttributeColumns, which creates them with their default constructor
+ */
+public abstract class AttributeContainer implements Serializable, Cloneable {
 
-public abstract class AttributeContainer {
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * the number of the latest snapshot that has been created when the
+	 * attributes were copied for the pinned snapshots the last time
+	 */
+	transient volatile long preservedSnapshot = 0;
+
+	/**
+	 * @return a copy of the attributes, which shares the attribute values
+	 */
+	AttributeContainer copy() {
+		try {
+			return (AttributeContainer) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
-	
-	
-	
 }
@@ -24,14 +24,14 @@ public abstract class BinaryEdgeImpl extends EdgeImpl implements BinaryEdge {
 	@Override
 	public Vertex getAlpha() {
 		if (localGraphDatabase.getIncidenceObject(
-				container.firstIncidenceId[getIdInStorage(elementId)])
+				readableContainer().firstIncidenceId.get(getIdInStorage(elementId)))
 				.getDirection() == Direction.VERTEX_TO_EDGE) {
 			return localGraphDatabase.getIncidenceObject(
-					container.firstIncidenceId[getIdInStorage(elementId)])
+					readableContainer().firstIncidenceId.get(getIdInStorage(elementId)))
 					.getVertex();
 		} else {
 			return localGraphDatabase.getIncidenceObject(
-					container.lastIncidenceId[getIdInStorage(elementId)])
+					readableContainer().lastIncidenceId.get(getIdInStorage(elementId)))
 					.getVertex();
 		}
 	}
@@ -39,10 +39,10 @@ public abstract class BinaryEdgeImpl extends EdgeImpl implements BinaryEdge {
 	@Override
 	public void setAlpha(Vertex vertex) {
 		Incidence i = localGraphDatabase
-				.getIncidenceObject(container.firstIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().firstIncidenceId.get(getIdInStorage(elementId)));
 		if (i.getDirection() != Direction.VERTEX_TO_EDGE) {
 			i = localGraphDatabase
-					.getIncidenceObject(container.lastIncidenceId[getIdInStorage(elementId)]);
+					.getIncidenceObject(readableContainer().lastIncidenceId.get(getIdInStorage(elementId)));
 		}
 		Vertex v = i.getVertex();
 		try {
@@ -57,14 +57,14 @@ public abstract class BinaryEdgeImpl extends EdgeImpl implements BinaryEdge {
 	@Override
 	public Vertex getOmega() {
 		if (localGraphDatabase.getIncidenceObject(
-				container.firstIncidenceId[getIdInStorage(elementId)])
+				readableContainer().firstIncidenceId.get(getIdInStorage(elementId)))
 				.getDirection() == Direction.EDGE_TO_VERTEX) {
 			return localGraphDatabase.getIncidenceObject(
-					container.firstIncidenceId[getIdInStorage(elementId)])
+					readableContainer().firstIncidenceId.get(getIdInStorage(elementId)))
 					.getVertex();
 		} else {
 			return localGraphDatabase.getIncidenceObject(
-					container.lastIncidenceId[getIdInStorage(elementId)])
+					readableContainer().lastIncidenceId.get(getIdInStorage(elementId)))
 					.getVertex();
 		}
 	}
@@ -72,10 +72,10 @@ public abstract class BinaryEdgeImpl extends EdgeImpl implements BinaryEdge {
 	@Override
 	public void setOmega(Vertex vertex) {
 		Incidence i = localGraphDatabase
-				.getIncidenceObject(container.firstIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().firstIncidenceId.get(getIdInStorage(elementId)));
 		if (i.getDirection() != Direction.EDGE_TO_VERTEX) {
 			i = localGraphDatabase
-					.getIncidenceObject(container.lastIncidenceId[getIdInStorage(elementId)]);
+					.getIncidenceObject(readableContainer().lastIncidenceId.get(getIdInStorage(elementId)));
 		}
 		Vertex v = i.getVertex();
 		try {
@@ -0,0 +1,66 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+/**
+ * Keeps the most recently used containers of a storage strongly reachable,
+ * while all other containers are only weakly referenced and may be collected
+ * and written to disk. The containers are kept in a ring of a fixed number of
+ * slots, which is managed by the CLOCK algorithm: every container has a
+ * reference bit that is set whenever it is accessed, and a container that
+ * needs a slot takes the first one behind the hand whose container has not
+ * been accessed since the hand passed it the last time.
+ *
+ * Accessing a container that already has a slot only sets its reference bit
+ * and takes no lock, so any number of threads may access containers at once.
+ * Only taking a slot for a new container, which happens on misses, is
+ * synchronized.
+ */
+final class ContainerClock {
+
+	private final StorageContainer[] slots;
+
+	private int hand = 0;
+
+	ContainerClock(int capacity) {
+		slots = new StorageContainer[capacity];
+	}
+
+	/**
+	 * Marks <code>container</code> as recently used, and gives it a slot if
+	 * it does not have one
+	 */
+	void access(StorageContainer container) {
+		if (container.clockSlot >= 0) {
+			// avoid writing the shared flag if it is set already
+			if (!container.referenced) {
+				container.referenced = true;
+			}
+		} else {
+			admit(container);
+		}
+	}
+
+	private synchronized void admit(StorageContainer container) {
+		if (container.clockSlot >= 0) {
+			container.referenced = true;
+			return;
+		}
+		// every container passed loses its reference bit, so the hand
+		// finds a free slot within two rounds
+		while (true) {
+			StorageContainer current = slots[hand];
+			if (current == null || !current.referenced) {
+				if (current != null) {
+					current.clockSlot = -1;
+				}
+				slots[hand] = container;
+				container.referenced = true;
+				container.clockSlot = hand;
+				hand = (hand + 1) % slots.length;
+				return;
+			}
+			current.referenced = false;
+			hand = (hand + 1) % slots.length;
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A growable directory that maps container ids to objects, such as the
+ * references to the containers of one kind. The directory consists of pages
+ * of PAGE_SIZE entries, which are allocated when the first of their ids is
+ * set, and a table of pages that is doubled whenever an id beyond its end is
+ * set. Thus, its size follows the number of containers in use instead of
+ * being fixed in advance.
+ *
+ * Reads are not synchronized, a reader sees either the old or the new page
+ * table. Pages and entries are read and written with volatile semantics, so
+ * a reader that finds an object also sees the state it had when it was set.
+ * Writes are synchronized on the directory, which is also the monitor the
+ * DiskStorageManager uses to guard the containers of the kind.
+ */
+final class ContainerDirectory<T> {
+
+	private static final int PAGE_BITS = 10;
+
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private volatile AtomicReferenceArray<AtomicReferenceArray<T>> pages = new AtomicReferenceArray<AtomicReferenceArray<T>>(
+			1);
+
+	/**
+	 * @return the object stored for the container <code>id</code>, or null
+	 *         if there is none
+	 */
+	T get(int id) {
+		AtomicReferenceArray<AtomicReferenceArray<T>> p = pages;
+		int pageId = id >>> PAGE_BITS;
+		if (pageId >= p.length()) {
+			return null;
+		}
+		AtomicReferenceArray<T> page = p.get(pageId);
+		return page == null ? null : page.get(id & PAGE_MASK);
+	}
+
+	/**
+	 * Stores <code>value</code> for the container <code>id</code>, growing
+	 * the directory if necessary
+	 */
+	synchronized void set(int id, T value) {
+		int pageId = id >>> PAGE_BITS;
+		AtomicReferenceArray<AtomicReferenceArray<T>> p = pages;
+		if (pageId >= p.length()) {
+			if (value == null) {
+				return;
+			}
+			AtomicReferenceArray<AtomicReferenceArray<T>> grown = new AtomicReferenceArray<AtomicReferenceArray<T>>(
+					Math.max(pageId + 1, p.length() * 2));
+			for (int i = 0; i < p.length(); i++) {
+				grown.set(i, p.get(i));
+			}
+			pages = p = grown;
+		}
+		AtomicReferenceArray<T> page = p.get(pageId);
+		if (page == null) {
+			if (value == null) {
+				return;
+			}
+			page = new AtomicReferenceArray<T>(PAGE_SIZE);
+			p.set(pageId, page);
+		}
+		page.set(id & PAGE_MASK, value);
+	}
+
+}
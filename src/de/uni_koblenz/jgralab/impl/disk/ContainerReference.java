@@ -1,9 +1,8 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
-import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 
 public abstract class ContainerReference<T extends StorageContainer> extends WeakReference<T> {
 	
@@ -14,7 +13,11 @@ public abstract class ContainerReference<T extends StorageContainer> extends Wea
 	
 	int id;
 	
-	long[] types = null;
+	/*
+	 * the data of the container, which stays reachable after the container
+	 * has been collected, so that it can be written and reused
+	 */
+	ByteBuffer buffer = null;
 	
 	boolean changed = false;
 	
@@ -31,11 +34,8 @@ public abstract class ContainerReference<T extends StorageContainer> extends Wea
 	}
 	
 	
-	@SuppressWarnings("unchecked")
-	public ContainerReference(T container, ReferenceQueue<? extends StorageContainer> queue) {
-		super(container, (ReferenceQueue<? super T>) queue);
+	public ContainerReference(T container, ReferenceQueue<? super T> queue) {
+		super(container, queue);
 	}
-	
-	abstract void write(FileChannel channel) throws IOException ;
 
 }
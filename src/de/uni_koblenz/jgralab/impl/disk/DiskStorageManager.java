@@ -1,20 +1,24 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.RandomAccessFile;
 import java.lang.ref.ReferenceQueue;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import de.uni_koblenz.jgralab.Edge;
 import de.uni_koblenz.jgralab.GraphFactory;
 import de.uni_koblenz.jgralab.Incidence;
 import de.uni_koblenz.jgralab.Vertex;
 import de.uni_koblenz.jgralab.impl.RemoteStorageAccess;
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
+import de.uni_koblenz.jgralab.impl.StorageMetrics.ElementKind;
 import de.uni_koblenz.jgralab.schema.Schema;
 
 /**
@@ -32,12 +36,16 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 
 	private final static int MAX_LRU_QUEUE_SIZE = 1000;
 
-	private final static int CLEANUP_THREAD_WAITING_TIME = 100;
-
 	private final static int BITS_FOR_ELEMENT_MASK = 14;
 
 	private static final boolean USE_LRU_QUEUE = true;
 
+	/*
+	 * the maximum number of evicted containers of one kind that are written
+	 * together
+	 */
+	private final static int MAX_WRITE_BATCH_SIZE = 16;
+
 	/*
 	 * Values that are calculated on the basis of MAX_NUMER_OF_ELEMENT and
 	 * BITS_FOR_ELEMENT_MASK
@@ -47,25 +55,30 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 
 	public static final int CONTAINER_SIZE = CONTAINER_MASK + 1;
 
-	public static final int ELEMENT_CONTAINER_COUNT = (int) 7000000
-			/ CONTAINER_SIZE; // Integer.MAX_VALUE >> (BITS_FOR_ELEMENT_MASK);
-
-	static final int INCIDENCE_CONTAINER_COUNT = (int) 13000000
-			/ CONTAINER_SIZE; // Integer.MAX_VALUE >> (BITS_FOR_ELEMENT_MASK);
-
 	/*
-	 * the number of milliseconds the cleaning thread will wait between two
-	 * cleaning cycles
+	 * sizes of the slots in the container files: eight longs per vertex or
+	 * edge, seven longs per incidence, and space for the attribute columns
+	 * and their length. Attribute columns rarely fill their slots, but the
+	 * unused part of a slot is never written and thus takes no space on disk
 	 */
-	private static final int WAITING_TIME = 100;
+	private static final int ELEMENT_SLOT_SIZE = CONTAINER_SIZE
+			* GraphElementContainer.COLUMNS * 8;
 
-	/* Threads to control the disk buffering */
+	private static final int INCIDENCE_SLOT_SIZE = CONTAINER_SIZE
+			* IncidenceContainer.COLUMNS * 8;
 
-	private Thread vertexCleanupThread;
+	private static final int ATTRIBUTE_SLOT_SIZE = CONTAINER_SIZE * 8 * 16;
 
-	private Thread edgeCleanupThread;
+	/*
+	 * the number of milliseconds a thread that reloads a container waits
+	 * before it checks again whether the container has been written
+	 */
+	private static final int WAITING_TIME = 100;
 
-	private Thread incidenceCleanupThread;
+	/*
+	 * the maximum number of enqueued references that are reclaimed together
+	 */
+	private final static int MAX_RECLAIM_BATCH_SIZE = 256;
 
 	/* maps that store proxies for remote elements */
 
@@ -89,29 +102,37 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 
 	private final GraphDatabaseBaseImpl graphDatabase;
 
-	private int vertexStorageCount = 0;
+	private volatile int vertexStorageCount = 0;
 
-	private int edgeStorageCount = 0;
+	private volatile int edgeStorageCount = 0;
 
-	private int incidenceStorageCount = 0;
+	private volatile int incidenceStorageCount = 0;
 
 	private final String randomId;
 
-	private final FileChannel[] vertexFiles;
+	/*
+	 * one file per kind of container, which grows with the number of
+	 * containers
+	 */
+	private final SegmentedContainerFile vertexFile;
 
-	private final FileChannel[] vertexAttributeFiles;
+	private final SegmentedContainerFile vertexAttributeFile;
 
-	private final FileChannel[] edgeFiles;
+	private final SegmentedContainerFile edgeFile;
 
-	private final FileChannel[] edgeAttributeFiles;
+	private final SegmentedContainerFile edgeAttributeFile;
 
-	private final FileChannel[] incidenceFiles;
+	private final SegmentedContainerFile incidenceFile;
 
-	private final VertexContainerReference[] vertexStorages;
+	/*
+	 * the references to all containers, indexed by the container ids. The
+	 * directories also guard the containers of their kind
+	 */
+	final ContainerDirectory<VertexContainerReference> vertexStorages;
 
-	private final EdgeContainerReference[] edgeStorages;
+	final ContainerDirectory<EdgeContainerReference> edgeStorages;
 
-	private final IncidenceContainerReference[] incidenceStorages;
+	final ContainerDirectory<IncidenceContainerReference> incidenceStorages;
 
 	private final BitSet vertexStorageSaved;
 
@@ -119,23 +140,35 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 
 	private final BitSet incidenceStorageSaved;
 
-	private final ReferenceQueue<VertexContainer> vertexQueue;
+	/*
+	 * the queue the references to new containers of all kinds are enqueued
+	 * in when their containers have been collected, either the shared queue
+	 * or the caller queue of this storage, depending on the reclaim policy.
+	 * The caller queue is polled regardless of the policy, since it may
+	 * still hold references created before the policy was changed
+	 */
+	private volatile ReferenceQueue<StorageContainer> referenceQueue;
 
-	private final ReferenceQueue<EdgeContainer> edgeQueue;
+	private final ReferenceQueue<StorageContainer> callerQueue = new ReferenceQueue<StorageContainer>();
 
-	private final ReferenceQueue<IncidenceContainer> incidenceQueue;
+	private volatile ReclaimPolicy reclaimPolicy;
 
 	/*
-	 * oldest container in LRU queue, will be unreferenced if queue is full and
-	 * may be collected by the garbage collector as soon as memory is needed. Up
-	 * to gc-clearance, the element is still reachable by a soft reference and
-	 * may be enqueued at a later point in time
+	 * the failure of the last write-back that has not been thrown to an
+	 * accessing thread yet. The containers that could not be written stay
+	 * in the directories
 	 */
-	private StorageContainer firstInLRUQueue;
+	private final AtomicReference<RuntimeException> writeBackFailure = new AtomicReference<RuntimeException>();
 
-	private StorageContainer lastInLRUQueue;
-
-	private int lruQueueSize = 0;
+	/*
+	 * the most recently used containers, which are kept strongly reachable.
+	 * A container that drops out of the clock is only weakly reachable and
+	 * may be collected by the garbage collector as soon as memory is needed.
+	 * Up to gc-clearance, the container is still reachable by its weak
+	 * reference and may be reactivated
+	 */
+	private final ContainerClock recentlyUsed = new ContainerClock(
+			MAX_LRU_QUEUE_SIZE);
 
 	private VertexContainerReference firstInVertexReuseQueue;
 
@@ -149,7 +182,330 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 
 	private int incidenceReuseQueueSize = 0;
 
-	public static int reloadedContainers = 0;
+	/*
+	 * cache and I/O statistics, counted per container. Files are reported
+	 * under their base names, summed up over all containers
+	 */
+	private final StorageMetrics metrics = new StorageMetrics("disk");
+
+	/**
+	 * Returns the cache and I/O statistics of this storage. Hits, misses,
+	 * evictions, write-backs and reloads are counted per container.
+	 * 
+	 * @return the metrics of this storage
+	 */
+	public StorageMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Determines when the files of a storage are forced to the storage
+	 * device. A {@link DiskStorageManager#checkpoint() checkpoint} forces
+	 * them regardless of this setting.
+	 */
+	public static enum Durability {
+		/** never, the operating system decides when data is written */
+		NONE,
+		/** once after every batch of written containers */
+		BATCH,
+		/** after every single container */
+		WRITE
+	}
+
+	private volatile Durability durability = Durability.BATCH;
+
+	/**
+	 * Sets when the files of this storage are forced to the storage device.
+	 * The default is {@link Durability#BATCH}.
+	 * 
+	 * @param durability
+	 *            the new durability setting
+	 */
+	public void setDurability(Durability durability) {
+		if (durability == null) {
+			throw new IllegalArgumentException("Durability must not be null");
+		}
+		this.durability = durability;
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * Determines which threads write the containers that have been evicted
+	 * and collected, so their memory can be reused.
+	 */
+	public static enum ReclaimPolicy {
+		/**
+		 * a single thread that is shared by all storages of the JVM blocks
+		 * until containers are collected and writes them at once. Threads
+		 * that access a storage while collected containers are pending help
+		 * to write them, which slows them down if the thread falls behind.
+		 */
+		SHARED,
+		/**
+		 * no thread is started, collected containers of a storage are written
+		 * by the threads that access the storage
+		 */
+		CALLER
+	}
+
+	private static final ReferenceQueue<StorageContainer> sharedQueue = new ReferenceQueue<StorageContainer>();
+
+	private static Thread sharedReclaimer;
+
+	/**
+	 * Sets the reclaim policy of this storage. The default is
+	 * {@link ReclaimPolicy#SHARED}. The policy applies to the containers
+	 * loaded afterwards, the containers loaded before are reclaimed as
+	 * before. Running many disk based graphs in one JVM costs no additional
+	 * threads with either policy.
+	 * 
+	 * @param policy
+	 *            the new reclaim policy
+	 */
+	public void setReclaimPolicy(ReclaimPolicy policy) {
+		if (policy == null) {
+			throw new IllegalArgumentException("Reclaim policy must not be null");
+		}
+		if (policy == ReclaimPolicy.SHARED) {
+			startSharedReclaimer();
+			referenceQueue = sharedQueue;
+		} else {
+			referenceQueue = callerQueue;
+		}
+		reclaimPolicy = policy;
+	}
+
+	public ReclaimPolicy getReclaimPolicy() {
+		return reclaimPolicy;
+	}
+
+	/*
+	 * the pinned snapshots in the order they have been created, which is
+	 * guarded by snapshotLock, the number of the latest snapshot and the
+	 * snapshot the current thread has entered
+	 */
+	private final Object snapshotLock = new Object();
+
+	private final List<StorageSnapshot> pinnedSnapshots = new ArrayList<StorageSnapshot>();
+
+	private volatile int pinnedSnapshotCount = 0;
+
+	private volatile long latestSnapshot = 0;
+
+	private final ThreadLocal<StorageSnapshot> currentSnapshot = new ThreadLocal<StorageSnapshot>();
+
+	/*
+	 * set while caches of the element data of other partial graphs are
+	 * registered, which have to be invalidated when the data is changed
+	 */
+	volatile boolean remotelyCached = false;
+
+	/**
+	 * Creates and pins a snapshot of the local graph. Until the snapshot is
+	 * released, containers are copied before they are changed.
+	 * 
+	 * @return the new snapshot
+	 * @see StorageSnapshot
+	 */
+	public StorageSnapshot createSnapshot() {
+		synchronized (snapshotLock) {
+			StorageSnapshot snapshot = new StorageSnapshot(this,
+					latestSnapshot + 1, graphDatabase);
+			pinnedSnapshots.add(snapshot);
+			latestSnapshot = snapshot.number;
+			pinnedSnapshotCount = pinnedSnapshots.size();
+			return snapshot;
+		}
+	}
+
+	void enterSnapshot(StorageSnapshot snapshot) {
+		currentSnapshot.set(snapshot);
+	}
+
+	void exitSnapshot(StorageSnapshot snapshot) {
+		if (currentSnapshot.get() == snapshot) {
+			currentSnapshot.remove();
+		}
+	}
+
+	void releaseSnapshot(StorageSnapshot snapshot) {
+		synchronized (snapshotLock) {
+			pinnedSnapshots.remove(snapshot);
+			pinnedSnapshotCount = pinnedSnapshots.size();
+		}
+	}
+
+	/**
+	 * @return the snapshot the current thread has entered, or null if it
+	 *         sees the current graph
+	 */
+	final StorageSnapshot getCurrentSnapshot() {
+		if (pinnedSnapshotCount == 0) {
+			return null;
+		}
+		StorageSnapshot snapshot = currentSnapshot.get();
+		return snapshot == null || snapshot.released ? null : snapshot;
+	}
+
+	/**
+	 * @return the container to read from, which is the copy kept by the
+	 *         snapshot of the current thread if <code>container</code> has
+	 *         been changed since the snapshot was created
+	 */
+	@SuppressWarnings("unchecked")
+	final <C extends StorageContainer> C readable(C container) {
+		if (pinnedSnapshotCount == 0) {
+			return container;
+		}
+		StorageSnapshot snapshot = getCurrentSnapshot();
+		if (snapshot == null) {
+			return container;
+		}
+		C copy = (C) snapshot.getCopy(container);
+		return copy == null ? container : copy;
+	}
+
+	/**
+	 * Prepares <code>container</code> to be changed, which invalidates the
+	 * caches of other partial graphs that hold local element data and
+	 * copies the container for all pinned snapshots that have been created
+	 * since it was copied the last time
+	 * 
+	 * @return <code>container</code>
+	 */
+	final <C extends StorageContainer> C writable(C container) {
+		if (remotelyCached) {
+			graphDatabase.invalidateRemoteCaches();
+		}
+		if (pinnedSnapshotCount != 0) {
+			checkNotInSnapshot();
+			if (container.preservedSnapshot < latestSnapshot) {
+				synchronized (snapshotLock) {
+					StorageContainer copy = null;
+					for (StorageSnapshot snapshot : pinnedSnapshots) {
+						ConcurrentHashMap<Integer, StorageContainer> copies = snapshot
+								.containers(container);
+						if (snapshot.number > container.preservedSnapshot
+								&& !copies.containsKey(container.id)) {
+							if (copy == null) {
+								copy = container.copy();
+							}
+							copies.put(container.id, copy);
+						}
+					}
+					container.preservedSnapshot = latestSnapshot;
+				}
+			}
+		}
+		return container;
+	}
+
+	/**
+	 * Prepares the attributes of a vertex or an edge to be changed, which
+	 * invalidates the caches of other partial graphs and copies the
+	 * attributes for all pinned snapshots that don't have a copy yet
+	 */
+	final void preserveAttributes(boolean vertex, int elementId,
+			AttributeContainer attributes) {
+		if (remotelyCached) {
+			graphDatabase.invalidateRemoteCaches();
+		}
+		if (pinnedSnapshotCount == 0 || attributes == null) {
+			return;
+		}
+		checkNotInSnapshot();
+		if (attributes.preservedSnapshot < latestSnapshot) {
+			synchronized (snapshotLock) {
+				AttributeContainer copy = null;
+				for (StorageSnapshot snapshot : pinnedSnapshots) {
+					ConcurrentHashMap<Integer, AttributeContainer> copies = vertex ? snapshot.vertexAttributes
+							: snapshot.edgeAttributes;
+					if (snapshot.number > attributes.preservedSnapshot
+							&& !copies.containsKey(elementId)) {
+						if (copy == null) {
+							copy = attributes.copy();
+						}
+						copies.put(elementId, copy);
+					}
+				}
+				attributes.preservedSnapshot = latestSnapshot;
+			}
+		}
+	}
+
+	/**
+	 * Completes a change of the local element data that has been prepared by
+	 * {@link #writable(StorageContainer)} or
+	 * {@link #preserveAttributes(boolean, int, AttributeContainer)}. A cache
+	 * of another partial graph that has registered while the data was
+	 * changed may have read the old data, so the registered caches are
+	 * invalidated again.
+	 */
+	final void changed() {
+		if (remotelyCached) {
+			graphDatabase.invalidateRemoteCaches();
+		}
+	}
+
+	/**
+	 * @return the attributes of a vertex or an edge to read from, which are
+	 *         the copy kept by the snapshot of the current thread if the
+	 *         attributes have been changed since the snapshot was created
+	 */
+	@SuppressWarnings("unchecked")
+	final <A extends AttributeContainer> A readableAttributes(boolean vertex,
+			int elementId, A attributes) {
+		StorageSnapshot snapshot = getCurrentSnapshot();
+		if (snapshot == null) {
+			return attributes;
+		}
+		A copy = (A) (vertex ? snapshot.vertexAttributes
+				: snapshot.edgeAttributes).get(elementId);
+		return copy == null ? attributes : copy;
+	}
+
+	private void checkNotInSnapshot() {
+		if (getCurrentSnapshot() != null) {
+			throw new IllegalStateException(
+					"The graph must not be changed by a thread that has entered a snapshot");
+		}
+	}
+
+	/**
+	 * @return the element object for an element that had another type or
+	 *         did not exist when the snapshot of the current thread was
+	 *         created, or null if it did not exist in the snapshot
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T getSnapshotElement(ConcurrentHashMap<Integer, T> objects,
+			int id, int type, StorageContainer container) {
+		if (type == 0) {
+			return null;
+		}
+		T element = objects.get(id);
+		if (element == null) {
+			long globalId = graphDatabase.convertToGlobalId(id);
+			Class<?> c = schema.getM1ClassForId(type);
+			if (container instanceof VertexContainer) {
+				element = (T) factory.reloadLocalVertex(
+						(Class<? extends Vertex>) c, globalId, graphDatabase,
+						(VertexContainer) container);
+			} else if (container instanceof EdgeContainer) {
+				element = (T) factory.reloadLocalEdge(
+						(Class<? extends Edge>) c, globalId, graphDatabase,
+						(EdgeContainer) container);
+			} else {
+				element = (T) factory.reloadLocalIncidence(
+						(Class<? extends Incidence>) c, globalId,
+						graphDatabase, (IncidenceContainer) container);
+			}
+			objects.put(id, element);
+		}
+		return element;
+	}
 
 	public DiskStorageManager(GraphDatabaseBaseImpl database)
 			throws FileNotFoundException {
@@ -157,104 +513,90 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 		this.graphDatabase = database;
 		this.factory = database.getGraphFactory();
 		randomId = Long.toString(System.currentTimeMillis());
-		vertexFiles = new FileChannel[ELEMENT_CONTAINER_COUNT];
-		edgeFiles = new FileChannel[ELEMENT_CONTAINER_COUNT];
-		incidenceFiles = new FileChannel[INCIDENCE_CONTAINER_COUNT];
-		vertexAttributeFiles = new FileChannel[ELEMENT_CONTAINER_COUNT];
-		edgeAttributeFiles = new FileChannel[ELEMENT_CONTAINER_COUNT];
-		vertexStorages = new VertexContainerReference[ELEMENT_CONTAINER_COUNT];
-		edgeStorages = new EdgeContainerReference[ELEMENT_CONTAINER_COUNT];
-		incidenceStorages = new IncidenceContainerReference[INCIDENCE_CONTAINER_COUNT];
-		vertexStorageSaved = new BitSet(ELEMENT_CONTAINER_COUNT);
-		edgeStorageSaved = new BitSet(ELEMENT_CONTAINER_COUNT);
-		incidenceStorageSaved = new BitSet(INCIDENCE_CONTAINER_COUNT);
-
-		vertexQueue = new ReferenceQueue<VertexContainer>();
-		edgeQueue = new ReferenceQueue<EdgeContainer>();
-		incidenceQueue = new ReferenceQueue<IncidenceContainer>();
-
-		createFreeMemThread();
-	}
-
-	final void updateLRUStatus(StorageContainer container) {
-		// remove from queue and enqueue
-		if (lastInLRUQueue != container) {
-			if (firstInLRUQueue == null) {
-				// createFreeMemThread();
-				firstInLRUQueue = container;
-				lastInLRUQueue = container;
-				container.nextInQueue = null;
-				container.previousInQueue = null;
-				lruQueueSize = 1;
-				return;
-			}
-			// check if container is already part of the queue
-			// and remove it
-			if (container.nextInQueue != null) {
-				if (container == firstInLRUQueue) {
-					firstInLRUQueue = container.nextInQueue;
-				}
-				container.nextInQueue.previousInQueue = container.previousInQueue;
-				if (container.previousInQueue != null) {
-					container.previousInQueue.nextInQueue = container.nextInQueue;
-					container.previousInQueue = null;
-				}
-				container.nextInQueue = null;
-			} else {
-				// otherwise, increase queue size
-				lruQueueSize++;
-			}
-			// enqueue element to the end of the queue
-			container.previousInQueue = lastInLRUQueue;
-			lastInLRUQueue.nextInQueue = container;
-			lastInLRUQueue = container;
-			if (lruQueueSize > MAX_LRU_QUEUE_SIZE) {
-				// if queue is full, first element is dequeued
-				StorageContainer oldFirst = firstInLRUQueue;
-				firstInLRUQueue = firstInLRUQueue.nextInQueue;
-				firstInLRUQueue.previousInQueue = null;
-				oldFirst.nextInQueue = null;
-				oldFirst.previousInQueue = null;
-				lruQueueSize--;
-			}
+		vertexFile = new SegmentedContainerFile(vertexFileName, randomId,
+				ELEMENT_SLOT_SIZE);
+		edgeFile = new SegmentedContainerFile(edgeFileName, randomId,
+				ELEMENT_SLOT_SIZE);
+		incidenceFile = new SegmentedContainerFile(incidenceFileName,
+				randomId, INCIDENCE_SLOT_SIZE);
+		vertexAttributeFile = new SegmentedContainerFile(
+				vertexAttributeFileName, randomId, ATTRIBUTE_SLOT_SIZE);
+		edgeAttributeFile = new SegmentedContainerFile(edgeAttributeFileName,
+				randomId, ATTRIBUTE_SLOT_SIZE);
+		vertexStorages = new ContainerDirectory<VertexContainerReference>();
+		edgeStorages = new ContainerDirectory<EdgeContainerReference>();
+		incidenceStorages = new ContainerDirectory<IncidenceContainerReference>();
+		vertexStorageSaved = new BitSet();
+		edgeStorageSaved = new BitSet();
+		incidenceStorageSaved = new BitSet();
+
+		setReclaimPolicy(ReclaimPolicy.SHARED);
+	}
+
+	/*
+	 * stages the content of a container for the next batch written to its
+	 * file
+	 */
+	private final void stageStorage(SegmentedContainerFile file,
+			ContainerReference<?> storage) {
+		try {
+			// the container is written straight from its buffer, which is
+			// reused only after the batch has been written
+			file.stage(storage.id, storage.buffer.duplicate());
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
 		}
 	}
 
-	private final void writeStorage(FileChannel[] fileArray,
-			ContainerReference<?> storage, String baseName) {
+	private final void stageAttributes(SegmentedContainerFile file,
+			GraphElementContainerReference<?> storage) {
 		try {
-			FileChannel channel = getChannel(fileArray, storage.id, baseName);
-			storage.write(channel);
-			channel.force(true);
+			ByteBuffer content = ByteBuffer.allocate(file.getSlotSize());
+			storage.writeAttributes(content);
+			content.flip();
+			file.stage(storage.id, content);
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException(e);
 		}
 	}
 
-	private final void writeAttributes(FileChannel[] fileArray,
-			GraphElementContainerReference<?> storage, String baseName) {
+	/*
+	 * writes the containers staged for a file as one batch
+	 */
+	private final void writeBatch(SegmentedContainerFile file) {
 		try {
-			FileChannel channel = getChannel(fileArray, storage.id, baseName);
-			storage.writeAttributes(channel);
-			channel.force(true);
+			long start = System.nanoTime();
+			long written = file.flush(durability);
+			if (written > 0) {
+				metrics.getFile(file.getBaseName()).written(written,
+						System.nanoTime() - start);
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException(e);
 		}
 	}
 
-	private final FileChannel getChannel(FileChannel[] channelArray, int id,
-			String fileBaseName) throws IOException {
-		FileChannel channel = channelArray[id];
-		if (channel == null) {
-			RandomAccessFile file = new RandomAccessFile(File.createTempFile(
-					fileBaseName + "_" + randomId + "_" + Integer.toString(id),
-					"tmp"), "rw");
-			channel = file.getChannel();
-			channelArray[id] = channel;
+	/*
+	 * reads the attributes of a container, or returns null if they have
+	 * never been written
+	 */
+	private final AttributeContainer[] readAttributes(
+			SegmentedContainerFile file, int containerId) throws IOException,
+			ClassNotFoundException {
+		if (!file.contains(containerId)) {
+			return null;
 		}
-		return channel;
+		long start = System.nanoTime();
+		ByteBuffer slot = file.map(containerId, MapMode.READ_ONLY);
+		int length = slot.getInt(0);
+		AttributeContainer[] attributes = AttributeColumns.read(slot,
+				CONTAINER_SIZE, schema.getClass().getClassLoader());
+		metrics.getFile(file.getBaseName()).read(length + 4,
+				System.nanoTime() - start);
+		return attributes;
 	}
 
 	public static final int getContainerId(int elementId) {
@@ -265,137 +607,319 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 		return ((int) l) & CONTAINER_MASK & Integer.MAX_VALUE;
 	}
 
-	private final int clearUnusedVertexContainers() {
+	/*
+	 * writes the evicted containers, must be called with the lock of the
+	 * vertex directory held. A container is only removed from the directory
+	 * once it has been written, so if a write fails, the containers that have
+	 * not been written can still be reactivated from their references
+	 */
+	private final int clearUnusedVertexContainers(
+			List<VertexContainerReference> refs) {
 		int count = 0;
-		VertexContainerReference ref = (VertexContainerReference) vertexQueue
-				.poll();
-		while (ref != null) {
-			if (ref.isReused()) {
-				ref = null;
-			} else {
-				writeStorage(vertexFiles, ref, vertexFileName);
+		List<VertexContainerReference> batch = new ArrayList<VertexContainerReference>();
+		for (VertexContainerReference ref : refs) {
+			if (!ref.isReused()) {
 				if (ref.attributes != null) {
-					writeAttributes(vertexAttributeFiles, ref,
-							vertexAttributeFileName);
+					stageAttributes(vertexAttributeFile, ref);
 				}
-				vertexStorages[ref.id] = null;
-				count++;
-				if (vertexReuseQueueSize < MAX_REUSE_QUEUE_SIZE) {
-					ref.nextInReuseQueue = firstInVertexReuseQueue;
-					firstInVertexReuseQueue = ref;
-					vertexReuseQueueSize++;
+				stageStorage(vertexFile, ref);
+				batch.add(ref);
+				if (vertexFile.getStagedCount() >= MAX_WRITE_BATCH_SIZE) {
+					count += writeVertexBatch(batch);
 				}
-				setVertexStorageSaved(ref.id);
 			}
-			ref = (VertexContainerReference) vertexQueue.poll();
 		}
+		count += writeVertexBatch(batch);
 		return count;
 	}
 
-	private final int clearUnusedEdgeContainers() {
+	private final int clearUnusedEdgeContainers(
+			List<EdgeContainerReference> refs) {
 		int count = 0;
-		EdgeContainerReference ref = (EdgeContainerReference) edgeQueue.poll();
-		while (ref != null) {
-			if (ref.isReused()) {
-				ref = null;
-			} else {
-				writeStorage(edgeFiles, ref, edgeFileName);
-				edgeStorages[ref.id] = null;
-				count++;
-				if (edgeReuseQueueSize < MAX_REUSE_QUEUE_SIZE) {
-					ref.nextInReuseQueue = firstInEdgeReuseQueue;
-					firstInEdgeReuseQueue = ref;
-					edgeReuseQueueSize++;
+		List<EdgeContainerReference> batch = new ArrayList<EdgeContainerReference>();
+		for (EdgeContainerReference ref : refs) {
+			if (!ref.isReused()) {
+				if (ref.attributes != null) {
+					stageAttributes(edgeAttributeFile, ref);
+				}
+				stageStorage(edgeFile, ref);
+				batch.add(ref);
+				if (edgeFile.getStagedCount() >= MAX_WRITE_BATCH_SIZE) {
+					count += writeEdgeBatch(batch);
 				}
-				setEdgeStorageSaved(ref.id);
 			}
-			ref = (EdgeContainerReference) edgeQueue.poll();
 		}
+		count += writeEdgeBatch(batch);
 		return count;
 	}
 
-	private final int clearUnusedIncidenceContainers() {
+	private final int clearUnusedIncidenceContainers(
+			List<IncidenceContainerReference> refs) {
 		int count = 0;
-		IncidenceContainerReference ref = (IncidenceContainerReference) incidenceQueue
-				.poll();
-		while (ref != null) {
-			if (ref.isReused()) {
-				ref = null;
-			} else {
-				writeStorage(incidenceFiles, ref, incidenceFileName);
-				incidenceStorages[ref.id] = null;
-				count++;
-				if (incidenceReuseQueueSize < MAX_REUSE_QUEUE_SIZE) {
-					ref.nextInReuseQueue = firstInIncidenceReuseQueue;
-					firstInIncidenceReuseQueue = ref;
-					incidenceReuseQueueSize++;
+		List<IncidenceContainerReference> batch = new ArrayList<IncidenceContainerReference>();
+		for (IncidenceContainerReference ref : refs) {
+			if (!ref.isReused()) {
+				stageStorage(incidenceFile, ref);
+				batch.add(ref);
+				if (incidenceFile.getStagedCount() >= MAX_WRITE_BATCH_SIZE) {
+					count += writeIncidenceBatch(batch);
 				}
-				setIncidenceStorageSaved(ref.id);
 			}
-			ref = (IncidenceContainerReference) incidenceQueue.poll();
 		}
+		count += writeIncidenceBatch(batch);
 		return count;
 	}
 
-	private final void createFreeMemThread() {
-		vertexCleanupThread = new Thread() {
-			@Override
-			public void run() {
-				do {
-					synchronized (vertexStorages) {
-						try {
-							clearUnusedVertexContainers();
-							vertexStorages.notify();
-							vertexStorages.wait(CLEANUP_THREAD_WAITING_TIME);
-						} catch (InterruptedException e) {
-							throw new RuntimeException(e);
-						}
+	/*
+	 * writes the staged vertex containers and their attributes, removes the
+	 * containers of the batch from the directory and marks them as saved, so
+	 * they may be reloaded. Their buffers are queued for reuse
+	 */
+	private final int writeVertexBatch(List<VertexContainerReference> batch) {
+		writeBatch(vertexFile);
+		writeBatch(vertexAttributeFile);
+		for (VertexContainerReference ref : batch) {
+			metrics.writtenBack(ElementKind.VERTEX);
+			vertexStorages.set(ref.id, null);
+			setVertexStorageSaved(ref.id);
+			if (vertexReuseQueueSize < MAX_REUSE_QUEUE_SIZE) {
+				ref.nextInReuseQueue = firstInVertexReuseQueue;
+				firstInVertexReuseQueue = ref;
+				vertexReuseQueueSize++;
+			}
+		}
+		int count = batch.size();
+		if (count > 0) {
+			metrics.evicted(ElementKind.VERTEX, count);
+		}
+		batch.clear();
+		return count;
+	}
+
+	private final int writeEdgeBatch(List<EdgeContainerReference> batch) {
+		writeBatch(edgeFile);
+		writeBatch(edgeAttributeFile);
+		for (EdgeContainerReference ref : batch) {
+			metrics.writtenBack(ElementKind.EDGE);
+			edgeStorages.set(ref.id, null);
+			setEdgeStorageSaved(ref.id);
+			if (edgeReuseQueueSize < MAX_REUSE_QUEUE_SIZE) {
+				ref.nextInReuseQueue = firstInEdgeReuseQueue;
+				firstInEdgeReuseQueue = ref;
+				edgeReuseQueueSize++;
+			}
+		}
+		int count = batch.size();
+		if (count > 0) {
+			metrics.evicted(ElementKind.EDGE, count);
+		}
+		batch.clear();
+		return count;
+	}
+
+	private final int writeIncidenceBatch(
+			List<IncidenceContainerReference> batch) {
+		writeBatch(incidenceFile);
+		for (IncidenceContainerReference ref : batch) {
+			metrics.writtenBack(ElementKind.INCIDENCE);
+			incidenceStorages.set(ref.id, null);
+			setIncidenceStorageSaved(ref.id);
+			if (incidenceReuseQueueSize < MAX_REUSE_QUEUE_SIZE) {
+				ref.nextInReuseQueue = firstInIncidenceReuseQueue;
+				firstInIncidenceReuseQueue = ref;
+				incidenceReuseQueueSize++;
+			}
+		}
+		int count = batch.size();
+		if (count > 0) {
+			metrics.evicted(ElementKind.INCIDENCE, count);
+		}
+		batch.clear();
+		return count;
+	}
+
+	/**
+	 * Writes all containers that are currently held in memory to their files
+	 * and forces all files to the storage device, regardless of the
+	 * durability setting. Containers that have been evicted before are
+	 * already stored in the files.
+	 */
+	public void checkpoint() {
+		synchronized (vertexStorages) {
+			for (int id = 0; id < vertexStorageCount; id++) {
+				VertexContainerReference ref = vertexStorages.get(id);
+				if (ref != null) {
+					stageStorage(vertexFile, ref);
+					if (ref.attributes != null) {
+						stageAttributes(vertexAttributeFile, ref);
 					}
-				} while (true);
+				}
 			}
-		};
+			writeBatch(vertexFile);
+			writeBatch(vertexAttributeFile);
+		}
+		synchronized (edgeStorages) {
+			for (int id = 0; id < edgeStorageCount; id++) {
+				EdgeContainerReference ref = edgeStorages.get(id);
+				if (ref != null) {
+					stageStorage(edgeFile, ref);
+					if (ref.attributes != null) {
+						stageAttributes(edgeAttributeFile, ref);
+					}
+				}
+			}
+			writeBatch(edgeFile);
+			writeBatch(edgeAttributeFile);
+		}
+		synchronized (incidenceStorages) {
+			for (int id = 0; id < incidenceStorageCount; id++) {
+				IncidenceContainerReference ref = incidenceStorages.get(id);
+				if (ref != null) {
+					stageStorage(incidenceFile, ref);
+				}
+			}
+			writeBatch(incidenceFile);
+		}
+		try {
+			vertexFile.forceAll();
+			vertexAttributeFile.forceAll();
+			edgeFile.forceAll();
+			edgeAttributeFile.forceAll();
+			incidenceFile.forceAll();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
-		edgeCleanupThread = new Thread() {
+	/*
+	 * starts the thread that reclaims the containers of all storages with
+	 * the shared reclaim policy, unless it is running already
+	 */
+	private static synchronized void startSharedReclaimer() {
+		if (sharedReclaimer != null) {
+			return;
+		}
+		sharedReclaimer = new Thread("disk storage reclaimer") {
 			@Override
 			public void run() {
-				do {
-					synchronized (edgeStorages) {
-						try {
-							clearUnusedEdgeContainers();
-							edgeStorages.notify();
-							edgeStorages.wait(CLEANUP_THREAD_WAITING_TIME);
-						} catch (InterruptedException e) {
-							throw new RuntimeException(e);
-						}
+				while (true) {
+					try {
+						reclaim((ContainerReference<?>) sharedQueue.remove(),
+								sharedQueue);
+					} catch (InterruptedException e) {
+						// the reclaimer serves all storages, so it keeps
+						// running
+					} catch (RuntimeException e) {
+						e.printStackTrace();
 					}
-				} while (true);
+				}
 			}
 		};
+		sharedReclaimer.setDaemon(true);
+		sharedReclaimer.start();
+	}
 
-		incidenceCleanupThread = new Thread() {
-			@Override
-			public void run() {
-				do {
-					synchronized (incidenceStorages) {
-						try {
-							clearUnusedIncidenceContainers();
-							incidenceStorages.notify();
-							incidenceStorages.wait(CLEANUP_THREAD_WAITING_TIME);
-						} catch (InterruptedException e) {
-							throw new RuntimeException(e);
-						}
-					}
+	/*
+	 * reclaims the containers that have been collected so far, if there are
+	 * any, and throws the failure of a write-back since the last call.
+	 * Called by the threads that access this storage, before they take the
+	 * lock of a directory
+	 */
+	private final void reclaimEnqueued() {
+		ReferenceQueue<StorageContainer> queue = referenceQueue;
+		ContainerReference<?> ref = (ContainerReference<?>) queue.poll();
+		if (ref != null) {
+			reclaim(ref, queue);
+		}
+		if (queue != callerQueue) {
+			ref = (ContainerReference<?>) callerQueue.poll();
+			if (ref != null) {
+				reclaim(ref, callerQueue);
+			}
+		}
+		RuntimeException failure = writeBackFailure.getAndSet(null);
+		if (failure != null) {
+			throw new RuntimeException(
+					"Writing back evicted containers failed, they are kept in memory",
+					failure);
+		}
+	}
 
-				} while (true);
+	/*
+	 * writes the container of the reference first and those of up to
+	 * MAX_RECLAIM_BATCH_SIZE further references taken from the queue, grouped
+	 * by their storages and kinds. Takes the lock of one directory at a time
+	 */
+	private static void reclaim(ContainerReference<?> first,
+			ReferenceQueue<StorageContainer> queue) {
+		List<ContainerReference<?>> refs = new ArrayList<ContainerReference<?>>();
+		ContainerReference<?> ref = first;
+		while (ref != null) {
+			refs.add(ref);
+			ref = refs.size() < MAX_RECLAIM_BATCH_SIZE ? (ContainerReference<?>) queue
+					.poll() : null;
+		}
+		while (!refs.isEmpty()) {
+			DiskStorageManager storage = refs.get(0).backgroundStorage;
+			List<VertexContainerReference> vertexRefs = new ArrayList<VertexContainerReference>();
+			List<EdgeContainerReference> edgeRefs = new ArrayList<EdgeContainerReference>();
+			List<IncidenceContainerReference> incidenceRefs = new ArrayList<IncidenceContainerReference>();
+			List<ContainerReference<?>> others = new ArrayList<ContainerReference<?>>();
+			for (ContainerReference<?> r : refs) {
+				if (r.backgroundStorage != storage) {
+					others.add(r);
+				} else if (r instanceof VertexContainerReference) {
+					vertexRefs.add((VertexContainerReference) r);
+				} else if (r instanceof EdgeContainerReference) {
+					edgeRefs.add((EdgeContainerReference) r);
+				} else {
+					incidenceRefs.add((IncidenceContainerReference) r);
+				}
 			}
-		};
-		startCleanupThreads();
+			storage.clearUnusedContainers(vertexRefs, edgeRefs, incidenceRefs);
+			refs = others;
+		}
 	}
 
-	private void startCleanupThreads() {
-		vertexCleanupThread.start();
-		edgeCleanupThread.start();
-		incidenceCleanupThread.start();
+	/*
+	 * writes the collected containers of this storage. A failed write is
+	 * recorded and thrown to the next thread that accesses this storage,
+	 * since the reclaiming thread may serve other storages as well
+	 */
+	private final void clearUnusedContainers(
+			List<VertexContainerReference> vertexRefs,
+			List<EdgeContainerReference> edgeRefs,
+			List<IncidenceContainerReference> incidenceRefs) {
+		if (!vertexRefs.isEmpty()) {
+			synchronized (vertexStorages) {
+				try {
+					clearUnusedVertexContainers(vertexRefs);
+				} catch (RuntimeException e) {
+					writeBackFailure.set(e);
+				}
+				vertexStorages.notifyAll();
+			}
+		}
+		if (!edgeRefs.isEmpty()) {
+			synchronized (edgeStorages) {
+				try {
+					clearUnusedEdgeContainers(edgeRefs);
+				} catch (RuntimeException e) {
+					writeBackFailure.set(e);
+				}
+				edgeStorages.notifyAll();
+			}
+		}
+		if (!incidenceRefs.isEmpty()) {
+			synchronized (incidenceStorages) {
+				try {
+					clearUnusedIncidenceContainers(incidenceRefs);
+				} catch (RuntimeException e) {
+					writeBackFailure.set(e);
+				}
+				incidenceStorages.notifyAll();
+			}
+		}
 	}
 
 	public void setVertexStorageSaved(int id) {
@@ -429,6 +953,7 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	}
 
 	private final VertexContainer reloadVertexStorage(int storageId) {
+		long start = System.nanoTime();
 		while (!isVertexStorageSaved(storageId)) {
 			try {
 				vertexStorages.notifyAll();
@@ -438,21 +963,24 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 			}
 		}
 		try {
-			reloadedContainers++;
-			FileChannel channel = getChannel(vertexFiles, storageId,
-					vertexFileName);
-			VertexContainer storage = new VertexContainer(storageId, this);
-			VertexContainerReference reference = null;
+			// the buffer of a container that has been written is reused, so
+			// reloading allocates no memory
+			ByteBuffer buffer;
 			if (vertexReuseQueueSize > 0) {
 				vertexReuseQueueSize--;
-				reference = new VertexContainerReference(storage, channel,
-						firstInVertexReuseQueue, vertexQueue);
+				buffer = firstInVertexReuseQueue.buffer;
 				firstInVertexReuseQueue = (VertexContainerReference) firstInVertexReuseQueue.nextInReuseQueue;
 			} else {
-				reference = new VertexContainerReference(storage, channel,
-						vertexQueue);
+				buffer = StorageContainer.allocateBuffer(GraphElementContainer.COLUMNS);
 			}
-			vertexStorages[storageId] = reference;
+			vertexFile.read(storageId, buffer);
+			VertexContainer storage = new VertexContainer(storageId, this);
+			VertexContainerReference reference = new VertexContainerReference(
+					storage, buffer, referenceQueue);
+			vertexStorages.set(storageId, reference);
+			metrics.getFile(vertexFileName).read(vertexFile.getSlotSize(),
+					System.nanoTime() - start);
+			metrics.reloaded(ElementKind.VERTEX, System.nanoTime() - start);
 			return storage;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -467,35 +995,51 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	 * @return
 	 */
 	final VertexContainer getVertexContainer(int storageId) {
+		reclaimEnqueued();
 		VertexContainer storage = null;
 		VertexContainerReference reference = null;
 		if (storageId < vertexStorageCount) {
+			// containers in memory are found without taking the lock
+			reference = vertexStorages.get(storageId);
+			storage = reference == null ? null : reference.get();
+		}
+		if (storage != null) {
+			metrics.hit(ElementKind.VERTEX);
+		} else {
 			synchronized (vertexStorages) {
-				reference = vertexStorages[storageId];
-				if (reference != null) {
-					storage = reference.get();
-					if (storage == null) {
-						// reactivate storage
-						reference.setReused();
-						// create new container
-						storage = new VertexContainer(storageId, this);
-						reference = new VertexContainerReference(storage,
-								reference, vertexQueue);
-						vertexStorages[storageId] = reference;
+				if (storageId < vertexStorageCount) {
+					reference = vertexStorages.get(storageId);
+					if (reference != null) {
+						storage = reference.get();
+						if (storage != null) {
+							metrics.hit(ElementKind.VERTEX);
+						} else {
+							metrics.miss(ElementKind.VERTEX);
+							// reactivate storage
+							reference.setReused();
+							// create new container
+							storage = new VertexContainer(storageId, this);
+							reference = new VertexContainerReference(storage,
+									reference, referenceQueue);
+							vertexStorages.set(storageId, reference);
+						}
+					} else {
+						// reload storage from disk
+						metrics.miss(ElementKind.VERTEX);
+						storage = reloadVertexStorage(storageId);
 					}
 				} else {
-					// reload storage from disk
-					storage = reloadVertexStorage(storageId);
+					storage = new VertexContainer(storageId, CONTAINER_SIZE, this);
+					// a new container is not part of any snapshot
+					storage.preservedSnapshot = latestSnapshot;
+					reference = new VertexContainerReference(storage, referenceQueue);
+					vertexStorages.set(storageId, reference);
+					vertexStorageCount++;
 				}
 			}
-		} else {
-			storage = new VertexContainer(storageId, CONTAINER_SIZE, this);
-			reference = new VertexContainerReference(storage, vertexQueue);
-			vertexStorageCount++;
-			vertexStorages[storageId] = reference;
 		}
 		if (USE_LRU_QUEUE) {
-			updateLRUStatus(storage);
+			recentlyUsed.access(storage);
 		}
 		return storage;
 	}
@@ -503,7 +1047,12 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	public final Vertex getVertexObject(int id) {
 		VertexContainer container = getVertexContainer(getContainerId(id));
 		int idInStorage = getElementIdInContainer(id);
-		long type = container.types[idInStorage];
+		long type = container.types.get(idInStorage);
+		long snapshotType = readable(container).types.get(idInStorage);
+		if (snapshotType != type) {
+			return getSnapshotElement(getCurrentSnapshot().vertices, id,
+					(int) snapshotType, container);
+		}
 		if (type != 0) {
 			// element is typed, so return either the existing vertex or create
 			// a new one
@@ -527,17 +1076,19 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 		VertexContainer container = getVertexContainer(id);
 		if (container.attributes == null) {
 			try {
-				FileChannel channel = getChannel(vertexAttributeFiles,
-						container.id, vertexAttributeFileName);
-				if (channel.size() != 0) {
-					ObjectInputStream input = new ObjectInputStream(
-							Channels.newInputStream(channel));
-					container.attributes = (AttributeContainer[]) input
-							.readObject();
-					input.close();
-				} else {
+				container.attributes = readAttributes(vertexAttributeFile,
+						container.id);
+				if (container.attributes == null) {
 					container.attributes = new AttributeContainer[CONTAINER_SIZE];
 				}
+				// the reference writes the attributes when the container
+				// is evicted
+				synchronized (vertexStorages) {
+					VertexContainerReference ref = vertexStorages.get(container.id);
+					if (ref != null && ref.get() == container) {
+						ref.attributes = container.attributes;
+					}
+				}
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -546,13 +1097,24 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	}
 
 	public AttributeContainer getVertexAttributeContainer(int id) {
-		AttributeContainer[] containerArray = getVertexAttributeContainerArray(id);
+		AttributeContainer[] containerArray = getVertexAttributeContainerArray(getContainerId(id));
 		int idInStorage = getElementIdInContainer(id);
 		AttributeContainer container = containerArray[idInStorage];
+		StorageSnapshot snapshot = getCurrentSnapshot();
+		if (snapshot != null) {
+			// an element object that exists only in the snapshot reads the
+			// attributes of the element it represents
+			VertexContainer storage = getVertexContainer(getContainerId(id));
+			if (readable(storage).types.get(idInStorage) != storage.types
+					.get(idInStorage)) {
+				return readableAttributes(true, id, null);
+			}
+		}
 		return container;
 	}
 
 	private final EdgeContainer reloadEdgeStorage(int storageId) {
+		long start = System.nanoTime();
 		while (!isEdgeStorageSaved(storageId)) {
 			try {
 				edgeStorages.notify();
@@ -562,20 +1124,24 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 			}
 		}
 		try {
-			FileChannel channel = getChannel(edgeFiles, storageId, edgeFileName);
-			EdgeContainer storage = new EdgeContainer(storageId, this);
-			EdgeContainerReference reference = null;
-			reloadedContainers++;
+			// the buffer of a container that has been written is reused, so
+			// reloading allocates no memory
+			ByteBuffer buffer;
 			if (edgeReuseQueueSize > 0) {
 				edgeReuseQueueSize--;
-				reference = new EdgeContainerReference(storage, channel,
-						firstInEdgeReuseQueue, edgeQueue);
+				buffer = firstInEdgeReuseQueue.buffer;
 				firstInEdgeReuseQueue = (EdgeContainerReference) firstInEdgeReuseQueue.nextInReuseQueue;
 			} else {
-				reference = new EdgeContainerReference(storage, channel,
-						edgeQueue);
+				buffer = StorageContainer.allocateBuffer(GraphElementContainer.COLUMNS);
 			}
-			edgeStorages[storageId] = reference;
+			edgeFile.read(storageId, buffer);
+			EdgeContainer storage = new EdgeContainer(storageId, this);
+			EdgeContainerReference reference = new EdgeContainerReference(
+					storage, buffer, referenceQueue);
+			edgeStorages.set(storageId, reference);
+			metrics.getFile(edgeFileName).read(edgeFile.getSlotSize(),
+					System.nanoTime() - start);
+			metrics.reloaded(ElementKind.EDGE, System.nanoTime() - start);
 			return storage;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -590,35 +1156,51 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	 * @return
 	 */
 	final EdgeContainer getEdgeContainer(int storageId) {
+		reclaimEnqueued();
 		EdgeContainer storage = null;
 		EdgeContainerReference reference = null;
 		if (storageId < edgeStorageCount) {
+			// containers in memory are found without taking the lock
+			reference = edgeStorages.get(storageId);
+			storage = reference == null ? null : reference.get();
+		}
+		if (storage != null) {
+			metrics.hit(ElementKind.EDGE);
+		} else {
 			synchronized (edgeStorages) {
-				reference = edgeStorages[storageId];
-				if (reference != null) {
-					storage = reference.get();
-					if (storage == null) {
-						// reactivate storage
-						reference.setReused();
-						// create new container
-						storage = new EdgeContainer(storageId, this);
-						reference = new EdgeContainerReference(storage,
-								reference, edgeQueue);
-						edgeStorages[storageId] = reference;
+				if (storageId < edgeStorageCount) {
+					reference = edgeStorages.get(storageId);
+					if (reference != null) {
+						storage = reference.get();
+						if (storage != null) {
+							metrics.hit(ElementKind.EDGE);
+						} else {
+							metrics.miss(ElementKind.EDGE);
+							// reactivate storage
+							reference.setReused();
+							// create new container
+							storage = new EdgeContainer(storageId, this);
+							reference = new EdgeContainerReference(storage,
+									reference, referenceQueue);
+							edgeStorages.set(storageId, reference);
+						}
+					} else {
+						// reload storage from disk
+						metrics.miss(ElementKind.EDGE);
+						storage = reloadEdgeStorage(storageId);
 					}
 				} else {
-					// reload storage from disk
-					storage = reloadEdgeStorage(storageId);
+					storage = new EdgeContainer(storageId, CONTAINER_SIZE, this);
+					// a new container is not part of any snapshot
+					storage.preservedSnapshot = latestSnapshot;
+					reference = new EdgeContainerReference(storage, referenceQueue);
+					edgeStorages.set(storageId, reference);
+					edgeStorageCount++;
 				}
 			}
-		} else {
-			storage = new EdgeContainer(storageId, CONTAINER_SIZE, this);
-			reference = new EdgeContainerReference(storage, edgeQueue);
-			edgeStorageCount++;
-			edgeStorages[storageId] = reference;
 		}
 		if (USE_LRU_QUEUE) {
-			updateLRUStatus(storage);
+			recentlyUsed.access(storage);
 		}
 		return storage;
 	}
@@ -627,7 +1209,12 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	public final Edge getEdgeObject(int id) {
 		EdgeContainer container = getEdgeContainer(getContainerId(id));
 		int idInStorage = getElementIdInContainer(id);
-		int type = (int) container.types[idInStorage];
+		int type = (int) container.types.get(idInStorage);
+		int snapshotType = (int) readable(container).types.get(idInStorage);
+		if (snapshotType != type) {
+			return getSnapshotElement(getCurrentSnapshot().edges, id,
+					snapshotType, container);
+		}
 		if (type != 0) {
 			// element is typed, so return either the existing vertex or create
 			// a new one
@@ -650,18 +1237,19 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 		EdgeContainer container = getEdgeContainer(id);
 		if (container.attributes == null) {
 			try {
-				FileChannel channel = getChannel(edgeAttributeFiles,
-						container.id, edgeAttributeFileName);
-				// channel mappen
-				if (channel.size() != 0) {
-					ObjectInputStream input = new ObjectInputStream(
-							Channels.newInputStream(channel));
-					container.attributes = (AttributeContainer[]) input
-							.readObject();
-					input.close();
-				} else {
+				container.attributes = readAttributes(edgeAttributeFile,
+						container.id);
+				if (container.attributes == null) {
 					container.attributes = new AttributeContainer[CONTAINER_SIZE];
 				}
+				// the reference writes the attributes when the container
+				// is evicted
+				synchronized (edgeStorages) {
+					EdgeContainerReference ref = edgeStorages.get(container.id);
+					if (ref != null && ref.get() == container) {
+						ref.attributes = container.attributes;
+					}
+				}
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -670,13 +1258,24 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	}
 
 	public AttributeContainer getEdgeAttributeContainer(int id) {
-		AttributeContainer[] containerArray = getEdgeAttributeContainerArray(id);
+		AttributeContainer[] containerArray = getEdgeAttributeContainerArray(getContainerId(id));
 		int idInStorage = getElementIdInContainer(id);
 		AttributeContainer container = containerArray[idInStorage];
+		StorageSnapshot snapshot = getCurrentSnapshot();
+		if (snapshot != null) {
+			// an element object that exists only in the snapshot reads the
+			// attributes of the element it represents
+			EdgeContainer storage = getEdgeContainer(getContainerId(id));
+			if (readable(storage).types.get(idInStorage) != storage.types
+					.get(idInStorage)) {
+				return readableAttributes(false, id, null);
+			}
+		}
 		return container;
 	}
 
 	private final IncidenceContainer reloadIncidenceStorage(int storageId) {
+		long start = System.nanoTime();
 		while (!isIncidenceStorageSaved(storageId)) {
 			try {
 				incidenceStorages.notify();
@@ -686,21 +1285,24 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 			}
 		}
 		try {
-			reloadedContainers++;
-			FileChannel channel = getChannel(incidenceFiles, storageId,
-					incidenceFileName);
-			IncidenceContainer storage = new IncidenceContainer(storageId, this);
-			IncidenceContainerReference reference = null;
+			// the buffer of a container that has been written is reused, so
+			// reloading allocates no memory
+			ByteBuffer buffer;
 			if (incidenceReuseQueueSize > 0) {
 				incidenceReuseQueueSize--;
-				reference = new IncidenceContainerReference(storage, channel,
-						firstInIncidenceReuseQueue, incidenceQueue);
+				buffer = firstInIncidenceReuseQueue.buffer;
 				firstInIncidenceReuseQueue = (IncidenceContainerReference) firstInIncidenceReuseQueue.nextInReuseQueue;
 			} else {
-				reference = new IncidenceContainerReference(storage, channel,
-						incidenceQueue);
+				buffer = StorageContainer.allocateBuffer(IncidenceContainer.COLUMNS);
 			}
-			incidenceStorages[storageId] = reference;
+			incidenceFile.read(storageId, buffer);
+			IncidenceContainer storage = new IncidenceContainer(storageId, this);
+			IncidenceContainerReference reference = new IncidenceContainerReference(
+					storage, buffer, referenceQueue);
+			incidenceStorages.set(storageId, reference);
+			metrics.getFile(incidenceFileName).read(incidenceFile.getSlotSize(),
+					System.nanoTime() - start);
+			metrics.reloaded(ElementKind.INCIDENCE, System.nanoTime() - start);
 			return storage;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -716,35 +1318,51 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	 */
 	final IncidenceContainer getIncidenceContainer(int storageId) {
 		// int storageId = getContainerId(incidenceId);
+		reclaimEnqueued();
 		IncidenceContainer storage = null;
 		IncidenceContainerReference reference = null;
 		if (storageId < incidenceStorageCount) {
+			// containers in memory are found without taking the lock
+			reference = incidenceStorages.get(storageId);
+			storage = reference == null ? null : reference.get();
+		}
+		if (storage != null) {
+			metrics.hit(ElementKind.INCIDENCE);
+		} else {
 			synchronized (incidenceStorages) {
-				reference = incidenceStorages[storageId];
-				if (reference != null) {
-					storage = reference.get();
-					if (storage == null) {
-						// reactivate storage
-						reference.setReused();
-						// create new container
-						storage = new IncidenceContainer(storageId, this);
-						reference = new IncidenceContainerReference(storage,
-								reference, incidenceQueue);
-						incidenceStorages[storageId] = reference;
+				if (storageId < incidenceStorageCount) {
+					reference = incidenceStorages.get(storageId);
+					if (reference != null) {
+						storage = reference.get();
+						if (storage != null) {
+							metrics.hit(ElementKind.INCIDENCE);
+						} else {
+							metrics.miss(ElementKind.INCIDENCE);
+							// reactivate storage
+							reference.setReused();
+							// create new container
+							storage = new IncidenceContainer(storageId, this);
+							reference = new IncidenceContainerReference(storage,
+									reference, referenceQueue);
+							incidenceStorages.set(storageId, reference);
+						}
+					} else {
+						// reload storage from disk
+						metrics.miss(ElementKind.INCIDENCE);
+						storage = reloadIncidenceStorage(storageId);
 					}
 				} else {
-					// reload storage from disk
-					storage = reloadIncidenceStorage(storageId);
+					storage = new IncidenceContainer(storageId, CONTAINER_SIZE, this);
+					// a new container is not part of any snapshot
+					storage.preservedSnapshot = latestSnapshot;
+					reference = new IncidenceContainerReference(storage, referenceQueue);
+					incidenceStorages.set(storageId, reference);
+					incidenceStorageCount++;
 				}
 			}
-		} else {
-			storage = new IncidenceContainer(storageId, CONTAINER_SIZE, this);
-			reference = new IncidenceContainerReference(storage, incidenceQueue);
-			incidenceStorageCount++;
-			incidenceStorages[storageId] = reference;
 		}
 		if (USE_LRU_QUEUE) {
-			updateLRUStatus(storage);
+			recentlyUsed.access(storage);
 		}
 		return storage;
 	}
@@ -756,7 +1374,12 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 		}
 		IncidenceContainer container = getIncidenceContainer(getContainerId(id));
 		int idInStorage = getElementIdInContainer(id);
-		int type = (int) container.types[idInStorage];
+		int type = (int) container.types.get(idInStorage);
+		int snapshotType = (int) readable(container).types.get(idInStorage);
+		if (snapshotType != type) {
+			return getSnapshotElement(getCurrentSnapshot().incidences, id,
+					snapshotType, container);
+		}
 		if (type != 0) {
 			// element is typed, so return either the existing vertex or create
 			// a new one
@@ -789,52 +1412,74 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 		int vId = getLocalId(v.getGlobalId());
 		VertexContainer storage = getVertexContainer(getContainerId(vId));
 		int id = getElementIdInContainer(vId);
+		writable(storage);
 		storage.vertices[id] = v;
 		v.container = storage;
-		storage.types[id] = graphDatabase.getSchema().getClassId(v.getType());
+		storage.types.put(id, graphDatabase.getSchema().getClassId(v.getType()));
 		AttributeContainer[] containerArray = getVertexAttributeContainerArray(getContainerId(vId));
+		preserveAttributes(true, vId, containerArray[id]);
 		containerArray[id] = v.getAttributeContainer();
+		if (containerArray[id] != null) {
+			containerArray[id].preservedSnapshot = latestSnapshot;
+		}
+		changed();
 	}
 
 	public void storeEdge(EdgeImpl e) {
 		int eId = getLocalId(e.getGlobalId());
 		EdgeContainer storage = getEdgeContainer(getContainerId(eId));
 		int id = getElementIdInContainer(eId);
+		writable(storage);
 		storage.edges[id] = e;
 		e.container = storage;
-		storage.types[id] = graphDatabase.getSchema().getClassId(e.getType());
+		storage.types.put(id, graphDatabase.getSchema().getClassId(e.getType()));
 		AttributeContainer[] containerArray = getEdgeAttributeContainerArray(getContainerId(eId));
+		preserveAttributes(false, eId, containerArray[id]);
 		containerArray[id] = e.getAttributeContainer();
+		if (containerArray[id] != null) {
+			containerArray[id].preservedSnapshot = latestSnapshot;
+		}
+		changed();
 	}
 
 	public void storeIncidence(IncidenceImpl i) {
 		int iId = getLocalId(i.getGlobalId());
 		IncidenceContainer storage = getIncidenceContainer(getContainerId(iId));
 		int id = getElementIdInContainer(iId);
+		writable(storage);
 		storage.incidences[id] = i;
 		i.container = storage;
-		storage.types[id] = graphDatabase.getSchema().getClassId(i.getType());
+		storage.types.put(id, graphDatabase.getSchema().getClassId(i.getType()));
+		changed();
 	}
 
 	public void removeEdgeFromDiskStorage(int edgeId) {
 		EdgeContainer storage = getEdgeContainer(getContainerId(edgeId));
 		int id = getElementIdInContainer(edgeId);
+		writable(storage);
+		preserveAttributes(false, edgeId, getEdgeAttributeContainer(edgeId));
 		storage.edges[id] = null;
-		storage.types[id] = 0;
+		storage.types.put(id, 0);
+		changed();
 	}
 
 	public void removeVertexFromDiskStorage(int vertexId) {
 		VertexContainer storage = getVertexContainer(getContainerId(vertexId));
 		int id = getElementIdInContainer(vertexId);
+		writable(storage);
+		preserveAttributes(true, vertexId, getVertexAttributeContainer(vertexId));
 		storage.vertices[id] = null;
-		storage.types[id] = 0;
+		storage.types.put(id, 0);
+		changed();
 	}
 
 	public void removeIncidenceFromDiskStorage(int incId) {
 		IncidenceContainer storage = getIncidenceContainer(incId);
 		int id = getElementIdInContainer(incId);
+		writable(storage);
 		storage.incidences[id] = null;
-		storage.types[id] = 0;
+		storage.types.put(id, 0);
+		changed();
 	}
 
 	/*
@@ -844,64 +1489,70 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 	// VSeq
 
 	public void setNextVertexId(int vId, long nextVId) {
-		getVertexContainer(getContainerId(vId)).nextElementInGraphId[getElementIdInContainer(vId)] = nextVId;
+		writable(getVertexContainer(getContainerId(vId))).nextElementInGraphId.put(getElementIdInContainer(vId), nextVId);
+		changed();
 	}
 
 	public long getNextVertexId(int vId) {
-		return getVertexContainer(getContainerId(vId)).nextElementInGraphId[getElementIdInContainer(vId)];
+		return readable(getVertexContainer(getContainerId(vId))).nextElementInGraphId.get(getElementIdInContainer(vId));
 	}
 
-	public void setPreviousVertexId(int vId, long nextVId) {
-		getVertexContainer(getContainerId(vId)).nextElementInGraphId[getElementIdInContainer(vId)] = nextVId;
+	public void setPreviousVertexId(int vId, long previousVId) {
+		writable(getVertexContainer(getContainerId(vId))).previousElementInGraphId.put(getElementIdInContainer(vId), previousVId);
+		changed();
 	}
 
 	public long getPreviousVertexId(int vId) {
-		return getVertexContainer(getContainerId(vId)).nextElementInGraphId[getElementIdInContainer(vId)];
+		return readable(getVertexContainer(getContainerId(vId))).previousElementInGraphId.get(getElementIdInContainer(vId));
 	}
 
 	// Eseq
 
 	public void setNextEdgeId(int eId, long nextEId) {
-		getEdgeContainer(getContainerId(eId)).nextElementInGraphId[getElementIdInContainer(eId)] = nextEId;
+		writable(getEdgeContainer(getContainerId(eId))).nextElementInGraphId.put(getElementIdInContainer(eId), nextEId);
+		changed();
 	}
 
 	public long getNextEdgeId(int eId) {
-		return getEdgeContainer(getContainerId(eId)).nextElementInGraphId[getElementIdInContainer(eId)];
+		return readable(getEdgeContainer(getContainerId(eId))).nextElementInGraphId.get(getElementIdInContainer(eId));
 	}
 
-	public void setPreviousEdgeId(int eId, long nextEId) {
-		getEdgeContainer(getContainerId(eId)).nextElementInGraphId[getElementIdInContainer(eId)] = nextEId;
+	public void setPreviousEdgeId(int eId, long previousEId) {
+		writable(getEdgeContainer(getContainerId(eId))).previousElementInGraphId.put(getElementIdInContainer(eId), previousEId);
+		changed();
 	}
 
 	public long getPreviousEdgeId(int eId) {
-		return getEdgeContainer(getContainerId(eId)).nextElementInGraphId[getElementIdInContainer(eId)];
+		return readable(getEdgeContainer(getContainerId(eId))).previousElementInGraphId.get(getElementIdInContainer(eId));
 	}
 
 	// Iseq at vertices
 
 	@Override
 	public long getFirstIncidenceIdAtVertexId(int elemId) {
-		return getVertexContainer(getContainerId(elemId)).firstIncidenceId[getElementIdInContainer(elemId)];
+		return readable(getVertexContainer(getContainerId(elemId))).firstIncidenceId.get(getElementIdInContainer(elemId));
 	}
 
 	@Override
 	public void setFirstIncidenceIdAtVertexId(int elemId, long incidenceId) {
-		getVertexContainer(getContainerId(elemId)).firstIncidenceId[getElementIdInContainer(elemId)] = incidenceId;
+		writable(getVertexContainer(getContainerId(elemId))).firstIncidenceId.put(getElementIdInContainer(elemId), incidenceId);
+		changed();
 	}
 
 	@Override
 	public long getLastIncidenceIdAtVertexId(int elemId) {
-		return getVertexContainer(getContainerId(elemId)).lastIncidenceId[getElementIdInContainer(elemId)];
+		return readable(getVertexContainer(getContainerId(elemId))).lastIncidenceId.get(getElementIdInContainer(elemId));
 	}
 
 	@Override
 	public void setLastIncidenceIdAtVertexId(int elemId, long incidenceId) {
-		getVertexContainer(getContainerId(elemId)).lastIncidenceId[getElementIdInContainer(elemId)] = incidenceId;
+		writable(getVertexContainer(getContainerId(elemId))).lastIncidenceId.put(getElementIdInContainer(elemId), incidenceId);
+		changed();
 	}
 
 	@Override
 	public long getNextIncidenceIdAtVertexId(int localIncidenceId) {
-		return getIncidenceContainer(getContainerId(localIncidenceId)).nextIncidenceAtVertexId[getElementIdInContainer(localIncidenceId)];
+		return readable(getIncidenceContainer(getContainerId(localIncidenceId))).nextIncidenceAtVertexId.get(getElementIdInContainer(localIncidenceId));
 	}
 
 	@Override
@@ -909,147 +1560,163 @@ public final class DiskStorageManager implements RemoteStorageAccess {
 			long nextIncidenceId) {
 		if (graphDatabase.convertToGlobalId(localIncidenceId) == nextIncidenceId)
 			throw new RuntimeException();
-		getIncidenceContainer(getContainerId(localIncidenceId)).nextIncidenceAtVertexId[getElementIdInContainer(localIncidenceId)] = nextIncidenceId;
+		writable(getIncidenceContainer(getContainerId(localIncidenceId))).nextIncidenceAtVertexId.put(getElementIdInContainer(localIncidenceId), nextIncidenceId);
+		changed();
 	}
 
 	@Override
 	public long getPreviousIncidenceIdAtVertexId(int localIncidenceId) {
-		return getIncidenceContainer(getContainerId(localIncidenceId)).previousIncidenceAtVertexId[getElementIdInContainer(localIncidenceId)];
+		return readable(getIncidenceContainer(getContainerId(localIncidenceId))).previousIncidenceAtVertexId.get(getElementIdInContainer(localIncidenceId));
 	}
 
 	@Override
 	public void setPreviousIncidenceAtVertexId(int localIncidenceId,
 			long nextIncidenceId) {
-		getIncidenceContainer(getContainerId(localIncidenceId)).previousIncidenceAtVertexId[getElementIdInContainer(localIncidenceId)] = nextIncidenceId;
+		writable(getIncidenceContainer(getContainerId(localIncidenceId))).previousIncidenceAtVertexId.put(getElementIdInContainer(localIncidenceId), nextIncidenceId);
+		changed();
 	}
 
 	@Override
 	public long getIncidenceListVersionOfVertexId(int elemId) {
-		return getVertexContainer(getContainerId(elemId)).incidenceListVersion[getElementIdInContainer(elemId)];
+		return readable(getVertexContainer(getContainerId(elemId))).incidenceListVersion.get(getElementIdInContainer(elemId));
 	}
 
 	@Override
 	public void increaseIncidenceListVersionOfVertexId(int elemId) {
-		getVertexContainer(getContainerId(elemId)).incidenceListVersion[getElementIdInContainer(elemId)]++;
+		LongBuffer versions = writable(getVertexContainer(getContainerId(elemId))).incidenceListVersion;
+		int id = getElementIdInContainer(elemId);
+		versions.put(id, versions.get(id) + 1);
+		changed();
 	}
 
 	@Override
 	public long getConnectedVertexId(int incidenceId) {
-		return getIncidenceContainer(getContainerId(incidenceId)).vertexId[getElementIdInContainer(incidenceId)];
+		return readable(getIncidenceContainer(getContainerId(incidenceId))).vertexId.get(getElementIdInContainer(incidenceId));
 	}
 
 	// Iseq at edges
 
 	@Override
 	public long getFirstIncidenceIdAtEdgeId(int elemId) {
-		return getEdgeContainer(getContainerId(elemId)).firstIncidenceId[getElementIdInContainer(elemId)];
+		return readable(getEdgeContainer(getContainerId(elemId))).firstIncidenceId.get(getElementIdInContainer(elemId));
 	}
 
 	@Override
 	public void setFirstIncidenceIdAtEdgeId(int elemId, long incidenceId) {
-		getEdgeContainer(getContainerId(elemId)).firstIncidenceId[getElementIdInContainer(elemId)] = incidenceId;
+		writable(getEdgeContainer(getContainerId(elemId))).firstIncidenceId.put(getElementIdInContainer(elemId), incidenceId);
+		changed();
 	}
 
 	@Override
 	public long getLastIncidenceIdAtEdgeId(int elemId) {
-		return getEdgeContainer(getContainerId(elemId)).lastIncidenceId[getElementIdInContainer(elemId)];
+		return readable(getEdgeContainer(getContainerId(elemId))).lastIncidenceId.get(getElementIdInContainer(elemId));
 	}
 
 	@Override
 	public void setLastIncidenceIdAtEdgeId(int elemId, long incidenceId) {
-		getEdgeContainer(getContainerId(elemId)).lastIncidenceId[getElementIdInContainer(elemId)] = incidenceId;
+		writable(getEdgeContainer(getContainerId(elemId))).lastIncidenceId.put(getElementIdInContainer(elemId), incidenceId);
+		changed();
 	}
 
 	@Override
 	public long getNextIncidenceIdAtEdgeId(int localIncidenceId) {
-		return getIncidenceContainer(getContainerId(localIncidenceId)).nextIncidenceAtEdgeId[getElementIdInContainer(localIncidenceId)];
+		return readable(getIncidenceContainer(getContainerId(localIncidenceId))).nextIncidenceAtEdgeId.get(getElementIdInContainer(localIncidenceId));
 	}
 
 	@Override
 	public void setNextIncidenceAtEdgeId(int localIncidenceId,
 			long nextIncidenceId) {
-		getIncidenceContainer(getContainerId(localIncidenceId)).nextIncidenceAtEdgeId[getElementIdInContainer(localIncidenceId)] = nextIncidenceId;
+		writable(getIncidenceContainer(getContainerId(localIncidenceId))).nextIncidenceAtEdgeId.put(getElementIdInContainer(localIncidenceId), nextIncidenceId);
+		changed();
 	}
 
 	@Override
 	public long getPreviousIncidenceIdAtEdgeId(int localIncidenceId) {
-		return getIncidenceContainer(getContainerId(localIncidenceId)).previousIncidenceAtEdgeId[getElementIdInContainer(localIncidenceId)];
+		return readable(getIncidenceContainer(getContainerId(localIncidenceId))).previousIncidenceAtEdgeId.get(getElementIdInContainer(localIncidenceId));
 	}
 
 	@Override
 	public void setPreviousIncidenceAtEdgeId(int localIncidenceId,
 			long nextIncidenceId) {
-		getIncidenceContainer(getContainerId(localIncidenceId)).previousIncidenceAtEdgeId[getElementIdInContainer(localIncidenceId)] = nextIncidenceId;
+		writable(getIncidenceContainer(getContainerId(localIncidenceId))).previousIncidenceAtEdgeId.put(getElementIdInContainer(localIncidenceId), nextIncidenceId);
+		changed();
 	}
 
 	@Override
 	public long getIncidenceListVersionOfEdgeId(int elemId) {
-		return getEdgeContainer(getContainerId(elemId)).incidenceListVersion[getElementIdInContainer(elemId)];
+		return readable(getEdgeContainer(getContainerId(elemId))).incidenceListVersion.get(getElementIdInContainer(elemId));
 	}
 
 	@Override
 	public void increaseIncidenceListVersionOfEdgeId(int elemId) {
-		getEdgeContainer(getContainerId(elemId)).incidenceListVersion[getElementIdInContainer(elemId)]++;
+		LongBuffer versions = writable(getEdgeContainer(getContainerId(elemId))).incidenceListVersion;
+		int id = getElementIdInContainer(elemId);
+		versions.put(id, versions.get(id) + 1);
+		changed();
 	}
 
 	@Override
 	public long getConnectedEdgeId(int incidenceId) {
-		return getIncidenceContainer(getContainerId(incidenceId)).edgeId[getElementIdInContainer(incidenceId)];
+		return readable(getIncidenceContainer(getContainerId(incidenceId))).edgeId.get(getElementIdInContainer(incidenceId));
 	}
 
 	// hierarchy of vertices
 
 	@Override
 	public long getSigmaIdOfVertexId(int localElemId) {
-		return getVertexContainer(getContainerId(localElemId)).sigmaId[getElementIdInContainer(localElemId)];
+		return readable(getVertexContainer(getContainerId(localElemId))).sigmaId.get(getElementIdInContainer(localElemId));
 	}
 
 	@Override
 	public void setSigmaIdOfVertexId(int localElemId, long sigmaId) {
-		getVertexContainer(getContainerId(localElemId)).sigmaId[getElementIdInContainer(localElemId)] = sigmaId;
+		writable(getVertexContainer(getContainerId(localElemId))).sigmaId.put(getElementIdInContainer(localElemId), sigmaId);
+		changed();
 	}
 
 	public int getKappaOfVertexId(int localElemId) {
-		return (int) getVertexContainer(getContainerId(localElemId)).kappa[getElementIdInContainer(localElemId)];
+		return (int) readable(getVertexContainer(getContainerId(localElemId))).kappa.get(getElementIdInContainer(localElemId));
 	}
 
 	public void setKappaOfVertexId(int localElemId, int kappa) {
-		getVertexContainer(getContainerId(localElemId)).kappa[getElementIdInContainer(localElemId)] = kappa;
+		writable(getVertexContainer(getContainerId(localElemId))).kappa.put(getElementIdInContainer(localElemId), kappa);
+		changed();
 	}
 
 	// hierarchy of edges
 
 	@Override
 	public long getSigmaIdOfEdgeId(int localElemId) {
-		return getEdgeContainer(getContainerId(localElemId)).sigmaId[getElementIdInContainer(localElemId)];
+		return readable(getEdgeContainer(getContainerId(localElemId))).sigmaId.get(getElementIdInContainer(localElemId));
 	}
 
 	@Override
 	public void setSigmaIdOfEdgeId(int localElemId, long sigmaId) {
-		getEdgeContainer(getContainerId(localElemId)).sigmaId[getElementIdInContainer(localElemId)] = sigmaId;
+		writable(getEdgeContainer(getContainerId(localElemId))).sigmaId.put(getElementIdInContainer(localElemId), sigmaId);
+		changed();
 	}
 
 	public int getKappaOfEdgeId(int localElemId) {
-		return (int) getEdgeContainer(getContainerId(localElemId)).kappa[getElementIdInContainer(localElemId)];
+		return (int) readable(getEdgeContainer(getContainerId(localElemId))).kappa.get(getElementIdInContainer(localElemId));
 	}
 
 	@Override
 	public void setKappaOfEdgeId(int localElemId, int kappa) {
-		getEdgeContainer(getContainerId(localElemId)).kappa[getElementIdInContainer(localElemId)] = kappa;
+		writable(getEdgeContainer(getContainerId(localElemId))).kappa.put(getElementIdInContainer(localElemId), kappa);
+		changed();
 	}
 
 	// types
 
 	public int getVertexTypeId(int localVertexId) {
-		return (int) getVertexContainer(getContainerId(localVertexId)).types[getElementIdInContainer(localVertexId)];
+		return (int) readable(getVertexContainer(getContainerId(localVertexId))).types.get(getElementIdInContainer(localVertexId));
 	}
 
 	public int getEdgeTypeId(int localEdgeId) {
-		return (int) getEdgeContainer(getContainerId(localEdgeId)).types[getElementIdInContainer(localEdgeId)];
+		return (int) readable(getEdgeContainer(getContainerId(localEdgeId))).types.get(getElementIdInContainer(localEdgeId));
 	}
 
 	public int getIncidenceTypeId(int localIncidenceId) {
-		return (int) getIncidenceContainer(getContainerId(localIncidenceId)).types[getElementIdInContainer(localIncidenceId)];
+		return (int) readable(getIncidenceContainer(getContainerId(localIncidenceId))).types.get(getElementIdInContainer(localIncidenceId));
 	}
 
 	public void incidenceListOfVertexModified(long vertexId) {
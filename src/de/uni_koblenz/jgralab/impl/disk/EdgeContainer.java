@@ -17,6 +17,13 @@ public class EdgeContainer extends GraphElementContainer {
 		this.id = id;
 		this.backgroundStorage = backgroundStorage;
 	}
+
+	@Override
+	StorageContainer copy() {
+		EdgeContainer copy = new EdgeContainer(id, backgroundStorage);
+		copy.setBuffer(copyBuffer(buffer));
+		return copy;
+	}
 	
 	
 
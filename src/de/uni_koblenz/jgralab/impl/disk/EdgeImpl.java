@@ -63,6 +63,59 @@ public abstract class EdgeImpl extends
 
 	protected EdgeContainer container;
 
+	/*
+	 * the container to read the data of this edge from, which is the copy
+	 * kept by the snapshot of the current thread if the container has been
+	 * changed since the snapshot was created
+	 */
+	protected final EdgeContainer readableContainer() {
+		return container.backgroundStorage.readable(container);
+	}
+
+	/*
+	 * the container to change the data of this edge in
+	 */
+	protected final EdgeContainer writableContainer() {
+		return container.backgroundStorage.writable(container);
+	}
+
+	/*
+	 * completes a change of the data of this edge
+	 */
+	private final void changed() {
+		container.backgroundStorage.changed();
+	}
+
+	/**
+	 * Used by the generated getters of the attributes.
+	 * 
+	 * @return the attributes of this edge to read from, which are the copy
+	 *         kept by the snapshot of the current thread if they have been
+	 *         changed since the snapshot was created
+	 */
+	protected final <A extends AttributeContainer> A readableAttributes(
+			A attributes) {
+		return container.backgroundStorage.readableAttributes(false,
+				getLocalId(), attributes);
+	}
+
+	/**
+	 * Used by the generated setters of the attributes, which call it before
+	 * they change <code>attributes</code>.
+	 */
+	protected final void preserveAttributes(AttributeContainer attributes) {
+		container.backgroundStorage.preserveAttributes(false, getLocalId(),
+				attributes);
+	}
+
+	/**
+	 * Used by the generated setters of the attributes, which call it after
+	 * they have changed the attributes.
+	 */
+	protected final void attributesChanged() {
+		container.backgroundStorage.changed();
+	}
+
 	/**
 	 * Creates a new {@link Edge} instance.
 	 * 
@@ -128,8 +181,9 @@ public abstract class EdgeImpl extends
 	 * @throws RemoteException
 	 */
 	protected final void setNextEdge(Edge nextEdge) {
-		container.nextElementInGraphId[getIdInStorage(elementId)] = nextEdge
-				.getGlobalId();
+		writableContainer().nextElementInGraphId.put(getIdInStorage(elementId), nextEdge
+				.getGlobalId());
+		changed();
 	}
 
 	/**
@@ -141,15 +195,16 @@ public abstract class EdgeImpl extends
 	 * @throws RemoteException
 	 */
 	protected final void setPreviousEdge(Edge prevEdge) {
-		container.previousElementInGraphId[getIdInStorage(elementId)] = prevEdge
-				.getGlobalId();
+		writableContainer().previousElementInGraphId.put(getIdInStorage(elementId), prevEdge
+				.getGlobalId());
+		changed();
 	}
 
 	@Override
 	public final Edge getNextEdge(Graph traversalContext) {
 		assert isValid();
 		Edge nextEdge = localGraphDatabase
-				.getEdgeObject(container.nextElementInGraphId[getIdInStorage(elementId)]);
+				.getEdgeObject(readableContainer().nextElementInGraphId.get(getIdInStorage(elementId)));
 		if (nextEdge == null) {
 			return null;
 		} else if ((traversalContext == null)
@@ -164,7 +219,7 @@ public abstract class EdgeImpl extends
 	public final Edge getPreviousEdge(Graph traversalContext) {
 		assert isValid();
 		Edge previousEdge = localGraphDatabase
-				.getEdgeObject(container.previousElementInGraphId[getIdInStorage(elementId)]);
+				.getEdgeObject(readableContainer().previousElementInGraphId.get(getIdInStorage(elementId)));
 		if (previousEdge == null
 				|| ((traversalContext != null) && !traversalContext
 						.containsEdge(previousEdge))) {
@@ -327,7 +382,7 @@ public abstract class EdgeImpl extends
 
 	@Override
 	public final Incidence getFirstIncidence(Graph traversalContext) {
-		long firstIncId = container.firstIncidenceId[getIdInStorage(elementId)];
+		long firstIncId = readableContainer().firstIncidenceId.get(getIdInStorage(elementId));
 		Incidence firstIncidence = localGraphDatabase
 				.getIncidenceObject(firstIncId);
 		while ((firstIncidence != null)
@@ -351,7 +406,7 @@ public abstract class EdgeImpl extends
 			Direction direction) {
 		assert isValid();
 		Incidence i = localGraphDatabase
-				.getIncidenceObject(container.firstIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().firstIncidenceId.get(getIdInStorage(elementId)));
 		if (traversalContext == null) {
 			while (((i != null) && (direction != null)
 					&& (direction != Direction.BOTH) && (direction != i
@@ -438,7 +493,7 @@ public abstract class EdgeImpl extends
 	@Override
 	public final Incidence getLastIncidence(Graph traversalContext) {
 		Incidence lastIncidence = localGraphDatabase
-				.getIncidenceObject(container.lastIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().lastIncidenceId.get(getIdInStorage(elementId)));
 		if ((lastIncidence == null) || (traversalContext == null)
 				|| (traversalContext.containsVertex(lastIncidence.getVertex()))) {
 			return lastIncidence;
@@ -1089,7 +1144,7 @@ public abstract class EdgeImpl extends
 	@SuppressWarnings("rawtypes")
 	@Override
 	public GraphElement getSigma() {
-		long sigmaId = container.sigmaId[getIdInStorage(elementId)];
+		long sigmaId = readableContainer().sigmaId.get(getIdInStorage(elementId));
 		if (sigmaId < 0) {
 			return localGraphDatabase.getEdgeObject(-sigmaId);
 		} else {
@@ -1105,22 +1160,24 @@ public abstract class EdgeImpl extends
 			elem.getGlobalId();
 		}
 		if (elem instanceof Edge) {
-			container.sigmaId[getIdInStorage(elementId)] = -sigmaId;
+			writableContainer().sigmaId.put(getIdInStorage(elementId), -sigmaId);
 		} else {
-			container.sigmaId[getIdInStorage(elementId)] = sigmaId;
+			writableContainer().sigmaId.put(getIdInStorage(elementId), sigmaId);
 		}
+		changed();
 	}
 
 	@Override
 	public int getKappa() {
-		return (int) container.kappa[getIdInStorage(elementId)];
+		return (int) readableContainer().kappa.get(getIdInStorage(elementId));
 	}
 
 	@Override
 	public void setKappa(int kappa) {
 		assert getType().getAllowedMaxKappa() >= kappa
 				&& getType().getAllowedMinKappa() <= kappa;
-		container.kappa[getIdInStorage(elementId)] = kappa;
+		writableContainer().kappa.put(getIdInStorage(elementId), kappa);
+		changed();
 	}
 
 	/**
@@ -1178,7 +1235,7 @@ public abstract class EdgeImpl extends
 	@Override
 	public final long getIncidenceListVersion() {
 		assert isValid();
-		return container.incidenceListVersion[getIdInStorage(elementId)];
+		return readableContainer().incidenceListVersion.get(getIdInStorage(elementId));
 	}
 
 	@Override
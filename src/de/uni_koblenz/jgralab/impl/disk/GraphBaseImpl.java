@@ -540,8 +540,57 @@ public abstract class GraphBaseImpl implements Graph {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Returns the number of vertices of this graph and of all its partial
+	 * graphs, whose counts are requested from all partial graphs at once.
+	 *
+	 * @return the number of vertices
+	 */
 	@Override
 	public long getVCount() {
+		List<Integer> partialGraphIds = getPartialGraphIdsForCount();
+		if (partialGraphIds == null) {
+			return getLocalVCount();
+		}
+		return localGraphDatabase.getVCountOfPartialGraphs(partialGraphIds);
+	}
+
+	/**
+	 * Returns the number of edges of this graph and of all its partial
+	 * graphs, whose counts are requested from all partial graphs at once.
+	 *
+	 * @return the number of edges
+	 */
+	@Override
+	public long getECount() {
+		List<Integer> partialGraphIds = getPartialGraphIdsForCount();
+		if (partialGraphIds == null) {
+			return getLocalECount();
+		}
+		return localGraphDatabase.getECountOfPartialGraphs(partialGraphIds);
+	}
+
+	/**
+	 * @return the ids of the partial graph of this graph and of all its
+	 *         partial graphs, or null if this graph has no partial graphs
+	 */
+	private List<Integer> getPartialGraphIdsForCount() {
+		List<Integer> partialGraphIds = localGraphDatabase
+				.getPartialGraphIds(globalSubgraphId);
+		if (partialGraphIds.isEmpty()) {
+			return null;
+		}
+		List<Integer> ids = new ArrayList<Integer>(partialGraphIds.size() + 1);
+		ids.add(getPartialGraphId());
+		ids.addAll(partialGraphIds);
+		return ids;
+	}
+
+	/**
+	 * @return the number of vertices of this graph without the vertices of
+	 *         its partial graphs, which are stored by other graph databases
+	 */
+	public long getLocalVCount() {
 		try {
 			return storingGraphDatabase.getVCount(globalSubgraphId);
 		} catch (RemoteException e) {
@@ -549,8 +598,11 @@ public abstract class GraphBaseImpl implements Graph {
 		}
 	}
 
-	@Override
-	public long getECount() {
+	/**
+	 * @return the number of edges of this graph without the edges of its
+	 *         partial graphs, which are stored by other graph databases
+	 */
+	public long getLocalECount() {
 		try {
 			return storingGraphDatabase.getECount(globalSubgraphId);
 		} catch (RemoteException e) {
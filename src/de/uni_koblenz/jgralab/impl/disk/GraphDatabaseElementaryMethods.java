@@ -4,12 +4,15 @@ import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 import de.uni_koblenz.jgralab.Edge;
 import de.uni_koblenz.jgralab.Graph;
@@ -20,15 +23,17 @@ import de.uni_koblenz.jgralab.ImplementationType;
 import de.uni_koblenz.jgralab.Incidence;
 import de.uni_koblenz.jgralab.JGraLabServer;
 import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralab.impl.AsyncGraphDatabaseAccess;
 import de.uni_koblenz.jgralab.impl.JGraLabServerImpl;
 import de.uni_koblenz.jgralab.impl.ParentEntityKind;
 import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccess;
 import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccessWithInternalMethods;
 import de.uni_koblenz.jgralab.impl.RemoteStorageAccess;
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
 import de.uni_koblenz.jgralab.schema.Schema;
 
 public abstract class GraphDatabaseElementaryMethods implements
-		RemoteGraphDatabaseAccessWithInternalMethods {
+		RemoteGraphDatabaseAccessWithInternalMethods, RemoteCacheAccess {
 
 	// the global subgraph id of the toplevel dhhtgraph
 	public static final long GLOBAL_GRAPH_ID = 0x0000000100000001l;
@@ -72,6 +77,27 @@ public abstract class GraphDatabaseElementaryMethods implements
 		int typeId;
 		List<Integer> partialGraphs;
 		public ParentEntityKind parentEntityKind;
+
+		/**
+		 * @return a copy of this data, as kept by a snapshot
+		 */
+		GraphData copy() {
+			GraphData copy = new GraphData();
+			copy.globalSubgraphId = globalSubgraphId;
+			copy.firstVertexId = firstVertexId;
+			copy.lastVertexId = lastVertexId;
+			copy.firstEdgeId = firstEdgeId;
+			copy.lastEdgeId = lastEdgeId;
+			copy.edgeCount = edgeCount;
+			copy.vertexCount = vertexCount;
+			copy.incidenceCount = incidenceCount;
+			copy.containingElementId = containingElementId;
+			copy.typeId = typeId;
+			copy.partialGraphs = partialGraphs == null ? null
+					: new ArrayList<Integer>(partialGraphs);
+			copy.parentEntityKind = parentEntityKind;
+			return copy;
+		}
 	}
 
 	/**
@@ -179,6 +205,24 @@ public abstract class GraphDatabaseElementaryMethods implements
 
 	protected final Map<Integer, RemoteStorageAccess> remoteDiskStorages;
 
+	/*
+	 * Switches caching of the element data of remote partial graphs on or
+	 * off for the caches created afterwards
+	 */
+	private volatile boolean remoteElementCaching = true;
+
+	/**
+	 * The caches of the element data of the remote partial graphs by their
+	 * partial graph ids
+	 */
+	private final Map<Integer, RemoteElementCache> remoteElementCaches = new HashMap<Integer, RemoteElementCache>();
+
+	/**
+	 * The ids of the partial graphs whose caches of the local element data
+	 * are registered and have to be invalidated before it is changed
+	 */
+	private final Set<Integer> remoteCacheHolders = new HashSet<Integer>();
+
 	/**
 	 * The map of global subgraph ids to the local representation objects. Those
 	 * may be either objects representing a local subgraph or (proxy) objects
@@ -239,8 +283,11 @@ public abstract class GraphDatabaseElementaryMethods implements
 		try {
 			this.localDiskStorage = new DiskStorageManager(
 					(GraphDatabaseBaseImpl) this);
-			this.diskStorageStub = (RemoteStorageAccess) UnicastRemoteObject
-					.exportObject(localDiskStorage, 0);
+			this.diskStorageStub = (RemoteStorageAccess) JGraLabServerImpl
+					.getTransport().exportObject(localDiskStorage,
+							schema.getClass().getClassLoader());
+			localDiskStorage.getMetrics().register(
+					uniqueGraphId + "/" + localPartialGraphId);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -282,6 +329,21 @@ public abstract class GraphDatabaseElementaryMethods implements
 		return data;
 	}
 
+	/**
+	 * @return the data of the local subgraph to read from, which is the data
+	 *         kept by the snapshot the current thread has entered, if any
+	 */
+	protected GraphData getReadableGraphData(int localSubgraphId) {
+		StorageSnapshot snapshot = localDiskStorage.getCurrentSnapshot();
+		if (snapshot != null) {
+			GraphData data = snapshot.getGraphData(localSubgraphId);
+			if (data != null) {
+				return data;
+			}
+		}
+		return getGraphData(localSubgraphId);
+	}
+
 	/**
 	 * Retrieves the hostname that stores all subgraphs with the given partial
 	 * graph id
@@ -311,7 +373,8 @@ public abstract class GraphDatabaseElementaryMethods implements
 	}
 
 	public long getGraphVersion() {
-		return graphVersion;
+		StorageSnapshot snapshot = localDiskStorage.getCurrentSnapshot();
+		return snapshot != null ? snapshot.getGraphVersion() : graphVersion;
 	}
 
 	@Override
@@ -364,15 +427,254 @@ public abstract class GraphDatabaseElementaryMethods implements
 			} catch (RemoteException e) {
 				throw new RuntimeException(e);
 			}
+			if (remoteElementCaching) {
+				remoteAccess = getRemoteElementCache(partialGraphId).wrap(
+						remoteAccess);
+			}
 			remoteDiskStorages.put(partialGraphId, remoteAccess);
 		}
 		return remoteAccess;
 	}
 
+	/**
+	 * @return the graph database storing the partial graph
+	 *         <code>partialGraphId</code>, whose element data is read from
+	 *         the local cache if the partial graph is a remote one
+	 */
+	protected RemoteGraphDatabaseAccessWithInternalMethods getCachingGraphDatabase(
+			int partialGraphId) {
+		if (partialGraphId == localPartialGraphId || !remoteElementCaching) {
+			return getGraphDatabase(partialGraphId);
+		}
+		return getRemoteElementCache(partialGraphId).getGraphDatabase();
+	}
+
+	/**
+	 * @return the asynchronous companion of the graph database storing the
+	 *         partial graph <code>partialGraphId</code>
+	 */
+	public AsyncGraphDatabaseAccess getAsyncGraphDatabase(int partialGraphId) {
+		return new AsyncGraphDatabaseAccess(
+				getCachingGraphDatabase(partialGraphId));
+	}
+
+	/**
+	 * @return the sum of the numbers of vertices of the toplevel graphs of
+	 *         the given partial graphs, which are requested from all partial
+	 *         graphs at once
+	 */
+	public long getVCountOfPartialGraphs(Collection<Integer> partialGraphIds) {
+		return getCountOfPartialGraphs(partialGraphIds, true);
+	}
+
+	/**
+	 * @return the sum of the numbers of edges of the toplevel graphs of the
+	 *         given partial graphs, which are requested from all partial
+	 *         graphs at once
+	 */
+	public long getECountOfPartialGraphs(Collection<Integer> partialGraphIds) {
+		return getCountOfPartialGraphs(partialGraphIds, false);
+	}
+
+	private long getCountOfPartialGraphs(Collection<Integer> partialGraphIds,
+			boolean vertices) {
+		List<Future<Long>> remoteCounts = new ArrayList<Future<Long>>(
+				partialGraphIds.size());
+		long count = 0;
+		for (int partialGraphId : partialGraphIds) {
+			long toplevelGraphId = getToplevelGraphForPartialGraphId(partialGraphId);
+			if (partialGraphId == localPartialGraphId) {
+				try {
+					count += vertices ? getVCount(toplevelGraphId)
+							: getECount(toplevelGraphId);
+				} catch (RemoteException e) {
+					throw new RuntimeException(e);
+				}
+			} else {
+				AsyncGraphDatabaseAccess remoteDb = getAsyncGraphDatabase(partialGraphId);
+				remoteCounts.add(vertices ? remoteDb.getVCount(toplevelGraphId)
+						: remoteDb.getECount(toplevelGraphId));
+			}
+		}
+		for (Future<Long> remoteCount : remoteCounts) {
+			count += AsyncGraphDatabaseAccess.await(remoteCount);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the values of the attribute <code>attributeName</code> of the
+	 *         given vertices, whereby the values of the vertices of each
+	 *         remote partial graph are requested with one call, and all
+	 *         remote partial graphs are called at once
+	 */
+	@Override
+	public Object[] getVertexAttributes(long[] vertexIds, String attributeName) {
+		return getAttributes(vertexIds, attributeName, true);
+	}
+
+	/**
+	 * @return the values of the attribute <code>attributeName</code> of the
+	 *         given edges, whereby the values of the edges of each remote
+	 *         partial graph are requested with one call, and all remote
+	 *         partial graphs are called at once
+	 */
+	@Override
+	public Object[] getEdgeAttributes(long[] edgeIds, String attributeName) {
+		return getAttributes(edgeIds, attributeName, false);
+	}
+
+	private Object[] getAttributes(long[] elementIds, String attributeName,
+			boolean vertices) {
+		Object[] values = new Object[elementIds.length];
+		// the positions of the elements of each remote partial graph
+		Map<Integer, List<Integer>> remotePositions = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i < elementIds.length; i++) {
+			int partialGraphId = getPartialGraphId(elementIds[i]);
+			if (partialGraphId == localPartialGraphId) {
+				continue;
+			}
+			List<Integer> positions = remotePositions.get(partialGraphId);
+			if (positions == null) {
+				positions = new ArrayList<Integer>();
+				remotePositions.put(partialGraphId, positions);
+			}
+			positions.add(i);
+		}
+		Map<Integer, Future<Object[]>> remoteValues = new HashMap<Integer, Future<Object[]>>();
+		for (Map.Entry<Integer, List<Integer>> entry : remotePositions.entrySet()) {
+			List<Integer> positions = entry.getValue();
+			long[] ids = new long[positions.size()];
+			for (int j = 0; j < ids.length; j++) {
+				ids[j] = elementIds[positions.get(j)];
+			}
+			AsyncGraphDatabaseAccess remoteDb = getAsyncGraphDatabase(entry
+					.getKey());
+			remoteValues.put(entry.getKey(), vertices ? remoteDb
+					.getVertexAttributes(ids, attributeName) : remoteDb
+					.getEdgeAttributes(ids, attributeName));
+		}
+		// the local values are read while the remote ones are requested
+		for (int i = 0; i < elementIds.length; i++) {
+			if (getPartialGraphId(elementIds[i]) == localPartialGraphId) {
+				values[i] = vertices ? getVertexObject(elementIds[i])
+						.getAttribute(attributeName) : getEdgeObject(
+						elementIds[i]).getAttribute(attributeName);
+			}
+		}
+		for (Map.Entry<Integer, List<Integer>> entry : remotePositions.entrySet()) {
+			List<Integer> positions = entry.getValue();
+			Object[] partialGraphValues = AsyncGraphDatabaseAccess
+					.await(remoteValues.get(entry.getKey()));
+			for (int j = 0; j < partialGraphValues.length; j++) {
+				values[positions.get(j)] = partialGraphValues[j];
+			}
+		}
+		return values;
+	}
+
+	private RemoteElementCache getRemoteElementCache(int partialGraphId) {
+		synchronized (remoteElementCaches) {
+			RemoteElementCache cache = remoteElementCaches.get(partialGraphId);
+			if (cache == null) {
+				cache = new RemoteElementCache(this, partialGraphId,
+						getGraphDatabase(partialGraphId));
+				remoteElementCaches.put(partialGraphId, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Switches caching of the element data of remote partial graphs on or
+	 * off for this graph database. The switch affects the remote partial
+	 * graphs which are accessed for the first time afterwards. Caching is
+	 * switched on by default.
+	 */
+	public void setRemoteElementCaching(boolean caching) {
+		remoteElementCaching = caching;
+	}
+
+	@Override
+	public void registerRemoteCache(int partialGraphId) {
+		synchronized (remoteCacheHolders) {
+			remoteCacheHolders.add(partialGraphId);
+			localDiskStorage.remotelyCached = true;
+		}
+	}
+
+	@Override
+	public void invalidateRemoteCache(int partialGraphId) {
+		RemoteElementCache cache;
+		synchronized (remoteElementCaches) {
+			cache = remoteElementCaches.get(partialGraphId);
+		}
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+
+	/**
+	 * Invalidates the registered caches of the local element data. It is
+	 * called before the data is changed, and again after the change if a
+	 * cache has registered meanwhile, since such a cache may have read the
+	 * old data. The callbacks return after the caches have been cleared.
+	 */
+	void invalidateRemoteCaches() {
+		Integer[] holders;
+		synchronized (remoteCacheHolders) {
+			if (remoteCacheHolders.isEmpty()) {
+				return;
+			}
+			holders = remoteCacheHolders
+					.toArray(new Integer[remoteCacheHolders.size()]);
+			remoteCacheHolders.clear();
+			localDiskStorage.remotelyCached = false;
+		}
+		for (Integer partialGraphId : holders) {
+			try {
+				((RemoteCacheAccess) getGraphDatabase(partialGraphId))
+						.invalidateRemoteCache(localPartialGraphId);
+			} catch (RemoteException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
 	public DiskStorageManager getLocalStorage() {
 		return localDiskStorage;
 	}
 
+	/**
+	 * Creates a snapshot of the local partial graph, which has to be released
+	 * when it is no longer needed.
+	 *
+	 * @see DiskStorageManager#createSnapshot()
+	 */
+	public StorageSnapshot createSnapshot() {
+		return localDiskStorage.createSnapshot();
+	}
+
+	/**
+	 * Returns the cache and I/O statistics of the local storage, which are
+	 * registered as an MXBean as well.
+	 * 
+	 * @see DiskStorageManager#getMetrics()
+	 */
+	public StorageMetrics getStorageMetrics() {
+		return localDiskStorage.getMetrics();
+	}
+
+	/**
+	 * Writes all elements of the local storage that are held in memory to
+	 * the disk and forces the storage files to the storage device.
+	 * 
+	 * @see DiskStorageManager#checkpoint()
+	 */
+	public void checkpoint() {
+		localDiskStorage.checkpoint();
+	}
+
 	public RemoteStorageAccess getDiskStorage() {
 		return diskStorageStub;
 	}
@@ -527,7 +829,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 		}
 		if (proxy == null) {
 			// create new vertex proxy
-			RemoteGraphDatabaseAccess remoteDatabase = getGraphDatabase(partialGraphId);
+			RemoteGraphDatabaseAccess remoteDatabase = getCachingGraphDatabase(partialGraphId);
 			Class<? extends Vertex> vc = getVertexType(id);
 			proxy = graphFactory.createVertexProxy_DiskBasedStorage(vc, id,
 					(GraphDatabaseBaseImpl) this, remoteDatabase);
@@ -556,7 +858,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 		}
 		if (proxy == null) {
 			// create new vertex proxy
-			RemoteGraphDatabaseAccess remoteDatabase = getGraphDatabase(partialGraphId);
+			RemoteGraphDatabaseAccess remoteDatabase = getCachingGraphDatabase(partialGraphId);
 			Class<? extends Edge> ec = getEdgeType(id);
 			proxy = graphFactory.createEdgeProxy_DiskBasedStorage(ec, id,
 					(GraphDatabaseBaseImpl) this, remoteDatabase);
@@ -571,6 +873,17 @@ public abstract class GraphDatabaseElementaryMethods implements
 	 *         object may be either a local one or a proxy for a remote one
 	 */
 	public Incidence getIncidenceObject(long id) {
+		return getIncidenceObject(id, null);
+	}
+
+	/**
+	 * @return an object realizing the incidence with the given global id. If
+	 *         the class of the incidence is known already, e.g. from an
+	 *         incidence chain, creating a proxy does not need to retrieve it
+	 *         from the remote partial graph.
+	 */
+	public Incidence getIncidenceObject(long id,
+			Class<? extends Incidence> incidenceClass) {
 		if (id == 0)
 			return null;
 		int partialGraphId = getPartialGraphId(id);
@@ -584,8 +897,9 @@ public abstract class GraphDatabaseElementaryMethods implements
 		}
 		if (proxy == null) {
 			// create new vertex proxy
-			RemoteGraphDatabaseAccess remoteDatabase = getGraphDatabase(partialGraphId);
-			Class<? extends Incidence> vc = getIncidenceType(id);
+			RemoteGraphDatabaseAccess remoteDatabase = getCachingGraphDatabase(partialGraphId);
+			Class<? extends Incidence> vc = incidenceClass != null ? incidenceClass
+					: getIncidenceType(id);
 			proxy = graphFactory.createIncidenceProxy_DiskBasedStorage(vc, id,
 					(GraphDatabaseBaseImpl) this, remoteDatabase);
 			ref = new WeakReference<Incidence>(proxy);
@@ -710,7 +1024,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 				throw new RuntimeException(e);
 			}
 		} else {
-			return getGraphData(convertToLocalId(subgraphId)).vertexCount;
+			return getReadableGraphData(convertToLocalId(subgraphId)).vertexCount;
 		}
 	}
 
@@ -729,7 +1043,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 				throw new RuntimeException(e);
 			}
 		} else {
-			return getGraphData(convertToLocalId(globalSubgraphId)).firstVertexId;
+			return getReadableGraphData(convertToLocalId(globalSubgraphId)).firstVertexId;
 		}
 	}
 
@@ -759,7 +1073,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 				throw new RuntimeException(e);
 			}
 		} else {
-			return getGraphData(convertToLocalId(globalSubgraphId)).lastVertexId;
+			return getReadableGraphData(convertToLocalId(globalSubgraphId)).lastVertexId;
 		}
 	}
 
@@ -835,7 +1149,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 				throw new RuntimeException(e);
 			}
 		} else {
-			return getGraphData(convertToLocalId(globalSubgraphId)).firstEdgeId;
+			return getReadableGraphData(convertToLocalId(globalSubgraphId)).firstEdgeId;
 		}
 	}
 
@@ -866,7 +1180,7 @@ public abstract class GraphDatabaseElementaryMethods implements
 				throw new RuntimeException(e);
 			}
 		} else {
-			return getGraphData(convertToLocalId(globalSubgraphId)).lastEdgeId;
+			return getReadableGraphData(convertToLocalId(globalSubgraphId)).lastEdgeId;
 		}
 	}
 
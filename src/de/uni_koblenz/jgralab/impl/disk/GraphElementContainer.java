@@ -1,39 +1,50 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
 
 public abstract class GraphElementContainer extends StorageContainer {
 
+	/* the number of columns of a vertex or edge container */
+	static final int COLUMNS = 8;
+
 	public GraphElementContainer(int id, int size, DiskStorageManager backgroundStorage) {
-		super(id, size, backgroundStorage);
-		incidenceListVersion = new long[size];
-		kappa = new long[size];
-		sigmaId = new long[size];
-		nextElementInGraphId = new long[size];
-		previousElementInGraphId = new long[size];
-		firstIncidenceId = new long[size];
-		lastIncidenceId = new long[size];
+		super(id, backgroundStorage);
+		setBuffer(allocateBuffer(COLUMNS));
 	}
 	
 	public GraphElementContainer() {
 		
 	}
+
+	@Override
+	void setBuffer(ByteBuffer buffer) {
+		this.buffer = buffer;
+		sigmaId = column(buffer, 0);
+		nextElementInGraphId = column(buffer, 1);
+		previousElementInGraphId = column(buffer, 2);
+		firstIncidenceId = column(buffer, 3);
+		lastIncidenceId = column(buffer, 4);
+		incidenceListVersion = column(buffer, 5);
+		types = column(buffer, 6);
+		kappa = column(buffer, 7);
+	}
 	
-	long[] incidenceListVersion;
+	LongBuffer incidenceListVersion;
 	
-	long[] kappa;
+	LongBuffer kappa;
 	
-	long[] sigmaId;
+	LongBuffer sigmaId;
 	
-	long[] nextElementInGraphId;
+	LongBuffer nextElementInGraphId;
 	
-	long[] previousElementInGraphId;
+	LongBuffer previousElementInGraphId;
 	
-	long[] firstIncidenceId;
+	LongBuffer firstIncidenceId;
 	
-	long[] lastIncidenceId;
+	LongBuffer lastIncidenceId;
 	
 	AttributeContainer[] attributes;
 	
-
-	
 }
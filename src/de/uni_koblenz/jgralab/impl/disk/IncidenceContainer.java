@@ -1,17 +1,18 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
 import de.uni_koblenz.jgralab.Incidence;
 
 public class IncidenceContainer extends StorageContainer {
+
+	/* the number of columns of an incidence container */
+	static final int COLUMNS = 7;
 	
 	public IncidenceContainer(int id, int size, DiskStorageManager backgroundStorage) {
-		super(id, size, backgroundStorage);
-		vertexId = new long[size];
-		edgeId = new long[size];
-		nextIncidenceAtVertexId = new long[size];
-		previousIncidenceAtVertexId = new long[size];
-		nextIncidenceAtEdgeId = new long[size];
-		previousIncidenceAtEdgeId = new long[size];
+		super(id, backgroundStorage);
+		setBuffer(allocateBuffer(COLUMNS));
 		incidences = new Incidence[size];
 	}
 	
@@ -19,19 +20,38 @@ public class IncidenceContainer extends StorageContainer {
 		this.id = id;
 		this.backgroundStorage = backgroundStorage;
 	}
+
+	@Override
+	StorageContainer copy() {
+		IncidenceContainer copy = new IncidenceContainer(id, backgroundStorage);
+		copy.setBuffer(copyBuffer(buffer));
+		return copy;
+	}
+
+	@Override
+	void setBuffer(ByteBuffer buffer) {
+		this.buffer = buffer;
+		edgeId = column(buffer, 0);
+		vertexId = column(buffer, 1);
+		nextIncidenceAtEdgeId = column(buffer, 2);
+		nextIncidenceAtVertexId = column(buffer, 3);
+		previousIncidenceAtEdgeId = column(buffer, 4);
+		previousIncidenceAtVertexId = column(buffer, 5);
+		types = column(buffer, 6);
+	}
 	
 	
-	long[] vertexId;
+	LongBuffer vertexId;
 	
-	long[] edgeId;
+	LongBuffer edgeId;
 	
-	long[] nextIncidenceAtVertexId;
+	LongBuffer nextIncidenceAtVertexId;
 	
-	long[] previousIncidenceAtVertexId;
+	LongBuffer previousIncidenceAtVertexId;
 
-	long[] nextIncidenceAtEdgeId;
+	LongBuffer nextIncidenceAtEdgeId;
 	
-	long[] previousIncidenceAtEdgeId;
+	LongBuffer previousIncidenceAtEdgeId;
 		
 	transient Incidence[] incidences;
 
@@ -1,11 +1,7 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
-import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
-import java.nio.LongBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
+import java.nio.ByteBuffer;
 
 import de.uni_koblenz.jgralab.Incidence;
 
@@ -13,66 +9,26 @@ import de.uni_koblenz.jgralab.Incidence;
 
 public class IncidenceContainerReference extends ContainerReference<IncidenceContainer> {
 	
-
-	long[] vertexId;
-	
-	long[] edgeId;
-	
-	long[] nextIncidenceAtVertexId;
-	
-	long[] previousIncidenceAtVertexId;
-
-	long[] nextIncidenceAtEdgeId;
-	
-	long[] previousIncidenceAtEdgeId;
-
-	
-	
-	public IncidenceContainerReference(IncidenceContainer container, ReferenceQueue<IncidenceContainer> queue) {
+	public IncidenceContainerReference(IncidenceContainer container, ReferenceQueue<? super IncidenceContainer> queue) {
 		super(container, queue);
 		backgroundStorage = container.backgroundStorage;
 		id = container.id;
-		types = container.types;
-		edgeId = container.edgeId;
-		vertexId = container.vertexId;
-		nextIncidenceAtEdgeId = container.nextIncidenceAtEdgeId;
-		nextIncidenceAtVertexId = container.nextIncidenceAtVertexId;
-		previousIncidenceAtEdgeId = container.previousIncidenceAtEdgeId;
-		previousIncidenceAtVertexId = container.previousIncidenceAtVertexId;
+		buffer = container.buffer;
 	}
 	
 
+	/*
+	 * creates a reference to a container that has been reloaded into
+	 * <code>buffer</code>
+	 */
 	public IncidenceContainerReference(IncidenceContainer container,
-			FileChannel input, ReferenceQueue<IncidenceContainer> queue) throws IOException {
+			ByteBuffer buffer, ReferenceQueue<? super IncidenceContainer> queue) {
 		super(container, queue);
 		backgroundStorage = container.backgroundStorage;
 		id = container.id;
-
-		container.types = types = new long[DiskStorageManager.CONTAINER_SIZE];
-   		container.edgeId = edgeId = new long[DiskStorageManager.CONTAINER_SIZE];
-		container.vertexId = vertexId = new long[DiskStorageManager.CONTAINER_SIZE];
-   		container.nextIncidenceAtEdgeId = nextIncidenceAtEdgeId = new long[DiskStorageManager.CONTAINER_SIZE];
-  		container.nextIncidenceAtEdgeId = nextIncidenceAtEdgeId = new long[DiskStorageManager.CONTAINER_SIZE];
-   		container.nextIncidenceAtVertexId = nextIncidenceAtVertexId = new long[DiskStorageManager.CONTAINER_SIZE];
-   		container.previousIncidenceAtEdgeId = previousIncidenceAtEdgeId= new long[DiskStorageManager.CONTAINER_SIZE];
-   		container.previousIncidenceAtVertexId = previousIncidenceAtVertexId= new long[DiskStorageManager.CONTAINER_SIZE];
+		container.setBuffer(buffer);
+		this.buffer = buffer;
    		container.incidences = new Incidence[DiskStorageManager.CONTAINER_SIZE];
-   		read(input);
-	}
-	
-	public IncidenceContainerReference(IncidenceContainer container, FileChannel input, IncidenceContainerReference oldRef, ReferenceQueue<IncidenceContainer> queue) throws IOException {
-		super(container, queue);
-		backgroundStorage = container.backgroundStorage;
-		id = container.id;
-		container.types = types = oldRef.types;
-   		container.edgeId = edgeId = oldRef.edgeId;
-		container.vertexId = vertexId = oldRef.vertexId;
-  		container.nextIncidenceAtEdgeId = nextIncidenceAtEdgeId = oldRef.nextIncidenceAtEdgeId;
-   		container.nextIncidenceAtVertexId = nextIncidenceAtVertexId = oldRef.nextIncidenceAtVertexId;
-   		container.previousIncidenceAtEdgeId = previousIncidenceAtEdgeId = oldRef.previousIncidenceAtEdgeId;
-   		container.previousIncidenceAtVertexId = previousIncidenceAtVertexId = oldRef.previousIncidenceAtVertexId;
-   		container.incidences = new Incidence[DiskStorageManager.CONTAINER_SIZE];
-   		read(input);
 	}
 		
 	/**
@@ -83,62 +39,18 @@ public class IncidenceContainerReference extends ContainerReference<IncidenceCon
 	 */
 	public IncidenceContainerReference(IncidenceContainer container,
 			IncidenceContainerReference oldRef,
-			ReferenceQueue<? extends IncidenceContainer> queue) {
+			ReferenceQueue<? super IncidenceContainer> queue) {
 		super(container, queue);
 		backgroundStorage = container.backgroundStorage;
 		id = container.id;
-		container.types = types = oldRef.types;
-   		container.edgeId = edgeId = oldRef.edgeId;
-		container.vertexId = vertexId = oldRef.vertexId;
-  		container.nextIncidenceAtEdgeId = nextIncidenceAtEdgeId = oldRef.nextIncidenceAtEdgeId;
-   		container.nextIncidenceAtVertexId = nextIncidenceAtVertexId = oldRef.nextIncidenceAtVertexId;
-   		container.previousIncidenceAtEdgeId = previousIncidenceAtEdgeId = oldRef.previousIncidenceAtEdgeId;
-   		container.previousIncidenceAtVertexId = previousIncidenceAtVertexId = oldRef.previousIncidenceAtVertexId;
+		container.setBuffer(buffer = oldRef.buffer);
    		container.incidences = new Incidence[DiskStorageManager.CONTAINER_SIZE];
 	}
-
-	void read(FileChannel channel) throws IOException {
-		int bufferSizeInBytes =  DiskStorageManager.CONTAINER_SIZE /* number of entries */ * (6*8 /*edgeId-previousIncAtVertex as long values */ + 8 /*typeId as int value*/ );
-		MappedByteBuffer bb = channel.map(MapMode.READ_ONLY, 0, bufferSizeInBytes);
-		LongBuffer lb = bb.asLongBuffer();
-		lb.get(edgeId);
-		lb.get(vertexId);
-		lb.get(nextIncidenceAtEdgeId);
-		lb.get(nextIncidenceAtVertexId);
-		lb.get(previousIncidenceAtEdgeId);
-		lb.get(previousIncidenceAtVertexId);
-		lb.get(types);
-;
-	}	
 	
 	public String toString() {
 		return "IncidenceStorage " + id;
 	}
 	
-
-
-	void write(FileChannel channel) throws IOException {
-		int bufferSizeInBytes =  DiskStorageManager.CONTAINER_SIZE /* number of entries */ * (6*8 /*edgeId-previousIncAtVertex as long values */ + 8 /*typeId as int value*/ );
-		MappedByteBuffer bb = channel.map(MapMode.READ_WRITE, 0, bufferSizeInBytes);
-		LongBuffer lb = bb.asLongBuffer();
-		lb.put(edgeId);
-		lb.put(vertexId);
-		lb.put(nextIncidenceAtEdgeId);
-		lb.put(nextIncidenceAtVertexId);
-		lb.put(previousIncidenceAtEdgeId);
-		lb.put(previousIncidenceAtVertexId);
-		lb.put(types);
-	}
-	
-	void nullify() {
-		types = null;
-		edgeId = null;
-		vertexId = null;
-		nextIncidenceAtEdgeId = null;
-		previousIncidenceAtEdgeId = null;
-		nextIncidenceAtVertexId = null;
-		previousIncidenceAtVertexId = null;
-	}
 	
 //	
 //	private static void assrt(int exp, int cur) {
@@ -62,6 +62,29 @@ public abstract class IncidenceImpl implements Incidence {
 
 	public IncidenceContainer container;
 
+	/*
+	 * the container to read the data of this incidence from, which is the copy
+	 * kept by the snapshot of the current thread if the container has been
+	 * changed since the snapshot was created
+	 */
+	private final IncidenceContainer readableContainer() {
+		return container.backgroundStorage.readable(container);
+	}
+
+	/*
+	 * the container to change the data of this incidence in
+	 */
+	private final IncidenceContainer writableContainer() {
+		return container.backgroundStorage.writable(container);
+	}
+
+	/*
+	 * completes a change of the data of this incidence
+	 */
+	private final void changed() {
+		container.backgroundStorage.changed();
+	}
+
 	protected IncidenceImpl(long globalId,
 			GraphDatabaseBaseImpl localGraphDatabase,
 			IncidenceContainer container) {
@@ -81,8 +104,9 @@ public abstract class IncidenceImpl implements Incidence {
 						GraphDatabaseBaseImpl.convertToLocalId(DiskStorageManager
 								.getContainerId(GraphDatabaseElementaryMethods
 										.convertToLocalId(globalId))));
-		container.vertexId[getIdInStorage(globalId)] = vertexId;
-		container.edgeId[getIdInStorage(globalId)] = edgeId;
+		writableContainer().vertexId.put(getIdInStorage(globalId), vertexId);
+		writableContainer().edgeId.put(getIdInStorage(globalId), edgeId);
+		changed();
 		this.id = globalId;
 	}
 
@@ -92,23 +116,27 @@ public abstract class IncidenceImpl implements Incidence {
 	}
 
 	void setNextIncidenceAtVertex(IncidenceImpl nextIncidenceAtVertex) {
-		container.nextIncidenceAtVertexId[getIdInStorage(id)] = nextIncidenceAtVertex
-				.getGlobalId();
+		writableContainer().nextIncidenceAtVertexId.put(getIdInStorage(id), nextIncidenceAtVertex
+				.getGlobalId());
+		changed();
 	}
 
 	void setPreviousIncidenceAtVertex(IncidenceImpl previousIncidenceAtVertex) {
-		container.previousIncidenceAtVertexId[getIdInStorage(id)] = previousIncidenceAtVertex
-				.getGlobalId();
+		writableContainer().previousIncidenceAtVertexId.put(getIdInStorage(id), previousIncidenceAtVertex
+				.getGlobalId());
+		changed();
 	}
 
 	void setNextIncidenceAtEdge(IncidenceImpl nextIncidenceAtEdge) {
-		container.nextIncidenceAtEdgeId[getIdInStorage(id)] = nextIncidenceAtEdge
-				.getGlobalId();
+		writableContainer().nextIncidenceAtEdgeId.put(getIdInStorage(id), nextIncidenceAtEdge
+				.getGlobalId());
+		changed();
 	}
 
 	void setPreviousIncidenceAtEdge(IncidenceImpl previousIncidenceAtEdge) {
-		container.previousIncidenceAtEdgeId[getIdInStorage(id)] = previousIncidenceAtEdge
-				.getGlobalId();
+		writableContainer().previousIncidenceAtEdgeId.put(getIdInStorage(id), previousIncidenceAtEdge
+				.getGlobalId());
+		changed();
 	}
 
 	@Override
@@ -120,19 +148,19 @@ public abstract class IncidenceImpl implements Incidence {
 	@Override
 	public Edge getEdge() {
 		return localGraphDatabase
-				.getEdgeObject(container.edgeId[getIdInStorage(id)]);
+				.getEdgeObject(readableContainer().edgeId.get(getIdInStorage(id)));
 	}
 
 	@Override
 	public Vertex getVertex() {
 		return localGraphDatabase
-				.getVertexObject(container.vertexId[getIdInStorage(id)]);
+				.getVertexObject(readableContainer().vertexId.get(getIdInStorage(id)));
 	}
 
 	@Override
 	public final Incidence getNextIncidenceAtEdge(Graph traversalContext) {
 		Incidence currentIncidence = localGraphDatabase
-				.getIncidenceObject(container.nextIncidenceAtEdgeId[getIdInStorage(id)]);
+				.getIncidenceObject(readableContainer().nextIncidenceAtEdgeId.get(getIdInStorage(id)));
 		while ((traversalContext != null)
 				&& (currentIncidence != null)
 				&& (!traversalContext.containsVertex(currentIncidence
@@ -145,7 +173,7 @@ public abstract class IncidenceImpl implements Incidence {
 	@Override
 	public final Incidence getNextIncidenceAtVertex(Graph traversalContext) {
 		Incidence currentIncidence = localGraphDatabase
-				.getIncidenceObject(container.nextIncidenceAtVertexId[getIdInStorage(id)]);
+				.getIncidenceObject(readableContainer().nextIncidenceAtVertexId.get(getIdInStorage(id)));
 		while ((traversalContext != null) && (currentIncidence != null)
 				&& (!traversalContext.containsEdge(currentIncidence.getEdge()))) {
 			currentIncidence = currentIncidence.getNextIncidenceAtVertex();
@@ -156,7 +184,7 @@ public abstract class IncidenceImpl implements Incidence {
 	@Override
 	public Incidence getPreviousIncidenceAtEdge(Graph traversalContext) {
 		Incidence currentIncidence = localGraphDatabase
-				.getIncidenceObject(container.previousIncidenceAtEdgeId[getIdInStorage(id)]);
+				.getIncidenceObject(readableContainer().previousIncidenceAtEdgeId.get(getIdInStorage(id)));
 		while ((traversalContext != null)
 				&& (currentIncidence != null)
 				&& (!traversalContext.containsVertex(currentIncidence
@@ -169,7 +197,7 @@ public abstract class IncidenceImpl implements Incidence {
 	@Override
 	public Incidence getPreviousIncidenceAtVertex(Graph traversalContext) {
 		Incidence currentIncidence = localGraphDatabase
-				.getIncidenceObject(container.previousIncidenceAtVertexId[getIdInStorage(id)]);
+				.getIncidenceObject(readableContainer().previousIncidenceAtVertexId.get(getIdInStorage(id)));
 		while ((traversalContext != null) && (currentIncidence != null)
 				&& (!traversalContext.containsEdge(currentIncidence.getEdge()))) {
 			currentIncidence = currentIncidence.getPreviousIncidenceAtVertex();
@@ -184,9 +212,9 @@ public abstract class IncidenceImpl implements Incidence {
 						.getTraversalContext()
 						.containsVertex(
 								localGraphDatabase
-										.getVertexObject(container.vertexId[getIdInStorage(id)]));
+										.getVertexObject(readableContainer().vertexId.get(getIdInStorage(id))));
 		return localGraphDatabase.getVertexObject(
-				container.vertexId[getIdInStorage(id)]).getIncidentEdges(
+				readableContainer().vertexId.get(getIdInStorage(id))).getIncidentEdges(
 				traversalContext, getDirection());
 	}
 
@@ -197,16 +225,16 @@ public abstract class IncidenceImpl implements Incidence {
 						.getTraversalContext()
 						.containsVertex(
 								localGraphDatabase
-										.getVertexObject(container.vertexId[getIdInStorage(id)]));
+										.getVertexObject(readableContainer().vertexId.get(getIdInStorage(id))));
 		return localGraphDatabase.getVertexObject(
-				container.vertexId[getIdInStorage(id)]).getIncidentEdges(
+				readableContainer().vertexId.get(getIdInStorage(id))).getIncidentEdges(
 				traversalContext, getDirection().getOppositeDirection());
 	}
 
 	@Override
 	public Vertex getThis(Graph traversalContext) {
 		if (!localGraphDatabase.getEdgeObject(
-				container.edgeId[getIdInStorage(id)]).isBinary()) {
+				readableContainer().edgeId.get(getIdInStorage(id))).isBinary()) {
 			throw new UnsupportedOperationException(
 					"This method is only supported by binary Edges.");
 		} else if (getGraph().getTraversalContext() == null
@@ -214,9 +242,9 @@ public abstract class IncidenceImpl implements Incidence {
 						.getTraversalContext()
 						.containsVertex(
 								localGraphDatabase
-										.getVertexObject(container.vertexId[getIdInStorage(id)]))) {
+										.getVertexObject(readableContainer().vertexId.get(getIdInStorage(id))))) {
 			return localGraphDatabase
-					.getVertexObject(container.vertexId[getIdInStorage(id)]);
+					.getVertexObject(readableContainer().vertexId.get(getIdInStorage(id)));
 		} else {
 			return null;
 		}
@@ -229,16 +257,16 @@ public abstract class IncidenceImpl implements Incidence {
 						.getTraversalContext()
 						.containsEdge(
 								localGraphDatabase
-										.getEdgeObject(container.edgeId[getIdInStorage(id)]));
+										.getEdgeObject(readableContainer().edgeId.get(getIdInStorage(id))));
 		return localGraphDatabase.getEdgeObject(
-				container.edgeId[getIdInStorage(id)]).getIncidentVertices(
+				readableContainer().edgeId.get(getIdInStorage(id))).getIncidentVertices(
 				traversalContext, getDirection());
 	}
 
 	@Override
 	public Vertex getThat(Graph traversalContext) {
 		Edge incidentEdge = localGraphDatabase
-				.getEdgeObject(container.edgeId[getIdInStorage(id)]);
+				.getEdgeObject(readableContainer().edgeId.get(getIdInStorage(id)));
 		if (!incidentEdge.isBinary()) {
 			throw new UnsupportedOperationException(
 					"This method is only supported by binary Edges.");
@@ -265,9 +293,9 @@ public abstract class IncidenceImpl implements Incidence {
 						.getTraversalContext()
 						.containsEdge(
 								localGraphDatabase
-										.getEdgeObject(container.edgeId[getIdInStorage(id)]));
+										.getEdgeObject(readableContainer().edgeId.get(getIdInStorage(id))));
 		return localGraphDatabase.getEdgeObject(
-				container.edgeId[getIdInStorage(id)]).getIncidentVertices(
+				readableContainer().edgeId.get(getIdInStorage(id))).getIncidentVertices(
 				traversalContext, getDirection().getOppositeDirection());
 	}
 
@@ -331,7 +359,7 @@ public abstract class IncidenceImpl implements Incidence {
 	public Incidence getNextIncidenceAtEdge() {
 		if (getGraph().getTraversalContext() == null) {
 			return localGraphDatabase
-					.getIncidenceObject(container.nextIncidenceAtEdgeId[getIdInStorage(id)]);
+					.getIncidenceObject(readableContainer().nextIncidenceAtEdgeId.get(getIdInStorage(id)));
 		} else {
 			return getNextIncidenceAtEdge(getGraph().getTraversalContext());
 		}
@@ -341,7 +369,7 @@ public abstract class IncidenceImpl implements Incidence {
 	public final Incidence getNextIncidenceAtEdge(Direction direction) {
 		if (getGraph().getTraversalContext() == null) {
 			Incidence i = localGraphDatabase
-					.getIncidenceObject(container.nextIncidenceAtEdgeId[getIdInStorage(id)]);
+					.getIncidenceObject(readableContainer().nextIncidenceAtEdgeId.get(getIdInStorage(id)));
 			if ((direction != null) && (direction != Direction.BOTH)) {
 				while ((i != null) && (direction != i.getDirection())) {
 					i = i.getNextIncidenceAtEdge();
@@ -396,7 +424,7 @@ public abstract class IncidenceImpl implements Incidence {
 	public final Incidence getNextIncidenceAtEdge(Graph traversalContext,
 			Direction direction) {
 		Incidence i = localGraphDatabase
-				.getIncidenceObject(container.nextIncidenceAtEdgeId[getIdInStorage(id)]);
+				.getIncidenceObject(readableContainer().nextIncidenceAtEdgeId.get(getIdInStorage(id)));
 		if (traversalContext == null) {
 			while (((i != null) && (direction != null)
 					&& (direction != Direction.BOTH) && (direction != i
@@ -498,7 +526,7 @@ public abstract class IncidenceImpl implements Incidence {
 	public final Incidence getNextIncidenceAtVertex(Direction direction) {
 		if (getGraph().getTraversalContext() == null) {
 			Incidence i = localGraphDatabase
-					.getIncidenceObject(container.nextIncidenceAtVertexId[getIdInStorage(id)]);
+					.getIncidenceObject(readableContainer().nextIncidenceAtVertexId.get(getIdInStorage(id)));
 			if ((direction != null) && (direction != Direction.BOTH)) {
 				while ((i != null) && (direction != i.getDirection())) {
 					i = i.getNextIncidenceAtVertex();
@@ -554,7 +582,7 @@ public abstract class IncidenceImpl implements Incidence {
 	public final Incidence getNextIncidenceAtVertex(Graph traversalContext,
 			Direction direction) {
 		Incidence i = localGraphDatabase
-				.getIncidenceObject(container.nextIncidenceAtVertexId[getIdInStorage(id)]);
+				.getIncidenceObject(readableContainer().nextIncidenceAtVertexId.get(getIdInStorage(id)));
 		if (traversalContext == null) {
 			while (((i != null) && (direction != null)
 					&& (direction != Direction.BOTH) && (direction != i
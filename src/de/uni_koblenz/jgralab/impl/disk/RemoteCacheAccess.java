@@ -0,0 +1,27 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Callbacks between the disk based graph databases of the partial graphs of
+ * a distributed graph, which keep the caches of remote element data valid.
+ *
+ * @see RemoteElementCache
+ */
+public interface RemoteCacheAccess extends Remote {
+
+	/**
+	 * Registers the cache of the partial graph <code>partialGraphId</code>,
+	 * which is invalidated by the next change of the local element data
+	 */
+	public void registerRemoteCache(int partialGraphId) throws RemoteException;
+
+	/**
+	 * Drops all data of the partial graph <code>partialGraphId</code> that
+	 * is cached locally
+	 */
+	public void invalidateRemoteCache(int partialGraphId)
+			throws RemoteException;
+
+}
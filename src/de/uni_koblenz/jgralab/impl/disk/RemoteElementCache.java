@@ -0,0 +1,233 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccessWithInternalMethods;
+import de.uni_koblenz.jgralab.impl.RemoteStorageAccess;
+
+/**
+ * Caches the element data of one remote partial graph, i.e. types, kappa and
+ * sigma, the links of the vertex, edge and incidence lists, the incidence
+ * list versions and the attribute values, so repeated reads of remote
+ * elements, e.g. by proxies or GReQL evaluations, are served locally.
+ *
+ * The cache is kept valid by the remote partial graph: before it fills the
+ * cache, the cache registers at the remote graph database, which invalidates
+ * it when its element data is changed the next time. The invalidation
+ * happens before the change, and once more after the change if the cache
+ * has registered while the change was in progress, so values read during a
+ * change are never kept. The registration is dropped by the invalidation,
+ * so a partial graph that is changed frequently calls back only once per
+ * registration, and the cache registers again when it is filled after the
+ * change.
+ *
+ * The remote graph database and its storage are wrapped by dynamic proxies,
+ * which answer the cached getters from the cache and forward all other calls.
+ */
+final class RemoteElementCache {
+
+	/*
+	 * the maximum number of cached values, the cache is cleared when it is
+	 * full
+	 */
+	private static final int MAX_CACHED_VALUES = 1 << 18;
+
+	/* stands for cached null values, e.g. of unset attributes */
+	private static final Object NULL = new Object();
+
+	/*
+	 * the getters of the graph database which read the data of a single
+	 * element, whose id is their first argument. The data of subgraphs, e.g.
+	 * the first vertex or the number of vertices, is not cached.
+	 */
+	private static final Set<String> CACHED_DATABASE_METHODS = new HashSet<String>(
+			Arrays.asList("getKappaOfVertexId", "getKappaOfEdgeId",
+					"getSigmaIdOfVertexId", "getSigmaIdOfEdgeId",
+					"getVertexTypeId", "getEdgeTypeId", "getIncidenceTypeId",
+					"getNextVertexId", "getPreviousVertexId",
+					"getNextEdgeId", "getPreviousEdgeId",
+					"getIncidenceListVersionOfVertexId",
+					"getIncidenceListVersionOfEdgeId",
+					"getFirstIncidenceIdAtVertexId",
+					"getLastIncidenceIdAtVertexId",
+					"getNextIncidenceIdAtVertexId",
+					"getPreviousIncidenceIdAtVertexId",
+					"getFirstIncidenceIdAtEdgeId",
+					"getLastIncidenceIdAtEdgeId",
+					"getNextIncidenceIdAtEdgeId",
+					"getPreviousIncidenceIdAtEdgeId",
+					"getEdgeIdAtIncidenceId", "getVertexIdAtIncidenceId",
+					"getVertexAttribute", "getEdgeAttribute"));
+
+	private final GraphDatabaseElementaryMethods localDatabase;
+
+	private final int partialGraphId;
+
+	private final RemoteGraphDatabaseAccessWithInternalMethods remoteDatabase;
+
+	private final RemoteGraphDatabaseAccessWithInternalMethods cachingDatabase;
+
+	/*
+	 * the cached values by the called method followed by its arguments
+	 */
+	private final ConcurrentHashMap<List<Object>, Object> values = new ConcurrentHashMap<List<Object>, Object>();
+
+	/*
+	 * the number of invalidations, values read before an invalidation must
+	 * not be cached after it
+	 */
+	private long generation = 0;
+
+	private boolean registered = false;
+
+	RemoteElementCache(GraphDatabaseElementaryMethods localDatabase,
+			int partialGraphId,
+			RemoteGraphDatabaseAccessWithInternalMethods remoteDatabase) {
+		this.localDatabase = localDatabase;
+		this.partialGraphId = partialGraphId;
+		this.remoteDatabase = remoteDatabase;
+		cachingDatabase = (RemoteGraphDatabaseAccessWithInternalMethods) Proxy
+				.newProxyInstance(
+						RemoteGraphDatabaseAccessWithInternalMethods.class
+								.getClassLoader(),
+						new Class<?>[] { RemoteGraphDatabaseAccessWithInternalMethods.class },
+						new CachingHandler(remoteDatabase, false));
+	}
+
+	/**
+	 * @return the remote graph database, whose element getters are answered
+	 *         by this cache
+	 */
+	RemoteGraphDatabaseAccessWithInternalMethods getGraphDatabase() {
+		return cachingDatabase;
+	}
+
+	/**
+	 * @return <code>storage</code>, the storage of the remote partial graph,
+	 *         whose getters are answered by this cache
+	 */
+	RemoteStorageAccess wrap(RemoteStorageAccess storage) {
+		return (RemoteStorageAccess) Proxy.newProxyInstance(
+				RemoteStorageAccess.class.getClassLoader(),
+				new Class<?>[] { RemoteStorageAccess.class },
+				new CachingHandler(storage, true));
+	}
+
+	/**
+	 * Drops all cached values, called back by the remote graph database
+	 * before its element data is changed
+	 */
+	synchronized void invalidate() {
+		generation++;
+		registered = false;
+		values.clear();
+	}
+
+	/**
+	 * Registers this cache at the remote graph database unless it is
+	 * registered already
+	 *
+	 * @return the generation the values that are read now belong to
+	 */
+	private long prepareFill() throws RemoteException {
+		long fillGeneration;
+		synchronized (this) {
+			if (registered) {
+				return generation;
+			}
+			fillGeneration = generation;
+		}
+		// don't block invalidations while the remote database is called
+		((RemoteCacheAccess) remoteDatabase)
+				.registerRemoteCache(localDatabase.localPartialGraphId);
+		synchronized (this) {
+			if (fillGeneration == generation) {
+				registered = true;
+			}
+		}
+		return fillGeneration;
+	}
+
+	private void put(long fillGeneration, List<Object> key, Object value) {
+		synchronized (this) {
+			if (!registered || fillGeneration != generation) {
+				return;
+			}
+			if (values.size() >= MAX_CACHED_VALUES) {
+				values.clear();
+			}
+			values.put(key, value == null ? NULL : value);
+		}
+	}
+
+	private boolean isCached(Method method, Object[] args, boolean storage) {
+		if (storage) {
+			// all getters of the storage read the data of a single element
+			return method.getName().startsWith("get") && args != null
+					&& args.length == 1;
+		}
+		return CACHED_DATABASE_METHODS.contains(method.getName())
+				&& GraphDatabaseElementaryMethods
+						.getPartialGraphId((Long) args[0]) == partialGraphId;
+	}
+
+	private final class CachingHandler implements InvocationHandler {
+
+		private final Object target;
+
+		private final boolean storage;
+
+		CachingHandler(Object target, boolean storage) {
+			this.target = target;
+			this.storage = storage;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				if (method.getName().equals("equals")) {
+					return proxy == args[0];
+				} else if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else {
+					return "cached " + target;
+				}
+			}
+			if (!isCached(method, args, storage)) {
+				return forward(method, args);
+			}
+			Object[] keyElements = new Object[args.length + 1];
+			keyElements[0] = method;
+			System.arraycopy(args, 0, keyElements, 1, args.length);
+			List<Object> key = Arrays.asList(keyElements);
+			Object value = values.get(key);
+			if (value != null) {
+				return value == NULL ? null : value;
+			}
+			long fillGeneration = prepareFill();
+			value = forward(method, args);
+			put(fillGeneration, key, value);
+			return value;
+		}
+
+		private Object forward(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,284 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.uni_koblenz.jgralab.impl.disk.DiskStorageManager.Durability;
+
+/**
+ * The file that stores all containers of one kind, e.g. all vertex containers
+ * or all edge attribute containers. Every container occupies a slot of a
+ * fixed size at the position given by its id. Since a single file would have
+ * to be mapped in pieces anyway, the file is split into segments of
+ * SEGMENT_CONTAINERS slots, each of which is a temporary file of its own that
+ * is created when the first of its containers is written. This replaces the
+ * former file per container and keeps the number of open files small even for
+ * graphs with hundreds of millions of elements.
+ * 
+ * Containers are written in batches: their contents are staged with
+ * {@link #stage(int, ByteBuffer)} and written by {@link #flush(Durability)},
+ * which sorts them by their slots and writes containers in adjacent slots with
+ * a single gathering write.
+ */
+final class SegmentedContainerFile {
+
+	private static final int SEGMENT_BITS = 8;
+
+	static final int SEGMENT_CONTAINERS = 1 << SEGMENT_BITS;
+
+	private static final int SEGMENT_MASK = SEGMENT_CONTAINERS - 1;
+
+	private final String baseName;
+
+	private final String randomId;
+
+	private final int slotSize;
+
+	private final ContainerDirectory<FileChannel> segments = new ContainerDirectory<FileChannel>();
+
+	private int segmentCount = 0;
+
+	/*
+	 * contents staged for the next flush by their container ids. A container
+	 * that is staged again replaces its earlier content, so the contents of
+	 * a failed flush don't pile up
+	 */
+	private final TreeMap<Integer, ByteBuffer> staged = new TreeMap<Integer, ByteBuffer>();
+
+	private static final class StagedContainer {
+		final int containerId;
+		final ByteBuffer content;
+
+		StagedContainer(int containerId, ByteBuffer content) {
+			this.containerId = containerId;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * @param baseName
+	 *            the prefix of the names of the segment files, which are
+	 *            also used to report their I/O in the storage metrics
+	 * @param randomId
+	 *            an id that distinguishes the files of this storage from
+	 *            those of other storages
+	 * @param slotSize
+	 *            the number of bytes reserved for every container
+	 */
+	SegmentedContainerFile(String baseName, String randomId, int slotSize) {
+		this.baseName = baseName;
+		this.randomId = randomId;
+		this.slotSize = slotSize;
+	}
+
+	String getBaseName() {
+		return baseName;
+	}
+
+	int getSlotSize() {
+		return slotSize;
+	}
+
+	/**
+	 * Maps the slot of the container <code>containerId</code> into memory.
+	 * The segment containing the slot is created if it does not exist yet,
+	 * and grows if the slot lies beyond its end.
+	 */
+	MappedByteBuffer map(int containerId, MapMode mode) throws IOException {
+		return getSegment(containerId).map(mode, getPosition(containerId),
+				slotSize);
+	}
+
+	/**
+	 * Reads the slot of the container <code>containerId</code> into
+	 * <code>target</code>, which is filled from its start to its capacity.
+	 * Reading does not change the position of the segment, so any number of
+	 * threads may read at once.
+	 */
+	void read(int containerId, ByteBuffer target) throws IOException {
+		FileChannel segment = getSegment(containerId);
+		long position = getPosition(containerId);
+		target.clear();
+		while (target.hasRemaining()) {
+			if (segment.read(target, position + target.position()) < 0) {
+				throw new IOException("Container " + containerId + " of "
+						+ baseName + " has not been written completely");
+			}
+		}
+		target.clear();
+	}
+
+	/**
+	 * @return true if the slot of the container <code>containerId</code>
+	 *         starts within its segment, i.e. the container or one behind it
+	 *         in the same segment has been written. A container that does not
+	 *         fill its slot, such as an attribute container, may end before
+	 *         the end of its slot.
+	 */
+	boolean contains(int containerId) throws IOException {
+		FileChannel segment;
+		synchronized (segments) {
+			segment = segments.get(containerId >>> SEGMENT_BITS);
+		}
+		return segment != null
+				&& segment.size() > getPosition(containerId);
+	}
+
+	/**
+	 * Stages the content of the container <code>containerId</code> for the
+	 * next flush. The content is written from its position to its limit, at
+	 * the start of the container's slot. If the container is staged more
+	 * than once, the content staged last is written.
+	 */
+	synchronized void stage(int containerId, ByteBuffer content) {
+		if (content.remaining() > slotSize) {
+			throw new IllegalArgumentException("Content of container "
+					+ containerId + " exceeds the slot size of " + slotSize
+					+ " bytes");
+		}
+		staged.put(containerId, content);
+	}
+
+	/**
+	 * @return the number of containers staged for the next flush
+	 */
+	synchronized int getStagedCount() {
+		return staged.size();
+	}
+
+	/**
+	 * Writes all staged containers. With {@link Durability#WRITE}, every
+	 * container is written and forced on its own. Otherwise, the containers
+	 * are written in the order of their slots, and a run of containers that
+	 * fill their slots and lie in adjacent slots of the same segment is
+	 * written with a single gathering write. With {@link Durability#BATCH},
+	 * every segment that has been written to is forced afterwards. The
+	 * containers are unstaged once all of them have been written, so if a
+	 * write fails, they are written again by the next flush.
+	 * 
+	 * @return the number of bytes written
+	 */
+	synchronized long flush(Durability durability) throws IOException {
+		if (staged.isEmpty()) {
+			return 0;
+		}
+		StagedContainer[] batch = new StagedContainer[staged.size()];
+		int n = 0;
+		for (Map.Entry<Integer, ByteBuffer> e : staged.entrySet()) {
+			batch[n++] = new StagedContainer(e.getKey(), e.getValue());
+		}
+		long written = 0;
+
+		if (durability == Durability.WRITE) {
+			for (StagedContainer c : batch) {
+				FileChannel segment = getSegment(c.containerId);
+				written += write(segment, new ByteBuffer[] { c.content },
+						getPosition(c.containerId));
+				segment.force(true);
+			}
+			staged.clear();
+			return written;
+		}
+
+		List<FileChannel> touched = new ArrayList<FileChannel>();
+		int runStart = 0;
+		for (int i = 1; i <= batch.length; i++) {
+			if (i == batch.length || !continuesRun(batch[i - 1], batch[i])) {
+				FileChannel segment = getSegment(batch[runStart].containerId);
+				ByteBuffer[] run = new ByteBuffer[i - runStart];
+				for (int j = runStart; j < i; j++) {
+					run[j - runStart] = batch[j].content;
+				}
+				written += write(segment, run,
+						getPosition(batch[runStart].containerId));
+				if (!touched.contains(segment)) {
+					touched.add(segment);
+				}
+				runStart = i;
+			}
+		}
+
+		if (durability == Durability.BATCH) {
+			for (FileChannel segment : touched) {
+				segment.force(true);
+			}
+		}
+		staged.clear();
+		return written;
+	}
+
+	/*
+	 * a container continues a run if it is in the next slot of the same
+	 * segment and the previous container fills its slot completely
+	 */
+	private boolean continuesRun(StagedContainer previous,
+			StagedContainer next) {
+		return next.containerId == previous.containerId + 1
+				&& (next.containerId & SEGMENT_MASK) != 0
+				&& previous.content.remaining() == slotSize;
+	}
+
+	private long write(FileChannel segment, ByteBuffer[] contents,
+			long position) throws IOException {
+		long remaining = 0;
+		for (ByteBuffer content : contents) {
+			remaining += content.remaining();
+		}
+		long written = 0;
+		synchronized (segment) {
+			segment.position(position);
+			while (written < remaining) {
+				written += segment.write(contents);
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Forces all segments of this file to the storage device
+	 */
+	void forceAll() throws IOException {
+		FileChannel[] channels;
+		synchronized (segments) {
+			channels = new FileChannel[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				channels[i] = segments.get(i);
+			}
+		}
+		for (FileChannel channel : channels) {
+			if (channel != null) {
+				channel.force(true);
+			}
+		}
+	}
+
+	private long getPosition(int containerId) {
+		return (long) (containerId & SEGMENT_MASK) * slotSize;
+	}
+
+	private FileChannel getSegment(int containerId) throws IOException {
+		int segmentId = containerId >>> SEGMENT_BITS;
+		synchronized (segments) {
+			FileChannel channel = segments.get(segmentId);
+			if (channel == null) {
+				RandomAccessFile file = new RandomAccessFile(
+						File.createTempFile(baseName + "_" + randomId + "_"
+								+ Integer.toString(segmentId), "tmp"), "rw");
+				channel = file.getChannel();
+				segments.set(segmentId, channel);
+				segmentCount = Math.max(segmentCount, segmentId + 1);
+			}
+			return channel;
+		}
+	}
+
+}
@@ -1,5 +1,9 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
 
 public abstract class StorageContainer {
 
@@ -7,18 +11,32 @@ public abstract class StorageContainer {
 	
 	int id;
 	
+	/*
+	 * the data of the container, which is kept outside of the Java heap and
+	 * laid out like the slot of the container in its file. The columns of
+	 * the container, such as the types, are views of it
+	 */
+	ByteBuffer buffer;
+	
 	/* stores the type of the element or null if the element is null */
-	long[] types;
+	LongBuffer types;
 	
-	StorageContainer nextInQueue = null;
+	/* the slot of the container in the ContainerClock, or -1 if it has none */
+	volatile int clockSlot = -1;
 	
-	StorageContainer previousInQueue = null;
+	/* set whenever the container is accessed, cleared by the clock hand */
+	volatile boolean referenced = false;
+
+	/*
+	 * the number of the latest snapshot that has been created when the
+	 * container was copied for the pinned snapshots the last time
+	 */
+	volatile long preservedSnapshot = 0;
 
 	public DiskStorageManager backgroundStorage;
 
-	public StorageContainer(int id, int size, DiskStorageManager backgroundStorage) {
+	public StorageContainer(int id, DiskStorageManager backgroundStorage) {
 		this.id = id;
-		types = new long[size];
 		this.backgroundStorage = backgroundStorage;
 	}
 
@@ -26,5 +44,52 @@ public abstract class StorageContainer {
 		
 	}
 
+	/**
+	 * Makes the container a view of <code>buffer</code>, which holds its
+	 * columns one behind the other
+	 */
+	abstract void setBuffer(ByteBuffer buffer);
+
+	/**
+	 * @return a container with the id of this container whose data is a
+	 *         copy of the data of this container, kept on the Java heap
+	 */
+	abstract StorageContainer copy();
+
+	/**
+	 * @return a copy of <code>buffer</code> on the Java heap
+	 */
+	static ByteBuffer copyBuffer(ByteBuffer buffer) {
+		ByteBuffer source = buffer.duplicate();
+		source.clear();
+		ByteBuffer copy = ByteBuffer.allocate(source.capacity()).order(
+				buffer.order());
+		copy.put(source);
+		copy.clear();
+		return copy;
+	}
+
+	/**
+	 * Allocates the memory for a container with <code>columns</code>
+	 * columns outside of the Java heap. The container files are temporary,
+	 * so they use the native byte order.
+	 */
+	static ByteBuffer allocateBuffer(int columns) {
+		return ByteBuffer.allocateDirect(
+				columns * DiskStorageManager.CONTAINER_SIZE * 8).order(
+				ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @return a view of the column <code>index</code> of
+	 *         <code>buffer</code>
+	 */
+	static LongBuffer column(ByteBuffer buffer, int index) {
+		ByteBuffer column = buffer.duplicate();
+		column.position(index * DiskStorageManager.CONTAINER_SIZE * 8);
+		column.limit((index + 1) * DiskStorageManager.CONTAINER_SIZE * 8);
+		return column.slice().order(buffer.order()).asLongBuffer();
+	}
+
 
 }
@@ -0,0 +1,150 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.uni_koblenz.jgralab.Edge;
+import de.uni_koblenz.jgralab.Incidence;
+import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralab.impl.disk.GraphDatabaseElementaryMethods.GraphData;
+
+/**
+ * A read-only view of the local graph as it was when the snapshot was
+ * created. As long as a snapshot is pinned, a container or an attribute
+ * container that is about to be changed for the first time since the
+ * snapshot was created is copied, and the copy is kept by the snapshot.
+ * Containers that are not changed are shared with the current graph, so a
+ * snapshot costs nothing until the graph is changed.
+ *
+ * A thread sees the snapshot after it has called {@link #enter()}, all
+ * reads of the thread, e.g. by iterators or GReQL queries, then return the
+ * state of the snapshot and don't fail with a
+ * <code>ConcurrentModificationException</code> if the graph is changed
+ * meanwhile. The thread must not change the graph while it is in the
+ * snapshot. Since the operations that change the graph consist of several
+ * steps, a snapshot should be created by the changing thread between two
+ * operations, and may then be handed over to other threads.
+ *
+ * Only the local partial graph is covered by a snapshot.
+ */
+public final class StorageSnapshot {
+
+	private final DiskStorageManager storage;
+
+	/* snapshots are numbered in the order they are created */
+	final long number;
+
+	private final long graphVersion;
+
+	private final long vertexListVersion;
+
+	private final long edgeListVersion;
+
+	private final List<GraphData> graphData;
+
+	/* copies of changed containers and attribute containers by their ids */
+	final ConcurrentHashMap<Integer, StorageContainer> vertexContainers = new ConcurrentHashMap<Integer, StorageContainer>();
+	final ConcurrentHashMap<Integer, StorageContainer> edgeContainers = new ConcurrentHashMap<Integer, StorageContainer>();
+	final ConcurrentHashMap<Integer, StorageContainer> incidenceContainers = new ConcurrentHashMap<Integer, StorageContainer>();
+	final ConcurrentHashMap<Integer, AttributeContainer> vertexAttributes = new ConcurrentHashMap<Integer, AttributeContainer>();
+	final ConcurrentHashMap<Integer, AttributeContainer> edgeAttributes = new ConcurrentHashMap<Integer, AttributeContainer>();
+
+	/*
+	 * element objects for elements that have been deleted, or whose ids
+	 * have been reused by other elements, since the snapshot was created
+	 */
+	final ConcurrentHashMap<Integer, Vertex> vertices = new ConcurrentHashMap<Integer, Vertex>();
+	final ConcurrentHashMap<Integer, Edge> edges = new ConcurrentHashMap<Integer, Edge>();
+	final ConcurrentHashMap<Integer, Incidence> incidences = new ConcurrentHashMap<Integer, Incidence>();
+
+	volatile boolean released = false;
+
+	StorageSnapshot(DiskStorageManager storage, long number,
+			GraphDatabaseElementaryMethods graphDatabase) {
+		this.storage = storage;
+		this.number = number;
+		graphVersion = graphDatabase.graphVersion;
+		vertexListVersion = graphDatabase.vertexListVersion;
+		edgeListVersion = graphDatabase.edgeListVersion;
+		graphData = new ArrayList<GraphData>(
+				graphDatabase.localSubgraphData.size());
+		for (GraphData data : graphDatabase.localSubgraphData) {
+			graphData.add(data.copy());
+		}
+	}
+
+	/**
+	 * Makes the current thread see the graph as it was when this snapshot
+	 * was created, until {@link #exit()} is called
+	 */
+	public void enter() {
+		if (released) {
+			throw new IllegalStateException("The snapshot has been released");
+		}
+		storage.enterSnapshot(this);
+	}
+
+	/**
+	 * Makes the current thread see the current graph again
+	 */
+	public void exit() {
+		storage.exitSnapshot(this);
+	}
+
+	/**
+	 * Unpins this snapshot, so changed containers are no longer copied for
+	 * it. The snapshot must not be entered afterwards.
+	 */
+	public void release() {
+		if (!released) {
+			released = true;
+			storage.releaseSnapshot(this);
+		}
+	}
+
+	/**
+	 * @return the version of the graph when this snapshot was created
+	 */
+	public long getGraphVersion() {
+		return graphVersion;
+	}
+
+	long getVertexListVersion() {
+		return vertexListVersion;
+	}
+
+	long getEdgeListVersion() {
+		return edgeListVersion;
+	}
+
+	/**
+	 * @return the data of the local subgraph as it was when this snapshot
+	 *         was created, or null if the subgraph has been created later
+	 */
+	GraphData getGraphData(int localSubgraphId) {
+		return localSubgraphId - 1 < graphData.size() ? graphData
+				.get(localSubgraphId - 1) : null;
+	}
+
+	/**
+	 * @return the copy of <code>container</code> kept by this snapshot, or
+	 *         null if the container has not been changed since the snapshot
+	 *         was created
+	 */
+	StorageContainer getCopy(StorageContainer container) {
+		return containers(container).get(container.id);
+	}
+
+	ConcurrentHashMap<Integer, StorageContainer> containers(
+			StorageContainer container) {
+		if (container instanceof VertexContainer) {
+			return vertexContainers;
+		} else if (container instanceof EdgeContainer) {
+			return edgeContainers;
+		} else {
+			return incidenceContainers;
+		}
+	}
+
+}
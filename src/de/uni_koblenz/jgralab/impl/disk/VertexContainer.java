@@ -18,6 +18,13 @@ public class VertexContainer extends GraphElementContainer {
 		this.backgroundStorage = backgroundStorage;
 	}
 
+	@Override
+	StorageContainer copy() {
+		VertexContainer copy = new VertexContainer(id, backgroundStorage);
+		copy.setBuffer(copyBuffer(buffer));
+		return copy;
+	}
+
 		
 	
 }
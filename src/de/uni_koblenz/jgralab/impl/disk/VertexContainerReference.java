@@ -1,8 +1,7 @@
 package de.uni_koblenz.jgralab.impl.disk;
 
-import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 
 import de.uni_koblenz.jgralab.Vertex;
 
@@ -12,22 +11,18 @@ public class VertexContainerReference extends GraphElementContainerReference<Ver
 
 	
 	
-	public VertexContainerReference(VertexContainer container, ReferenceQueue<VertexContainer> queue) {
+	public VertexContainerReference(VertexContainer container, ReferenceQueue<? super VertexContainer> queue) {
 		super(container, queue);
 	}
 	
 	
-	public VertexContainerReference(VertexContainer container, FileChannel input, ReferenceQueue<VertexContainer> queue) throws IOException, ClassNotFoundException {
-		super(container, input, queue);
+	public VertexContainerReference(VertexContainer container, ByteBuffer buffer, ReferenceQueue<? super VertexContainer> queue) {
+		super(container, buffer, queue);
    		container.vertices = new Vertex[DiskStorageManager.CONTAINER_SIZE];
 	}
 	
-	public VertexContainerReference(VertexContainer container, FileChannel input, VertexContainerReference oldRef, ReferenceQueue<VertexContainer> queue) throws IOException {
-		super(container, input, oldRef, queue);
-   		container.vertices = new Vertex[DiskStorageManager.CONTAINER_SIZE];
-	}
 	
-	public VertexContainerReference(VertexContainer container, VertexContainerReference oldRef, ReferenceQueue<VertexContainer> queue) {
+	public VertexContainerReference(VertexContainer container, VertexContainerReference oldRef, ReferenceQueue<? super VertexContainer> queue) {
 		super(container, oldRef, queue);
    		container.vertices = new Vertex[DiskStorageManager.CONTAINER_SIZE];
 	}
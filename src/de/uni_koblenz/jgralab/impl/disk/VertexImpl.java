@@ -70,6 +70,59 @@ public abstract class VertexImpl extends
 
 	protected VertexContainer container;
 
+	/*
+	 * the container to read the data of this vertex from, which is the copy
+	 * kept by the snapshot of the current thread if the container has been
+	 * changed since the snapshot was created
+	 */
+	private final VertexContainer readableContainer() {
+		return container.backgroundStorage.readable(container);
+	}
+
+	/*
+	 * the container to change the data of this vertex in
+	 */
+	private final VertexContainer writableContainer() {
+		return container.backgroundStorage.writable(container);
+	}
+
+	/*
+	 * completes a change of the data of this vertex
+	 */
+	private final void changed() {
+		container.backgroundStorage.changed();
+	}
+
+	/**
+	 * Used by the generated getters of the attributes.
+	 * 
+	 * @return the attributes of this vertex to read from, which are the copy
+	 *         kept by the snapshot of the current thread if they have been
+	 *         changed since the snapshot was created
+	 */
+	protected final <A extends AttributeContainer> A readableAttributes(
+			A attributes) {
+		return container.backgroundStorage.readableAttributes(true,
+				getLocalId(), attributes);
+	}
+
+	/**
+	 * Used by the generated setters of the attributes, which call it before
+	 * they change <code>attributes</code>.
+	 */
+	protected final void preserveAttributes(AttributeContainer attributes) {
+		container.backgroundStorage.preserveAttributes(true, getLocalId(),
+				attributes);
+	}
+
+	/**
+	 * Used by the generated setters of the attributes, which call it after
+	 * they have changed the attributes.
+	 */
+	protected final void attributesChanged() {
+		container.backgroundStorage.changed();
+	}
+
 	/**
 	 * Creates a new {@link Vertex} instance.
 	 * 
@@ -125,17 +178,17 @@ public abstract class VertexImpl extends
 	@Override
 	public Vertex getNextVertex(Graph traversalContext) {
 		assert isValid();
-		if (container.nextElementInGraphId[getIdInStorage(elementId)] == 0) {
+		if (readableContainer().nextElementInGraphId.get(getIdInStorage(elementId)) == 0) {
 			return null;
 		} else if ((traversalContext == null)
 				|| traversalContext
 						.containsVertex(localGraphDatabase
-								.getVertexObject(container.nextElementInGraphId[getIdInStorage(elementId)]))) {
+								.getVertexObject(readableContainer().nextElementInGraphId.get(getIdInStorage(elementId))))) {
 			return localGraphDatabase
-					.getVertexObject(container.nextElementInGraphId[getIdInStorage(elementId)]);
+					.getVertexObject(readableContainer().nextElementInGraphId.get(getIdInStorage(elementId)));
 		} else {
 			return localGraphDatabase.getVertexObject(
-					container.nextElementInGraphId[getIdInStorage(elementId)])
+					readableContainer().nextElementInGraphId.get(getIdInStorage(elementId)))
 					.getNextVertex(traversalContext);
 		}
 	}
@@ -143,18 +196,18 @@ public abstract class VertexImpl extends
 	@Override
 	public Vertex getPreviousVertex(Graph traversalContext) {
 		assert isValid();
-		if (container.previousElementInGraphId[getIdInStorage(elementId)] == 0) {
+		if (readableContainer().previousElementInGraphId.get(getIdInStorage(elementId)) == 0) {
 			return null;
 		} else if ((traversalContext == null)
 				|| traversalContext
 						.containsVertex(localGraphDatabase
-								.getVertexObject(container.previousElementInGraphId[getIdInStorage(elementId)]))) {
+								.getVertexObject(readableContainer().previousElementInGraphId.get(getIdInStorage(elementId))))) {
 			return localGraphDatabase
-					.getVertexObject(container.previousElementInGraphId[getIdInStorage(elementId)]);
+					.getVertexObject(readableContainer().previousElementInGraphId.get(getIdInStorage(elementId)));
 		} else {
 			return localGraphDatabase
 					.getVertexObject(
-							container.previousElementInGraphId[getIdInStorage(elementId)])
+							readableContainer().previousElementInGraphId.get(getIdInStorage(elementId)))
 					.getPreviousVertex(traversalContext);
 		}
 	}
@@ -245,8 +298,9 @@ public abstract class VertexImpl extends
 	 *            {@link Vertex}which should be put after this {@link Vertex}
 	 */
 	protected void setNextVertex(Vertex nextVertex) {
-		container.nextElementInGraphId[getIdInStorage(elementId)] = nextVertex
-				.getGlobalId();
+		writableContainer().nextElementInGraphId.put(getIdInStorage(elementId), nextVertex
+				.getGlobalId());
+		changed();
 	}
 
 	/**
@@ -257,8 +311,9 @@ public abstract class VertexImpl extends
 	 *            {@link Vertex}which should be put before this {@link Vertex}
 	 */
 	protected void setPreviousVertex(Vertex prevVertex) {
-		container.previousElementInGraphId[getIdInStorage(elementId)] = prevVertex
-				.getGlobalId();
+		writableContainer().previousElementInGraphId.put(getIdInStorage(elementId), prevVertex
+				.getGlobalId());
+		changed();
 	}
 
 	@Override
@@ -337,7 +392,7 @@ public abstract class VertexImpl extends
 	@Override
 	public Incidence getFirstIncidence(Graph traversalContext) {
 		Incidence firstIncidence = localGraphDatabase
-				.getIncidenceObject(container.firstIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().firstIncidenceId.get(getIdInStorage(elementId)));
 		while ((firstIncidence != null) && (traversalContext != null)
 				&& (!traversalContext.containsEdge(firstIncidence.getEdge()))) {
 			firstIncidence = firstIncidence.getNextIncidenceAtVertex();
@@ -348,7 +403,7 @@ public abstract class VertexImpl extends
 	@Override
 	public Incidence getLastIncidence(Graph traversalContext) {
 		Incidence lastIncidence = localGraphDatabase
-				.getIncidenceObject(container.lastIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().lastIncidenceId.get(getIdInStorage(elementId)));
 		if ((lastIncidence == null) || (traversalContext == null)
 				|| (traversalContext.containsVertex(lastIncidence.getVertex()))) {
 			return lastIncidence;
@@ -369,7 +424,7 @@ public abstract class VertexImpl extends
 			Direction direction) {
 		assert isValid();
 		Incidence i = localGraphDatabase
-				.getIncidenceObject(container.firstIncidenceId[getIdInStorage(elementId)]);
+				.getIncidenceObject(readableContainer().firstIncidenceId.get(getIdInStorage(elementId)));
 		if (traversalContext == null) {
 			while (((i != null) && (direction != null)
 					&& (direction != Direction.BOTH) && (direction != i
@@ -582,7 +637,7 @@ public abstract class VertexImpl extends
 	@SuppressWarnings("rawtypes")
 	@Override
 	public GraphElement getSigma() {
-		long sigmaId = container.sigmaId[getIdInStorage(elementId)];
+		long sigmaId = readableContainer().sigmaId.get(getIdInStorage(elementId));
 		if (sigmaId < 0) {
 			return localGraphDatabase.getEdgeObject(-sigmaId);
 		} else {
@@ -595,22 +650,24 @@ public abstract class VertexImpl extends
 	public void setSigma(GraphElement elem) {
 		long sigmaId = elem.getGlobalId();
 		if (elem instanceof Edge) {
-			container.sigmaId[getIdInStorage(elementId)] = -sigmaId;
+			writableContainer().sigmaId.put(getIdInStorage(elementId), -sigmaId);
 		} else {
-			container.sigmaId[getIdInStorage(elementId)] = sigmaId;
+			writableContainer().sigmaId.put(getIdInStorage(elementId), sigmaId);
 		}
+		changed();
 	}
 
 	@Override
 	public int getKappa() {
-		return (int) container.kappa[getIdInStorage(elementId)];
+		return (int) readableContainer().kappa.get(getIdInStorage(elementId));
 	}
 
 	@Override
 	public void setKappa(int kappa) {
 		assert getType().getAllowedMaxKappa() >= kappa
 				&& getType().getAllowedMinKappa() <= kappa;
-		container.kappa[getIdInStorage(elementId)] = kappa;
+		writableContainer().kappa.put(getIdInStorage(elementId), kappa);
+		changed();
 	}
 
 	/* **********************************************************
@@ -1181,7 +1238,7 @@ public abstract class VertexImpl extends
 	@Override
 	public final long getIncidenceListVersion() {
 		assert isValid();
-		return container.incidenceListVersion[getIdInStorage(elementId)];
+		return readableContainer().incidenceListVersion.get(getIdInStorage(elementId));
 	}
 
 }
@@ -2,6 +2,7 @@ package de.uni_koblenz.jgralab.impl.diskv2;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.Queue;
 
 import de.uni_koblenz.jgralab.GraphElement;
@@ -9,11 +10,18 @@ import de.uni_koblenz.jgralab.GraphElement;
 /**
  * Entry that can be stored in the MemStorageManager's cache.
  * 
+ * The entry itself only weakly references its object, so it is enqueued
+ * as soon as the object can't be used anymore. How long the object is kept
+ * in memory is decided by two further references: a strong one while the
+ * entry is resident under a memory budget, and a soft one while the entry
+ * isn't resident and no budget is set. An entry evicted by the budget has
+ * neither, so its object is only kept by the application, if at all.
+ * 
  * @author aheld
  *
  */
 
-public class CacheEntry<V> extends SoftReference<V>{
+public class CacheEntry<V> extends WeakReference<V>{
 	
 	/**
 	 * the key of this entry
@@ -30,9 +38,35 @@ public class CacheEntry<V> extends SoftReference<V>{
 	 */
 	private Tracker tracker;
 	
+	/**
+	 * Strong reference that keeps the referenced object in memory while
+	 * it is resident under a memory budget. If no budget is set, this is
+	 * always null and the object is only softly referenced.
+	 */
+	private V resident;
+	
+	/**
+	 * Soft reference that lets the garbage collector decide when the
+	 * referenced object is dropped. This is null while the entry is
+	 * resident and after it has been evicted by a memory budget.
+	 */
+	private SoftReference<V> soft;
+	
+	/**
+	 * Reference bit used by the CLOCK eviction of the ElementCache
+	 */
+	private boolean referenced;
+	
+	/**
+	 * Position of this entry in the clock of its stripe, or -1 if the entry
+	 * isn't resident
+	 */
+	private int clockIndex = -1;
+	
 	/**
 	 * Creates a new CacheEntry object that softly references the given value and is
-	 * associated with a ReferenceQueue.
+	 * associated with a ReferenceQueue. The entry drops the soft reference 
+	 * when it becomes resident.
 	 * 
 	 * @param value
 	 * 		The object referenced by the entry
@@ -44,6 +78,7 @@ public class CacheEntry<V> extends SoftReference<V>{
 	public CacheEntry(V value, ReferenceQueue<V> refQueue){
 		super(value, refQueue);
 		key = value.hashCode();
+		soft = new SoftReference<V>(value);
 	}
 	
 	/**
@@ -91,6 +126,96 @@ public class CacheEntry<V> extends SoftReference<V>{
 		return tracker;
 	}
 	
+	/**
+	 * Removes the tracker after the tracked state has been written to the
+	 * disk. If the object is changed afterwards, a new tracker is created.
+	 */
+	public void clearTracker(){
+		tracker = null;
+	}
+	
+	/**
+	 * Keeps the referenced object strongly reachable.
+	 * 
+	 * @param value - The referenced object
+	 * @param index - The position of this entry in the clock of its stripe
+	 */
+	public void makeResident(V value, int index){
+		resident = value;
+		soft = null;
+		clockIndex = index;
+		referenced = true;
+	}
+	
+	/**
+	 * Drops the strong reference. 
+	 * 
+	 * @param keepSoftly - If true, the referenced object stays softly 
+	 * 		reachable, otherwise it is only kept by the application
+	 */
+	public void evict(boolean keepSoftly){
+		if (keepSoftly && resident != null){
+			soft = new SoftReference<V>(resident);
+		}
+		resident = null;
+		clockIndex = -1;
+	}
+	
+	/**
+	 * Lets the garbage collector decide when the referenced object is 
+	 * dropped, after the entry has been evicted by a memory budget that 
+	 * isn't set anymore.
+	 * 
+	 * @param value - The referenced object
+	 */
+	public void keepSoftly(V value){
+		if (soft == null && resident == null){
+			soft = new SoftReference<V>(value);
+		}
+	}
+	
+	/**
+	 * Checks if this entry keeps its object strongly reachable.
+	 * 
+	 * @return true if the entry is resident
+	 */
+	public boolean isResident(){
+		return clockIndex >= 0;
+	}
+	
+	/**
+	 * Get the position of this entry in the clock of its stripe.
+	 * 
+	 * @return @link{clockIndex}
+	 */
+	public int getClockIndex(){
+		return clockIndex;
+	}
+	
+	/**
+	 * Set the position of this entry in the clock of its stripe.
+	 */
+	public void setClockIndex(int index){
+		clockIndex = index;
+	}
+	
+	/**
+	 * Sets or clears the reference bit.
+	 */
+	public void setReferenced(boolean referenced){
+		this.referenced = referenced;
+	}
+	
+	/**
+	 * Get the reference bit.
+	 * 
+	 * @return true if the entry has been accessed since the clock hand
+	 * 		passed it the last time
+	 */
+	public boolean isReferenced(){
+		return referenced;
+	}
+	
 	/**
 	 * Get the key.
 	 * 
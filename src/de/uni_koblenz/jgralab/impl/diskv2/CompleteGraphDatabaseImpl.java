@@ -31,6 +31,7 @@
 
 package de.uni_koblenz.jgralab.impl.diskv2;
 
+import java.io.File;
 import java.rmi.RemoteException;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -65,7 +66,36 @@ public class CompleteGraphDatabaseImpl extends GraphDatabaseBaseImpl implements
 
 	public CompleteGraphDatabaseImpl(Schema schema, String uniqueGraphId,
 			String hostname) {
-		super(schema, uniqueGraphId, 0, TOPLEVEL_PARTIAL_GRAPH_ID);
+		this(schema, uniqueGraphId, hostname, null);
+	}
+
+	/**
+	 * Creates a complete graph database whose disk storage is kept in
+	 * <code>storageDirectory</code>. If the directory holds a graph that was
+	 * stored by {@link #flushStorage()} before, that graph is reopened and
+	 * its elements are paged in lazily. Otherwise, a new empty graph is
+	 * created in that directory.
+	 * 
+	 * @param storageDirectory
+	 *            the directory of the graph, or null to use a temporary
+	 *            directory that is deleted when the VM exits
+	 */
+	public CompleteGraphDatabaseImpl(Schema schema, String uniqueGraphId,
+			String hostname, File storageDirectory) {
+		this(schema, uniqueGraphId, hostname, storageDirectory,
+				new StorageOptions());
+	}
+
+	/**
+	 * Creates a complete graph database whose disk storage is kept in
+	 * <code>storageDirectory</code> and opened with the given options.
+	 * 
+	 * @see #CompleteGraphDatabaseImpl(Schema, String, String, File)
+	 */
+	public CompleteGraphDatabaseImpl(Schema schema, String uniqueGraphId,
+			String hostname, File storageDirectory, StorageOptions options) {
+		super(schema, uniqueGraphId, 0, TOPLEVEL_PARTIAL_GRAPH_ID,
+				storageDirectory, options);
 		hostnames = new String[MAX_NUMBER_OF_PARTIAL_GRAPHS];
 		hostnames[GraphDatabaseElementaryMethods.TOPLEVEL_PARTIAL_GRAPH_ID] = hostname;
 		freePartialGraphIds = new LinkedList<Integer>();
@@ -74,6 +104,13 @@ public class CompleteGraphDatabaseImpl extends GraphDatabaseBaseImpl implements
 		}
 		completeGraphAttributes = new HashMap<String, Object>();
 
+		if (inMemoryStorage.hasStoredGraph()) {
+			// reopens the stored toplevel graph
+			inMemoryStorage.restoreGraphDatabaseState();
+			getGraphObject(convertToGlobalId(GraphDatabaseElementaryMethods.TOPLEVEL_LOCAL_SUBGRAPH_ID));
+			return;
+		}
+
 		// creates toplevel graph
 		GraphData data = new GraphData();
 		data.globalSubgraphId = convertToGlobalId(GraphDatabaseElementaryMethods.TOPLEVEL_LOCAL_SUBGRAPH_ID);
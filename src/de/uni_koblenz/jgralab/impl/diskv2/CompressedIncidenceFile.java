@@ -0,0 +1,531 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A FileAccess that stores incidence records in compressed form. To its
+ * users it looks like a file of fixed-size incidence records, so the
+ * DiskStorageManager, the WriteBehindFlusher and the StorageReorganizer can
+ * use it in place of the plain incidences.dst.
+ *
+ * The records are grouped into blocks of BLOCK_RECORDS consecutive
+ * incidences, and every block is encoded on its own:
+ *
+ * <ul>
+ * <li>the type id of a record as a varint, where zero marks an empty slot
+ * that has no further fields</li>
+ * <li>the ids of the next and previous incidences at the edge and at the
+ * vertex as zig-zag varints of their distance to the id of the incidence
+ * itself, plus one, with zero denoting a missing neighbor</li>
+ * <li>the ids of the edge and the vertex as zig-zag varints of their
+ * distance to the edge and vertex of the preceding record in the block</li>
+ * </ul>
+ *
+ * The neighbors of an incidence are usually close to it, and consecutive
+ * incidences often share their vertex or edge, especially after a
+ * {@link StorageReorganizer} has run, so most ids take one or two bytes
+ * instead of eight.
+ *
+ * The encoded blocks are stored in a data file. A block index holds the
+ * position, length and capacity of every block, so a record is found with
+ * a lookup in the index and by decoding a single block. A block that
+ * outgrows its capacity is moved to the end of the data file, and the data
+ * file is compacted when more than half of it is unused. The index is kept
+ * in memory and stored in the header of the disk storage.
+ *
+ * Decoded blocks are kept in a small direct-mapped cache. Writes only
+ * change the cached block, which is encoded again when it is replaced in
+ * the cache or when the file is flushed. All methods are synchronized.
+ */
+public class CompressedIncidenceFile extends FileAccess {
+
+	/**
+	 * The number of incidences in a block
+	 */
+	private static final int BLOCK_RECORDS = 32;
+
+	/**
+	 * The size of an uncompressed incidence record
+	 */
+	private static final int RECORD_SIZE = Tracker.INCIDENCE_SIZE;
+
+	private static final int BLOCK_SIZE = BLOCK_RECORDS * RECORD_SIZE;
+
+	/**
+	 * The number of decoded blocks kept in memory, must be a power of two
+	 */
+	private static final int CACHED_BLOCKS = 256;
+
+	/**
+	 * The data file is compacted when more than this fraction of it is
+	 * unused, and when it is at least MIN_COMPACTION_SIZE bytes long
+	 */
+	private static final double MAX_WASTE = 0.5;
+	private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+	/**
+	 * Positions of the fields in an incidence record
+	 */
+	private static final int NEXT_AT_EDGE = 4;
+	private static final int EDGE = 36;
+	private static final int VERTEX = 44;
+
+	/**
+	 * The file in which the encoded blocks are stored
+	 */
+	private final FileAccess data;
+
+	/**
+	 * The global id of the incidence with the local id zero. The id of the
+	 * incidence at a position is computed from it.
+	 */
+	private final long idBase;
+
+	/**
+	 * The block index. A block that has never been written has the
+	 * position -1.
+	 */
+	private long[] positions = new long[0];
+	private int[] lengths = new int[0];
+	private int[] capacities = new int[0];
+
+	/**
+	 * The first unused byte of the data file
+	 */
+	private long end;
+
+	/**
+	 * The amount of bytes in the data file that don't belong to a block
+	 */
+	private long wasted;
+
+	/**
+	 * The length of the file of uncompressed records this file represents
+	 */
+	private long virtualLength;
+
+	/**
+	 * The cache of decoded blocks, indexed by the block number modulo
+	 * CACHED_BLOCKS
+	 */
+	private final byte[][] cachedBlocks = new byte[CACHED_BLOCKS][];
+	private final int[] cachedNumbers = new int[CACHED_BLOCKS];
+	private final boolean[] dirty = new boolean[CACHED_BLOCKS];
+
+	/**
+	 * Creates a compressed incidence file that stores its blocks in the
+	 * given file.
+	 *
+	 * @param data
+	 *        The file for the encoded blocks
+	 * @param idBase
+	 *        The global id of the local id zero in this partial graph
+	 */
+	public CompressedIncidenceFile(FileAccess data, long idBase){
+		this.data = data;
+		this.idBase = idBase;
+		Arrays.fill(cachedNumbers, -1);
+	}
+
+	@Override
+	public synchronized void write(ByteBuffer content, long index){
+		long start = System.nanoTime();
+		ByteBuffer source = content.duplicate();
+		source.clear();
+		int numBytes = source.remaining();
+
+		while (source.hasRemaining()){
+			int block = (int) (index / BLOCK_SIZE);
+			int offset = (int) (index % BLOCK_SIZE);
+			int length = Math.min(source.remaining(), BLOCK_SIZE - offset);
+
+			int slot = load(block);
+			source.get(cachedBlocks[slot], offset, length);
+			dirty[slot] = true;
+
+			index += length;
+		}
+
+		virtualLength = Math.max(virtualLength, index);
+		recordWrite(numBytes, start);
+	}
+
+	@Override
+	public synchronized ByteBuffer read(int numBytes, long index){
+		long start = System.nanoTime();
+		ByteBuffer buf = ByteBuffer.allocate(numBytes);
+
+		while (buf.hasRemaining()){
+			int block = (int) (index / BLOCK_SIZE);
+			int offset = (int) (index % BLOCK_SIZE);
+			int length = Math.min(buf.remaining(), BLOCK_SIZE - offset);
+
+			int slot = load(block);
+			buf.put(cachedBlocks[slot], offset, length);
+
+			index += length;
+		}
+
+		buf.clear();
+		recordRead(numBytes, start);
+		return buf;
+	}
+
+	/**
+	 * Encodes all changed blocks, compacts the data file if too much of it
+	 * is unused, and forces it to the storage device.
+	 */
+	@Override
+	public synchronized void flush(){
+		for (int slot = 0; slot < CACHED_BLOCKS; slot++){
+			if (dirty[slot]){
+				store(slot);
+			}
+		}
+
+		if (end >= MIN_COMPACTION_SIZE && wasted > end * MAX_WASTE){
+			compact();
+		}
+
+		data.flush();
+	}
+
+	@Override
+	public synchronized long length(){
+		return virtualLength;
+	}
+
+	/**
+	 * Drops all records behind the given size. Blocks that lie behind it
+	 * completely are released, the rest of a block that is cut is cleared.
+	 */
+	@Override
+	public synchronized void truncate(long newSize){
+		int firstDropped = (int) ((newSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+
+		for (int slot = 0; slot < CACHED_BLOCKS; slot++){
+			if (cachedNumbers[slot] >= firstDropped){
+				cachedNumbers[slot] = -1;
+				cachedBlocks[slot] = null;
+				dirty[slot] = false;
+			}
+		}
+		for (int block = firstDropped; block < positions.length; block++){
+			if (positions[block] >= 0){
+				wasted += capacities[block];
+				positions[block] = -1;
+				lengths[block] = 0;
+				capacities[block] = 0;
+			}
+		}
+
+		if (newSize % BLOCK_SIZE != 0){
+			int offset = (int) (newSize % BLOCK_SIZE);
+			int slot = load((int) (newSize / BLOCK_SIZE));
+			Arrays.fill(cachedBlocks[slot], offset, BLOCK_SIZE, (byte) 0);
+			dirty[slot] = true;
+		}
+
+		virtualLength = Math.min(virtualLength, newSize);
+	}
+
+	@Override
+	protected void close(){
+		//the data file is closed by its own shutdown hook
+	}
+
+	//-------------------------------------------------------------------
+	//Block cache
+	//-------------------------------------------------------------------
+
+	/**
+	 * Makes sure a block is in the cache. A changed block that occupies
+	 * its cache slot is encoded and stored first.
+	 *
+	 * @return The cache slot of the block
+	 */
+	private int load(int block){
+		int slot = block & (CACHED_BLOCKS - 1);
+		if (cachedNumbers[slot] == block){
+			return slot;
+		}
+
+		if (dirty[slot]){
+			store(slot);
+		}
+
+		byte[] raw = new byte[BLOCK_SIZE];
+		if (block < positions.length && positions[block] >= 0){
+			decode(data.readBytes(lengths[block], positions[block]), block, raw);
+		}
+
+		cachedBlocks[slot] = raw;
+		cachedNumbers[slot] = block;
+		return slot;
+	}
+
+	/**
+	 * Encodes the block in a cache slot and writes it to the data file.
+	 */
+	private void store(int slot){
+		int block = cachedNumbers[slot];
+		byte[] encoded = encode(cachedBlocks[slot], block);
+		ensureIndexCapacity(block + 1);
+
+		if (positions[block] < 0 || encoded.length > capacities[block]){
+			if (positions[block] >= 0){
+				wasted += capacities[block];
+			}
+			//leave room for the block to grow a bit
+			capacities[block] = encoded.length + encoded.length / 4;
+			positions[block] = end;
+			end += capacities[block];
+		}
+
+		lengths[block] = encoded.length;
+		data.write(ByteBuffer.wrap(encoded), positions[block]);
+		dirty[slot] = false;
+	}
+
+	private void ensureIndexCapacity(int numBlocks){
+		if (numBlocks <= positions.length){
+			return;
+		}
+		int oldLength = positions.length;
+		int newLength = Math.max(numBlocks, oldLength * 2);
+		positions = Arrays.copyOf(positions, newLength);
+		lengths = Arrays.copyOf(lengths, newLength);
+		capacities = Arrays.copyOf(capacities, newLength);
+		Arrays.fill(positions, oldLength, newLength, -1);
+	}
+
+	/**
+	 * Moves all blocks to the start of the data file, in the order of their
+	 * positions, and cuts off the rest of the file.
+	 */
+	private void compact(){
+		Integer[] order = new Integer[positions.length];
+		int numBlocks = 0;
+		for (int block = 0; block < positions.length; block++){
+			if (positions[block] >= 0){
+				order[numBlocks++] = block;
+			}
+		}
+		Arrays.sort(order, 0, numBlocks, new java.util.Comparator<Integer>(){
+			@Override
+			public int compare(Integer b1, Integer b2){
+				long p1 = positions[b1];
+				long p2 = positions[b2];
+				return p1 < p2 ? -1 : (p1 == p2 ? 0 : 1);
+			}
+		});
+
+		long position = 0;
+		for (int i = 0; i < numBlocks; i++){
+			int block = order[i];
+			if (positions[block] != position){
+				//blocks only move towards the start, so no block that is
+				//still to be moved is overwritten
+				data.write(ByteBuffer.wrap(data.readBytes(lengths[block], positions[block])), position);
+				positions[block] = position;
+			}
+			capacities[block] = lengths[block];
+			position += lengths[block];
+		}
+
+		end = position;
+		wasted = 0;
+		data.truncate(end);
+	}
+
+	//-------------------------------------------------------------------
+	//Encoding of blocks
+	//-------------------------------------------------------------------
+
+	/**
+	 * Encodes the records of a block.
+	 */
+	private byte[] encode(byte[] raw, int block){
+		ByteBuffer in = ByteBuffer.wrap(raw);
+		VarintWriter out = new VarintWriter(BLOCK_SIZE / 2);
+
+		long firstId = idBase + (long) block * BLOCK_RECORDS;
+		long previousEdge = idBase;
+		long previousVertex = idBase;
+
+		for (int r = 0; r < BLOCK_RECORDS; r++){
+			int base = r * RECORD_SIZE;
+			int type = in.getInt(base);
+			out.write(type & 0xFFFFFFFFL);
+			if (type == 0) continue;
+
+			long id = firstId + r;
+			for (int field = NEXT_AT_EDGE; field < EDGE; field += 8){
+				long neighbor = in.getLong(base + field);
+				out.write(neighbor == 0 ? 0 : zigzag(neighbor - id) + 1);
+			}
+
+			long edge = in.getLong(base + EDGE);
+			long vertex = in.getLong(base + VERTEX);
+			out.write(zigzag(edge - previousEdge));
+			out.write(zigzag(vertex - previousVertex));
+			previousEdge = edge;
+			previousVertex = vertex;
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes the records of a block into an array of BLOCK_SIZE bytes.
+	 */
+	private void decode(byte[] encoded, int block, byte[] raw){
+		ByteBuffer out = ByteBuffer.wrap(raw);
+		VarintReader in = new VarintReader(encoded);
+
+		long firstId = idBase + (long) block * BLOCK_RECORDS;
+		long previousEdge = idBase;
+		long previousVertex = idBase;
+
+		for (int r = 0; r < BLOCK_RECORDS; r++){
+			int base = r * RECORD_SIZE;
+			int type = (int) in.read();
+			out.putInt(base, type);
+			if (type == 0) continue;
+
+			long id = firstId + r;
+			for (int field = NEXT_AT_EDGE; field < EDGE; field += 8){
+				long value = in.read();
+				out.putLong(base + field, value == 0 ? 0 : id + unzigzag(value - 1));
+			}
+
+			previousEdge += unzigzag(in.read());
+			previousVertex += unzigzag(in.read());
+			out.putLong(base + EDGE, previousEdge);
+			out.putLong(base + VERTEX, previousVertex);
+		}
+	}
+
+	private static long zigzag(long value){
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes unsigned LEB128 varints into a growing array
+	 */
+	private static final class VarintWriter {
+		private byte[] bytes;
+		private int length;
+
+		VarintWriter(int initialCapacity){
+			bytes = new byte[initialCapacity];
+		}
+
+		void write(long value){
+			if (length + 10 > bytes.length){
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+			while ((value & ~0x7FL) != 0){
+				bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		byte[] toByteArray(){
+			return Arrays.copyOf(bytes, length);
+		}
+	}
+
+	/**
+	 * Reads unsigned LEB128 varints from an array
+	 */
+	private static final class VarintReader {
+		private final byte[] bytes;
+		private int position;
+
+		VarintReader(byte[] bytes){
+			this.bytes = bytes;
+		}
+
+		long read(){
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+	}
+
+	//-------------------------------------------------------------------
+	//Persistence of the block index
+	//-------------------------------------------------------------------
+
+	/**
+	 * Writes the block index. The file must have been flushed before, so
+	 * that no changed block is pending in the cache.
+	 *
+	 * @param out
+	 *        The stream the index is written to
+	 */
+	public synchronized void writeIndex(DataOutputStream out) throws IOException {
+		out.writeLong(virtualLength);
+		out.writeLong(end);
+		out.writeLong(wasted);
+
+		int numBlocks = positions.length;
+		while (numBlocks > 0 && positions[numBlocks - 1] < 0){
+			numBlocks--;
+		}
+		out.writeInt(numBlocks);
+		for (int block = 0; block < numBlocks; block++){
+			out.writeLong(positions[block]);
+			if (positions[block] >= 0){
+				out.writeInt(lengths[block]);
+				out.writeInt(capacities[block]);
+			}
+		}
+	}
+
+	/**
+	 * Restores the block index written by
+	 * {@link #writeIndex(DataOutputStream)}.
+	 *
+	 * @param in
+	 *        The stream the index is read from
+	 */
+	public synchronized void readIndex(DataInputStream in) throws IOException {
+		virtualLength = in.readLong();
+		end = in.readLong();
+		wasted = in.readLong();
+
+		int numBlocks = in.readInt();
+		positions = new long[0];
+		lengths = new int[0];
+		capacities = new int[0];
+		ensureIndexCapacity(numBlocks);
+		for (int block = 0; block < numBlocks; block++){
+			positions[block] = in.readLong();
+			if (positions[block] >= 0){
+				lengths[block] = in.readInt();
+				capacities[block] = in.readInt();
+			}
+		}
+
+		Arrays.fill(cachedNumbers, -1);
+		Arrays.fill(cachedBlocks, null);
+		Arrays.fill(dirty, false);
+	}
+}
@@ -1,31 +1,102 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.uni_koblenz.jgralab.Edge;
 import de.uni_koblenz.jgralab.GraphFactory;
 import de.uni_koblenz.jgralab.Incidence;
 import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralab.impl.ParentEntityKind;
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
+import de.uni_koblenz.jgralab.impl.StorageMetrics.ElementKind;
+import de.uni_koblenz.jgralab.impl.diskv2.GraphDatabaseElementaryMethods.GraphData;
+import de.uni_koblenz.jgralab.schema.Attribute;
 import de.uni_koblenz.jgralab.schema.EdgeClass;
 import de.uni_koblenz.jgralab.schema.IncidenceClass;
 import de.uni_koblenz.jgralab.schema.Schema;
 import de.uni_koblenz.jgralab.schema.VertexClass;
 
 public class DiskStorageManager {
+	
+	/**
+	 * The name of the file that holds the header of a persistent disk storage
+	 */
+	private static final String HEADER_FILE = "header.dst";
+	
+	/**
+	 * Magic number and format version written at the start of the header
+	 */
+	private static final int HEADER_MAGIC = 0x44535432;
+	private static final int HEADER_VERSION = 6;
+	
+	/**
+	 * The name of the redo log of a persistent disk storage
+	 */
+	private static final String REDO_LOG_FILE = "redo.log";
+	
+	/**
+	 * If the redo log exceeds this amount of bytes, a commit is 
+	 * followed by a checkpoint
+	 */
+	private static final long CHECKPOINT_LOG_SIZE = 64L * 1024 * 1024;
+	
+	/**
+	 * The ids of the files in the redo log
+	 */
+	private static final int LOG_VERTICES = 0;
+	private static final int LOG_EDGES = 1;
+	private static final int LOG_INCIDENCES = 2;
+	private static final int LOG_STRINGS = 3;
+	private static final int LOG_LISTS = 4;
+	
+	/**
+	 * The name of the data file of a compressed incidence file
+	 */
+	private static final String COMPRESSED_INCIDENCES = "incidences-compressed";
+	
+	/**
+	 * Limits for reading several vertex or edge records with a single read:
+	 * the maximum number of unrequested records between two requested ones,
+	 * and the maximum amount of bytes read at once
+	 */
+	private static final int MAX_RECORD_GAP = 4;
+	private static final int MAX_RUN_BYTES = 256 * 1024;
 		
 	/**
 	 * The GraphDatabase that this DiskStorageManager works for
 	 */
 	private GraphDatabaseBaseImpl graphdb;
 	
+	/**
+	 * The directory in which all files of this DiskStorageManager are stored
+	 */
+	private File directory;
+	
+	/**
+	 * If true, the files are kept after the VM exits, so the graph 
+	 * can be reopened later on
+	 */
+	private boolean persistent;
+	
+	/**
+	 * The options this storage has been opened with
+	 */
+	private final StorageOptions options;
+	
 	/**
 	 * FileAccess objects to all the files used by this manager
 	 */
@@ -33,13 +104,22 @@ public class DiskStorageManager {
 	private FileAccess edges;
 	private FileAccess incidences;
 	
+	/**
+	 * The incidence file if the incidences are stored compressed, else null
+	 */
+	private CompressedIncidenceFile compressedIncidences;
+	
 	private FileAccess strings;
 	private FileAccess lists;
 	
 	/**
-	 * Pointers to the first free byte in strings.dst and lists.dst
+	 * Manages the Strings stored in strings.dst
+	 */
+	private StringHeap stringHeap;
+	
+	/**
+	 * Pointer to the first free byte in lists.dst
 	 */
-	private long stringsPointer;
 	private long listsPointer;
 	
 	/**
@@ -49,15 +129,153 @@ public class DiskStorageManager {
 	private int maxESize;
 	
 	/**
-	 * Create a new DiskStorageManager.
+	 * Sizes (in bytes) of the profiles of all vertex and edge classes, 
+	 * indexed by their type ids. Abstract classes have a size of zero.
+	 */
+	private int[] profileSizes;
+	
+	/**
+	 * Background stage that performs all writes to the files of this manager
+	 */
+	private WriteBehindFlusher flusher;
+	
+	/**
+	 * The log of all writes if this storage is logged, else null
+	 */
+	private RedoLog redoLog;
+	
+	/**
+	 * Serializes commits, and counts the commits that have been requested
+	 * and the requests that have been served by a logged group
+	 */
+	private final Object commitLock = new Object();
+	private final AtomicLong requestedCommits = new AtomicLong();
+	private long completedCommits;
+	
+	/**
+	 * Records the accesses to the caches and the files of this storage
+	 */
+	private final StorageMetrics metrics = new StorageMetrics("diskv2");
+	
+	/**
+	 * Create a new DiskStorageManager which stores its files in a temporary
+	 * directory that is deleted when the VM exits.
 	 * 
 	 * @param graphdb
 	 * 		The Graph Database whose data this DiskStorageManager manages.
 	 */
 	public DiskStorageManager(GraphDatabaseBaseImpl graphdb){
+		this(graphdb, null);
+	}
+	
+	/**
+	 * Create a new DiskStorageManager which stores its files in the given
+	 * directory. The files are kept after the VM exits. If the directory
+	 * already contains a stored graph, it can be reopened with
+	 * {@link #restoreGraphDatabaseState()}.
+	 * 
+	 * @param graphdb
+	 * 		The Graph Database whose data this DiskStorageManager manages.
+	 * @param directory
+	 * 		The directory of the graph, or null to use a temporary directory 
+	 */
+	public DiskStorageManager(GraphDatabaseBaseImpl graphdb, File directory){
+		this(graphdb, directory, new StorageOptions());
+	}
+	
+	/**
+	 * Create a new DiskStorageManager with the given options.
+	 * 
+	 * @param graphdb
+	 * 		The Graph Database whose data this DiskStorageManager manages.
+	 * @param directory
+	 * 		The directory of the graph, or null to use a temporary directory 
+	 * @param options
+	 * 		The options of this storage, which are copied
+	 */
+	public DiskStorageManager(GraphDatabaseBaseImpl graphdb, File directory,
+			StorageOptions options){
 		this.graphdb = graphdb;
+		this.options = new StorageOptions(options);
+		this.persistent = directory != null;
+		this.directory = persistent ? directory : createTemporaryDirectory();
+		
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()){
+			throw new RuntimeException("Unable to create directory " + this.directory);
+		}
 
+		flusher = new WriteBehindFlusher("diskv2 write-behind " + this.directory.getName());
+		
 		setupFilesAndProfiles();
+		openRedoLog();
+	}
+	
+	/**
+	 * Creates a new, empty directory in the default temporary-file directory.
+	 * The directory is deleted when the VM exits.
+	 * 
+	 * @return The created directory
+	 */
+	private static File createTemporaryDirectory(){
+		try {
+			File dir = File.createTempFile("jgralab-diskv2-", "");
+			if (!dir.delete() || !dir.mkdir()){
+				throw new RuntimeException("Unable to create directory " + dir);
+			}
+			//the files in this directory are registered later, so they 
+			//are deleted before the directory itself
+			dir.deleteOnExit();
+			return dir;
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to create temporary directory");
+		}
+	}
+	
+	/**
+	 * Returns the directory in which the files of this manager are stored.
+	 * 
+	 * @return The storage directory
+	 */
+	public File getDirectory(){
+		return directory;
+	}
+	
+	/**
+	 * Returns the metrics of this storage, in which the MemStorageManager
+	 * records the accesses to its caches, and the files record their reads
+	 * and writes.
+	 * 
+	 * @return The metrics of this storage
+	 */
+	public StorageMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Returns the size of the records in vertices.dst
+	 * 
+	 * @return The size of the biggest vertex class in bytes
+	 */
+	public int getVertexRecordSize(){
+		return maxVSize;
+	}
+	
+	/**
+	 * Returns the size of the records in edges.dst
+	 * 
+	 * @return The size of the biggest edge class in bytes
+	 */
+	public int getEdgeRecordSize(){
+		return maxESize;
+	}
+	
+	/**
+	 * Checks if the directory of this manager holds a previously stored graph.
+	 * 
+	 * @return true if a header has been found in the storage directory
+	 */
+	public boolean hasStoredGraph(){
+		return persistent && new File(directory, HEADER_FILE).exists();
 	}
 	
 	/**
@@ -78,15 +296,35 @@ public class DiskStorageManager {
 		List<EdgeClass> eClasses = s.getEdgeClassesInTopologicalOrder();
 		
 		//make FileAccess objects for graph building blocks, strings and lists
-		vertices = FileAccess.createFileAccess("vertices");
-		edges = FileAccess.createFileAccess("edges");
-		incidences = FileAccess.createFileAccess("incidences");
-		strings = FileAccess.createFileAccess("strings");
-		lists = FileAccess.createFileAccess("lists");
+		vertices = FileAccess.createFileAccess(directory, "vertices", !persistent);
+		edges = FileAccess.createFileAccess(directory, "edges", !persistent);
+		//a redo log is only written for uncompressed incidences
+		if (options.hasCompressedIncidences() && !hasStoredGraph() 
+				&& !new File(directory, REDO_LOG_FILE).exists()
+				|| new File(directory, COMPRESSED_INCIDENCES + ".dst").exists()){
+			FileAccess data = FileAccess.createFileAccess(directory, COMPRESSED_INCIDENCES, !persistent);
+			data.setMetrics(metrics.getFile(COMPRESSED_INCIDENCES));
+			compressedIncidences = new CompressedIncidenceFile(data, graphdb.convertToGlobalId(0));
+			incidences = compressedIncidences;
+		}
+		else {
+			incidences = FileAccess.createFileAccess(directory, "incidences", !persistent);
+		}
+		strings = FileAccess.createFileAccess(directory, "strings", !persistent);
+		lists = FileAccess.createFileAccess(directory, "lists", !persistent);
+		
+		vertices.setMetrics(metrics.getFile("vertices"));
+		edges.setMetrics(metrics.getFile("edges"));
+		incidences.setMetrics(metrics.getFile("incidences"));
+		strings.setMetrics(metrics.getFile("strings"));
+		lists.setMetrics(metrics.getFile("lists"));
+		
+		stringHeap = new StringHeap(strings, flusher);
+		
+		profileSizes = new int[amountOfClasses];
 		
 		maxVSize = 0;
 		maxESize = 0;
-		stringsPointer = 0;
 		listsPointer = 0;
 		
 		//create a profile and a FileAccess for all non-abstract vertex classes
@@ -95,7 +333,8 @@ public class DiskStorageManager {
 		for (VertexClass vClass: vClasses){
 			if (!vClass.isAbstract()){
 				typeId = vClass.getId();
-				vSize = GraphElementProfile.createProfile(vClass, typeId, graphdb);
+				vSize = GraphElementProfile.createProfile(vClass, typeId);
+				profileSizes[typeId] = vSize;
 				if (vSize > maxVSize) maxVSize = vSize;
 			}
 		}
@@ -105,13 +344,539 @@ public class DiskStorageManager {
 		for (EdgeClass eClass: eClasses){
 			if (!eClass.isAbstract()){
 				typeId = eClass.getId();
-				GraphElementProfile.createProfile(eClass, typeId, graphdb);
-				eSize = GraphElementProfile.createProfile(eClass, typeId, graphdb);
+				eSize = GraphElementProfile.createProfile(eClass, typeId);
+				profileSizes[typeId] = eSize;
 				if (eSize > maxESize) maxESize = eSize;
 			}
 		}
 	}
 	
+	/**
+	 * Opens the redo log of a persistent storage. If a log has been left 
+	 * by a crash, the state of its last complete group is restored first.
+	 * The log is kept if redo logging is enabled, else it is deleted once 
+	 * it has been replayed.
+	 */
+	private void openRedoLog(){
+		File logFile = new File(directory, REDO_LOG_FILE);
+		if (!persistent || compressedIncidences != null 
+				|| !options.isRedoLogging() && !logFile.exists()){
+			return;
+		}
+		
+		RedoLog log = new RedoLog(logFile);
+		byte[] header = log.replay(new RedoLog.Target() {
+			@Override
+			public void apply(int fileId, long position, ByteBuffer content) {
+				getLoggedFile(fileId).write(content, position);
+			}
+		});
+		
+		if (header != null){
+			//the header must not describe data that isn't on the disk yet
+			vertices.flush();
+			edges.flush();
+			incidences.flush();
+			strings.flush();
+			lists.flush();
+			writeHeaderFile(header);
+		}
+		
+		if (options.isRedoLogging()){
+			log.reset();
+			redoLog = log;
+			flusher.holdWrites();
+		}
+		else {
+			log.close();
+			if (!logFile.delete()){
+				throw new RuntimeException("Unable to delete redo log " + logFile);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the file of a write in the redo log
+	 */
+	private FileAccess getLoggedFile(int fileId){
+		switch (fileId){
+		case LOG_VERTICES: return vertices;
+		case LOG_EDGES: return edges;
+		case LOG_INCIDENCES: return incidences;
+		case LOG_STRINGS: return strings;
+		case LOG_LISTS: return lists;
+		default: throw new RuntimeException("Unknown file " + fileId + " in redo log");
+		}
+	}
+	
+	/**
+	 * Returns the id of a file in the redo log
+	 */
+	private int getLogId(FileAccess file){
+		if (file == vertices) return LOG_VERTICES;
+		if (file == edges) return LOG_EDGES;
+		if (file == incidences) return LOG_INCIDENCES;
+		if (file == strings) return LOG_STRINGS;
+		if (file == lists) return LOG_LISTS;
+		throw new RuntimeException("Write to a file that is not logged");
+	}
+	
+	/**
+	 * Checks if the writes of this storage are logged in a RedoLog.
+	 * 
+	 * @return true if this storage is crash consistent
+	 */
+	public boolean isLogged(){
+		return redoLog != null;
+	}
+	
+	/**
+	 * Makes all writes submitted before durable. If this storage is logged,
+	 * the writes are appended to the redo log as one group, together with 
+	 * an image of the header, and only the log is forced. The state of the 
+	 * storage at the time of the last commit is restored if the graph is 
+	 * reopened after a crash. Commits of several threads that are requested 
+	 * while a group is being forced are served by a single group. If the 
+	 * log has grown too large, a checkpoint is performed afterwards.
+	 * 
+	 * If this storage is not logged, a commit writes the header.
+	 * 
+	 * The state is only consistent if no element is modified while the
+	 * commit is performed.
+	 */
+	public void commit(){
+		if (redoLog == null){
+			writeHeader();
+			return;
+		}
+		
+		long request = requestedCommits.incrementAndGet();
+		boolean checkpointDue;
+		synchronized (commitLock){
+			if (completedCommits >= request){
+				//a group appended by another thread covered this commit
+				return;
+			}
+			long covered = requestedCommits.get();
+			appendGroup();
+			completedCommits = covered;
+			checkpointDue = redoLog.size() > CHECKPOINT_LOG_SIZE;
+		}
+		
+		if (checkpointDue){
+			writeHeader();
+		}
+	}
+	
+	/**
+	 * Appends all writes held back by the flusher to the redo log, and 
+	 * releases them to the files once the log has been forced. Must be 
+	 * called with the commit lock held.
+	 * 
+	 * @return The header image that was logged
+	 */
+	private byte[] appendGroup(){
+		byte[] header = encodeHeader();
+		Map<FileAccess, TreeMap<Long, ByteBuffer>> writes = flusher.takeUnreleased();
+		
+		int numWrites = 0;
+		for (TreeMap<Long, ByteBuffer> fileWrites : writes.values()){
+			numWrites += fileWrites.size();
+		}
+		int[] fileIds = new int[numWrites];
+		long[] positions = new long[numWrites];
+		ByteBuffer[] contents = new ByteBuffer[numWrites];
+		
+		int i = 0;
+		for (Map.Entry<FileAccess, TreeMap<Long, ByteBuffer>> e : writes.entrySet()){
+			int fileId = getLogId(e.getKey());
+			for (Map.Entry<Long, ByteBuffer> w : e.getValue().entrySet()){
+				fileIds[i] = fileId;
+				positions[i] = w.getKey();
+				contents[i] = w.getValue();
+				i++;
+			}
+		}
+		
+		redoLog.append(fileIds, positions, contents, header);
+		flusher.release(writes);
+		return header;
+	}
+	
+	/**
+	 * Writes the header of this storage. The header holds everything that is
+	 * needed to reopen the graph: a hash of the schema, the record sizes
+	 * of all vertex and edge classes, the slot table of the String heap,
+	 * the pointer to the first free byte in lists.dst, the block index of 
+	 * compressed incidences, the free index lists, the data of all
+	 * local subgraphs and the values of the graph attributes. The element 
+	 * data itself must have been written before.
+	 * 
+	 * If this storage is logged, writing the header is a checkpoint: all 
+	 * writes are logged and written to the files, the header is written 
+	 * and the redo log is reset.
+	 */
+	public void writeHeader(){
+		if (redoLog != null){
+			checkpoint();
+			return;
+		}
+		
+		//the header must not point to data that is still pending
+		flusher.drain();
+		
+		if (stringHeap.needsCompaction()){
+			stringHeap.compact();
+		}
+		
+		writeHeaderFile(encodeHeader());
+		
+		vertices.flush();
+		edges.flush();
+		incidences.flush();
+		strings.flush();
+		lists.flush();
+	}
+	
+	/**
+	 * Writes all writes held back to the files and the header to header.dst,
+	 * so the redo log can be reset. The String heap is compacted in a 
+	 * group of its own, so its moves can be recovered as well.
+	 */
+	private void checkpoint(){
+		synchronized (commitLock){
+			completedCommits = requestedCommits.get();
+			
+			if (stringHeap.needsCompaction()){
+				//the heap reads the slots to be moved from the file
+				appendGroup();
+				flusher.drain();
+				stringHeap.compact();
+			}
+			byte[] header = appendGroup();
+			flusher.drain();
+			
+			vertices.flush();
+			edges.flush();
+			incidences.flush();
+			strings.flush();
+			lists.flush();
+			writeHeaderFile(header);
+			
+			stringHeap.truncate();
+			redoLog.reset();
+		}
+	}
+	
+	/**
+	 * Encodes the header of this storage
+	 * 
+	 * @return The bytes of the header
+	 */
+	private byte[] encodeHeader(){
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			
+			out.writeInt(HEADER_MAGIC);
+			out.writeInt(HEADER_VERSION);
+			out.writeLong(computeSchemaHash());
+			
+			//record sizes
+			out.writeInt(maxVSize);
+			out.writeInt(maxESize);
+			out.writeInt(profileSizes.length);
+			for (int size : profileSizes){
+				out.writeInt(size);
+			}
+			
+			stringHeap.writeIndex(out);
+			out.writeLong(listsPointer);
+			
+			//block index of compressed incidences
+			out.writeBoolean(compressedIncidences != null);
+			if (compressedIncidences != null){
+				compressedIncidences.flush();
+				compressedIncidences.writeIndex(out);
+			}
+			
+			//free lists
+			writeRuns(out, graphdb.getFreeVertexList().getRuns());
+			writeRuns(out, graphdb.getFreeEdgeList().getRuns());
+			writeRuns(out, graphdb.getFreeIncidenceList().getRuns());
+			
+			//local subgraphs
+			out.writeInt(graphdb.localSubgraphData.size());
+			for (GraphData data : graphdb.localSubgraphData){
+				writeGraphData(out, data);
+			}
+			
+			writeGraphAttributes(out);
+			
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to encode header of disk storage", e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Writes the header to header.dst and forces it to the storage device
+	 * 
+	 * @param header
+	 * 		The encoded header
+	 */
+	private void writeHeaderFile(byte[] header){
+		File headerFile = new File(directory, HEADER_FILE);
+		if (!persistent){
+			headerFile.deleteOnExit();
+		}
+		
+		try {
+			FileOutputStream out = new FileOutputStream(headerFile);
+			try {
+				out.write(header);
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write header of disk storage", e);
+		}
+	}
+	
+	/**
+	 * Reads the header of a previously stored graph and restores the state
+	 * of the GraphDatabase this manager works for. Only the header is read,
+	 * vertices, edges and incidences are paged in lazily when they are
+	 * accessed for the first time.
+	 * 
+	 * @throws RuntimeException
+	 * 		If the graph was stored with a different schema or in an 
+	 * 		incompatible format
+	 */
+	public void restoreGraphDatabaseState(){
+		File headerFile = new File(directory, HEADER_FILE);
+		
+		try {
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(headerFile)));
+			
+			if (in.readInt() != HEADER_MAGIC || in.readInt() != HEADER_VERSION){
+				in.close();
+				throw new RuntimeException("Unknown format of header " + headerFile);
+			}
+			if (in.readLong() != computeSchemaHash()){
+				in.close();
+				throw new RuntimeException("Graph in " + directory 
+						+ " was stored with a different schema");
+			}
+			
+			//the record sizes must match the profiles created for this schema
+			boolean sizesMatch = in.readInt() == maxVSize & in.readInt() == maxESize;
+			int numProfiles = in.readInt();
+			sizesMatch &= numProfiles == profileSizes.length;
+			for (int i = 0; i < numProfiles; i++){
+				int size = in.readInt();
+				sizesMatch &= i < profileSizes.length && size == profileSizes[i];
+			}
+			if (!sizesMatch){
+				in.close();
+				throw new RuntimeException("Record sizes of graph in " + directory 
+						+ " don't match the current profiles");
+			}
+			
+			stringHeap.readIndex(in);
+			listsPointer = in.readLong();
+			
+			if (in.readBoolean() != (compressedIncidences != null)){
+				in.close();
+				throw new RuntimeException("Format of incidences of graph in " + directory 
+						+ " doesn't match its files");
+			}
+			if (compressedIncidences != null){
+				compressedIncidences.readIndex(in);
+			}
+			
+			graphdb.getFreeVertexList().reinitialize(readRuns(in));
+			graphdb.getFreeEdgeList().reinitialize(readRuns(in));
+			graphdb.getFreeIncidenceList().reinitialize(readRuns(in));
+			
+			int numSubgraphs = in.readInt();
+			graphdb.localSubgraphData.clear();
+			for (int i = 0; i < numSubgraphs; i++){
+				graphdb.localSubgraphData.add(readGraphData(in));
+			}
+			
+			readGraphAttributes(in);
+			
+			in.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read header of disk storage", e);
+		}
+	}
+	
+	/**
+	 * Computes a hash of the schema. It covers the graph class and the names 
+	 * and ids of all vertex and edge classes as well as the names and domains 
+	 * of their attributes, so a graph can't be reopened with a schema that would
+	 * interpret the stored records differently.
+	 */
+	private long computeSchemaHash(){
+		Schema s = graphdb.getSchema();
+		List<String> parts = new ArrayList<String>();
+		parts.add(s.getQualifiedName());
+		
+		parts.add(s.getGraphClass().getQualifiedName());
+		for (Attribute attr : s.getGraphClass().getAttributeList()){
+			parts.add(attr.getName() + ":" + attr.getDomain().getQualifiedName());
+		}
+		for (VertexClass vClass : s.getVertexClassesInTopologicalOrder()){
+			parts.add(vClass.getQualifiedName() + "#" + vClass.getId());
+			for (Attribute attr : vClass.getAttributeList()){
+				parts.add(attr.getName() + ":" + attr.getDomain().getQualifiedName());
+			}
+		}
+		for (EdgeClass eClass : s.getEdgeClassesInTopologicalOrder()){
+			parts.add(eClass.getQualifiedName() + "#" + eClass.getId());
+			for (Attribute attr : eClass.getAttributeList()){
+				parts.add(attr.getName() + ":" + attr.getDomain().getQualifiedName());
+			}
+		}
+		
+		long hash = 1125899906842597L;
+		for (String part : parts){
+			for (int i = 0; i < part.length(); i++){
+				hash = 31 * hash + part.charAt(i);
+			}
+			hash = 31 * hash + ';';
+		}
+		return hash;
+	}
+	
+	/**
+	 * Helper method to write the runs of a FreeIndexList
+	 */
+	private void writeRuns(DataOutputStream out, int[] runs) throws IOException{
+		out.writeInt(runs.length);
+		for (int run : runs){
+			out.writeInt(run);
+		}
+	}
+	
+	/**
+	 * Helper method to read the runs of a FreeIndexList
+	 */
+	private int[] readRuns(DataInputStream in) throws IOException{
+		int[] runs = new int[in.readInt()];
+		for (int i = 0; i < runs.length; i++){
+			runs[i] = in.readInt();
+		}
+		return runs;
+	}
+	
+	/**
+	 * Helper method to write the values of the graph attributes. They are 
+	 * only stored by the complete graph, partial graphs access the values 
+	 * of the complete graph.
+	 */
+	private void writeGraphAttributes(DataOutputStream out) throws IOException{
+		if (!(graphdb instanceof CompleteGraphDatabaseImpl)){
+			out.writeInt(-1);
+			return;
+		}
+		CompleteGraphDatabaseImpl completeGraphdb = (CompleteGraphDatabaseImpl) graphdb;
+		SortedSet<Attribute> attributes = graphdb.getSchema().getGraphClass().getAttributeList();
+		out.writeInt(attributes.size());
+		for (Attribute attr : attributes){
+			out.writeUTF(attr.getName());
+			Object value = completeGraphdb.getGraphAttribute(attr.getName());
+			if (value == null){
+				out.writeInt(-1);
+			}
+			else {
+				byte[] encoded = DomainCodec.forDomain(attr.getDomain()).encode(value);
+				out.writeInt(encoded.length);
+				out.write(encoded);
+			}
+		}
+	}
+	
+	/**
+	 * Helper method to read the values of the graph attributes
+	 */
+	private void readGraphAttributes(DataInputStream in) throws IOException{
+		int numAttributes = in.readInt();
+		for (int i = 0; i < numAttributes; i++){
+			String name = in.readUTF();
+			int length = in.readInt();
+			if (length < 0){
+				continue;
+			}
+			byte[] encoded = new byte[length];
+			in.readFully(encoded);
+			Attribute attr = graphdb.getSchema().getGraphClass().getAttribute(name);
+			((CompleteGraphDatabaseImpl) graphdb).setGraphAttribute(name,
+					DomainCodec.forDomain(attr.getDomain()).decode(encoded));
+		}
+	}
+	
+	/**
+	 * Helper method to write the data of a local subgraph
+	 */
+	private void writeGraphData(DataOutputStream out, GraphData data) throws IOException{
+		out.writeLong(data.globalSubgraphId);
+		out.writeLong(data.firstVertexId);
+		out.writeLong(data.lastVertexId);
+		out.writeLong(data.firstEdgeId);
+		out.writeLong(data.lastEdgeId);
+		out.writeLong(data.edgeCount);
+		out.writeLong(data.vertexCount);
+		out.writeLong(data.incidenceCount);
+		out.writeLong(data.containingElementId);
+		out.writeInt(data.typeId);
+		out.writeInt(data.parentEntityKind == null ? -1 : data.parentEntityKind.ordinal());
+		
+		if (data.partialGraphs == null){
+			out.writeInt(-1);
+		}
+		else {
+			out.writeInt(data.partialGraphs.size());
+			for (int partialGraphId : data.partialGraphs){
+				out.writeInt(partialGraphId);
+			}
+		}
+	}
+	
+	/**
+	 * Helper method to read the data of a local subgraph
+	 */
+	private GraphData readGraphData(DataInputStream in) throws IOException{
+		GraphData data = graphdb.new GraphData();
+		data.globalSubgraphId = in.readLong();
+		data.firstVertexId = in.readLong();
+		data.lastVertexId = in.readLong();
+		data.firstEdgeId = in.readLong();
+		data.lastEdgeId = in.readLong();
+		data.edgeCount = in.readLong();
+		data.vertexCount = in.readLong();
+		data.incidenceCount = in.readLong();
+		data.containingElementId = in.readLong();
+		data.typeId = in.readInt();
+		
+		int kind = in.readInt();
+		data.parentEntityKind = kind < 0 ? null : ParentEntityKind.values()[kind];
+		
+		int numPartialGraphs = in.readInt();
+		if (numPartialGraphs >= 0){
+			data.partialGraphs = new ArrayList<Integer>(numPartialGraphs);
+			for (int i = 0; i < numPartialGraphs; i++){
+				data.partialGraphs.add(in.readInt());
+			}
+		}
+		return data;
+	}
+	
 	/**
 	 * Writes a Vertex to the disk if it has been newly created, or if it has
 	 * been changed since the last time it was loaded from the disk.
@@ -120,7 +885,7 @@ public class DiskStorageManager {
 	 * 	    The Reference to the Vertex that is written out.
 	*/
 	public void writeVertexToDisk(CacheEntry<VertexImpl> vRef){
-		writeGraphElementToDisk(vRef, vertices, maxVSize);
+		writeGraphElementToDisk(vRef, vertices, maxVSize, ElementKind.VERTEX);
 	}
 	
 	/**
@@ -131,7 +896,7 @@ public class DiskStorageManager {
 	 * 	    The Reference to the Vertex that is written out.
 	*/
 	public void writeEdgeToDisk(CacheEntry<EdgeImpl> eRef){
-		writeGraphElementToDisk(eRef, edges, maxESize);
+		writeGraphElementToDisk(eRef, edges, maxESize, ElementKind.EDGE);
 	}
 	
 	/**
@@ -143,18 +908,22 @@ public class DiskStorageManager {
 	 * 
 	 * @param file
 	 * 		The access to the file in which the GraphElement is stored.
+	 * 
+	 * @param kind
+	 * 		Whether the GraphElement is a vertex or an edge
 	 */
 	private void writeGraphElementToDisk(CacheEntry<? extends GraphElementImpl<?,?,?,?>> geRef, 
-			FileAccess file, int byteSize){
+			FileAccess file, int byteSize, ElementKind kind){
 		Tracker tracker = geRef.getTracker();
 		
 		if (tracker == null) {
 			//element is neither new nor has it been changed since its last reload
 			return;
 		}
+		metrics.writtenBack(kind);
 		ByteBuffer attributes = tracker.getVariables();
 		String[] strings = tracker.getStrings();
-		List[] lists = tracker.getLists();
+		Object[] lists = tracker.getLists();
 		
 		//detect the type of the vertex or edge we want to write out
 		int typeId = attributes.getInt(0) - 1;
@@ -163,35 +932,83 @@ public class DiskStorageManager {
 		GraphElementProfile profile = GraphElementProfile.getProfile(typeId);
 		
 		//determine the size of the element we want to store
-		long baseLocation = byteSize * geRef.getKey();
-		
-		//write the primitive attributes to a file
-		file.write(attributes, baseLocation);
+		long baseLocation = (long) byteSize * geRef.getKey();
 		
-		//write all Strings to a file, and store their location on the disk
-		if (strings != null){
-			int numElems = profile.getNumStrings();
-			ByteBuffer locations = ByteBuffer.allocate(numElems * 8);
+		//the Strings of the record that is overwritten are released after
+		//the new ones have been stored, so unchanged Strings keep their slots
+		synchronized (stringHeap){
+			long[] oldHandles = readStringHandles(file, baseLocation, strings != null ? -1 : typeId);
 			
-			for (int i = 0; i < numElems; i++){
-				long location = writeStringToDisk(strings[i]);
-				locations.putLong(location);
+			//write the primitive attributes to a file
+			flusher.submit(file, attributes, baseLocation);
+			
+			//write all Strings to the heap, and store their handles on the disk
+			if (strings != null){
+				int numElems = profile.getNumStrings();
+				ByteBuffer locations = ByteBuffer.allocate(numElems * 8);
+				
+				for (int i = 0; i < numElems; i++){
+					long location = writeStringToDisk(strings[i]);
+					locations.putLong(location);
+				}
+				
+				locations.position(0);
+				flusher.submit(file, locations, baseLocation + profile.getStartOfStrings());
 			}
 			
-			locations.position(0);
-			file.write(locations, baseLocation + profile.getStartOfStrings());
+			for (long handle : oldHandles){
+				stringHeap.release(handle);
+			}
 		}
 		
-		//write all Lists to a file, and store their location on the disk
+		//write all Lists, Sets and Maps to a file, and store their location on the disk
 		if (lists != null){
 			int numElems = profile.getNumLists();
 			ByteBuffer locations = ByteBuffer.allocate(numElems * 8);
 				
 			for (int i = 0; i < numElems; i++){
-				locations.putLong(writeListToDisk(lists[i]));
+				locations.putLong(writeListToDisk(profile, i, lists[i]));
 			}
 
-			file.write(locations, baseLocation + profile.getStartOfLists());
+			flusher.submit(file, locations, baseLocation + profile.getStartOfLists());
+		}
+	}
+	
+	/**
+	 * Releases the Strings referenced by the record of a deleted vertex.
+	 * 
+	 * @param key
+	 *        The local id of the vertex
+	 */
+	public void releaseVertexRecord(int key){
+		releaseRecord(vertices, maxVSize, key);
+	}
+	
+	/**
+	 * Releases the Strings referenced by the record of a deleted edge.
+	 * 
+	 * @param key
+	 *        The local id of the edge
+	 */
+	public void releaseEdgeRecord(int key){
+		releaseRecord(edges, maxESize, key);
+	}
+	
+	/**
+	 * Releases the Strings referenced by a record and marks the record as
+	 * unused, so its Strings aren't released again when the slot is reused.
+	 */
+	private void releaseRecord(FileAccess file, int byteSize, int key){
+		long baseLocation = (long) byteSize * key;
+		
+		synchronized (stringHeap){
+			//a type id of zero denotes a slot that has never been written
+			if (flusher.read(file, 4, baseLocation).getInt(0) == 0) return;
+			
+			for (long handle : readStringHandles(file, baseLocation, -1)){
+				stringHeap.release(handle);
+			}
+			flusher.submit(file, ByteBuffer.allocate(4), baseLocation);
 		}
 	}
 	
@@ -207,6 +1024,9 @@ public class DiskStorageManager {
 		//read the data from the disk
 		ByteBuffer buf = readGraphElementFromDisk(key, vertices, maxVSize);
 		
+		//a type id of zero denotes a slot that has never been written
+		if (buf.getInt(0) == 0) return null;
+		
 		//create a vertex that is identical to the vertex we deleted earlier
 		VertexImpl ver = restoreVertex(buf, key);
 		
@@ -226,6 +1046,9 @@ public class DiskStorageManager {
 		//read the data from the disk
 		ByteBuffer buf = readGraphElementFromDisk(key, edges, maxESize);
 		
+		//a type id of zero denotes a slot that has never been written
+		if (buf.getInt(0) == 0) return null;
+		
 		//create a vertex that is identical to the vertex we deleted earlier
 		EdgeImpl edge = restoreEdge(buf, key);
 		
@@ -233,12 +1056,158 @@ public class DiskStorageManager {
 		return edge;
 	}
 	
+	/**
+	 * Renumbers all vertices, edges and incidences and rewrites vertices.dst,
+	 * edges.dst and incidences.dst in the given order. No element may be
+	 * cached while the files are reorganized.
+	 *
+	 * @param order
+	 *        The order in which the elements are stored afterwards
+	 * @see StorageReorganizer
+	 */
+	public void reorganize(StorageReorganizer.Order order){
+		//the reorganizer writes the files directly, so all logged writes
+		//must have reached them before
+		if (redoLog != null){
+			checkpoint();
+		}
+		flusher.drain();
+
+		new StorageReorganizer(graphdb, vertices, maxVSize, edges, maxESize, incidences,
+				stringHeap).reorganize(order);
+	}
+
+	/**
+	 * Reads several vertices from the disk and restores them. Vertices whose
+	 * records are close to each other in the file are read together.
+	 * 
+	 * @param keys
+	 *        The local ids of the vertices, in ascending order
+	 * @return
+	 *        The restored vertices, with a nullpointer for every slot
+	 *        that has never been written
+	 */
+	public VertexImpl[] readVerticesFromDisk(int[] keys){
+		ByteBuffer[] records = readRecordsFromDisk(keys, vertices, maxVSize);
+		
+		VertexImpl[] restored = new VertexImpl[keys.length];
+		for (int i = 0; i < keys.length; i++){
+			if (records[i].getInt(0) != 0){
+				restored[i] = restoreVertex(records[i], keys[i]);
+			}
+		}
+		return restored;
+	}
+	
+	/**
+	 * Reads several edges from the disk and restores them. Edges whose
+	 * records are close to each other in the file are read together.
+	 * 
+	 * @param keys
+	 *        The local ids of the edges, in ascending order
+	 * @return
+	 *        The restored edges, with a nullpointer for every slot
+	 *        that has never been written
+	 */
+	public EdgeImpl[] readEdgesFromDisk(int[] keys){
+		ByteBuffer[] records = readRecordsFromDisk(keys, edges, maxESize);
+		
+		EdgeImpl[] restored = new EdgeImpl[keys.length];
+		for (int i = 0; i < keys.length; i++){
+			if (records[i].getInt(0) != 0){
+				restored[i] = restoreEdge(records[i], keys[i]);
+			}
+		}
+		return restored;
+	}
+	
+	/**
+	 * Reads a run of consecutive incidences with a single read, and restores
+	 * those that are connected to the given vertex or edge. Incidences that
+	 * are created together are stored next to each other, so a run usually 
+	 * contains a large part of an incidence chain.
+	 * 
+	 * @param firstKey
+	 *        The local id of the first incidence of the run
+	 * @param count
+	 *        The number of incidences in the run
+	 * @param elementId
+	 *        The global id of the vertex or edge
+	 * @param atVertex
+	 *        True if elementId denotes a vertex, false if it denotes an edge
+	 * @return
+	 *        The restored incidences, with a nullpointer for every incidence
+	 *        that isn't connected to the given element
+	 */
+	public IncidenceImpl[] readIncidencesFromDisk(int firstKey, int count, long elementId, boolean atVertex){
+		int size = Tracker.INCIDENCE_SIZE;
+		ByteBuffer run = flusher.read(incidences, count * size, (long) firstKey * size);
+		
+		IncidenceImpl[] restored = new IncidenceImpl[count];
+		for (int i = 0; i < count; i++){
+			ByteBuffer buf = slice(run, i * size, size);
+			if (buf.getInt(0) != 0 && buf.getLong(atVertex ? 44 : 36) == elementId){
+				restored[i] = restoreIncidence(buf, firstKey + i);
+			}
+		}
+		return restored;
+	}
+	
+	/**
+	 * Reads the records of several vertices or edges. Records that are at 
+	 * most MAX_RECORD_GAP records apart are read with a single read, as long
+	 * as the read doesn't exceed MAX_RUN_BYTES.
+	 * 
+	 * @param keys
+	 *        The local ids of the vertices or edges, in ascending order
+	 * @param file
+	 *        The file in which the records are stored
+	 * @param byteSize
+	 *        The size of a record
+	 * @return The records, in the order of the keys
+	 */
+	private ByteBuffer[] readRecordsFromDisk(int[] keys, FileAccess file, int byteSize){
+		ByteBuffer[] records = new ByteBuffer[keys.length];
+		
+		int first = 0;
+		while (first < keys.length){
+			int last = first;
+			while (last + 1 < keys.length 
+					&& keys[last + 1] - keys[last] <= MAX_RECORD_GAP + 1
+					&& (long) (keys[last + 1] - keys[first] + 1) * byteSize <= MAX_RUN_BYTES){
+				last++;
+			}
+			
+			ByteBuffer run = flusher.read(file, (keys[last] - keys[first] + 1) * byteSize, 
+					(long) keys[first] * byteSize);
+			for (int i = first; i <= last; i++){
+				records[i] = slice(run, (keys[i] - keys[first]) * byteSize, byteSize);
+			}
+			
+			first = last + 1;
+		}
+		
+		return records;
+	}
+	
+	/**
+	 * Returns a part of a buffer as a buffer of its own, starting at 
+	 * position zero.
+	 */
+	private static ByteBuffer slice(ByteBuffer buf, int offset, int length){
+		ByteBuffer part = buf.duplicate();
+		part.clear();
+		part.position(offset);
+		part.limit(offset + length);
+		return part.slice();
+	}
+	
 	/**
 	 * Helper method to avoid duplicate code in readVertexFromDisk 
 	 * and readEdgeFromDisk
 	 */
 	private ByteBuffer readGraphElementFromDisk(int key, FileAccess file, int byteSize){
-		ByteBuffer buf = file.read(byteSize, key * byteSize);
+		ByteBuffer buf = flusher.read(file, byteSize, (long) key * byteSize);
 		
 		buf.position(0);
 		
@@ -258,11 +1227,12 @@ public class DiskStorageManager {
 			//incidence is neither new nor has it been changed since its last reload
 			return;
 		}
+		metrics.writtenBack(ElementKind.INCIDENCE);
 
 		ByteBuffer attributes = tracker.getVariables();
 		
 		//incidences always need 52 bytes because they have no attributes
-		incidences.write(attributes, incidenceRef.getKey() * Tracker.INCIDENCE_SIZE);
+		flusher.submit(incidences, attributes, (long) incidenceRef.getKey() * Tracker.INCIDENCE_SIZE);
 	}
 	
 	/**
@@ -275,10 +1245,13 @@ public class DiskStorageManager {
 	 */
 	public IncidenceImpl readIncidenceFromDisk(int key){
 		//read 52 bytes from the file which stores the Incidences
-		ByteBuffer buf = incidences.read(52, key * 52);
+		ByteBuffer buf = flusher.read(incidences, 52, (long) key * 52);
 		
 		buf.position(0);
 		
+		//a type id of zero denotes a slot that has never been written
+		if (buf.getInt(0) == 0) return null;
+		
 		//create an Incidence that is identical to the Incidence we deleted earlier
 		IncidenceImpl inc = restoreIncidence(buf, key);
 		
@@ -287,84 +1260,100 @@ public class DiskStorageManager {
 	}
 	
 	/**
-	 * Writes a String to the disk.
+	 * Reads the String handles of a record that is about to be overwritten.
+	 * 
+	 * @param file
+	 * 		The file in which the record is stored
+	 * @param baseLocation
+	 * 		The position of the record
+	 * @param keptTypeId
+	 * 		If the stored record has this type, its String handles are kept
+	 * 		and none are returned. Use -1 if the handles are replaced anyway.
+	 * @return The handles of all Strings referenced by the stored record
+	 */
+	private long[] readStringHandles(FileAccess file, long baseLocation, int keptTypeId){
+		int storedTypeId = flusher.read(file, 4, baseLocation).getInt(0) - 1;
+		
+		//a type id of -1 denotes a slot that has never been written
+		if (storedTypeId < 0 || storedTypeId == keptTypeId) return new long[0];
+		
+		GraphElementProfile profile = GraphElementProfile.getProfile(storedTypeId);
+		int numElems = profile.getNumStrings();
+		long[] handles = new long[numElems];
+		if (numElems > 0){
+			ByteBuffer buf = flusher.read(file, numElems * 8, 
+					baseLocation + profile.getStartOfStrings());
+			for (int i = 0; i < numElems; i++){
+				handles[i] = buf.getLong(i * 8);
+			}
+		}
+		return handles;
+	}
+	
+	/**
+	 * Writes a String to the heap in strings.dst. Identical short Strings
+	 * share a single slot.
 	 * 
 	 * @param s
 	 * 		The String to be written to the disk
 	 * 
 	 * @return
-	 * 		The position in strings.dst at which the String was stored, or -1 if
-	 * 		the String was null.
+	 * 		The handle of the String in the heap, or -1 if the String was null.
 	 */
 	public long writeStringToDisk(String s){
-		if (s == null) return -1;
-		
-		//start write operation at the first free byte in strings.dst
-		long currentPosition = stringsPointer;
-		
-		//convert the String to a byte array and obtain its length
-		byte[] bytes = s.getBytes();
-		int length = bytes.length;
-	
-		//write the length of the String into a ByteBuffer, followed by the String itself
-		ByteBuffer buf = ByteBuffer.allocate(4 + length);
-		buf.putInt(length);
-		buf.put(bytes);
-		
-		//write the contents of the buffer to strings.dst
-		strings.write(buf, stringsPointer);
-		
-		//advance the pointer to first free byte in strings.dst
-		stringsPointer += (4 + length);
-
-		return currentPosition;
+		return stringHeap.store(s);
 	}
 	
 	/**
 	 * Reads a String from the disk.
 	 * 
-	 * @param position
-	 * 		The position at which the String is stored in strings.dst
+	 * @param handle
+	 * 		The handle of the String in the heap
 	 * 
 	 * @return
-	 * 		The String, or a nullpointer if position was less than zero
+	 * 		The String, or a nullpointer if handle was less than zero
 	 */
-	public String readStringFromDisk(long position){
-		if (position < 0) return null;
-		
-		//read the length of the string from the file
-		ByteBuffer buf = strings.read(4, position);
-		int length = buf.getInt(0);
-		
-		//read 'length' bytes
-		String res = new String(strings.read(length, position + 4).array());
-
-		return res;
+	public String readStringFromDisk(long handle){
+		return stringHeap.read(handle);
 	}
 	
 	/**
-	 * Writes a List to the disk.
+	 * Moves all Strings in strings.dst to the start of the file and cuts off
+	 * the space of Strings that aren't referenced anymore. This is also done
+	 * by {@link #writeHeader()} if most of the file is unused.
+	 */
+	public void compactStrings(){
+		stringHeap.compact();
+	}
+	
+	/**
+	 * Writes a List, Set or Map attribute to the disk. It is encoded by the
+	 * codec that the profile holds for the attribute's domain.
 	 * 
-	 * @param s
-	 * 		The List to be written to the disk
+	 * @param profile
+	 * 		The profile of the element that owns the attribute
+	 * @param index
+	 * 		The index of the attribute among the element's collection attributes
+	 * @param l
+	 * 		The value to be written to the disk
 	 * 
 	 * @return
-	 * 		The position in lists.dst at which the List was stored, or -1 if
-	 * 		the List was null.
+	 * 		The position in lists.dst at which the value was stored, or -1 if
+	 * 		the value was null.
 	 */
-	public long writeListToDisk(List<?> l){
+	public synchronized long writeListToDisk(GraphElementProfile profile, int index, Object l){
 		if (l == null) return -1;
 		
 		long currentPosition = listsPointer;
 		
-		byte[] bytes = serializeList(l);
+		byte[] bytes = profile.encodeList(index, l);
 		int length = bytes.length;
 		
 		ByteBuffer buf = ByteBuffer.allocate(4 + length);
 		buf.putInt(length);
 		buf.put(bytes);
 		
-		lists.write(buf, listsPointer);
+		flusher.submit(lists, buf, listsPointer);
 		
 		listsPointer += (4 + length);
 		
@@ -372,23 +1361,27 @@ public class DiskStorageManager {
 	}
 	
 	/**
-	 * Reads a List from the disk.
+	 * Reads a List, Set or Map attribute from the disk.
 	 * 
+	 * @param profile
+	 * 		The profile of the element that owns the attribute
+	 * @param index
+	 * 		The index of the attribute among the element's collection attributes
 	 * @param position
-	 * 		The position at which the List is stored in lists.dst
+	 * 		The position at which the value is stored in lists.dst
 	 * 
 	 * @return
-	 * 		The List, or a nullpointer if position was less than zero
+	 * 		The value, or a nullpointer if position was less than zero
 	 */
-	public List readListFromDisk(long position){
+	public Object readListFromDisk(GraphElementProfile profile, int index, long position){
 		if (position == -1) return null;
 		
-		ByteBuffer buf = lists.read(4, position);
+		ByteBuffer buf = flusher.read(lists, 4, position);
 		int length = buf.getInt(0);
 		
-		byte[] readBytes = lists.read(length, position + 4).array();
+		byte[] readBytes = flusher.readBytes(lists, length, position + 4);
 		
-		return restoreList(readBytes);
+		return profile.decodeList(index, readBytes);
 	}
 
 	/**
@@ -489,13 +1482,13 @@ public class DiskStorageManager {
 		
 		prof.restoreStringsOfElement(ge, strings);
 		
-		//restore the Lists of this GraphElement
+		//restore the Lists, Sets and Maps of this GraphElement
 		numElems = prof.getNumLists();
-		List[] lists = new List[numElems];
+		Object[] lists = new Object[numElems];
 				
 		for (int i = 0; i < numElems; i++){
 			position = buf.getLong();
-			lists[i] = readListFromDisk(position);
+			lists[i] = readListFromDisk(prof, i, position);
 		}
 				
 		prof.restoreListsOfElement(ge, lists);
@@ -544,47 +1537,6 @@ public class DiskStorageManager {
 		return inc;
 	}
 	
-	/**
-	 * Converts a List to a ByteArray using the Java Serialization API.
-	 * 
-	 * @param
-	 * 		The List to be serialized
-	 * 
-	 * @return
-	 * 		The List as a ByteArray
-	 */
-	public byte[] serializeList(List<?> l){
-		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-		try {
-			ObjectOutputStream objStream = new ObjectOutputStream(outStream);
-			objStream.writeObject(l);
-		} catch (IOException e) {
-			throw new RuntimeException("Unable to serialize list");
-		}
-		return outStream.toByteArray();
-	}
-	
-	/**
-	 * Restore a List that was previously serialized. 
-	 * 
-	 * @param readBytes
-	 *      The byte array that represents the List
-	 *      
-	 * @return
-	 * 		The reconstructed List
-	 */
-	public List restoreList(byte[] readBytes){
-		ByteArrayInputStream inStream = new ByteArrayInputStream(readBytes);
-		try {
-			ObjectInputStream objReader = new ObjectInputStream(inStream);
-			return (List) objReader.readObject();
-		} catch (IOException e) {
-			throw new RuntimeException("Unable to create ObjectInputStream");
-		} catch (ClassNotFoundException e) {
-			throw new RuntimeException("Unable to restore list");
-		}
-	}
-	
 	//-------------------------------------------------------------------
 	//Methods and Variables to enforce a maximum size of the disk storage
 	//-------------------------------------------------------------------
@@ -620,7 +1572,7 @@ public class DiskStorageManager {
 	 * @param increment
 	 * 		The amount in Bytes by which the file will grow
 	 */
-	public static void increaseDiskStorageSize(long increment){
+	public static synchronized void increaseDiskStorageSize(long increment){
 		diskStorageSize += increment;
 		checkDiskStorage();
 	}
@@ -0,0 +1,472 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.uni_koblenz.jgralab.JGraLab;
+import de.uni_koblenz.jgralab.Record;
+import de.uni_koblenz.jgralab.schema.BooleanDomain;
+import de.uni_koblenz.jgralab.schema.Domain;
+import de.uni_koblenz.jgralab.schema.DoubleDomain;
+import de.uni_koblenz.jgralab.schema.EnumDomain;
+import de.uni_koblenz.jgralab.schema.IntegerDomain;
+import de.uni_koblenz.jgralab.schema.ListDomain;
+import de.uni_koblenz.jgralab.schema.LongDomain;
+import de.uni_koblenz.jgralab.schema.MapDomain;
+import de.uni_koblenz.jgralab.schema.RecordDomain;
+import de.uni_koblenz.jgralab.schema.RecordDomain.RecordComponent;
+import de.uni_koblenz.jgralab.schema.Schema;
+import de.uni_koblenz.jgralab.schema.SetDomain;
+import de.uni_koblenz.jgralab.schema.StringDomain;
+import de.uni_koblenz.jgralab.schema.impl.compilation.SchemaClassManager;
+
+/**
+ * Encodes attribute values into a compact binary form, driven by the
+ * domain of the attribute. It is used for the collection attributes of
+ * graph elements stored in lists.dst.
+ *
+ * Since the domain is known when a value is decoded, no type information
+ * is written. Integers and longs are written as zigzag varints, doubles
+ * with eight bytes and booleans with one byte. Strings are written as a
+ * varint length followed by their UTF-8 bytes, enum constants by their
+ * ordinal, and records by their components in the order of the domain.
+ * Lists, Sets and Maps are written as a varint size followed by their
+ * elements, or keys and values.
+ *
+ * The lengths and ordinals of all values that may be null are
+ * incremented by one, zero denotes null.
+ */
+public abstract class DomainCodec {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Creates a codec for a domain.
+	 *
+	 * @param domain
+	 * 		The domain of the values to be encoded
+	 * @return A codec for the given domain
+	 */
+	public static DomainCodec forDomain(Domain domain){
+		if (domain instanceof BooleanDomain) return new BooleanCodec();
+		if (domain instanceof IntegerDomain) return new IntegerCodec();
+		if (domain instanceof LongDomain) return new LongCodec();
+		if (domain instanceof DoubleDomain) return new DoubleCodec();
+		if (domain instanceof StringDomain) return new StringCodec();
+		if (domain instanceof EnumDomain) return new EnumCodec((EnumDomain) domain);
+		if (domain instanceof RecordDomain) return new RecordCodec((RecordDomain) domain);
+		if (domain instanceof ListDomain){
+			return new ListCodec(forDomain(((ListDomain) domain).getBaseDomain()));
+		}
+		if (domain instanceof SetDomain){
+			return new SetCodec(forDomain(((SetDomain) domain).getBaseDomain()));
+		}
+		if (domain instanceof MapDomain){
+			MapDomain map = (MapDomain) domain;
+			return new MapCodec(forDomain(map.getKeyDomain()), forDomain(map.getValueDomain()));
+		}
+		throw new IllegalArgumentException("Unsupported domain: " + domain.getQualifiedName());
+	}
+
+	/**
+	 * Encodes a value.
+	 *
+	 * @param value
+	 * 		The value to be encoded
+	 * @return The encoded value
+	 */
+	public byte[] encode(Object value){
+		Output out = new Output();
+		write(value, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a value that was encoded by this codec.
+	 *
+	 * @param bytes
+	 * 		The encoded value
+	 * @return The decoded value
+	 */
+	public Object decode(byte[] bytes){
+		return read(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Appends the encoding of a value to the output.
+	 */
+	protected abstract void write(Object value, Output out);
+
+	/**
+	 * Decodes a value starting at the position of the buffer, and advances
+	 * the position behind it.
+	 */
+	protected abstract Object read(ByteBuffer in);
+
+	/**
+	 * Reads an unsigned varint.
+	 */
+	protected static long readVarLong(ByteBuffer in){
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Reads a zigzag encoded varint.
+	 */
+	protected static long readSignedVarLong(ByteBuffer in){
+		long raw = readVarLong(in);
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	/**
+	 * Throws an exception for a null value in a domain that doesn't allow it.
+	 */
+	protected static void checkNotNull(Object value, String domain){
+		if (value == null){
+			throw new IllegalArgumentException("null is no valid value of domain " + domain);
+		}
+	}
+
+	/**
+	 * Loads the generated class of an enum or record domain.
+	 */
+	private static Class<?> loadM1Class(Domain domain){
+		Schema schema = domain.getSchema();
+		String m1ClassName = schema.getPackagePrefix() + "." + domain.getQualifiedName();
+		try {
+			return Class.forName(m1ClassName, true,
+					SchemaClassManager.instance(schema.getQualifiedName()));
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException("Can't load M1 class for domain "
+					+ domain.getQualifiedName(), e);
+		}
+	}
+
+	/**
+	 * A growable byte array with methods to append encoded values.
+	 */
+	protected static final class Output {
+
+		private byte[] bytes = new byte[64];
+
+		private int size;
+
+		private void ensureCapacity(int additional){
+			if (size + additional > bytes.length){
+				bytes = Arrays.copyOf(bytes, Math.max(size + additional, bytes.length * 2));
+			}
+		}
+
+		public void put(byte b){
+			ensureCapacity(1);
+			bytes[size++] = b;
+		}
+
+		public void put(byte[] src){
+			ensureCapacity(src.length);
+			System.arraycopy(src, 0, bytes, size, src.length);
+			size += src.length;
+		}
+
+		public void putLong(long value){
+			ensureCapacity(8);
+			for (int shift = 56; shift >= 0; shift -= 8){
+				bytes[size++] = (byte) (value >>> shift);
+			}
+		}
+
+		public void putVarLong(long value){
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0){
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		public void putSignedVarLong(long value){
+			putVarLong((value << 1) ^ (value >> 63));
+		}
+
+		public byte[] toByteArray(){
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+
+	private static final class BooleanCodec extends DomainCodec {
+		@Override
+		protected void write(Object value, Output out){
+			checkNotNull(value, BooleanDomain.BOOLEANDOMAIN_NAME);
+			out.put((byte) (((Boolean) value) ? 1 : 0));
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			return in.get() != 0;
+		}
+	}
+
+	private static final class IntegerCodec extends DomainCodec {
+		@Override
+		protected void write(Object value, Output out){
+			checkNotNull(value, IntegerDomain.INTDOMAIN_NAME);
+			out.putSignedVarLong((Integer) value);
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			return (int) readSignedVarLong(in);
+		}
+	}
+
+	private static final class LongCodec extends DomainCodec {
+		@Override
+		protected void write(Object value, Output out){
+			checkNotNull(value, LongDomain.LONGDOMAIN_NAME);
+			out.putSignedVarLong((Long) value);
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			return readSignedVarLong(in);
+		}
+	}
+
+	private static final class DoubleCodec extends DomainCodec {
+		@Override
+		protected void write(Object value, Output out){
+			checkNotNull(value, DoubleDomain.DOUBLEDOMAIN_NAME);
+			out.putLong(Double.doubleToRawLongBits((Double) value));
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			return Double.longBitsToDouble(in.getLong());
+		}
+	}
+
+	private static final class StringCodec extends DomainCodec {
+		@Override
+		protected void write(Object value, Output out){
+			if (value == null){
+				out.putVarLong(0);
+				return;
+			}
+			byte[] bytes = ((String) value).getBytes(UTF8);
+			out.putVarLong(bytes.length + 1L);
+			out.put(bytes);
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			int length = (int) readVarLong(in) - 1;
+			if (length < 0) return null;
+			String s = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+			in.position(in.position() + length);
+			return s;
+		}
+	}
+
+	private static final class EnumCodec extends DomainCodec {
+		private final EnumDomain domain;
+
+		/**
+		 * The constants of the enum, loaded when they are needed first
+		 */
+		private Object[] constants;
+
+		private EnumCodec(EnumDomain domain){
+			this.domain = domain;
+		}
+
+		@Override
+		protected void write(Object value, Output out){
+			out.putVarLong(value == null ? 0 : ((Enum<?>) value).ordinal() + 1L);
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			int ordinal = (int) readVarLong(in) - 1;
+			if (ordinal < 0) return null;
+			if (constants == null){
+				constants = loadM1Class(domain).getEnumConstants();
+			}
+			return constants[ordinal];
+		}
+	}
+
+	private static final class RecordCodec extends DomainCodec {
+		private final RecordDomain domain;
+
+		private final String[] names;
+
+		private final DomainCodec[] components;
+
+		/**
+		 * The constructor of the generated record class that takes a Map
+		 * of component values, loaded when it is needed first
+		 */
+		private Constructor<?> constructor;
+
+		private RecordCodec(RecordDomain domain){
+			this.domain = domain;
+			Collection<RecordComponent> comps = domain.getComponents();
+			names = new String[comps.size()];
+			components = new DomainCodec[comps.size()];
+			int i = 0;
+			for (RecordComponent c : comps){
+				names[i] = c.getName();
+				components[i] = forDomain(c.getDomain());
+				i++;
+			}
+		}
+
+		@Override
+		protected void write(Object value, Output out){
+			if (value == null){
+				out.put((byte) 0);
+				return;
+			}
+			out.put((byte) 1);
+			Record record = (Record) value;
+			for (int i = 0; i < names.length; i++){
+				components[i].write(record.getComponent(names[i]), out);
+			}
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			if (in.get() == 0) return null;
+			Map<String, Object> fields = new HashMap<String, Object>();
+			for (int i = 0; i < names.length; i++){
+				fields.put(names[i], components[i].read(in));
+			}
+			try {
+				if (constructor == null){
+					constructor = loadM1Class(domain).getConstructor(Map.class);
+				}
+				return constructor.newInstance(fields);
+			} catch (Exception e) {
+				throw new RuntimeException("Unable to restore record of domain "
+						+ domain.getQualifiedName(), e);
+			}
+		}
+	}
+
+	private static final class ListCodec extends DomainCodec {
+		private final DomainCodec elements;
+
+		private ListCodec(DomainCodec elements){
+			this.elements = elements;
+		}
+
+		@Override
+		protected void write(Object value, Output out){
+			if (value == null){
+				out.putVarLong(0);
+				return;
+			}
+			Collection<?> c = (Collection<?>) value;
+			out.putVarLong(c.size() + 1L);
+			for (Object o : c){
+				elements.write(o, out);
+			}
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			int size = (int) readVarLong(in) - 1;
+			if (size < 0) return null;
+			List<Object> values = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++){
+				values.add(elements.read(in));
+			}
+			return JGraLab.vector().plusAll(values);
+		}
+	}
+
+	private static final class SetCodec extends DomainCodec {
+		private final DomainCodec elements;
+
+		private SetCodec(DomainCodec elements){
+			this.elements = elements;
+		}
+
+		@Override
+		protected void write(Object value, Output out){
+			if (value == null){
+				out.putVarLong(0);
+				return;
+			}
+			Collection<?> c = (Collection<?>) value;
+			out.putVarLong(c.size() + 1L);
+			for (Object o : c){
+				elements.write(o, out);
+			}
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			int size = (int) readVarLong(in) - 1;
+			if (size < 0) return null;
+			List<Object> values = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++){
+				values.add(elements.read(in));
+			}
+			return JGraLab.set().plusAll(values);
+		}
+	}
+
+	private static final class MapCodec extends DomainCodec {
+		private final DomainCodec keys;
+
+		private final DomainCodec values;
+
+		private MapCodec(DomainCodec keys, DomainCodec values){
+			this.keys = keys;
+			this.values = values;
+		}
+
+		@Override
+		protected void write(Object value, Output out){
+			if (value == null){
+				out.putVarLong(0);
+				return;
+			}
+			Map<?, ?> m = (Map<?, ?>) value;
+			out.putVarLong(m.size() + 1L);
+			for (Map.Entry<?, ?> e : m.entrySet()){
+				keys.write(e.getKey(), out);
+				values.write(e.getValue(), out);
+			}
+		}
+
+		@Override
+		protected Object read(ByteBuffer in){
+			int size = (int) readVarLong(in) - 1;
+			if (size < 0) return null;
+			Map<Object, Object> entries = new LinkedHashMap<Object, Object>(size * 2);
+			for (int i = 0; i < size; i++){
+				Object key = keys.read(in);
+				entries.put(key, values.read(in));
+			}
+			return JGraLab.map().plusAll(entries);
+		}
+	}
+}
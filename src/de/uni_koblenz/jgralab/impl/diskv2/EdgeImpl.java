@@ -78,6 +78,11 @@ public abstract class EdgeImpl extends
 		return ((MemStorageManager) getStorage()).getEdgeTracker(getLocalId());
 	}
 	
+	@Override
+	public Object getTrackerLock(){
+		return ((MemStorageManager) getStorage()).getEdgeLock(getLocalId());
+	}
+	
 	@Override
 	public final Vertex addAdjacence(IncidenceClass incidentIc,
 			IncidenceClass adjacentIc, Edge other) {
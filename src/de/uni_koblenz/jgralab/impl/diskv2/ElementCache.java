@@ -0,0 +1,783 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
+import de.uni_koblenz.jgralab.impl.StorageMetrics.ElementKind;
+
+/**
+ * Concurrent cache for vertices, edges or incidences, used by the
+ * MemStorageManager.
+ *
+ * The cache is divided into a fixed number of stripes. Every stripe is a
+ * chained hash table of CacheEntries with its own lock and its own
+ * ReferenceQueue. Threads that access elements in different stripes never
+ * block each other, and the references cleared by the garbage collector
+ * are drained per stripe, so a lookup only pays for the entries of its own
+ * stripe. The stripe of an entry is selected by the lowest bits of its key,
+ * which spreads consecutive local ids over all stripes.
+ *
+ * By default, the cached objects are only softly referenced, so the garbage
+ * collector decides when they are written back. If a {@link MemoryBudget} is
+ * set, every entry that is accessed becomes resident, i.e. it is kept
+ * strongly reachable and charged with an estimated size. When the budget
+ * is exceeded, resident entries are evicted with the CLOCK algorithm. A
+ * cache-wide hand selects the stripe that is swept next, so all stripes
+ * give up entries, not only the one that has added an entry. The changed
+ * state of the victims of a stripe is written to the disk in one batch,
+ * sorted by key, and their objects are only weakly referenced afterwards.
+ * An evicted object is thus collected as soon as the application doesn't
+ * use it anymore, while an object that is still in use keeps its identity.
+ * If it is collected later on, no write is needed.
+ *
+ * Elements that are read from the disk without holding the lock of their
+ * stripe, like the neighbors loaded by a {@link NeighborhoodPrefetcher}, are
+ * added with {@link #putLoaded(Object, int)}. Every stripe counts the writes
+ * of entries that leave it, so such an element is rejected if it might have
+ * been read before the latest state of the element was written.
+ *
+ * Every lookup is recorded as a hit or a miss in the {@link StorageMetrics}
+ * of the cache, together with the time needed to reload a missing element.
+ * Entries that are dropped after their objects have been collected are
+ * recorded as evictions.
+ *
+ * Subclasses define how an element is written to and read from the disk.
+ */
+public abstract class ElementCache<V> {
+
+	/**
+	 * maximum load factor of a stripe. If load factor is exceeded, do a rehash
+	 */
+	private static final double MAX_LOAD_FACTOR = 0.7;
+
+	/**
+	 * log(2) of the default number of stripes
+	 */
+	public static final int DEFAULT_STRIPE_EXP = 6;
+
+	/**
+	 * Orders CacheEntries by their keys, and thus by their positions in
+	 * the files of the DiskStorageManager
+	 */
+	private static final Comparator<CacheEntry<?>> KEY_ORDER = new Comparator<CacheEntry<?>>(){
+		@Override
+		public int compare(CacheEntry<?> e1, CacheEntry<?> e2) {
+			return e1.getKey() < e2.getKey() ? -1 : (e1.getKey() == e2.getKey() ? 0 : 1);
+		}
+	};
+
+	/**
+	 * The stripes of this cache
+	 */
+	private final Stripe<V>[] stripes;
+
+	/**
+	 * Used to compute the stripe of a key with a logical and
+	 */
+	private final int stripeMask;
+
+	/**
+	 * log(2) of the number of stripes. The bits of a key that select the
+	 * stripe are shifted out before the bucket inside the stripe is computed.
+	 */
+	private final int stripeExp;
+
+	/**
+	 * The memory budget, or null if the cached objects are only softly
+	 * referenced
+	 */
+	private volatile MemoryBudget budget;
+
+	/**
+	 * The estimated size in bytes that a resident entry is charged with
+	 */
+	private volatile int entrySize;
+
+	/**
+	 * The stripe that is swept next when the budget is exceeded
+	 */
+	private final AtomicInteger hand = new AtomicInteger();
+
+	/**
+	 * Receives the hits, misses, reloads and evictions of this cache
+	 */
+	private final StorageMetrics metrics;
+
+	/**
+	 * The kind of the cached elements
+	 */
+	private final ElementKind kind;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param stripeExp
+	 * 		log(2) of the number of stripes
+	 * @param initialExp
+	 * 		log(2) of the initial number of buckets of the whole cache
+	 * @param metrics
+	 * 		The metrics in which the accesses to this cache are recorded
+	 * @param kind
+	 * 		The kind of the cached elements
+	 */
+	protected ElementCache(int stripeExp, int initialExp, StorageMetrics metrics, ElementKind kind){
+		this.metrics = metrics;
+		this.kind = kind;
+		this.stripeExp = stripeExp;
+		int numStripes = 1 << stripeExp;
+		stripeMask = numStripes - 1;
+		stripes = newStripes(numStripes);
+
+		int bucketExp = Math.max(1, initialExp - stripeExp);
+		for (int i = 0; i < numStripes; i++){
+			stripes[i] = new Stripe<V>(bucketExp);
+		}
+	}
+
+	/**
+	 * Creates an array of stripes, which can't be created directly because
+	 * of their type parameter.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <V> Stripe<V>[] newStripes(int length){
+		return new Stripe[length];
+	}
+
+	/**
+	 * Creates an array of CacheEntries, which can't be created directly
+	 * because of their type parameter.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <V> CacheEntry<V>[] newEntries(int length){
+		return new CacheEntry[length];
+	}
+
+	/**
+	 * Writes the element referenced by a CacheEntry to the disk. This is
+	 * called with the lock of the entry's stripe held.
+	 *
+	 * @param entry
+	 * 		The entry whose tracked state is written out
+	 */
+	protected abstract void writeToDisk(CacheEntry<V> entry);
+
+	/**
+	 * Reads an element from the disk. This is called with the lock of the
+	 * stripe the element belongs to held.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @return The restored element, or null if no such element is stored
+	 */
+	protected abstract V readFromDisk(int key);
+
+	/**
+	 * Called after get() has read an element from the disk, without any
+	 * lock of this cache held. Does nothing by default.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @param value
+	 * 		The element that has been read
+	 */
+	protected void loaded(int key, V value){
+	}
+
+	/**
+	 * Writes a batch of evicted entries to the disk. The entries are sorted
+	 * by their keys. This is called with the lock of their stripe held.
+	 *
+	 * @param entries
+	 * 		The evicted entries
+	 */
+	protected void writeBatchToDisk(List<CacheEntry<V>> entries){
+		for (CacheEntry<V> entry : entries){
+			writeToDisk(entry);
+		}
+	}
+
+	/**
+	 * Sets the memory budget of this cache. All entries that are resident
+	 * under the previous budget fall back to being softly referenced.
+	 *
+	 * @param budget
+	 * 		The new budget, or null to let the garbage collector decide
+	 * 		when cached objects are written back
+	 * @param entrySize
+	 * 		The estimated size in bytes of a resident entry
+	 */
+	public void setMemoryBudget(MemoryBudget budget, int entrySize){
+		for (Stripe<V> stripe : stripes){
+			synchronized (stripe){
+				while (stripe.clockSize > 0){
+					CacheEntry<V> entry = stripe.clock[stripe.clockSize - 1];
+					stripe.removeFromClock(entry, true);
+					this.budget.release(this.entrySize);
+				}
+			}
+		}
+		if (this.budget != null){
+			this.budget.unregister(this);
+		}
+		this.entrySize = entrySize;
+		this.budget = budget;
+		if (budget != null){
+			budget.register(this);
+		}
+	}
+
+	/**
+	 * Retrieves an element from the cache. If it isn't found in the cache,
+	 * or if it has been deleted by the garbage collector, it is loaded from
+	 * the disk and put back in the cache.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @return The element, or null if no element with the given id exists
+	 */
+	public V get(int key){
+		Stripe<V> stripe = stripeFor(key);
+		V value;
+		boolean read = false;
+
+		synchronized (stripe){
+			drain(stripe);
+
+			CacheEntry<V> entry = stripe.find(key, bucket(stripe, key));
+			value = entry == null ? null : entry.get();
+
+			if (value == null){
+				if (entry != null){
+					//the element has been collected, but its reference
+					//hasn't been enqueued yet
+					writeToDisk(entry);
+					unlink(stripe, entry);
+					stripe.writes++;
+					metrics.evicted(kind, 1);
+				}
+				metrics.miss(kind);
+				long start = System.nanoTime();
+				value = readFromDisk(key);
+				if (value != null){
+					metrics.reloaded(kind, System.nanoTime() - start);
+					add(stripe, new CacheEntry<V>(value, stripe.queue), value);
+					read = true;
+				}
+			}
+			else {
+				metrics.hit(kind);
+				touch(stripe, entry, value);
+			}
+		}
+
+		enforceBudget();
+		if (read){
+			loaded(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Retrieves an element only if it is cached and hasn't been deleted by
+	 * the garbage collector. Nothing is loaded from the disk, and the access
+	 * isn't recorded.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @return The element, or null if it isn't cached
+	 */
+	public V peek(int key){
+		Stripe<V> stripe = stripeFor(key);
+
+		synchronized (stripe){
+			CacheEntry<V> entry = stripe.find(key, bucket(stripe, key));
+			return entry == null ? null : entry.get();
+		}
+	}
+
+	/**
+	 * Returns the number of entries that have left the stripe of a key.
+	 * Must be called before an element
+	 * with this key is read for {@link #putLoaded(Object, int)}.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @return A stamp for putLoaded
+	 */
+	public int getWriteStamp(int key){
+		Stripe<V> stripe = stripeFor(key);
+
+		synchronized (stripe){
+			return stripe.writes;
+		}
+	}
+
+	/**
+	 * Puts an element in the cache that has been read from the disk without
+	 * holding the lock of its stripe. The element is rejected if it is
+	 * cached already, or if an entry of its stripe has been written to the
+	 * disk since the stamp was taken, because the read might have missed
+	 * that write. Unlike get(), this doesn't call loaded().
+	 *
+	 * @param value
+	 * 		The element that has been read. Its hash code is used as key.
+	 * @param stamp
+	 * 		The result of {@link #getWriteStamp(int)} before the element was read
+	 * @return true if the element has been added
+	 */
+	public boolean putLoaded(V value, int stamp){
+		int key = value.hashCode();
+		Stripe<V> stripe = stripeFor(key);
+
+		synchronized (stripe){
+			drain(stripe);
+
+			if (stripe.writes != stamp || stripe.find(key, bucket(stripe, key)) != null){
+				return false;
+			}
+
+			add(stripe, new CacheEntry<V>(value, stripe.queue), value);
+		}
+		enforceBudget();
+		return true;
+	}
+
+	/**
+	 * Retrieves the CacheEntry for a key without loading anything from the
+	 * disk.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @return The CacheEntry, or null if the element isn't cached
+	 */
+	public CacheEntry<V> getEntry(int key){
+		Stripe<V> stripe = stripeFor(key);
+
+		synchronized (stripe){
+			return stripe.find(key, bucket(stripe, key));
+		}
+	}
+
+	/**
+	 * Returns the monitor which guards the entry with the given key. The
+	 * tracker of an entry may only be created and changed while holding
+	 * it, since {@link #flush()} and the eviction write the tracker and
+	 * clear it under the same monitor.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 * @return The monitor of the stripe the key belongs to
+	 */
+	public Object getLock(int key){
+		return stripeFor(key);
+	}
+
+	/**
+	 * Puts an element in the cache. Unlike the other methods that add
+	 * elements, this doesn't enforce the memory budget, because it is
+	 * usually called with the lock of the element held. The caller has to
+	 * call {@link #enforceBudget()} after releasing the lock.
+	 *
+	 * @param value
+	 * 		The element to be cached. Its hash code is used as key.
+	 * @return The CacheEntry created for the element
+	 */
+	public CacheEntry<V> put(V value){
+		int key = value.hashCode();
+		Stripe<V> stripe = stripeFor(key);
+
+		synchronized (stripe){
+			drain(stripe);
+			CacheEntry<V> entry = new CacheEntry<V>(value, stripe.queue);
+			add(stripe, entry, value);
+			return entry;
+		}
+	}
+
+	/**
+	 * Evicts resident entries if the memory budget is exceeded. Must be
+	 * called without holding any lock of a cache.
+	 */
+	public void enforceBudget(){
+		MemoryBudget b = budget;
+		if (b != null){
+			b.enforce(this);
+		}
+	}
+
+	/**
+	 * Removes an element from the cache without writing it to the disk.
+	 *
+	 * @param key
+	 * 		The local id of the element
+	 */
+	public void remove(int key){
+		Stripe<V> stripe = stripeFor(key);
+
+		synchronized (stripe){
+			CacheEntry<V> entry = stripe.find(key, bucket(stripe, key));
+			if (entry != null){
+				unlink(stripe, entry);
+				stripe.writes++;
+			}
+		}
+	}
+
+	/**
+	 * Writes every new or changed entry of the cache to the disk. Entries 
+	 * whose elements have been deleted by the garbage collector are removed.
+	 */
+	public void flush(){
+		for (Stripe<V> stripe : stripes){
+			synchronized (stripe){
+				drain(stripe);
+				for (CacheEntry<V> bucket : stripe.table){
+					for (CacheEntry<V> e = bucket; e != null; e = e.getNext()){
+						writeToDisk(e);
+						e.clearTracker();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache without writing them to the disk,
+	 * so the cache must have been flushed before. Objects that have been
+	 * obtained from the cache before are not tracked anymore.
+	 */
+	public void clear(){
+		for (Stripe<V> stripe : stripes){
+			synchronized (stripe){
+				drain(stripe);
+				for (CacheEntry<V> bucket : stripe.table){
+					CacheEntry<V> e = bucket;
+					while (e != null){
+						CacheEntry<V> next = e.getNext();
+						unlink(stripe, e);
+						e = next;
+					}
+				}
+				stripe.writes++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries in the cache.
+	 */
+	public int size(){
+		int size = 0;
+		for (Stripe<V> stripe : stripes){
+			synchronized (stripe){
+				size += stripe.count;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Checks if any objects of a stripe have been deleted by the garbage
+	 * collector. If so, their states are written to the disk and their
+	 * CacheEntries are removed from the stripe. Entries that have been
+	 * replaced in the meantime are skipped, because their state has been
+	 * written out already.
+	 */
+	@SuppressWarnings("unchecked")
+	private void drain(Stripe<V> stripe){
+		CacheEntry<V> current = (CacheEntry<V>) stripe.queue.poll();
+		int evicted = 0;
+
+		while (current != null){
+			if (unlink(stripe, current)){
+				writeToDisk(current);
+				stripe.writes++;
+				evicted++;
+			}
+			current = (CacheEntry<V>) stripe.queue.poll();
+		}
+
+		if (evicted > 0){
+			metrics.evicted(kind, evicted);
+		}
+	}
+
+	/**
+	 * Adds an entry to a stripe and rehashes the stripe if its load
+	 * factor is exceeded. If a budget is set, the entry becomes resident.
+	 */
+	private void add(Stripe<V> stripe, CacheEntry<V> entry, V value){
+		stripe.put(entry, bucket(stripe, entry.getKey()));
+
+		if (stripe.count > stripe.maxEntries){
+			rehash(stripe);
+		}
+
+		touch(stripe, entry, value);
+	}
+
+	/**
+	 * Removes an entry from a stripe and releases its bytes if it was 
+	 * resident.
+	 *
+	 * @return true if the entry was found in the stripe
+	 */
+	private boolean unlink(Stripe<V> stripe, CacheEntry<V> entry){
+		if (entry.isResident()){
+			stripe.removeFromClock(entry, false);
+			budget.release(entrySize);
+		}
+		return stripe.remove(entry, bucket(stripe, entry.getKey()));
+	}
+
+	/**
+	 * Records an access to an entry. Resident entries get their reference
+	 * bit set, others become resident again. The budget isn't enforced
+	 * here, since the lock of the stripe is held.
+	 */
+	private void touch(Stripe<V> stripe, CacheEntry<V> entry, V value){
+		MemoryBudget b = budget;
+		if (b == null){
+			entry.keepSoftly(value);
+			return;
+		}
+
+		if (entry.isResident()){
+			entry.setReferenced(true);
+			return;
+		}
+
+		stripe.addToClock(entry, value);
+		b.charge(entrySize);
+	}
+
+	/**
+	 * Evicts resident entries, sweeping one stripe after another, starting
+	 * with the stripe the cache-wide hand points to. Only one lock is held
+	 * at a time. Called by the {@link MemoryBudget}.
+	 *
+	 * @param toFree
+	 * 		The amount of bytes that should be released
+	 * @return The amount of bytes that have been released
+	 */
+	long evict(long toFree){
+		MemoryBudget b = budget;
+		long freed = 0;
+		if (b == null){
+			return freed;
+		}
+
+		for (int i = 0; i < stripes.length && freed < toFree; i++){
+			Stripe<V> stripe = stripes[hand.getAndIncrement() & stripeMask];
+			List<CacheEntry<V>> victims = new ArrayList<CacheEntry<V>>();
+
+			synchronized (stripe){
+				drain(stripe);
+				while (freed < toFree && stripe.clockSize > 0){
+					victims.add(stripe.sweep());
+					freed += entrySize;
+				}
+
+				if (victims.isEmpty()){
+					continue;
+				}
+
+				b.release(victims.size() * (long) entrySize);
+				Collections.sort(victims, KEY_ORDER);
+				writeBatchToDisk(victims);
+				for (CacheEntry<V> victim : victims){
+					victim.clearTracker();
+				}
+			}
+		}
+		return freed;
+	}
+
+	/**
+	 * Doubles the size of a stripe and rehashes all of its entries.
+	 */
+	@SuppressWarnings("unchecked")
+	private void rehash(Stripe<V> stripe){
+		//the bucket index must fit into the bits left after the stripe bits
+		if (stripe.exp + stripeExp >= 31){
+			//remove size limit so we don't end up here after every put
+			stripe.maxEntries = Integer.MAX_VALUE;
+			return;
+		}
+
+		CacheEntry<V>[] oldTable = stripe.table;
+		stripe.resize(stripe.exp + 1);
+
+		for (CacheEntry<V> bucket : oldTable){
+			CacheEntry<V> current = bucket;
+			while (current != null){
+				CacheEntry<V> next = current.getNext();
+				current.setNext(null);
+				stripe.put(current, bucket(stripe, current.getKey()));
+				current = next;
+			}
+		}
+	}
+
+	/**
+	 * Computes the stripe a key belongs to.
+	 */
+	private Stripe<V> stripeFor(int key){
+		return stripes[key & stripeMask];
+	}
+
+	/**
+	 * Computes the bucket of a key inside its stripe.
+	 */
+	private int bucket(Stripe<V> stripe, int key){
+		return (key >>> stripeExp) & stripe.mask;
+	}
+
+	/**
+	 * A single stripe of the cache, i.e. a chained hash table which is
+	 * guarded by its own monitor.
+	 */
+	private static final class Stripe<V> {
+
+		/**
+		 * The queue in which the CacheEntries of this stripe are put after
+		 * the garbage collector deleted the referenced objects
+		 */
+		final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+
+		CacheEntry<V>[] table;
+		int exp;
+		int mask;
+		int count;
+		int maxEntries;
+
+		/**
+		 * The number of entries that have left this stripe, either after
+		 * being written to the disk or because they were deleted. See
+		 * putLoaded.
+		 */
+		int writes;
+
+		/**
+		 * The resident entries of this stripe, in the order the clock 
+		 * hand visits them
+		 */
+		CacheEntry<V>[] clock;
+		int clockSize;
+		int hand;
+
+		Stripe(int exp){
+			resize(exp);
+			clock = newEntries(16);
+		}
+
+		void addToClock(CacheEntry<V> entry, V value){
+			if (clockSize == clock.length){
+				CacheEntry<V>[] newClock = newEntries(clock.length * 2);
+				System.arraycopy(clock, 0, newClock, 0, clockSize);
+				clock = newClock;
+			}
+			clock[clockSize] = entry;
+			entry.makeResident(value, clockSize);
+			clockSize++;
+		}
+
+		/**
+		 * Removes an entry from the clock by moving the last entry of the
+		 * clock to its position.
+		 *
+		 * @param keepSoftly
+		 * 		Whether the object of the entry stays softly reachable
+		 */
+		void removeFromClock(CacheEntry<V> entry, boolean keepSoftly){
+			int index = entry.getClockIndex();
+			clockSize--;
+			if (index != clockSize){
+				clock[index] = clock[clockSize];
+				clock[index].setClockIndex(index);
+			}
+			clock[clockSize] = null;
+			if (hand >= clockSize){
+				hand = 0;
+			}
+			entry.evict(keepSoftly);
+		}
+
+		/**
+		 * Advances the clock hand until an entry is found whose reference
+		 * bit isn't set, clearing the bits of all entries passed on the way.
+		 * The found entry is removed from the clock and returned, its object
+		 * is only weakly referenced afterwards.
+		 */
+		CacheEntry<V> sweep(){
+			while (true){
+				CacheEntry<V> current = clock[hand];
+				if (current.isReferenced()){
+					current.setReferenced(false);
+					hand = (hand + 1) % clockSize;
+				}
+				else {
+					removeFromClock(current, false);
+					return current;
+				}
+			}
+		}
+
+		void resize(int newExp){
+			exp = newExp;
+			table = newEntries(1 << exp);
+			mask = table.length - 1;
+			maxEntries = (int) (table.length * MAX_LOAD_FACTOR);
+			count = 0;
+		}
+
+		CacheEntry<V> find(int key, int bucket){
+			CacheEntry<V> current = table[bucket];
+			while (current != null && !current.hasKey(key)){
+				current = current.getNext();
+			}
+			return current;
+		}
+
+		void put(CacheEntry<V> entry, int bucket){
+			//put new element at the start of the list
+			entry.setNext(table[bucket]);
+			table[bucket] = entry;
+			count++;
+		}
+
+		/**
+		 * Removes exactly the given entry, not just any entry with its key.
+		 *
+		 * @return true if the entry was found in this stripe
+		 */
+		boolean remove(CacheEntry<V> entry, int bucket){
+			CacheEntry<V> current = table[bucket];
+			CacheEntry<V> predecessor = null;
+
+			while (current != null && current != entry){
+				predecessor = current;
+				current = current.getNext();
+			}
+
+			if (current == null){
+				return false;
+			}
+
+			if (predecessor == null){
+				table[bucket] = current.getNext();
+			}
+			else {
+				predecessor.setNext(current.getNext());
+			}
+			current.setNext(null);
+			count--;
+			return true;
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+import de.uni_koblenz.jgralab.impl.StorageMetrics.FileMetrics;
+
 /**
  * Wrapper class to provide access to a file.
  * 
@@ -12,10 +15,10 @@ import java.nio.channels.FileChannel;
  * to write the contents of a ByteBuffer into this file, or to read a number of 
  * bytes from this file, which are then returned in a byte buffer.
  * 
- * Internally, it uses a MappedByteBuffer for increased efficiency if the operating
- * system isn't Windows. If Windows is used, it sticks with a FileChannel because a
- * bug in Java makes it impossible for files to be deleted if it has been 
- * accessed via a MappedByteBuffer at any point.
+ * Internally, it maps the file into memory in large segments for increased 
+ * efficiency if the operating system isn't Windows. If Windows is used, it sticks 
+ * with a FileChannel because a file cannot be deleted while it is mapped, and 
+ * Java doesn't guarantee that a mapping is ever released.
  *  
  * @author aheld
  *
@@ -25,9 +28,7 @@ public abstract class FileAccess {
 	/**
 	 * Checks if the used OS is windows
 	 */
-	//always use the windows variant, because the default one isn't stable
-	//private static boolean windows = isWindows();
-	private static boolean windows = true;
+	private static boolean windows = isWindows();
 	
 	/**
 	 * The FileChannel used to access the file.
@@ -39,6 +40,12 @@ public abstract class FileAccess {
 	 */
 	private long size;
 	
+	/**
+	 * Receives the number of bytes and the duration of every read and 
+	 * write, or null if the operations on this file aren't recorded
+	 */
+	private volatile FileMetrics metrics;
+	
 	/**
 	 * Factory method that provides a FileAccess object for a specific file.
 	 * If such an object was created previously, that object is returned. 
@@ -49,15 +56,40 @@ public abstract class FileAccess {
 	 * @return An access to the named file. 
 	 */
 	public static FileAccess createFileAccess(String filename){	
+		return createFileAccess(new File("."), filename, true);
+	}
+	
+	/**
+	 * Factory method that provides a FileAccess object for a file in a given
+	 * directory. If the file already exists, its content is kept, so a graph
+	 * that was stored in this directory before can be reopened.
+	 * 
+	 * @param directory
+	 *        The directory in which the file is located
+	 * @param filename
+	 *        The name of the file to access. The suffix ".dst" is added internally.
+	 * @param temporary
+	 *        If true, the file is deleted when the VM exits
+	 * @return An access to the named file.
+	 */
+	public static FileAccess createFileAccess(File directory, String filename, boolean temporary){
+		File file = new File(directory, filename + ".dst");
+		if (temporary){
+			file.deleteOnExit();
+		}
+		
 		FileAccess fileAccess;
 		
 		if (windows){
-			fileAccess = new FileAccessForWindows(filename);
+			fileAccess = new FileAccessForWindows(file);
 		}
 		else {
-			fileAccess = new FileAccessDefault(filename);
+			fileAccess = new FileAccessDefault(file);
 		}
 		
+		//files of a reopened graph already occupy space on the disk
+		fileAccess.requestSizeChange(fileAccess.length());
+		
 		//add a shutdown hook so the Channel is closed during shutdown, 
 		//or else we cannot delete the file
 		fileAccess.addShutdownHook();
@@ -77,7 +109,26 @@ public abstract class FileAccess {
 	public abstract void write(ByteBuffer content, long index);
 	
 	/**
-	 * Read the content of a file from a given position.
+	 * Writes the contents of several ByteBuffers into the file, one after 
+	 * another, starting at a given position.
+	 * 
+	 * @param contents
+	 *        The ByteBuffers whose contents are written to the file
+	 * @param index
+	 *        The position in the file to which the first buffer is written
+	 */
+	public void write(ByteBuffer[] contents, long index){
+		for (ByteBuffer content : contents){
+			write(content, index);
+			index += content.capacity();
+		}
+	}
+	
+	/**
+	 * Read the content of a file from a given position. The returned buffer
+	 * may share its content with the file, so it must not be modified and 
+	 * must not be kept beyond a truncation of the file. It isn't necessarily 
+	 * backed by an array, use {@link #readBytes(int, long)} to get a copy.
 	 * 
 	 * @param numBytes
 	 *        The amount of bytes to be read
@@ -88,6 +139,119 @@ public abstract class FileAccess {
 	 */
 	public abstract ByteBuffer read(int numBytes, long index);
 	
+	/**
+	 * Read the content of a file from a given position into a new array.
+	 * 
+	 * @param numBytes
+	 *        The amount of bytes to be read
+	 * @param index
+	 *        The position in the file from which to start reading
+	 * @return
+	 *        An array containing the requested bytes
+	 */
+	public byte[] readBytes(int numBytes, long index){
+		return getBytes(read(numBytes, index));
+	}
+	
+	/**
+	 * Copies the content of a buffer, from position zero up to its capacity, 
+	 * into a new array.
+	 * 
+	 * @param buf
+	 *        The buffer to be copied
+	 * @return
+	 *        An array containing the buffer's content
+	 */
+	public static byte[] getBytes(ByteBuffer buf){
+		byte[] bytes = new byte[buf.capacity()];
+		ByteBuffer source = buf.duplicate();
+		source.clear();
+		source.get(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Forces all changes made to the file to be written to the storage device.
+	 */
+	public void flush(){
+		try {
+			channel.force(false);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to flush file");
+		}
+	}
+	
+	/**
+	 * Returns the current length of the accessed file.
+	 * 
+	 * @return The length of the file in bytes
+	 */
+	public long length(){
+		try {
+			return channel.size();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to determine size of file");
+		}
+	}
+	
+	/**
+	 * Cuts off the file behind the given size.
+	 * 
+	 * @param newSize
+	 *        The new length of the file in bytes
+	 */
+	public synchronized void truncate(long newSize){
+		try {
+			channel.truncate(newSize);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to truncate file");
+		}
+		if (newSize < size){
+			DiskStorageManager.increaseDiskStorageSize(newSize - size);
+			size = newSize;
+		}
+	}
+	
+	/**
+	 * Sets where the reads and writes of this file are recorded.
+	 * 
+	 * @param metrics
+	 *        The metrics of this file, or null to stop recording
+	 */
+	public void setMetrics(FileMetrics metrics){
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Records a read, if metrics have been set.
+	 * 
+	 * @param numBytes
+	 *        The amount of bytes read
+	 * @param start
+	 *        The value of System.nanoTime() before the read started
+	 */
+	protected void recordRead(long numBytes, long start){
+		FileMetrics m = metrics;
+		if (m != null){
+			m.read(numBytes, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Records a write, if metrics have been set.
+	 * 
+	 * @param numBytes
+	 *        The amount of bytes written
+	 * @param start
+	 *        The value of System.nanoTime() before the write started
+	 */
+	protected void recordWrite(long numBytes, long start){
+		FileMetrics m = metrics;
+		if (m != null){
+			m.written(numBytes, System.nanoTime() - start);
+		}
+	}
+	
 	/**
 	 * Method that returns true if the used operating system is windows
 	 * 
@@ -106,25 +270,31 @@ public abstract class FileAccess {
 	 * @param newSize
 	 * 		What the new size of the file will be after it has grown
 	 */
-	protected void requestSizeChange(long newSize){
+	protected synchronized void requestSizeChange(long newSize){
 		if (newSize > size){
 			DiskStorageManager.increaseDiskStorageSize(newSize - size);
 			size = newSize;
 		}
 	}
 	
+	/**
+	 * Closes the file channel so Java can delete the file.
+	 */
+	protected void close(){
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to close FileChannel");
+		}
+	}
+	
 	/**
 	 * Code that is executed when the VMU exits
 	 */
 	private void addShutdownHook() {
 		Runtime.getRuntime().addShutdownHook(new Thread() {
 		    public void run() {
-		    	//close file channel so Java can delete the file.
-		        try {
-					channel.close();
-				} catch (IOException e) {
-					throw new RuntimeException("Unable to close FileChannel");
-				}
+		    	close();
 		    }
 		});
 	}
@@ -8,128 +8,312 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation for the abstract class FileAccess that is used if
- * the operating system is not Windows.
- * 
+ * the operating system is not Windows. The file is divided into segments
+ * of SEGMENT_SIZE bytes, each of which is mapped into memory on its first
+ * access and stays mapped. Reads return slices of the mapped segments, so
+ * reloading an element is a memory access instead of a system call.
+ *
+ * The segment at the end of the file is mapped only as far as needed, and
+ * is mapped again with a bigger size if the file grows. Every segment counts
+ * the operations that currently use it, so a truncation can wait for the
+ * operations on the segments it retires.
+ *
+ * Segments are never unmapped explicitly, since the slices returned by
+ * reads may still point into them, and accessing an unmapped buffer crashes
+ * the VM. A retired segment is unmapped when it and all of its slices have
+ * been garbage collected.
+ *
  * @author aheld
  *
  */
 public class FileAccessDefault extends FileAccess{
-	
-	/**
-	 * The part of the file that is mapped into memory.
-	 */
-	private MappedByteBuffer accessWindow;
-	
+
 	/**
-	 * The size of the area of the file that is mapped into memory, in bytes.
+	 * The maximum size of a mapped segment, in bytes.
 	 */
-	private static final int FILE_AREA = 1048576; //1 MB
-	
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024; //64 MB
+
 	/**
-	 * Denotes the first byte of the access window.
+	 * Segments are mapped in multiples of this size, in bytes.
 	 */
-	private long firstByte;
-	
+	private static final int MAPPING_GRANULARITY = 1024 * 1024; //1 MB
+
 	/**
-	 * Denotes the last byte of the access window.
+	 * The mapped segments, indexed by their position in the file divided
+	 * by SEGMENT_SIZE. Slots of segments that are not mapped are null.
+	 * The array is replaced or changed only while holding the lock of this
+	 * object, readers don't need the lock.
 	 */
-	private long lastByte;
-	
-	// --------------------------[(a)-----------------(b)]------------
-	// 
-	// The hyphens represent the entire file. The area between [ and ] is 
-	// the part of the file mapped into memory. Then, (a) is the first byte, 
-	// whereas (b) is the last byte of the area mapped into memory.
+	private volatile Segment[] segments = new Segment[16];
 
 	/**
 	 * Creates a FileAccess to a specific file.
-	 * 
-	 * @param filename
-	 *        The name of the file the constructed object provides access to.
+	 *
+	 * @param file
+	 *        The file the constructed object provides access to.
 	 */
-	protected FileAccessDefault(String filename){
-		File file = new File(filename + ".dst");
-		file.deleteOnExit();
+	protected FileAccessDefault(File file){
 		try {
 			RandomAccessFile ramFile = new RandomAccessFile(file, "rw");
 			FileChannel fileChannel = ramFile.getChannel();
 			this.channel = fileChannel;
-			//use invalid values to force a remapping at the first read or write operation
-			firstByte = lastByte = -1;
 		} catch (FileNotFoundException e) {
-			throw new RuntimeException("Error: Could not create file " + filename + ".dst");
+			throw new RuntimeException("Error: Could not create file " + file);
 		}
 	}
-	
+
 	@Override
 	public void write(ByteBuffer content, long index){
-		checkAccessWindow(content.capacity(), index);
-	
-		content.position(0);
-		accessWindow.position((int) (index - firstByte));
-		
-		accessWindow.put(content);
+		long start = System.nanoTime();
+		ByteBuffer source = content.duplicate();
+		source.clear();
+		int numBytes = source.remaining();
+
+		//a write that crosses the border of a segment is split
+		while (source.hasRemaining()){
+			int segmentIndex = (int) (index / SEGMENT_SIZE);
+			int offset = (int) (index % SEGMENT_SIZE);
+			int length = Math.min(source.remaining(), SEGMENT_SIZE - offset);
+
+			Segment segment = acquire(segmentIndex, offset + length);
+			try {
+				ByteBuffer target = segment.buffer.duplicate();
+				target.position(offset);
+				source.limit(source.position() + length);
+				target.put(source);
+			} finally {
+				segment.release();
+			}
+
+			source.limit(source.capacity());
+			index += length;
+		}
+		recordWrite(numBytes, start);
 	}
-	
+
+	/**
+	 * Returns a slice of a mapped segment, which shares its content with the
+	 * file. A read that crosses the border of a segment is copied into a new
+	 * buffer instead.
+	 */
 	@Override
 	public ByteBuffer read(int numBytes, long index){
-		checkAccessWindow(numBytes, index);
-		
-		byte[] readBytes = new byte[numBytes];
-		
-		accessWindow.position((int) (index - firstByte));
-		accessWindow.get(readBytes);
-		
-		return ByteBuffer.wrap(readBytes);
+		long start = System.nanoTime();
+		int segmentIndex = (int) (index / SEGMENT_SIZE);
+		int offset = (int) (index % SEGMENT_SIZE);
+
+		if (offset + numBytes <= SEGMENT_SIZE){
+			Segment segment = acquire(segmentIndex, offset + numBytes);
+			try {
+				ByteBuffer slice = segment.buffer.duplicate();
+				slice.limit(offset + numBytes);
+				slice.position(offset);
+				slice = slice.slice();
+				recordRead(numBytes, start);
+				return slice;
+			} finally {
+				segment.release();
+			}
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate(numBytes);
+		while (buf.hasRemaining()){
+			int length = Math.min(buf.remaining(), SEGMENT_SIZE - offset);
+
+			Segment segment = acquire(segmentIndex, offset + length);
+			try {
+				ByteBuffer source = segment.buffer.duplicate();
+				source.limit(offset + length);
+				source.position(offset);
+				buf.put(source);
+			} finally {
+				segment.release();
+			}
+
+			segmentIndex++;
+			offset = 0;
+		}
+		buf.clear();
+		recordRead(numBytes, start);
+		return buf;
+	}
+
+	@Override
+	public void flush(){
+		for (Segment segment : segments){
+			if (segment != null && segment.tryAcquire()){
+				try {
+					segment.buffer.force();
+				} finally {
+					segment.release();
+				}
+			}
+		}
+		super.flush();
 	}
 
 	/**
-	 * Checks if the current read or write operation fits into the access window,
-	 * i.e. if the part of the file that the operation wants to access is currently
-	 * in the memory.
-	 * 
-	 * If it is, this method does nothing.
-	 * If it isn't, the changes made to the part of the file that was mapped to the
-	 * memory when this method was called are forced out to the disk. After that, a new
-	 * part of the file is mapped into memory. The area that is mapped into memory is 
-	 * chosen in such a way that the start position of the read or write operation (i.e.
-	 * the byte at which the read or write operation is started) is in the middle
-	 * of the area that is mapped to the memory during this method call. 
-	 * An exception to this rule occurs if the condition "index < FILE_AREA/2" is met.
-	 * In this case, the first FILE_AREA bytes of the file are mapped to the memory.
-	 * 
-	 * @param bufSize
-	 *        The amount of bytes that are read or written in the next operation
-	 * @param index
-	 *        The starting position of the next read or write operation
+	 * Retires all segments that reach beyond the new end of the file, and
+	 * waits until no operation uses them anymore before the file is cut off.
 	 */
-	private void checkAccessWindow(int bufSize, long index){
-		if (index < firstByte | index + bufSize > lastByte){
-			
-			if (index < FILE_AREA/2){
-				//case 1: index < FILE_AREA/2
-				//map the first FILE_AREA bytes
-				requestSizeChange(FILE_AREA);
-				firstByte = 0;
-				lastByte = FILE_AREA;
+	@Override
+	public synchronized void truncate(long newSize){
+		Segment[] table = segments;
+		for (int i = 0; i < table.length; i++){
+			Segment segment = table[i];
+			if (segment != null && (long) i * SEGMENT_SIZE + segment.length > newSize){
+				table[i] = null;
+				segment.retire();
+				segment.awaitReleased();
 			}
-			else {
-				//case 2: index > FILE_AREA/2
-				//map from index - FILE_AREA/2 to index + FILE_AREA/2
-				requestSizeChange(index + FILE_AREA/2);
-				firstByte = index - FILE_AREA/2;
-				lastByte = index + FILE_AREA/2;
+		}
+		segments = table;
+		super.truncate(newSize);
+	}
+
+	@Override
+	protected synchronized void close(){
+		Segment[] table = segments;
+		for (int i = 0; i < table.length; i++){
+			if (table[i] != null){
+				table[i].retire();
+				table[i] = null;
 			}
-			
-			try {
-				//write the pending changes to the disk and map the new area
-				//if (accessWindow != null) accessWindow.force();
-				accessWindow = channel.map(MapMode.READ_WRITE, firstByte, FILE_AREA);
-			} catch (IOException e) {
-				throw new RuntimeException(e);
+		}
+		segments = table;
+		super.close();
+	}
+
+	/**
+	 * Returns the segment with the given index, after adding a reference for
+	 * the calling operation. If the segment isn't mapped yet or is too small,
+	 * it is mapped first.
+	 *
+	 * @param segmentIndex
+	 *        The index of the segment
+	 * @param end
+	 *        The amount of bytes the segment must contain at least
+	 * @return The mapped segment, which must be released by the caller
+	 */
+	private Segment acquire(int segmentIndex, int end){
+		while (true){
+			Segment[] table = segments;
+			Segment segment = segmentIndex < table.length ? table[segmentIndex] : null;
+			if (segment != null && segment.length >= end && segment.tryAcquire()){
+				return segment;
+			}
+			map(segmentIndex, end);
+		}
+	}
+
+	/**
+	 * Maps a segment, or maps it again with a bigger size. The segment that
+	 * is replaced because it was too small is retired.
+	 *
+	 * @param segmentIndex
+	 *        The index of the segment
+	 * @param end
+	 *        The amount of bytes the segment must contain at least
+	 */
+	private synchronized void map(int segmentIndex, int end){
+		Segment[] table = segments;
+		if (segmentIndex >= table.length){
+			table = Arrays.copyOf(table, Math.max(segmentIndex + 1, table.length * 2));
+		}
+
+		Segment old = table[segmentIndex];
+		if (old != null && old.length >= end){
+			//another thread mapped the segment in the meantime
+			return;
+		}
+
+		//grow the mapping of the last segment exponentially, so a file that
+		//is written sequentially is mapped again only a few times
+		int length = Math.max(end, old == null ? 0 : old.length * 2);
+		length = (int) Math.min(SEGMENT_SIZE,
+				((long) length + MAPPING_GRANULARITY - 1) / MAPPING_GRANULARITY * MAPPING_GRANULARITY);
+
+		long start = (long) segmentIndex * SEGMENT_SIZE;
+		requestSizeChange(start + length);
+
+		try {
+			table[segmentIndex] = new Segment(channel.map(MapMode.READ_WRITE, start, length), length);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to map file segment", e);
+		}
+
+		segments = table;
+
+		if (old != null){
+			old.retire();
+		}
+	}
+
+	/**
+	 * A mapped part of the file, together with a count of the references
+	 * to it. The segment table holds one reference for as long as the segment
+	 * is used, and every read or write holds one while it accesses the segment.
+	 */
+	private static class Segment {
+
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * The amount of mapped bytes
+		 */
+		private final int length;
+
+		private final AtomicInteger references = new AtomicInteger(1);
+
+		private Segment(MappedByteBuffer buffer, int length){
+			this.buffer = buffer;
+			this.length = length;
+		}
+
+		/**
+		 * Adds a reference, unless the segment has been retired and
+		 * released already.
+		 *
+		 * @return true if the reference was added
+		 */
+		private boolean tryAcquire(){
+			while (true){
+				int count = references.get();
+				if (count == 0) return false;
+				if (references.compareAndSet(count, count + 1)) return true;
+			}
+		}
+
+		private void release(){
+			if (references.decrementAndGet() == 0){
+				synchronized (this){
+					notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Removes the reference of the segment table.
+		 */
+		private void retire(){
+			release();
+		}
+
+		/**
+		 * Blocks until all references to a retired segment have been released.
+		 */
+		private synchronized void awaitReleased(){
+			while (references.get() > 0){
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new RuntimeException("Interrupted while waiting for a mapped segment");
+				}
 			}
 		}
 	}
@@ -19,24 +19,23 @@ public class FileAccessForWindows extends FileAccess{
 	/**
 	 * Creates a FileAccess to a specific file.
 	 * 
-	 * @param filename
-	 *        The name of the file the constructed object provides access to.
+	 * @param file
+	 *        The file the constructed object provides access to.
 	 */
-	protected FileAccessForWindows(String filename){
+	protected FileAccessForWindows(File file){
 		//System.err.println("WARNING: Windows detected. Use another OS for better efficiency.");
-		File file = new File(filename + ".dst");
-		file.deleteOnExit();
 		try {
 			RandomAccessFile ramFile = new RandomAccessFile(file, "rw");
 			FileChannel fileChannel = ramFile.getChannel();
 			this.channel = fileChannel;
 		} catch (FileNotFoundException e) {
-			throw new RuntimeException("Error: Could not create file " + filename + ".dst");
+			throw new RuntimeException("Error: Could not create file " + file);
 		}
 	}
 	
 	@Override
 	public void write(ByteBuffer content, long index){
+		long start = System.nanoTime();
 		requestSizeChange(index + content.capacity());
 		content.position(0);
 		
@@ -45,10 +44,41 @@ public class FileAccessForWindows extends FileAccess{
 		} catch (IOException e) {
 			throw new RuntimeException("Unable to write to file");
 		}
+		recordWrite(content.capacity(), start);
+	}
+	
+	/**
+	 * Writes all buffers with a single gathering write. The channel's position
+	 * is only used by this method, positional reads and writes don't
+	 * depend on it.
+	 */
+	@Override
+	public void write(ByteBuffer[] contents, long index){
+		long start = System.nanoTime();
+		long remaining = 0;
+		for (ByteBuffer content : contents){
+			content.position(0);
+			remaining += content.capacity();
+		}
+		requestSizeChange(index + remaining);
+		long total = remaining;
+		
+		try {
+			synchronized (this){
+				channel.position(index);
+				while (remaining > 0){
+					remaining -= channel.write(contents);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write to file");
+		}
+		recordWrite(total, start);
 	}
 	
 	@Override
 	public ByteBuffer read(int numBytes, long index){
+		long start = System.nanoTime();
 		ByteBuffer buf = ByteBuffer.allocate(numBytes);
 		
 		try {
@@ -56,6 +86,7 @@ public class FileAccessForWindows extends FileAccess{
 		} catch (IOException e) {
 			throw new RuntimeException("Unable to read from file");
 		}
+		recordRead(numBytes, start);
 		
 		return buf;
 	}
@@ -435,6 +435,42 @@ public class FreeIndexList {
 		assert isHealthy();
 	}
 
+	/**
+	 * Returns a copy of the runs of this FreeIndexList. Together with
+	 * {@link #reinitialize(int[])}, this allows to store a FreeIndexList and
+	 * to restore it later on.
+	 * 
+	 * @return the runs of this FreeIndexList
+	 */
+	public int[] getRuns() {
+		int[] result = new int[runCount];
+		System.arraycopy(runs, 0, result, 0, runCount);
+		return result;
+	}
+
+	/**
+	 * Reinitializes the <code>runs</code> array with runs that were obtained
+	 * by {@link #getRuns()}.
+	 * 
+	 * @param storedRuns
+	 *            the runs to restore
+	 */
+	public void reinitialize(int[] storedRuns) {
+		assert storedRuns.length > 0;
+		runs = new int[Math.max(16, storedRuns.length)];
+		System.arraycopy(storedRuns, 0, runs, 0, storedRuns.length);
+		runCount = storedRuns.length;
+		used = free = 0;
+		for (int i = 0; i < runCount; ++i) {
+			if (runs[i] < 0) {
+				used -= runs[i];
+			} else {
+				free += runs[i];
+			}
+		}
+		assert isHealthy();
+	}
+
 	/**
 	 * Checks if the structure of this FreeIndexList is ok.
 	 * 
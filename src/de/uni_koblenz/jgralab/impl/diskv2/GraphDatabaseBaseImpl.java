@@ -1,7 +1,9 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,6 +28,7 @@ import de.uni_koblenz.jgralab.Vertex;
 import de.uni_koblenz.jgralab.impl.ParentEntityKind;
 import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccess;
 import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccessWithInternalMethods;
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
 import de.uni_koblenz.jgralab.schema.IncidenceClass;
 import de.uni_koblenz.jgralab.schema.IncidenceType;
 import de.uni_koblenz.jgralab.schema.Schema;
@@ -62,6 +65,118 @@ public abstract class GraphDatabaseBaseImpl extends
 		super(schema, uniqueGraphId, parentDistributedGraphId, partialGraphId);
 	}
 
+	/**
+	 * Creates a new graph database whose disk storage is kept in the
+	 * directory <code>storageDirectory</code>.
+	 * 
+	 * @see #GraphDatabaseBaseImpl(Schema, String, long, int)
+	 */
+	protected GraphDatabaseBaseImpl(Schema schema, String uniqueGraphId,
+			long parentDistributedGraphId, int partialGraphId,
+			File storageDirectory) {
+		super(schema, uniqueGraphId, parentDistributedGraphId, partialGraphId,
+				storageDirectory);
+	}
+
+	/**
+	 * Creates a new graph database whose disk storage is kept in the
+	 * directory <code>storageDirectory</code> and opened with the given
+	 * options.
+	 * 
+	 * @see #GraphDatabaseBaseImpl(Schema, String, long, int)
+	 */
+	protected GraphDatabaseBaseImpl(Schema schema, String uniqueGraphId,
+			long parentDistributedGraphId, int partialGraphId,
+			File storageDirectory, StorageOptions options) {
+		super(schema, uniqueGraphId, parentDistributedGraphId, partialGraphId,
+				storageDirectory, options);
+	}
+
+	/**
+	 * Writes all vertices, edges and incidences that are still cached to the
+	 * disk storage, together with a header that allows to reopen the graph
+	 * from the storage directory.
+	 */
+	public void flushStorage() {
+		inMemoryStorage.flush();
+	}
+
+	/**
+	 * Makes all changes to the vertices, edges and incidences durable. If
+	 * the disk storage is logged, this only forces its redo log, and the
+	 * graph is restored to the state of the last commit if it is reopened
+	 * after a crash.
+	 * 
+	 * @see MemStorageManager#commit()
+	 * @see StorageOptions#setRedoLogging(boolean)
+	 */
+	public void commitStorage() {
+		inMemoryStorage.commit();
+	}
+
+	/**
+	 * Bounds the memory used to cache vertices, edges and incidences.
+	 * 
+	 * @param bytes
+	 *            the memory budget in bytes, or a value less than one to let
+	 *            the garbage collector decide when elements are evicted
+	 * @see MemStorageManager#setMemoryBudget(long)
+	 */
+	public void setMemoryBudget(long bytes) {
+		inMemoryStorage.setMemoryBudget(bytes);
+	}
+
+	/**
+	 * Sets how many levels of the neighborhood of a vertex are loaded when
+	 * the vertex is reloaded from the disk storage.
+	 * 
+	 * @param depth
+	 *            the number of levels, or zero to disable prefetching
+	 * @see MemStorageManager#setPrefetchDepth(int)
+	 */
+	public void setPrefetchDepth(int depth) {
+		inMemoryStorage.setPrefetchDepth(depth);
+	}
+
+	/**
+	 * Returns the cache and I/O statistics of the storage of this graph
+	 * database. The metrics are registered as an MXBean named
+	 * <code>de.uni_koblenz.jgralab:type=StorageMetrics,backend="diskv2",name="uniqueGraphId/partialGraphId"</code>
+	 * as well.
+	 * 
+	 * @return the storage metrics, use {@link StorageMetrics#snapshot()} to
+	 *         read them
+	 */
+	public StorageMetrics getStorageMetrics() {
+		return inMemoryStorage.getMetrics();
+	}
+
+	/**
+	 * Stores the vertices, edges and incidences in breadth-first order and
+	 * removes the records of deleted elements from the disk storage.
+	 *
+	 * @see #reorganize(StorageReorganizer.Order)
+	 */
+	public void reorganize() {
+		reorganize(StorageReorganizer.Order.BREADTH_FIRST);
+	}
+
+	/**
+	 * Stores the vertices, edges and incidences in the given order and
+	 * removes the records of deleted elements from the disk storage. This
+	 * changes the ids of the elements, so vertex, edge and incidence objects
+	 * obtained before must not be used afterwards, and the graph must not
+	 * be accessed concurrently. Only possible if the graph is not
+	 * distributed over several partial graphs.
+	 *
+	 * @param order
+	 *            the order in which the elements are stored
+	 * @see MemStorageManager#reorganize(StorageReorganizer.Order)
+	 */
+	public void reorganize(StorageReorganizer.Order order) {
+		inMemoryStorage.reorganize(order);
+	}
+
 	@Override
 	public long createLocalSubordinateGraphInVertex(long containingVertexId) {
 		// get m1 class and free id
@@ -444,7 +559,7 @@ public abstract class GraphDatabaseBaseImpl extends
 			setNextVertexId(prevV, nextV);
 		}
 		if (nextV != 0) {
-			setPreviousVertexId(prevV, nextV);
+			setPreviousVertexId(nextV, prevV);
 		}
 
 		// remove vertex from storage
@@ -776,7 +891,7 @@ public abstract class GraphDatabaseBaseImpl extends
 			setNextEdgeId(prevV, nextV);
 		}
 		if (nextV != 0) {
-			setPreviousEdgeId(prevV, nextV);
+			setPreviousEdgeId(nextV, prevV);
 		}
 
 		// remove edge from storage
@@ -1346,6 +1461,109 @@ public abstract class GraphDatabaseBaseImpl extends
 		return i.getLastIncidenceId();
 	}
 
+	@Override
+	public long[] getIncidenceChainAtVertexId(long vertexId) {
+		int partialGraphId = getPartialGraphId(vertexId);
+		if (partialGraphId != localPartialGraphId) {
+			try {
+				return getGraphDatabase(partialGraphId)
+						.getIncidenceChainAtVertexId(vertexId);
+			} catch (RemoteException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return getIncidenceChain(getFirstIncidenceIdAtVertexId(vertexId), true);
+	}
+
+	@Override
+	public long[] getIncidenceChainAtEdgeId(long edgeId) {
+		int partialGraphId = getPartialGraphId(edgeId);
+		if (partialGraphId != localPartialGraphId) {
+			try {
+				return getGraphDatabase(partialGraphId)
+						.getIncidenceChainAtEdgeId(edgeId);
+			} catch (RemoteException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return getIncidenceChain(getFirstIncidenceIdAtEdgeId(edgeId), false);
+	}
+
+	@Override
+	public long[] getIncidenceRunAtVertexId(long incidenceId) {
+		return getIncidenceRun(incidenceId, true);
+	}
+
+	@Override
+	public long[] getIncidenceRunAtEdgeId(long incidenceId) {
+		return getIncidenceRun(incidenceId, false);
+	}
+
+	/**
+	 * Collects the records of a lambda sequence starting at the incidence
+	 * <code>incidenceId</code>. The runs of incidences stored in other
+	 * partial graphs are requested from these with one call per run.
+	 */
+	private long[] getIncidenceChain(long incidenceId, boolean atVertex) {
+		long[] chain = new long[8 * RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE];
+		int size = 0;
+		while (incidenceId != 0) {
+			int partialGraphId = getPartialGraphId(incidenceId);
+			long[] run;
+			if (partialGraphId == localPartialGraphId) {
+				run = getIncidenceRun(incidenceId, atVertex);
+			} else {
+				RemoteGraphDatabaseAccess remoteDb = getGraphDatabase(partialGraphId);
+				try {
+					run = atVertex ? remoteDb
+							.getIncidenceRunAtVertexId(incidenceId) : remoteDb
+							.getIncidenceRunAtEdgeId(incidenceId);
+				} catch (RemoteException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			// the last value of a run is the id of the incidence following it
+			int records = run.length - 1;
+			if (size + records > chain.length) {
+				chain = Arrays.copyOf(chain,
+						Math.max(2 * chain.length, size + records));
+			}
+			System.arraycopy(run, 0, chain, size, records);
+			size += records;
+			incidenceId = run[records];
+		}
+		return Arrays.copyOf(chain, size);
+	}
+
+	/**
+	 * Collects the records of the incidences of a lambda sequence that start
+	 * at the local incidence <code>incidenceId</code> and are stored in this
+	 * partial graph, followed by the id of the next incidence
+	 */
+	private long[] getIncidenceRun(long incidenceId, boolean atVertex) {
+		if (getPartialGraphId(incidenceId) != localPartialGraphId) {
+			throw new IllegalArgumentException("The incidence " + incidenceId
+					+ " is not stored in the partial graph "
+					+ localPartialGraphId);
+		}
+		long[] run = new long[8 * RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE + 1];
+		int size = 0;
+		while (incidenceId != 0
+				&& getPartialGraphId(incidenceId) == localPartialGraphId) {
+			if (size + RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE >= run.length) {
+				run = Arrays.copyOf(run, 2 * run.length);
+			}
+			run[size++] = incidenceId;
+			run[size++] = getIncidenceTypeId(incidenceId);
+			run[size++] = getEdgeIdAtIncidenceId(incidenceId);
+			run[size++] = getVertexIdAtIncidenceId(incidenceId);
+			incidenceId = atVertex ? getNextIncidenceIdAtVertexId(incidenceId)
+					: getNextIncidenceIdAtEdgeId(incidenceId);
+		}
+		run[size++] = incidenceId;
+		return Arrays.copyOf(run, size);
+	}
+
 	@Override
 	public long getNextIncidenceIdAtVertexId(long id) {
 		int partialGraphId = getPartialGraphId(id);
@@ -1818,6 +2036,24 @@ public abstract class GraphDatabaseBaseImpl extends
 		}
 	}
 
+	@Override
+	public Object[] getVertexAttributes(long[] vertexIds, String attributeName) {
+		Object[] values = new Object[vertexIds.length];
+		for (int i = 0; i < vertexIds.length; i++) {
+			values[i] = getVertexAttribute(vertexIds[i], attributeName);
+		}
+		return values;
+	}
+
+	@Override
+	public Object[] getEdgeAttributes(long[] edgeIds, String attributeName) {
+		Object[] values = new Object[edgeIds.length];
+		for (int i = 0; i < edgeIds.length; i++) {
+			values[i] = getEdgeAttribute(edgeIds[i], attributeName);
+		}
+		return values;
+	}
+
 
 
 	public Graph createViewGraph(Graph g, int kappa) {
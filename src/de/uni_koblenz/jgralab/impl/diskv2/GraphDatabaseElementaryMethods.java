@@ -1,5 +1,6 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
+import java.io.File;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
@@ -225,6 +226,27 @@ public abstract class GraphDatabaseElementaryMethods implements
 
 	public GraphDatabaseElementaryMethods(Schema schema, String uniqueGraphId,
 			long parentSubgraphId, int localPartialGraphId) {
+		this(schema, uniqueGraphId, parentSubgraphId, localPartialGraphId, null);
+	}
+
+	/**
+	 * Creates a graph database whose disk storage is kept in the given
+	 * directory, or in a temporary directory if <code>storageDirectory</code>
+	 * is null.
+	 */
+	public GraphDatabaseElementaryMethods(Schema schema, String uniqueGraphId,
+			long parentSubgraphId, int localPartialGraphId, File storageDirectory) {
+		this(schema, uniqueGraphId, parentSubgraphId, localPartialGraphId,
+				storageDirectory, new StorageOptions());
+	}
+
+	/**
+	 * Creates a graph database whose disk storage is kept in the given
+	 * directory and opened with the given options.
+	 */
+	public GraphDatabaseElementaryMethods(Schema schema, String uniqueGraphId,
+			long parentSubgraphId, int localPartialGraphId,
+			File storageDirectory, StorageOptions options) {
 		this.uniqueGraphId = uniqueGraphId;
 		this.schema = schema;
 		this.graphFactory = schema.getGraphFactory();
@@ -235,7 +257,8 @@ public abstract class GraphDatabaseElementaryMethods implements
 		this.freeEdgeList = new FreeIndexList(Integer.MAX_VALUE);
 		this.freeIncidenceList = new FreeIndexList(Integer.MAX_VALUE);
 		this.deleteVertexList = new LinkedList<Long>();
-		this.inMemoryStorage = new MemStorageManager((GraphDatabaseBaseImpl) this);
+		this.inMemoryStorage = new MemStorageManager((GraphDatabaseBaseImpl) this, storageDirectory, options);
+		inMemoryStorage.getMetrics().register(uniqueGraphId + "/" + localPartialGraphId);
 		
 		localSubgraphData = new ArrayList<GraphData>();
 		subgraphObjects = new HashMap<Long, Reference<Graph>>();
@@ -543,6 +566,17 @@ public abstract class GraphDatabaseElementaryMethods implements
 	 *         object may be either a local one or a proxy for a remote one
 	 */
 	public Incidence getIncidenceObject(long id) {
+		return getIncidenceObject(id, null);
+	}
+
+	/**
+	 * @return an object realizing the incidence with the given global id. If
+	 *         the class of the incidence is known already, e.g. from an
+	 *         incidence chain, creating a proxy does not need to retrieve it
+	 *         from the remote partial graph.
+	 */
+	public Incidence getIncidenceObject(long id,
+			Class<? extends Incidence> incidenceClass) {
 		if (id == 0)
 			return null;
 		int partialGraphId = getPartialGraphId(id);
@@ -557,7 +591,8 @@ public abstract class GraphDatabaseElementaryMethods implements
 		if (proxy == null) {
 			// create new vertex proxy
 			RemoteGraphDatabaseAccess remoteDatabase = getGraphDatabase(partialGraphId);
-			Class<? extends Incidence> vc = getIncidenceType(id);
+			Class<? extends Incidence> vc = incidenceClass != null ? incidenceClass
+					: getIncidenceType(id);
 			proxy = graphFactory.createIncidenceProxy_Diskv2BasedStorage(vc, id,
 					(GraphDatabaseBaseImpl) this, remoteDatabase);
 			ref = new WeakReference<Incidence>(proxy);
@@ -31,6 +31,7 @@
 
 package de.uni_koblenz.jgralab.impl.diskv2;
 
+import java.nio.ByteBuffer;
 import java.util.Comparator;
 
 import de.uni_koblenz.jgralab.Edge;
@@ -82,14 +83,75 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	 */
 	public abstract GraphElementTracker getTracker();
 	
+	/**
+	 * Get the monitor which must be held while the Tracker of this
+	 * GraphElement is created or changed
+	 * 
+	 * @return The monitor guarding the Tracker of this GraphElement
+	 */
+	public abstract Object getTrackerLock();
+	
+	/**
+	 * Writes the Boolean, Integer, Long and Double attributes of this
+	 * GraphElement to the buffer, starting at its current position. This
+	 * method is generated for every diskv2 class.
+	 * 
+	 * @param buf
+	 * 		The buffer that receives the attributes
+	 */
+	public abstract void writeAttributesTo(ByteBuffer buf);
+	
+	/**
+	 * Restores the attributes written by {@link #writeAttributesTo(ByteBuffer)}
+	 * without marking this GraphElement as modified. This method is generated
+	 * for every diskv2 class.
+	 * 
+	 * @param buf
+	 * 		The buffer holding the attributes, starting at its current position
+	 */
+	public abstract void readAttributesFrom(ByteBuffer buf);
+	
+	/**
+	 * Returns the String attributes of this GraphElement.
+	 * 
+	 * @return The Strings, in the order of the attribute list
+	 */
+	public abstract String[] getStringAttributes();
+	
+	/**
+	 * Restores the String attributes of this GraphElement.
+	 * 
+	 * @param strings
+	 * 		The Strings, in the order of the attribute list
+	 */
+	public abstract void restoreStringAttributes(String[] strings);
+	
+	/**
+	 * Returns the attributes of this GraphElement that are neither primitive
+	 * nor Strings, i.e. its Lists, Sets, Maps, Records and Enums.
+	 * 
+	 * @return The attribute values, in the order of the attribute list
+	 */
+	public abstract Object[] getEncodedAttributes();
+	
+	/**
+	 * Restores the attributes returned by {@link #getEncodedAttributes()}.
+	 * 
+	 * @param values
+	 * 		The attribute values, in the order of the attribute list
+	 */
+	public abstract void restoreEncodedAttributes(Object[] values);
+	
 	/**
 	 * Called whenever a primitive attribute of this GraphElement changed so the
 	 * new attribute value is stored in the Tracker.
 	 */
 	public void attributeChanged() {
-		GraphElementTracker tracker = getTracker();
-		if (tracker != null)
-			tracker.storeAttributes(this);
+		synchronized (getTrackerLock()) {
+			GraphElementTracker tracker = getTracker();
+			if (tracker != null)
+				tracker.storeAttributes(this);
+		}
 	}
 	
 	/**
@@ -97,9 +159,11 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	 * new String is stored in the Tracker.
 	 */
 	public void stringChanged() {
-		GraphElementTracker tracker = getTracker();
-		if (tracker != null)
-			tracker.storeStrings(this);
+		synchronized (getTrackerLock()) {
+			GraphElementTracker tracker = getTracker();
+			if (tracker != null)
+				tracker.storeStrings(this);
+		}
 	}
 	
 	/**
@@ -107,9 +171,11 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	 * new list value is stored in the Tracker.
 	 */
 	public void listChanged() {
-		GraphElementTracker tracker = getTracker();
-		if (tracker != null)
-			tracker.storeLists(this);
+		synchronized (getTrackerLock()) {
+			GraphElementTracker tracker = getTracker();
+			if (tracker != null)
+				tracker.storeLists(this);
+		}
 	}
 
 	/**
@@ -122,8 +188,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	private long incidenceListVersion = 0;
 	
 	public void increaseIncidenceListVersion() {
-		incidenceListVersion++;
-		getTracker().putVariable(36, incidenceListVersion);
+		synchronized (getTrackerLock()) {
+			incidenceListVersion++;
+			getTracker().putVariable(36, incidenceListVersion);
+		}
 	}
 	
 	protected long firstIncidenceId;
@@ -131,8 +199,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	protected long lastIncidenceId;
 	
 	public void setFirstIncidenceId(long incidenceId) {
-		this.firstIncidenceId = incidenceId;
-		getTracker().putVariable(20, incidenceId);
+		synchronized (getTrackerLock()) {
+			this.firstIncidenceId = incidenceId;
+			getTracker().putVariable(20, incidenceId);
+		}
 	}
 	
 	public void restoreFirstIncidenceId(long incidenceId) {
@@ -144,8 +214,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	}
 	
 	public void setLastIncidenceId(long incidenceId) {
-		this.lastIncidenceId = incidenceId;
-		getTracker().putVariable(28, incidenceId);
+		synchronized (getTrackerLock()) {
+			this.lastIncidenceId = incidenceId;
+			getTracker().putVariable(28, incidenceId);
+		}
 	}
 	
 	public void restoreLastIncidenceId(long incidenceId) {
@@ -191,8 +263,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	protected long nextElementId;
 	
 	public void setNextElementId(long nextElemId) {
-		this.nextElementId = nextElemId;
-		getTracker().putVariable(4, nextElementId);
+		synchronized (getTrackerLock()) {
+			this.nextElementId = nextElemId;
+			getTracker().putVariable(4, nextElementId);
+		}
 	}
 	
 	public void restoreNextElementId(long nextElemId) {
@@ -206,8 +280,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	protected long previousElementId;
 	
 	public void setPreviousElementId(long previousElemId) {
-		this.previousElementId = previousElemId;
-		getTracker().putVariable(12, previousElementId);
+		synchronized (getTrackerLock()) {
+			this.previousElementId = previousElemId;
+			getTracker().putVariable(12, previousElementId);
+		}
 	}
 	
 	public void restorePreviousElementId(long previousElemId) {
@@ -251,8 +327,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	}
 	
 	public void setSigmaId(long newSigmaId) {
-		sigmaId = newSigmaId;
-		getTracker().putVariable(44, newSigmaId);
+		synchronized (getTrackerLock()) {
+			sigmaId = newSigmaId;
+			getTracker().putVariable(44, newSigmaId);
+		}
 	}
 	
 	public void restoreSigmaId(long newSigmaId) {
@@ -394,8 +472,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	 *            long
 	 */
 	protected final void setIncidenceListVersion(long incidenceListVersion) {
-		this.incidenceListVersion = incidenceListVersion;
-		getTracker().putVariable(36, incidenceListVersion);
+		synchronized (getTrackerLock()) {
+			this.incidenceListVersion = incidenceListVersion;
+			getTracker().putVariable(36, incidenceListVersion);
+		}
 	}
 	
 	protected final void restoreIncidenceListVersion(long incidenceListVersion) {
@@ -635,8 +715,10 @@ implements GraphElement<OwnTypeClass, OwnType, DualTypeClass, DualType> {
 	public final void setKappa(int kappa) {
 		assert getType().getAllowedMaxKappa() >= kappa
 				&& getType().getAllowedMinKappa() <= kappa;
-		this.kappa = kappa;
-		getTracker().putKappa(kappa);
+		synchronized (getTrackerLock()) {
+			this.kappa = kappa;
+			getTracker().putKappa(kappa);
+		}
 	}
 	
 	public final void restoreKappa(int kappa){
@@ -1,7 +1,6 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
 import java.nio.ByteBuffer;
-import java.util.List;
 
 import de.uni_koblenz.jgralab.GraphElement;
 
@@ -12,7 +11,7 @@ public class GraphElementTracker extends Tracker{
 	 */
 	private ByteBuffer attributes;
 	private String[] strings;
-	private List[] lists;
+	private Object[] lists;
 	
 	/**
 	 * Create a new tracker with a ByteBuffer size of 64 Bytes.
@@ -124,9 +123,9 @@ public class GraphElementTracker extends Tracker{
 	}
 	
 	/**
-	 * Return all Lists
+	 * Return all Lists, Sets and Maps
 	 */
-	public List[] getLists(){
+	public Object[] getLists(){
 		return lists;
 	}
 
@@ -121,8 +121,10 @@ public abstract class IncidenceImpl implements Incidence {
 	private long nextIncidenceIdAtVertex;
 	
 	public void setNextIncidenceIdAtVertex(long nextIncidenceId) {
-		this.nextIncidenceIdAtVertex = nextIncidenceId;
-		getTracker().putVariable(12, nextIncidenceId);
+		synchronized (getTrackerLock()) {
+			this.nextIncidenceIdAtVertex = nextIncidenceId;
+			getTracker().putVariable(12, nextIncidenceId);
+		}
 	}
 	
 	public void restoreNextIncidenceIdAtVertex(long nextIncidenceId) {
@@ -140,8 +142,10 @@ public abstract class IncidenceImpl implements Incidence {
 	private long previousIncidenceIdAtVertex;
 	
 	public void setPreviousIncidenceIdAtVertex(long previousIncidenceId) {
-		this.previousIncidenceIdAtVertex = previousIncidenceId;
-		getTracker().putVariable(28, previousIncidenceId);
+		synchronized (getTrackerLock()) {
+			this.previousIncidenceIdAtVertex = previousIncidenceId;
+			getTracker().putVariable(28, previousIncidenceId);
+		}
 	}
 	
 	public void restorePreviousIncidenceIdAtVertex(long previousIncidenceId) {
@@ -168,8 +172,10 @@ public abstract class IncidenceImpl implements Incidence {
 	private long nextIncidenceIdAtEdge;
 	
 	public void setNextIncidenceIdAtEdge(long nextIncidenceId) {
-		this.nextIncidenceIdAtEdge = nextIncidenceId;
-		getTracker().putVariable(4, nextIncidenceId);
+		synchronized (getTrackerLock()) {
+			this.nextIncidenceIdAtEdge = nextIncidenceId;
+			getTracker().putVariable(4, nextIncidenceId);
+		}
 	}
 	
 	public void restoreNextIncidenceIdAtEdge(long nextIncidenceId) {
@@ -189,8 +195,10 @@ public abstract class IncidenceImpl implements Incidence {
 
 
 	public void setPreviousIncidenceIdAtEdge(long previousIncidenceId) {
-		this.previousIncidenceIdAtEdge = previousIncidenceId;
-		getTracker().putVariable(20, previousIncidenceId);
+		synchronized (getTrackerLock()) {
+			this.previousIncidenceIdAtEdge = previousIncidenceId;
+			getTracker().putVariable(20, previousIncidenceId);
+		}
 	}
 	
 	public void restorePreviousIncidenceIdAtEdge(long previousIncidenceId) {
@@ -207,8 +215,10 @@ public abstract class IncidenceImpl implements Incidence {
 	}
 	
 	public void setIncidentVertexId(long vertexId) {
-		this.incidentVertexId = vertexId;
-		getTracker().putVariable(44, vertexId);
+		synchronized (getTrackerLock()) {
+			this.incidentVertexId = vertexId;
+			getTracker().putVariable(44, vertexId);
+		}
 	}
 
 	public void setNextIncidenceAtVertex(IncidenceImpl nextIncidenceAtVertex) {
@@ -225,8 +235,10 @@ public abstract class IncidenceImpl implements Incidence {
 	}
 	
 	public void setIncidentEdgeId(long edgeId) {
-		this.incidentEdgeId = edgeId;
-		getTracker().putVariable(36, edgeId);
+		synchronized (getTrackerLock()) {
+			this.incidentEdgeId = edgeId;
+			getTracker().putVariable(36, edgeId);
+		}
 	}
 
 	public void setNextIncidenceAtEdge(IncidenceImpl nextIncidenceAtEdge) {
@@ -1054,6 +1066,16 @@ public abstract class IncidenceImpl implements Incidence {
 		IncidenceTracker tracker = storage.getIncidenceTracker(getLocalId());
 		return tracker;
 	}
+	
+	/**
+	 * Get the monitor which must be held while the Tracker of this
+	 * Incidence is created or changed
+	 * 
+	 * @return The monitor guarding the Tracker of this Incidence
+	 */
+	public Object getTrackerLock(){
+		return ((MemStorageManager) getStorage()).getIncidenceLock(getLocalId());
+	}
 
 	@Override
 	public void delete() {
@@ -2,7 +2,6 @@ package de.uni_koblenz.jgralab.impl.diskv2;
 
 import java.nio.ByteBuffer;
 import java.util.HashMap;
-import java.util.List;
 
 import de.uni_koblenz.jgralab.schema.IncidenceClass;
 
@@ -48,7 +47,7 @@ public class IncidenceTracker extends Tracker{
 	}
 
 	@Override
-	public List[] getLists() {
+	public Object[] getLists() {
 		throw new UnsupportedOperationException("Tried to access lists[] for an IncidenceTracker");
 	}
 }
@@ -1,18 +1,15 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
 
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.nio.ByteBuffer;
+import java.io.File;
 import java.rmi.RemoteException;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Stack;
 
 import de.uni_koblenz.jgralab.Edge;
 import de.uni_koblenz.jgralab.Incidence;
 import de.uni_koblenz.jgralab.Vertex;
 import de.uni_koblenz.jgralab.impl.RemoteStorageAccess;
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
+import de.uni_koblenz.jgralab.impl.StorageMetrics.ElementKind;
 import de.uni_koblenz.jgralab.impl.diskv2.EdgeImpl;
 import de.uni_koblenz.jgralab.impl.diskv2.IncidenceImpl;
 import de.uni_koblenz.jgralab.impl.diskv2.VertexImpl;
@@ -22,202 +19,154 @@ import de.uni_koblenz.jgralab.impl.diskv2.VertexImpl;
  * in memory in a distributed environment. All methods may be used
  * only with local objects and local ids.
  * 
+ * The caches are lock-striped (see {@link ElementCache}), so threads that
+ * traverse the graph concurrently only block each other if they access
+ * elements in the same stripe.
+ * 
  * @author dbildh, aheld
  * 
  */
 public final class MemStorageManager implements RemoteStorageAccess {
 	
 	/**
-	 * maximum load factor of the caches. If load factor is exceeded, do a rehash
+	 * Estimated number of bytes an element needs in memory in addition to
+	 * the size of its record, i.e. for the object header, its fields, its
+	 * CacheEntry and its Tracker
 	 */
-	private static final double MAX_LOAD_FACTOR = 0.7;
+	private static final int ELEMENT_OVERHEAD = 128;
 	
 	/**
 	 * the disk storage manager
 	 */
-	private DiskStorageManager diskStorage;
-	
-	/**
-	 * maximum number of entries in the vertex, edge and incidence caches
-	 * if these are exceeded by the amount of entries of the respective cache,
-	 * the load factor of the respective cache has been exceeded
-	 */ 
-	private int vertexCacheMaxEntries;
-	private int edgeCacheMaxEntries;
-	private int incidenceCacheMaxEntries;
-	
-	/**
-	 * log(2) of the cache sizes
-	 */
-	private int vertexCacheExp;
-	private int edgeCacheExp;
-	private int incidenceCacheExp;
-	
-	/**
-	 * these are used to efficiently compute the buckets
-	 * with a logical and, instead of with modulo arithmetics
-	 */
-	private int vertexMask;
-	private int edgeMask;
-	private int incidenceMask;
-	
-	/**
-	 * number of objects in the caches
-	 */
-	private int vertexCacheEntries;
-	private int edgeCacheEntries;
-	private int incidenceCacheEntries;
+	private final DiskStorageManager diskStorage;
 
 	/**
 	 * in-memory-cache for vertices
 	 */
-	private volatile CacheEntry<VertexImpl>[] vertexCache;
+	private final ElementCache<VertexImpl> vertexCache;
 
 	/**
 	 * in-memory-cache for edges
 	 */
-	private volatile CacheEntry<EdgeImpl>[] edgeCache;
+	private final ElementCache<EdgeImpl> edgeCache;
 
 	/**
 	 * in-memory-cache for incidences
 	 */
-	private volatile CacheEntry<IncidenceImpl>[] incidenceCache;
+	private final ElementCache<IncidenceImpl> incidenceCache;
 	
 	/**
-	 * The queue in which references to Incidence objects are put after
-	 * the garbage collector automatically deletes the referenced 
-	 * Incidence object
+	 * Loads the neighborhood of vertices that are reloaded from the disk
 	 */
-	//TODO: Change to a ReferenceQueue
-	private ReferenceQueue<VertexImpl> vertexQueue 
-		= new ReferenceQueue<VertexImpl>();
+	private final NeighborhoodPrefetcher prefetcher;
 	
-	private ReferenceQueue<EdgeImpl> edgeQueue 
-		= new ReferenceQueue<EdgeImpl>();
+	public MemStorageManager(GraphDatabaseBaseImpl database) {
+		this(database, null);
+	}
 	
-	private ReferenceQueue<IncidenceImpl> incidenceQueue 
-		= new ReferenceQueue<IncidenceImpl>();
+	/**
+	 * Creates a MemStorageManager whose disk storage is kept in the given 
+	 * directory.
+	 * 
+	 * @param database
+	 * 		The GraphDatabase whose elements are cached
+	 * @param directory
+	 * 		The directory of the disk storage, or null to use a temporary one
+	 */
+	public MemStorageManager(GraphDatabaseBaseImpl database, File directory) {
+		this(database, directory, new StorageOptions());
+	}
 	
-	public MemStorageManager(GraphDatabaseBaseImpl database) {
-		diskStorage = new DiskStorageManager(database);
-		
-		//set log(2) of the cache sizes
-		vertexCacheExp = 21;
-		edgeCacheExp = 21;
-		incidenceCacheExp = 23;
-		
-		//calculate default cache sizes and max load factors
-		int vertexCacheSize = (int) Math.pow(2, vertexCacheExp);
-		vertexCacheMaxEntries = (int) (vertexCacheSize * MAX_LOAD_FACTOR);
-		int edgeCacheSize = (int) Math.pow(2, edgeCacheExp);
-		edgeCacheMaxEntries = (int) (edgeCacheSize * MAX_LOAD_FACTOR);
-		int incidenceCacheSize = (int) Math.pow(2, incidenceCacheExp);
-		incidenceCacheMaxEntries = (int) (incidenceCacheSize * MAX_LOAD_FACTOR);
+	/**
+	 * Creates a MemStorageManager whose disk storage is kept in the given 
+	 * directory and opened with the given options.
+	 * 
+	 * @param database
+	 * 		The GraphDatabase whose elements are cached
+	 * @param directory
+	 * 		The directory of the disk storage, or null to use a temporary one
+	 * @param options
+	 * 		The options of the disk storage
+	 */
+	public MemStorageManager(GraphDatabaseBaseImpl database, File directory,
+			StorageOptions options) {
+		diskStorage = new DiskStorageManager(database, directory, options);
+		StorageMetrics metrics = diskStorage.getMetrics();
+		
+		//the initial sizes of the caches are 2^21 for vertices and edges 
+		//and 2^23 for incidences
+		vertexCache = new ElementCache<VertexImpl>(ElementCache.DEFAULT_STRIPE_EXP, 21,
+				metrics, ElementKind.VERTEX){
+			@Override
+			protected void writeToDisk(CacheEntry<VertexImpl> entry) {
+				diskStorage.writeVertexToDisk(entry);
+			}
+
+			@Override
+			protected VertexImpl readFromDisk(int key) {
+				return diskStorage.readVertexFromDisk(key);
+			}
+
+			@Override
+			protected void loaded(int key, VertexImpl value) {
+				prefetcher.prefetch(value);
+			}
+		};
 		
-		//instantiate caches with calculated sizes
-		vertexCache = new CacheEntry[vertexCacheSize];
-		edgeCache = new CacheEntry[edgeCacheSize];
-		incidenceCache = new CacheEntry[incidenceCacheSize];
+		edgeCache = new ElementCache<EdgeImpl>(ElementCache.DEFAULT_STRIPE_EXP, 21,
+				metrics, ElementKind.EDGE){
+			@Override
+			protected void writeToDisk(CacheEntry<EdgeImpl> entry) {
+				diskStorage.writeEdgeToDisk(entry);
+			}
+
+			@Override
+			protected EdgeImpl readFromDisk(int key) {
+				return diskStorage.readEdgeFromDisk(key);
+			}
+		};
 		
-		vertexMask = (int) (Math.pow(2, vertexCacheExp)) - 1;
-		edgeMask = (int) (Math.pow(2, edgeCacheExp)) - 1;
-		incidenceMask = (int) (Math.pow(2, incidenceCacheExp)) - 1;
+		incidenceCache = new ElementCache<IncidenceImpl>(ElementCache.DEFAULT_STRIPE_EXP, 23,
+				metrics, ElementKind.INCIDENCE){
+			@Override
+			protected void writeToDisk(CacheEntry<IncidenceImpl> entry) {
+				diskStorage.writeIncidenceToDisk(entry);
+			}
+
+			@Override
+			protected IncidenceImpl readFromDisk(int key) {
+				return diskStorage.readIncidenceFromDisk(key);
+			}
+		};
 		
-		//initialize element counts
-		vertexCacheEntries = 0;
-		edgeCacheEntries = 0;
-		incidenceCacheEntries = 0;
+		prefetcher = new NeighborhoodPrefetcher(database, diskStorage, 
+				vertexCache, edgeCache, incidenceCache);
 	}
 
 	//---- Methods to put, get and remove Graph elements and incidences from the cache ----
 
 	/**
-	 * Retrieves a Vertex from the vertex cache
+	 * Retrieves a Vertex from the vertex cache. If it isn't
+	 * found in the cache, it loads the requested vertex from the 
+	 * disk, puts it back in the cache and then returns it.
 	 * 
 	 * @param id the id of the Vertex to be retrieved
 	 * @return the Vertex with the given id
 	 */
-	public synchronized final Vertex getVertexObject(int id) {
-		cleanupVertexCache();
-		
-		CacheEntry<VertexImpl> entry = getElement(vertexCache, id, hash(id, vertexMask));
-		
-		if (entry == null){
-			return getVertexObjectFromDisk(id);
-		}
-		
-		VertexImpl v = entry.get();
-		
-		if(v == null){
-			diskStorage.writeVertexToDisk(entry);
-			removeVertex(entry.getKey());
-			v = (VertexImpl) diskStorage.readVertexFromDisk(entry.getKey());
-			CacheEntry<VertexImpl> vRef = new CacheEntry<VertexImpl>(v, vertexQueue);
-			putElement(vRef, vertexCache, hash(id, vertexMask));
-		}
-		
-		return v;
-	}
-	
-	/**
-	 * Read a vertex from the disk
-	 * 
-	 * @param id
-	 * 		The id of the vertex
-	 * 
-	 * @return
-	 * 		The vertex that was reconstructed with data from the disk
-	 */
-	private Vertex getVertexObjectFromDisk(int id){
-		cleanupVertexCache();
-		VertexImpl v = diskStorage.readVertexFromDisk(id);
-		CacheEntry<VertexImpl> vRef = new CacheEntry<VertexImpl>(v, vertexQueue);
-		putElement(vRef, vertexCache, hash(id, vertexMask));
-		return vRef.get();
+	public final Vertex getVertexObject(int id) {
+		return vertexCache.get(id);
 	}
 
 	/**
-	 * Retrieves an Edge from the edge cache
+	 * Retrieves an Edge from the edge cache. If it isn't
+	 * found in the cache, it loads the requested edge from the 
+	 * disk, puts it back in the cache and then returns it.
 	 * 
 	 * @param id the id of the Edge to be retrieved
 	 * @return the Edge with the given id
 	 */
-	public synchronized final Edge getEdgeObject(int id) {
-		cleanupEdgeCache();
-		
-		CacheEntry<EdgeImpl> entry = getElement(edgeCache, id, hash(id, edgeMask));
-		
-		if (entry == null){
-			return getEdgeObjectFromDisk(id);
-		}
-		
-		EdgeImpl e = entry.get();
-		
-		if(e == null){
-			diskStorage.writeEdgeToDisk(entry);
-			removeEdge(entry.getKey());
-			e = (EdgeImpl) diskStorage.readEdgeFromDisk(entry.getKey());
-			CacheEntry<EdgeImpl> eRef = new CacheEntry<EdgeImpl>(e, edgeQueue);
-			putElement(eRef, edgeCache, hash(id, edgeMask));
-		}
-		
-		return e;
-	}
-	
-	/**
-	 * Read an Edge from the disk
-	 * 
-	 * @param id
-	 * 		The id of the edge
-	 * 
-	 * @return
-	 * 		The edge that was reconstructed with data from the disk
-	 */
-	private Edge getEdgeObjectFromDisk(int id){
-		EdgeImpl e = diskStorage.readEdgeFromDisk(id);
-		CacheEntry<EdgeImpl> eRef = new CacheEntry<EdgeImpl>(e, edgeQueue);
-		putElement(eRef, edgeCache, hash(id, edgeMask));
-		return eRef.get();
+	public final Edge getEdgeObject(int id) {
+		return edgeCache.get(id);
 	}
 	
 	/**
@@ -228,62 +177,8 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * @param id the id of the Incidence to be retrieved
 	 * @return the Incidence with the given id
 	 */
-	public synchronized final Incidence getIncidenceObject(int id) {
-		cleanupIncidenceCache();
-		
-		CacheEntry<IncidenceImpl> entry = getElement(incidenceCache, id, hash(id, incidenceMask));
-		
-		if (entry == null){
-			return getIncidenceObjectFromDisk(id);
-		}
-		
-		IncidenceImpl i = entry.get();
-		
-		if(i == null){
-			diskStorage.writeIncidenceToDisk(entry);
-			removeIncidence(entry.getKey());
-			i = (IncidenceImpl) diskStorage.readIncidenceFromDisk(entry.getKey());
-			CacheEntry<IncidenceImpl> iRef = new CacheEntry<IncidenceImpl>(i, incidenceQueue);
-			putElement(iRef, incidenceCache, hash(id, incidenceMask));
-		}
-		
-		return i;
-	}
-	
-	/**
-	 * Read an incidence from the disk
-	 * 
-	 * @param id
-	 * 		The id of the incidence
-	 * 
-	 * @return
-	 * 		The incidence that was reconstructed with data from the disk
-	 */
-	private Incidence getIncidenceObjectFromDisk(int id){
-		IncidenceImpl i = diskStorage.readIncidenceFromDisk(id);
-		CacheEntry<IncidenceImpl> iRef = new CacheEntry<IncidenceImpl>(i, incidenceQueue);
-		putElement(iRef, incidenceCache, hash(id, incidenceMask));
-		return iRef.get();
-	}
-	
-	/**
-	 * Fetches an CacheEntry specified by the given id from a cache.
-	 * 
-	 * @param cache - the cache to fetch an entry from
-	 * @param key - the key of the requested entry
-	 * @param bucket - the bucket the element is in
-	 * @return the CacheEntry with the given key
-	 */
-	private <V> CacheEntry<V> getElement(CacheEntry<V>[] cache, int key, int bucket){
-		//retrieve first entry in the bucket
-		CacheEntry<V> current = cache[bucket];
-				
-		//search bucket for the requested entry
-		while (current != null && !current.hasKey(key)){
-			current = current.getNext();
-		}
-
-		return current;
+	public final Incidence getIncidenceObject(int id) {
+		return incidenceCache.get(id);
 	}
 
 	/**
@@ -291,14 +186,12 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * 
 	 * @param v the Vertex to be cached
 	 */
-	public synchronized void putVertex(VertexImpl v) {
-		CacheEntry<VertexImpl> vEntry = new CacheEntry<VertexImpl>(v, vertexQueue);
-		putElement(vEntry, vertexCache, hash(v.hashCode(), vertexMask));
-		
-		vEntry.getOrCreateGETracker(v).fill(v);
-		
-		vertexCacheEntries++;
-		testVertexLoadFactor();
+	public void putVertex(VertexImpl v) {
+		synchronized (vertexCache.getLock(v.hashCode())) {
+			CacheEntry<VertexImpl> vEntry = vertexCache.put(v);
+			vEntry.getOrCreateGETracker(v).fill(v);
+		}
+		vertexCache.enforceBudget();
 	}
 	
 	/**
@@ -306,14 +199,12 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * 
 	 * @param e the Edge to be cached
 	 */
-	public synchronized void putEdge(EdgeImpl e) {
-		CacheEntry<EdgeImpl> eEntry = new CacheEntry<EdgeImpl>(e, edgeQueue);
-		putElement(eEntry, edgeCache, hash(e.hashCode(), edgeMask));
-		
-		eEntry.getOrCreateGETracker(e).fill(e);
-		
-		edgeCacheEntries++;
-		testEdgeLoadFactor();
+	public void putEdge(EdgeImpl e) {
+		synchronized (edgeCache.getLock(e.hashCode())) {
+			CacheEntry<EdgeImpl> eEntry = edgeCache.put(e);
+			eEntry.getOrCreateGETracker(e).fill(e);
+		}
+		edgeCache.enforceBudget();
 	}
 	
 	/**
@@ -321,59 +212,34 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * 
 	 * @param i the Incidence to be cached
 	 */
-	public synchronized void putIncidence(IncidenceImpl i) {
-		CacheEntry<IncidenceImpl> iEntry = new CacheEntry<IncidenceImpl>(i, incidenceQueue);
-		
-		//this method isn't called when incidences are read from the disk
-		//so we know that the incidence has been newly created
-		iEntry.getOrCreateIncidenceTracker(i);
-		
-		putElement(iEntry, incidenceCache, hash(i.hashCode(), incidenceMask));
-		
-		incidenceCacheEntries++;
-		testIncidenceLoadFactor();
-	}
-	
-	/**
-	 * Puts a CacheEntry into a cache
-	 * 
-	 * @param entry - the entry to be cached
-	 * @param cache - the cache to store the entry in
-	 * @param bucket - the bucket in which to store the entry
-	 */
-	private <V> void putElement(CacheEntry<V> entry, CacheEntry<V>[] cache, int bucket){
-		//case 1: no collision - put entry in bucket and return
-		if (cache[bucket] == null) {
-			cache[bucket] = entry;
-			return;
+	public void putIncidence(IncidenceImpl i) {
+		synchronized (incidenceCache.getLock(i.hashCode())) {
+			CacheEntry<IncidenceImpl> iEntry = incidenceCache.put(i);
+			//this method isn't called when incidences are read from the disk
+			//so we know that the incidence has been newly created
+			iEntry.getOrCreateIncidenceTracker(i);
 		}
-					
-		//case 2: collision detected
-		//put new element at the start of the list
-		entry.setNext(cache[bucket]);
-		cache[bucket] = entry;
+		incidenceCache.enforceBudget();
 	}
 
 	/**
-	 * Removes a vertex from the cache
+	 * Removes a vertex from the cache and releases the Strings of its record
 	 * 
 	 * @param vertexId the id of the vertex to be deleted
 	 */
 	public void removeVertex(int vertexId) {		
-		removeElement(vertexCache, vertexId, hash(vertexId, vertexMask));
-		
-		vertexCacheEntries--;
+		vertexCache.remove(vertexId);
+		diskStorage.releaseVertexRecord(vertexId);
 	}
 	
 	/**
-	 * Removes an edge from the cache
+	 * Removes an edge from the cache and releases the Strings of its record
 	 * 
 	 * @param edgeId the id of the edge to be deleted
 	 */
 	public void removeEdge(int edgeId) {
-		removeElement(edgeCache, edgeId, hash(edgeId, edgeMask));
-		
-		edgeCacheEntries--;
+		edgeCache.remove(edgeId);
+		diskStorage.releaseEdgeRecord(edgeId);
 	}
 	
 	/**
@@ -382,55 +248,13 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * @param incidenceId the id of the incidence to be deleted
 	 */
 	public void removeIncidence(int incidenceId) {
-		removeElement(incidenceCache, incidenceId, hash(incidenceId, incidenceMask));
-		
-		incidenceCacheEntries--;
+		incidenceCache.remove(incidenceId);
 	}
 	
 	/**
-	 * Removes a CacheEntry from a cache
-	 * 
-	 * @param cache - the cache the entry is deleted from 
-	 * @param key - the key of the entry
-	 * @param bucket - the bucket the entry is in
-	 */
-	private <V> void removeElement(CacheEntry<V>[] cache, int key, int bucket){
-		//retrieve first entry in bucket
-		CacheEntry<V> current = cache[bucket];
-		//keep track of predecessor because we only have a singly linked list
-		CacheEntry<V> predecessor = null;
-		boolean isFirstEntry = true;
-				
-		//look for entry to be deleted
-		while(!current.hasKey(key)){
-			isFirstEntry = false;
-			predecessor = current;
-			current = current.getNext();
-		}
-		
-		//delete entry from the cache
-		if (isFirstEntry){
-			//case 1: entry is the first entry in the chain, or the only entry in the bucket
-			if (current.getNext() == null){
-				//case 1a: entry is the only entry in the bucket
-				cache[bucket] = null;	
-			} 
-			else {
-				//case 1b: entry is the first entry in the chain
-				//put its successor as the first element in that bucket
-				cache[bucket] = current.getNext();				
-			}
-		}
-		
-		else {
-			//case 2: entry is neither the only entry in the bucket nor the first entry in the chain
-			//set "next" pointer of the entry's predecessor to point at its successor
-			predecessor.setNext(current.getNext());
-		}
-	}
-	
-	/**
-	 * Get a specific IncidenceTracker
+	 * Get a specific IncidenceTracker. The caller must hold the monitor
+	 * returned by {@link #getIncidenceLock(int)}, otherwise a concurrent flush could
+	 * clear the tracker while it is being changed.
 	 * 
 	 * @param incidenceId
 	 * 		The id of the incidence whose tracker is requested
@@ -439,13 +263,14 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * 		The tracker for the given incidence
 	 */
 	public IncidenceTracker getIncidenceTracker(int incidenceId){
-		CacheEntry<IncidenceImpl> iEntry = getElement
-				(incidenceCache, incidenceId, hash(incidenceId, incidenceMask));
+		CacheEntry<IncidenceImpl> iEntry = incidenceCache.getEntry(incidenceId);
 		return iEntry.getOrCreateIncidenceTracker(iEntry.get());
 	}
 	
 	/**
-	 * Get a specific GraphElementTracker
+	 * Get a specific GraphElementTracker. The caller must hold the monitor
+	 * returned by {@link #getVertexLock(int)}, otherwise a concurrent flush could
+	 * clear the tracker while it is being changed.
 	 * 
 	 * @param vertexId
 	 * 		The id of the vertex whose tracker is requested
@@ -454,14 +279,15 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * 		The tracker for the given vertex
 	 */
 	public GraphElementTracker getVertexTracker(int vertexId){
-		CacheEntry<VertexImpl> vEntry = getElement
-				(vertexCache, vertexId, hash(vertexId, vertexMask));
+		CacheEntry<VertexImpl> vEntry = vertexCache.getEntry(vertexId);
 		if (vEntry == null) return null;
 		return vEntry.getOrCreateGETracker(vEntry.get());
 	}
 	
 	/**
-	 * Get a specific GraphElementTracker
+	 * Get a specific GraphElementTracker. The caller must hold the monitor
+	 * returned by {@link #getEdgeLock(int)}, otherwise a concurrent flush could
+	 * clear the tracker while it is being changed.
 	 * 
 	 * @param edgeId
 	 * 		The id of the edge whose tracker is requested
@@ -470,12 +296,50 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	 * 		The tracker for the given edge
 	 */
 	public GraphElementTracker getEdgeTracker(int edgeId){
-		CacheEntry<EdgeImpl> eEntry = getElement
-				(edgeCache, edgeId, hash(edgeId, edgeMask));
+		CacheEntry<EdgeImpl> eEntry = edgeCache.getEntry(edgeId);
 		if (eEntry == null) return null;
 		return eEntry.getOrCreateGETracker(eEntry.get());
 	}
 	
+	/**
+	 * Get the monitor which guards the tracker of a vertex
+	 * 
+	 * @param vertexId
+	 * 		The id of the vertex
+	 * 
+	 * @return
+	 * 		The monitor to hold while creating or changing the tracker
+	 */
+	public Object getVertexLock(int vertexId){
+		return vertexCache.getLock(vertexId);
+	}
+	
+	/**
+	 * Get the monitor which guards the tracker of an edge
+	 * 
+	 * @param edgeId
+	 * 		The id of the edge
+	 * 
+	 * @return
+	 * 		The monitor to hold while creating or changing the tracker
+	 */
+	public Object getEdgeLock(int edgeId){
+		return edgeCache.getLock(edgeId);
+	}
+	
+	/**
+	 * Get the monitor which guards the tracker of an incidence
+	 * 
+	 * @param incidenceId
+	 * 		The id of the incidence
+	 * 
+	 * @return
+	 * 		The monitor to hold while creating or changing the tracker
+	 */
+	public Object getIncidenceLock(int incidenceId){
+		return incidenceCache.getLock(incidenceId);
+	}
+	
 	//---- Methods to access other attributes of cached graph elements and incidences ----
 	
 	//These methods are taken over from distributed.MemStoreManager and remain unchanged
@@ -798,220 +662,120 @@ public final class MemStorageManager implements RemoteStorageAccess {
 	// ---- Methods to manage the cache ----
 	
 	/**
-	 * Checks if any vertex objects have been deleted by the garbage collector.
-	 * If so, the states of these vertices are written to the disk (only if
-	 * the vertex hasn't been written to the disk before or if its state
-	 * was changed after the last time it has been loaded from the disk) and
-	 * the CacheEntry that referenced the deleted object is removed from the cache.
+	 * Writes all new or changed vertices, edges and incidences that are
+	 * still in the cache to the disk, followed by the header of the disk
+	 * storage. Afterwards, the graph can be reopened from the storage 
+	 * directory.
 	 */
-	private void cleanupVertexCache(){
-		CacheEntry<VertexImpl> current = (CacheEntry<VertexImpl>) vertexQueue.poll();
+	public void flush(){
+		vertexCache.flush();
+		edgeCache.flush();
+		incidenceCache.flush();
 		
-		while(current != null){
-			diskStorage.writeVertexToDisk(current);
-			removeVertex(current.getKey());
-			current = (CacheEntry<VertexImpl>) vertexQueue.poll();
-		}
+		diskStorage.writeHeader();
 	}
 	
 	/**
-	 * Checks if any edge objects have been deleted by the garbage collector.
-	 * If so, the states of these edges are written to the disk (only if
-	 * the edge hasn't been written to the disk before or if ist state
-	 * was changed after the last time it has been loaded from the disk) and
-	 * the CacheEntry that referenced the deleted object is removed from the cache.
+	 * Writes all new or changed vertices, edges and incidences that are
+	 * still in the cache to the disk and makes them durable. If the disk
+	 * storage is logged, only its redo log is forced, and the graph is 
+	 * restored to the state of the last commit if it is reopened after 
+	 * a crash.
+	 * 
+	 * @see DiskStorageManager#commit()
 	 */
-	private void cleanupEdgeCache(){
-		CacheEntry<EdgeImpl> current = (CacheEntry<EdgeImpl>) edgeQueue.poll();
+	public void commit(){
+		vertexCache.flush();
+		edgeCache.flush();
+		incidenceCache.flush();
 		
-		while(current != null){
-			diskStorage.writeEdgeToDisk(current);
-			removeEdge(current.getKey());
-			current = (CacheEntry<EdgeImpl>) edgeQueue.poll();
-		}
+		diskStorage.commit();
 	}
 	
 	/**
-	 * Checks if any incidence objects have been deleted by the garbage collector.
-	 * If so, the attributes of these incidences are written to the disk (only if
-	 * the incidence hasn't been written to the disk before or if one of its attributes
-	 * was changed after the last time it has been loaded from the disk) and
-	 * the CacheEntry that referenced the deleted object is removed from the cache.
+	 * Bounds the memory used by the caches. Every accessed vertex, edge and
+	 * incidence is charged with an estimated size, and if the total exceeds
+	 * the budget, the least recently used elements are written to the disk
+	 * in batches and left to the garbage collector.
+	 * 
+	 * @param bytes
+	 * 		The memory budget in bytes, or a value less than one to let the
+	 * 		garbage collector decide when elements are written back
 	 */
-	private void cleanupIncidenceCache(){
-		CacheEntry<IncidenceImpl> current = (CacheEntry<IncidenceImpl>) incidenceQueue.poll();
+	public void setMemoryBudget(long bytes){
+		MemoryBudget budget = bytes > 0 ? new MemoryBudget(bytes) : null;
 		
-		while(current != null){
-			diskStorage.writeIncidenceToDisk(current);
-			removeIncidence(current.getKey());
-			current = (CacheEntry<IncidenceImpl>) incidenceQueue.poll();
-		}
-	}
-	
-	/**
-	 * Tests the load factor of the vertex cache an does a rehashing if it exceeds 
-	 * MAX_LOAD_FACTOR.
-	 */
-	protected void testVertexLoadFactor(){		
-		if (vertexCacheEntries > vertexCacheMaxEntries){
-			rehashVertexCache();
-		}
-	}
-	
-	/**
-	 * Tests the load factor of the edge cache an does a rehashing if it exceeds 
-	 * MAX_LOAD_FACTOR.
-	 */
-	protected void testEdgeLoadFactor(){		
-		if (edgeCacheEntries > edgeCacheMaxEntries){
-			rehashEdgeCache();
-		}
-	}
-	
-	/**
-	 * Tests the load factor of the incidence cache an does a rehashing if it exceeds 
-	 * MAX_LOAD_FACTOR.
-	 */
-	protected void testIncidenceLoadFactor(){		
-		if (incidenceCacheEntries > incidenceCacheMaxEntries){
-			rehashIncidenceCache();
-		}
+		//a changed element additionally keeps a copy of its record in its tracker
+		vertexCache.setMemoryBudget(budget, 
+				2 * diskStorage.getVertexRecordSize() + ELEMENT_OVERHEAD);
+		edgeCache.setMemoryBudget(budget, 
+				2 * diskStorage.getEdgeRecordSize() + ELEMENT_OVERHEAD);
+		incidenceCache.setMemoryBudget(budget, 
+				2 * Tracker.INCIDENCE_SIZE + ELEMENT_OVERHEAD);
 	}
 	
 	/**
-	 * Doubles the size of the vertex cache and rehashes all vertices
+	 * Sets how many levels of the neighborhood of a vertex are loaded when
+	 * the vertex itself is reloaded from the disk. With a depth of one, its
+	 * incidences and edges are loaded in batched reads, every further level
+	 * adds the adjacent vertices with their incidences and edges.
+	 * 
+	 * @param depth
+	 * 		The number of levels, or zero to disable prefetching
+	 * @see NeighborhoodPrefetcher
 	 */
-	protected void rehashVertexCache(){
-		//max allowed cache size is 2^31 because Multiplication Method requires that
-		//log(2) of cache size is smaller then the number of bits in an Integer
-		if (vertexCacheExp >= 31){
-			//remove size limit so we don't end up here after every put
-			vertexCacheMaxEntries = Integer.MAX_VALUE;
-			return;
-		}
-		
-		//adjust variables that hold information about the cache
-		vertexCacheExp++;
-		int vertexCacheSize = (int) Math.pow(2, vertexCacheExp);
-		vertexCacheMaxEntries *= 2;
-		vertexMask *= 2;
-		
-	    CacheEntry<VertexImpl>[] newCache = new CacheEntry[vertexCacheSize];
-	    
-	    vertexCache = moveCachedObjects(vertexCache, newCache, vertexMask);
+	public void setPrefetchDepth(int depth){
+		prefetcher.setDepth(depth);
 	}
 	
 	/**
-	 * Doubles the size of the vertex cache and rehashes all vertices
+	 * Returns the hit and miss counts of the caches, the numbers of evicted
+	 * and written elements, the reload latencies and the reads and writes 
+	 * of all files of the disk storage.
+	 * 
+	 * @return The metrics of this storage
 	 */
-	protected void rehashEdgeCache(){
-		if (edgeCacheExp >= 31){
-			edgeCacheMaxEntries = Integer.MAX_VALUE;
-			return;
-		}
-		
-		edgeCacheExp++;
-		int edgeCacheSize = (int) Math.pow(2, edgeCacheExp);
-		edgeCacheMaxEntries *= 2;
-		edgeMask *= 2;
-		
-	    CacheEntry<EdgeImpl>[] newCache = new CacheEntry[edgeCacheSize];
-	    
-	    edgeCache = moveCachedObjects(edgeCache, newCache, edgeMask);
+	public StorageMetrics getMetrics(){
+		return diskStorage.getMetrics();
 	}
 	
 	/**
-	 * Doubles the size of the incidence cache and rehashes all vertices
+	 * Stores all vertices, edges and incidences in a new order that places
+	 * elements that are traversed together next to each other in the files,
+	 * and drops the records of deleted elements. All elements are written
+	 * to the disk and removed from the cache before, as their local ids
+	 * change. Vertex, edge and incidence objects obtained before must not
+	 * be used afterwards, and the graph must not be accessed concurrently.
+	 *
+	 * @param order
+	 * 		The order in which the elements are stored
+	 * @see StorageReorganizer
 	 */
-	protected void rehashIncidenceCache(){
-		if (incidenceCacheExp >= 31){
-			incidenceCacheMaxEntries = Integer.MAX_VALUE;
-			return;
-		}
-		
-		incidenceCacheExp++;
-		int incidenceCacheSize = (int) Math.pow(2, incidenceCacheExp);
-		incidenceCacheMaxEntries *= 2;
-		incidenceMask *= 2;
-		
-		CacheEntry<IncidenceImpl>[] newCache = new CacheEntry[incidenceCacheSize];
-	    
-	    incidenceCache = moveCachedObjects(incidenceCache, newCache, incidenceMask);
+	public void reorganize(StorageReorganizer.Order order){
+		vertexCache.flush();
+		edgeCache.flush();
+		incidenceCache.flush();
+
+		vertexCache.clear();
+		edgeCache.clear();
+		incidenceCache.clear();
+
+		diskStorage.reorganize(order);
+		diskStorage.writeHeader();
 	}
-	
+
 	/**
-	 * Rehashes all CacheEntries in the old cache by moving them to the new cache
-	 *  
-	 * @param oldCache - the old cache
-	 * @param newCache - the new, bigger cache
-	 * @param mask - the mask corresponding to the new cache's size
-	 * @return the new cache
+	 * Checks if the disk storage holds a previously stored graph.
 	 */
-    private <V> CacheEntry<V>[] moveCachedObjects(CacheEntry<V>[] oldCache, CacheEntry<V>[] newCache, int mask){
-    	
-    	Stack<CacheEntry<V>> oldEntries = new Stack<CacheEntry<V>>();
-    	
-    	for (int i = 0; i < oldCache.length; i++){
-	    	if (oldCache[i] != null){
-	    		
-	    		//Put vertices in current bucket on a stack
-	    		CacheEntry<V> current = oldCache[i];
-	    		oldEntries.push(current);
-	    		
-	    		while (current.getNext() != null){
-	    			current = current.getNext();
-	    			oldEntries.push(current);
-	    		}
-	    		
-	    		//rehash all the vertices on the stack
-	    		while(!oldEntries.empty()){
-	    			current = oldEntries.pop();
-	    			//erase pointer, because it is now invalid
-	    			current.setNext(null);
-	    			putElement(current, newCache, hash(current.getKey(), mask));
-	    		}
-	    	}
-	    }
-    	
-    	return newCache;
-    }
-	
-	/**
-	 * Calculates the hash value for an object using Cormen's Multiplication Method
-	 * 
-	 * @param hashCode - the hashCode of the object to be cached
-	 * @param mask - used to compute (hashCode modulo cacheSize)
-	 */
-	protected int hash(int hashCode, int mask){
-		return hashCode & mask;
+	public boolean hasStoredGraph(){
+		return diskStorage.hasStoredGraph();
 	}
 	
 	/**
-	 * The following methods can be used to remove a specific graph building block from the
-	 * cache. To call one of these methods, first call getStorage() on any GraphElement
-	 * to get a reference to the MemStorageManager. Then, call any of the methods defined
-	 * below with the local id of the object you want removed from the cache. The object will
-	 * then be written to the disk and removed from the cache.
-	 * 
-	 *  IMPORTANT:
-	 *  These methods are for debugging purposes only.
+	 * Restores the state of the GraphDatabase from a previously stored graph.
+	 * Vertices, edges and incidences are loaded lazily on their first access.
 	 */
-	/*
-	public void nullVertexReference(int id){
-		CacheEntry<VertexImpl> entry = getElement(vertexCache, id, hash(id, vertexMask));
-		diskStorage.writeVertexToDisk(entry);
-		removeVertex(entry.getKey());
+	public void restoreGraphDatabaseState(){
+		diskStorage.restoreGraphDatabaseState();
 	}
-	
-	public void nullEdgeReference(int id){
-		CacheEntry<EdgeImpl> entry = getElement(edgeCache, id, hash(id, edgeMask));
-		diskStorage.writeEdgeToDisk(entry);
-		removeVertex(entry.getKey());
-	}
-	
-	public void nullIncidenceReference(int id){
-		CacheEntry<IncidenceImpl> entry = getElement(incidenceCache, id, hash(id, incidenceMask));
-		diskStorage.writeIncidenceToDisk(entry);
-		removeVertex(entry.getKey());
-	}*/
 }
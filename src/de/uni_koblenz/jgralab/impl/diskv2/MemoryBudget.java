@@ -0,0 +1,138 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory budget that is shared by the vertex, edge and incidence caches
+ * of a MemStorageManager. Every resident cache entry is charged with an
+ * estimated size. If the charged bytes exceed the limit, the cache that
+ * adds an entry evicts entries with the CLOCK algorithm until the budget
+ * is met again. If that cache can't free enough bytes, because the budget
+ * is mostly used by the other caches, these are swept as well.
+ */
+public class MemoryBudget {
+
+	/**
+	 * The maximum amount of bytes that may be charged
+	 */
+	private final long limit;
+
+	/**
+	 * The amount of bytes currently charged
+	 */
+	private final AtomicLong used = new AtomicLong();
+
+	/**
+	 * The caches whose entries are charged to this budget
+	 */
+	private final List<ElementCache<?>> caches = new CopyOnWriteArrayList<ElementCache<?>>();
+
+	/**
+	 * Creates a new budget.
+	 *
+	 * @param limit
+	 * 		The maximum amount of bytes, must be bigger than zero
+	 */
+	public MemoryBudget(long limit){
+		if (limit < 1){
+			throw new IllegalArgumentException("Memory budget must be bigger than zero");
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Registers a cache whose entries are charged to this budget.
+	 *
+	 * @param cache
+	 * 		The cache
+	 */
+	void register(ElementCache<?> cache){
+		caches.add(cache);
+	}
+
+	/**
+	 * Unregisters a cache that uses another budget now.
+	 *
+	 * @param cache
+	 * 		The cache
+	 */
+	void unregister(ElementCache<?> cache){
+		caches.remove(cache);
+	}
+
+	/**
+	 * Evicts resident entries if the budget is exceeded, starting with the
+	 * given cache. A bit more than the excess is freed, so the following
+	 * accesses don't trigger an eviction again right away. Must be called 
+	 * without holding any lock of a cache.
+	 *
+	 * @param first
+	 * 		The cache that has charged the latest entry
+	 */
+	void enforce(ElementCache<?> first){
+		long excess = getExcess();
+		if (excess <= 0){
+			return;
+		}
+
+		long toFree = excess + limit / 1000;
+		long freed = first.evict(toFree);
+		for (ElementCache<?> cache : caches){
+			if (freed >= toFree){
+				return;
+			}
+			if (cache != first){
+				freed += cache.evict(toFree - freed);
+			}
+		}
+	}
+
+	/**
+	 * Charges a resident entry.
+	 *
+	 * @param bytes
+	 * 		The estimated size of the entry
+	 */
+	public void charge(long bytes){
+		used.addAndGet(bytes);
+	}
+
+	/**
+	 * Releases the bytes of an evicted or removed entry.
+	 *
+	 * @param bytes
+	 * 		The estimated size of the entry
+	 */
+	public void release(long bytes){
+		used.addAndGet(-bytes);
+	}
+
+	/**
+	 * Returns the number of bytes by which the budget is currently exceeded.
+	 *
+	 * @return The exceeding bytes, or a value less than one if the budget is met
+	 */
+	public long getExcess(){
+		return used.get() - limit;
+	}
+
+	/**
+	 * Get the limit of this budget.
+	 *
+	 * @return The maximum amount of bytes
+	 */
+	public long getLimit(){
+		return limit;
+	}
+
+	/**
+	 * Get the amount of bytes currently charged.
+	 *
+	 * @return The charged bytes
+	 */
+	public long getUsed(){
+		return used.get();
+	}
+}
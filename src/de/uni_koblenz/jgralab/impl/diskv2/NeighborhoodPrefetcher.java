@@ -0,0 +1,285 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Loads the neighborhood of a vertex that has been reloaded from the disk,
+ * so a traversal that continues at this vertex doesn't have to fault in
+ * every incidence and edge with a random read of its own.
+ *
+ * With a depth of one, the incidence chain of the vertex and the edges
+ * connected to it are loaded. Every further level additionally loads the
+ * incidence chains of these edges, the vertices at their other ends and
+ * the incidence chains and edges of those vertices, in breadth-first order.
+ *
+ * Incidence chains are read in runs of consecutive records, edges and
+ * vertices of a level are read in the order of their positions in the
+ * file, merging records that are close to each other into a single read
+ * (see {@link DiskStorageManager#readEdgesFromDisk(int[])}). Loaded elements
+ * are added with {@link ElementCache#putLoaded(Object, int)}, so elements
+ * that are cached already are never replaced. Only elements of the local
+ * partial graph are prefetched.
+ */
+public class NeighborhoodPrefetcher {
+
+	/**
+	 * The number of incidence records that are read at once while an
+	 * incidence chain is followed
+	 */
+	private static final int INCIDENCE_RUN = 32;
+
+	/**
+	 * The maximum number of elements that are loaded for a single vertex,
+	 * so reloading a vertex with a huge neighborhood doesn't flood the cache
+	 */
+	private static final int MAX_PREFETCHED_ELEMENTS = 4096;
+
+	private final GraphDatabaseBaseImpl graphdb;
+
+	private final DiskStorageManager diskStorage;
+
+	private final ElementCache<VertexImpl> vertexCache;
+	private final ElementCache<EdgeImpl> edgeCache;
+	private final ElementCache<IncidenceImpl> incidenceCache;
+
+	/**
+	 * The number of levels of the neighborhood that are loaded. If this is
+	 * zero, prefetching is disabled.
+	 */
+	private volatile int depth;
+
+	public NeighborhoodPrefetcher(GraphDatabaseBaseImpl graphdb, DiskStorageManager diskStorage,
+			ElementCache<VertexImpl> vertexCache, ElementCache<EdgeImpl> edgeCache,
+			ElementCache<IncidenceImpl> incidenceCache){
+		this.graphdb = graphdb;
+		this.diskStorage = diskStorage;
+		this.vertexCache = vertexCache;
+		this.edgeCache = edgeCache;
+		this.incidenceCache = incidenceCache;
+	}
+
+	/**
+	 * Sets how many levels of the neighborhood of a reloaded vertex are
+	 * loaded.
+	 *
+	 * @param depth
+	 * 		The number of levels, or zero to disable prefetching
+	 */
+	public void setDepth(int depth){
+		if (depth < 0){
+			throw new IllegalArgumentException("Prefetch depth must not be negative");
+		}
+		this.depth = depth;
+	}
+
+	public int getDepth(){
+		return depth;
+	}
+
+	/**
+	 * Loads the neighborhood of a vertex that has just been read from the
+	 * disk. Must be called without holding a lock of the caches.
+	 *
+	 * @param vertex
+	 * 		The reloaded vertex
+	 */
+	public void prefetch(VertexImpl vertex){
+		int levels = depth;
+		if (levels <= 0) return;
+
+		Limit limit = new Limit();
+		Set<Integer> visited = new HashSet<Integer>();
+		visited.add(vertex.getLocalId());
+
+		List<GraphElementImpl<?,?,?,?>> frontier = new ArrayList<GraphElementImpl<?,?,?,?>>();
+		frontier.add(vertex);
+
+		for (int level = 1; level <= levels && !frontier.isEmpty() && limit.remaining > 0; level++){
+			//incidences and edges of the vertices of this level
+			List<IncidenceImpl> incidences = followChains(frontier, true, limit);
+
+			TreeSet<Integer> edgeKeys = new TreeSet<Integer>();
+			for (IncidenceImpl inc : incidences){
+				if (isLocal(inc.getIncidentEdgeId())){
+					edgeKeys.add(GraphDatabaseElementaryMethods.convertToLocalId(inc.getIncidentEdgeId()));
+				}
+			}
+			List<GraphElementImpl<?,?,?,?>> edges = loadEdges(edgeKeys, limit);
+
+			if (level == levels) break;
+
+			//vertices at the other ends of these edges
+			incidences = followChains(edges, false, limit);
+
+			TreeSet<Integer> vertexKeys = new TreeSet<Integer>();
+			for (IncidenceImpl inc : incidences){
+				if (isLocal(inc.getIncidentVertexId())){
+					int key = GraphDatabaseElementaryMethods.convertToLocalId(inc.getIncidentVertexId());
+					if (visited.add(key)){
+						vertexKeys.add(key);
+					}
+				}
+			}
+			frontier = loadVertices(vertexKeys, limit);
+		}
+	}
+
+	/**
+	 * Follows the incidence chains of several vertices or edges. Incidences
+	 * that aren't cached are read in runs of INCIDENCE_RUN records.
+	 *
+	 * @param elements
+	 * 		The vertices or edges whose incidence chains are followed
+	 * @param atVertex
+	 * 		True if the elements are vertices, false if they are edges
+	 * @return All incidences of the chains, as far as they have been followed
+	 */
+	private List<IncidenceImpl> followChains(List<GraphElementImpl<?,?,?,?>> elements,
+			boolean atVertex, Limit limit){
+		List<IncidenceImpl> found = new ArrayList<IncidenceImpl>();
+
+		for (GraphElementImpl<?,?,?,?> element : elements){
+			long id = element.getFirstIncidenceId();
+
+			while (id != 0 && isLocal(id)){
+				int key = GraphDatabaseElementaryMethods.convertToLocalId(id);
+				IncidenceImpl inc = incidenceCache.peek(key);
+
+				if (inc == null){
+					if (limit.remaining <= 0) return found;
+					readIncidenceRun(key, element.getGlobalId(), atVertex, limit);
+
+					//the run might have been rejected by the cache, in which
+					//case the incidence is loaded on its own
+					inc = incidenceCache.get(key);
+					if (inc == null) break;
+				}
+
+				found.add(inc);
+				id = atVertex ? inc.getNextIncidenceIdAtVertex() : inc.getNextIncidenceIdAtEdge();
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Reads a run of incidences starting at the given key, and caches all
+	 * incidences of the run that belong to the given element.
+	 */
+	private void readIncidenceRun(int firstKey, long elementId, boolean atVertex, Limit limit){
+		int count = Math.min(INCIDENCE_RUN, limit.remaining);
+
+		int[] stamps = new int[count];
+		for (int i = 0; i < count; i++){
+			stamps[i] = incidenceCache.getWriteStamp(firstKey + i);
+		}
+
+		IncidenceImpl[] run = diskStorage.readIncidencesFromDisk(firstKey, count, elementId, atVertex);
+		for (int i = 0; i < count; i++){
+			if (run[i] != null && incidenceCache.putLoaded(run[i], stamps[i])){
+				limit.remaining--;
+			}
+		}
+	}
+
+	/**
+	 * Loads the edges with the given keys, as far as the limit allows.
+	 *
+	 * @return The edges, whether they were cached before or not
+	 */
+	private List<GraphElementImpl<?,?,?,?>> loadEdges(TreeSet<Integer> keys, Limit limit){
+		List<GraphElementImpl<?,?,?,?>> loaded = new ArrayList<GraphElementImpl<?,?,?,?>>();
+
+		List<Integer> missing = new ArrayList<Integer>();
+		for (int key : keys){
+			EdgeImpl edge = edgeCache.peek(key);
+			if (edge != null){
+				loaded.add(edge);
+			}
+			else if (missing.size() < limit.remaining){
+				missing.add(key);
+			}
+		}
+		if (missing.isEmpty()) return loaded;
+
+		int[] missingKeys = toArray(missing);
+		int[] stamps = new int[missingKeys.length];
+		for (int i = 0; i < missingKeys.length; i++){
+			stamps[i] = edgeCache.getWriteStamp(missingKeys[i]);
+		}
+
+		EdgeImpl[] edges = diskStorage.readEdgesFromDisk(missingKeys);
+		for (int i = 0; i < edges.length; i++){
+			if (edges[i] != null && edgeCache.putLoaded(edges[i], stamps[i])){
+				loaded.add(edges[i]);
+				limit.remaining--;
+			}
+		}
+
+		return loaded;
+	}
+
+	/**
+	 * Loads the vertices with the given keys, as far as the limit allows.
+	 *
+	 * @return The vertices, whether they were cached before or not
+	 */
+	private List<GraphElementImpl<?,?,?,?>> loadVertices(TreeSet<Integer> keys, Limit limit){
+		List<GraphElementImpl<?,?,?,?>> loaded = new ArrayList<GraphElementImpl<?,?,?,?>>();
+
+		List<Integer> missing = new ArrayList<Integer>();
+		for (int key : keys){
+			VertexImpl vertex = vertexCache.peek(key);
+			if (vertex != null){
+				loaded.add(vertex);
+			}
+			else if (missing.size() < limit.remaining){
+				missing.add(key);
+			}
+		}
+		if (missing.isEmpty()) return loaded;
+
+		int[] missingKeys = toArray(missing);
+		int[] stamps = new int[missingKeys.length];
+		for (int i = 0; i < missingKeys.length; i++){
+			stamps[i] = vertexCache.getWriteStamp(missingKeys[i]);
+		}
+
+		VertexImpl[] vertices = diskStorage.readVerticesFromDisk(missingKeys);
+		for (int i = 0; i < vertices.length; i++){
+			if (vertices[i] != null && vertexCache.putLoaded(vertices[i], stamps[i])){
+				loaded.add(vertices[i]);
+				limit.remaining--;
+			}
+		}
+
+		return loaded;
+	}
+
+	/**
+	 * Checks if a global id denotes an element of the local partial graph.
+	 */
+	private boolean isLocal(long globalId){
+		return GraphDatabaseElementaryMethods.getPartialGraphId(globalId) == graphdb.getLocalPartialGraphId();
+	}
+
+	private static int[] toArray(List<Integer> list){
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++){
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * The number of elements that may still be loaded by one prefetch
+	 */
+	private static class Limit {
+		int remaining = MAX_PREFETCHED_ELEMENTS;
+	}
+}
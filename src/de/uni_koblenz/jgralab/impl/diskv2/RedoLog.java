@@ -0,0 +1,360 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the writes to the files of a persistent storage, which
+ * makes the storage crash consistent.
+ *
+ * While a storage is logged, its writes are held back by the
+ * WriteBehindFlusher. A commit appends all writes held back so far as one
+ * group to the log, together with an image of the header that describes
+ * the state of the storage after these writes, and forces the log. Only
+ * then are the writes released to the files. Thus, the files never contain
+ * a write that is not in the log, and after a crash the state of the last
+ * complete group is restored by writing all groups to the files again and
+ * writing the header image of the last one. A group that has been
+ * appended only partially is detected by its checksum and ignored.
+ *
+ * A checkpoint writes the header to header.dst once all logged writes have
+ * reached the files, and resets the log. The log file is preallocated and
+ * kept in size when it is reset, so appending to it doesn't change the
+ * length of the file and forcing it doesn't have to write the metadata of
+ * the file. Groups carry the epoch of the log, which is increased on every
+ * reset, so the groups that remain behind the end of the log after a reset
+ * are not replayed.
+ *
+ * Reorganizing a storage writes the files directly and is not logged.
+ */
+public class RedoLog {
+
+	/**
+	 * Magic number and format version written at the start of the log
+	 */
+	private static final int LOG_MAGIC = 0x44535244;
+	private static final int LOG_VERSION = 1;
+
+	/**
+	 * Magic number written at the start of every group
+	 */
+	private static final int GROUP_MAGIC = 0x47525550;
+
+	/**
+	 * Size of the start of the log: magic number, version and epoch
+	 */
+	private static final int LOG_HEADER_SIZE = 16;
+
+	/**
+	 * Size of the start of a group: magic number, epoch, sequence number
+	 * and length of the payload
+	 */
+	private static final int GROUP_HEADER_SIZE = 24;
+
+	/**
+	 * Size of the checksum behind the payload of a group
+	 */
+	private static final int CHECKSUM_SIZE = 8;
+
+	/**
+	 * The log file is preallocated in steps of this amount of bytes
+	 */
+	private static final long PREALLOCATION = 16L * 1024 * 1024;
+
+	/**
+	 * Receives the writes of the groups during a replay
+	 */
+	public interface Target {
+
+		/**
+		 * Writes a logged write to the file it belongs to.
+		 *
+		 * @param fileId
+		 * 		The id of the file that was given when the write was logged
+		 * @param position
+		 * 		The position in the file
+		 * @param content
+		 * 		The bytes to write, from position zero up to the buffer's capacity
+		 */
+		void apply(int fileId, long position, ByteBuffer content);
+	}
+
+	private final File file;
+
+	private final RandomAccessFile raf;
+
+	private final FileChannel channel;
+
+	/**
+	 * Incremented on every reset
+	 */
+	private long epoch;
+
+	/**
+	 * The sequence number of the next group within the current epoch
+	 */
+	private long sequence;
+
+	/**
+	 * The position behind the last group
+	 */
+	private long end;
+
+	/**
+	 * The preallocated size of the log file
+	 */
+	private long capacity;
+
+	/**
+	 * Opens the log in the given file, or creates it if the file doesn't
+	 * exist. The groups of an existing log are not replayed until
+	 * {@link #replay(Target)} is called.
+	 *
+	 * @param file
+	 * 		The log file
+	 */
+	public RedoLog(File file){
+		this.file = file;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+			capacity = channel.size();
+
+			if (capacity == 0){
+				epoch = 0;
+				preallocate(PREALLOCATION);
+				writeLogHeader();
+			}
+			else {
+				ByteBuffer header = readFully(0, LOG_HEADER_SIZE);
+				if (header == null || header.getInt() != LOG_MAGIC
+						|| header.getInt() != LOG_VERSION){
+					throw new RuntimeException("Unknown format of redo log " + file);
+				}
+				epoch = header.getLong();
+			}
+			sequence = 0;
+			end = LOG_HEADER_SIZE;
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to open redo log " + file, e);
+		}
+	}
+
+	/**
+	 * Passes the writes of all complete groups of the current epoch to the
+	 * target, in the order they were logged. The log is positioned behind
+	 * the last complete group afterwards.
+	 *
+	 * @param target
+	 * 		The target the writes are passed to
+	 * @return The header image of the last complete group, or null if the
+	 * 		log contains no complete group
+	 */
+	public synchronized byte[] replay(Target target){
+		byte[] header = null;
+		long position = LOG_HEADER_SIZE;
+		long expected = 0;
+
+		try {
+			while (true){
+				ByteBuffer start = readFully(position, GROUP_HEADER_SIZE);
+				if (start == null || start.getInt() != GROUP_MAGIC
+						|| start.getLong() != epoch || start.getLong() != expected){
+					break;
+				}
+				int length = start.getInt();
+				if (length < 0){
+					break;
+				}
+				ByteBuffer payload = readFully(position + GROUP_HEADER_SIZE, length + CHECKSUM_SIZE);
+				if (payload == null){
+					break;
+				}
+
+				CRC32 crc = new CRC32();
+				crc.update(start.array(), 0, GROUP_HEADER_SIZE);
+				crc.update(payload.array(), 0, length);
+				if (payload.getLong(length) != crc.getValue()){
+					break;
+				}
+
+				int numWrites = payload.getInt();
+				for (int i = 0; i < numWrites; i++){
+					int fileId = payload.getInt();
+					long filePosition = payload.getLong();
+					int size = payload.getInt();
+					ByteBuffer content = ByteBuffer.allocate(size);
+					payload.get(content.array());
+					target.apply(fileId, filePosition, content);
+				}
+				header = new byte[payload.getInt()];
+				payload.get(header);
+
+				position += GROUP_HEADER_SIZE + length + CHECKSUM_SIZE;
+				expected++;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read redo log " + file, e);
+		}
+
+		sequence = expected;
+		end = position;
+		return header;
+	}
+
+	/**
+	 * Appends a group and forces it to the storage device. The method
+	 * returns when the group is durable.
+	 *
+	 * @param fileIds
+	 * 		The ids of the files of the writes
+	 * @param positions
+	 * 		The positions of the writes in their files
+	 * @param contents
+	 * 		The bytes of the writes, each from position zero up to the
+	 * 		buffer's capacity
+	 * @param header
+	 * 		The image of the header after the writes
+	 */
+	public synchronized void append(int[] fileIds, long[] positions,
+			ByteBuffer[] contents, byte[] header){
+		int length = 4 + 4 + header.length;
+		for (ByteBuffer content : contents){
+			length += 4 + 8 + 4 + content.capacity();
+		}
+
+		ByteBuffer group = ByteBuffer.allocate(GROUP_HEADER_SIZE + length + CHECKSUM_SIZE);
+		group.putInt(GROUP_MAGIC);
+		group.putLong(epoch);
+		group.putLong(sequence);
+		group.putInt(length);
+		group.putInt(contents.length);
+		for (int i = 0; i < contents.length; i++){
+			ByteBuffer source = contents[i].duplicate();
+			source.clear();
+			group.putInt(fileIds[i]);
+			group.putLong(positions[i]);
+			group.putInt(source.capacity());
+			group.put(source);
+		}
+		group.putInt(header.length);
+		group.put(header);
+
+		CRC32 crc = new CRC32();
+		crc.update(group.array(), 0, group.position());
+		group.putLong(crc.getValue());
+		group.flip();
+
+		try {
+			boolean grown = end + group.limit() > capacity;
+			if (grown){
+				preallocate(Math.max(capacity + PREALLOCATION, end + group.limit()));
+			}
+			long position = end;
+			while (group.hasRemaining()){
+				position += channel.write(group, position);
+			}
+			//the length of a preallocated file doesn't change, so only the
+			//content has to be forced
+			channel.force(grown);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to append to redo log " + file, e);
+		}
+
+		end += group.limit();
+		sequence++;
+	}
+
+	/**
+	 * Starts a new epoch, which discards all groups. Must only be called
+	 * when the state of all groups has been written to the files and the
+	 * header.
+	 */
+	public synchronized void reset(){
+		epoch++;
+		sequence = 0;
+		end = LOG_HEADER_SIZE;
+		try {
+			writeLogHeader();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to reset redo log " + file, e);
+		}
+	}
+
+	/**
+	 * Returns the amount of bytes appended since the last reset.
+	 *
+	 * @return The size of the groups in the log
+	 */
+	public synchronized long size(){
+		return end - LOG_HEADER_SIZE;
+	}
+
+	/**
+	 * Closes the log file.
+	 */
+	public synchronized void close(){
+		try {
+			raf.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to close redo log " + file, e);
+		}
+	}
+
+	/**
+	 * Writes the start of the log and forces it to the storage device
+	 */
+	private void writeLogHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+		header.putInt(LOG_MAGIC);
+		header.putInt(LOG_VERSION);
+		header.putLong(epoch);
+		header.flip();
+		long position = 0;
+		while (header.hasRemaining()){
+			position += channel.write(header, position);
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Fills the log file with zeros up to the given size, so the blocks
+	 * of the file are allocated before groups are appended to them
+	 */
+	private void preallocate(long newCapacity) throws IOException {
+		ByteBuffer zeros = ByteBuffer.allocate(64 * 1024);
+		long position = capacity;
+		while (position < newCapacity){
+			zeros.clear();
+			if (newCapacity - position < zeros.capacity()){
+				zeros.limit((int) (newCapacity - position));
+			}
+			position += channel.write(zeros, position);
+		}
+		channel.force(true);
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Reads the given amount of bytes from the log file.
+	 *
+	 * @return A buffer holding the bytes, or null if the file ends before
+	 */
+	private ByteBuffer readFully(long position, int numBytes) throws IOException {
+		if (position + numBytes > channel.size()){
+			return null;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(numBytes);
+		while (buf.hasRemaining()){
+			if (channel.read(buf, position + buf.position()) < 0){
+				return null;
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+}
@@ -0,0 +1,88 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+/**
+ * The options of a single diskv2 storage. They are passed to the graph
+ * database when it is created, and are read once by the DiskStorageManager,
+ * so changing an options object afterwards doesn't affect storages that
+ * are already open.
+ */
+public class StorageOptions {
+
+	/**
+	 * If true, a newly created storage keeps its incidences in a
+	 * CompressedIncidenceFile
+	 */
+	private boolean compressIncidences = false;
+
+	/**
+	 * If true, a persistent storage logs its writes in a RedoLog
+	 */
+	private boolean redoLogging = false;
+
+	/**
+	 * Creates the default options: incidences are stored uncompressed and
+	 * writes are not logged.
+	 */
+	public StorageOptions() {
+	}
+
+	/**
+	 * This is a copy constructor.
+	 *
+	 * @param other
+	 *            The options to copy the values from
+	 */
+	public StorageOptions(StorageOptions other) {
+		this.compressIncidences = other.compressIncidences;
+		this.redoLogging = other.redoLogging;
+	}
+
+	public StorageOptions withCompressedIncidences() {
+		compressIncidences = true;
+		return this;
+	}
+
+	/**
+	 * Sets whether a newly created storage keeps its incidences in
+	 * compressed form. The ids in an incidence record are stored as varints
+	 * relative to the incidence, which saves most of the space of
+	 * incidences.dst, at the cost of encoding and decoding the records. A
+	 * reopened graph keeps the format it was stored in.
+	 *
+	 * @param compressIncidences
+	 *            true to compress the incidences of a new storage
+	 */
+	public void setCompressIncidences(boolean compressIncidences) {
+		this.compressIncidences = compressIncidences;
+	}
+
+	public boolean hasCompressedIncidences() {
+		return compressIncidences;
+	}
+
+	public StorageOptions withRedoLogging() {
+		redoLogging = true;
+		return this;
+	}
+
+	/**
+	 * Sets whether a persistent storage logs its writes in a RedoLog, which
+	 * makes it crash consistent. The writes of a logged storage are held in
+	 * memory until they are committed, so
+	 * {@link GraphDatabaseBaseImpl#commitStorage()} has to be called
+	 * regularly. Storages that keep their incidences compressed are not
+	 * logged. A log that has been left by a crash is replayed when the
+	 * storage is reopened, whether this option is set or not.
+	 *
+	 * @param redoLogging
+	 *            true to log the writes of the storage
+	 */
+	public void setRedoLogging(boolean redoLogging) {
+		this.redoLogging = redoLogging;
+	}
+
+	public boolean isRedoLogging() {
+		return redoLogging;
+	}
+
+}
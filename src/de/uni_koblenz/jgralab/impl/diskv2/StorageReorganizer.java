@@ -0,0 +1,512 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import de.uni_koblenz.jgralab.impl.diskv2.GraphDatabaseElementaryMethods.GraphData;
+
+/**
+ * Renumbers the vertices, edges and incidences of a graph database and
+ * rewrites vertices.dst, edges.dst and incidences.dst to match, so that the
+ * physical layout of the files follows the topology of the graph instead
+ * of the order in which the elements have been created.
+ *
+ * The elements are numbered according to an {@link Order}. The incidences
+ * of every vertex get consecutive numbers, in the order of the vertex'
+ * incidence sequence, so an incidence chain occupies adjacent records.
+ * Afterwards, every file is permuted in place by following the cycles of
+ * the permutation, which moves every record exactly once, and all ids
+ * stored in the records, the subgraph data and the free index lists are
+ * translated to the new numbers. The records of deleted elements are
+ * dropped, releasing the Strings they still reference, and the files are
+ * cut off behind the last used record.
+ *
+ * Since the ids of the elements change, this is only possible if no other
+ * partial graph may refer to local elements, and no vertex, edge or
+ * incidence may be cached while the files are rewritten.
+ */
+public class StorageReorganizer {
+
+	/**
+	 * The order in which the elements are numbered
+	 */
+	public enum Order {
+		/**
+		 * Vertices are numbered in breadth-first order, starting with the
+		 * first vertex of the vertex sequence that hasn't been reached yet.
+		 * Edges are numbered when they are reached for the first time.
+		 */
+		BREADTH_FIRST,
+
+		/**
+		 * Vertices and edges are numbered in the order of the vertex and
+		 * edge sequence of the partial graph, in which the elements of
+		 * every subordinate graph are contiguous. Thus, elements with the
+		 * same sigma are stored next to each other.
+		 */
+		HIERARCHY
+	}
+
+	/**
+	 * Positions of the ids stored in the record of a vertex or edge
+	 */
+	private static final int NEXT_ELEMENT = 4;
+	private static final int PREVIOUS_ELEMENT = 12;
+	private static final int FIRST_INCIDENCE = 20;
+	private static final int LAST_INCIDENCE = 28;
+	private static final int SIGMA = 44;
+
+	/**
+	 * Positions of the ids stored in the record of an incidence
+	 */
+	private static final int NEXT_AT_EDGE = 4;
+	private static final int NEXT_AT_VERTEX = 12;
+	private static final int PREVIOUS_AT_EDGE = 20;
+	private static final int PREVIOUS_AT_VERTEX = 28;
+	private static final int EDGE = 36;
+	private static final int VERTEX = 44;
+
+	private final GraphDatabaseBaseImpl graphdb;
+
+	private final FileAccess vertices;
+	private final FileAccess edges;
+	private final FileAccess incidences;
+
+	private final int vSize;
+	private final int eSize;
+	private final int iSize = Tracker.INCIDENCE_SIZE;
+
+	private final StringHeap strings;
+
+	/**
+	 * Map the old local ids of the elements to their new local ids. Index
+	 * zero is unused, as no element has the id zero.
+	 */
+	private int[] vertexMap;
+	private int[] edgeMap;
+	private int[] incidenceMap;
+
+	/**
+	 * The old local ids of the vertices, in the order of their new ids
+	 */
+	private int[] vertexOrder;
+
+	/**
+	 * The number of elements that have been numbered so far
+	 */
+	private int numVertices;
+	private int numEdges;
+	private int numIncidences;
+
+	/**
+	 * Creates a reorganizer for the files of a DiskStorageManager. All
+	 * pending writes to the files must have been completed.
+	 *
+	 * @param graphdb
+	 * 		The GraphDatabase whose elements are stored in the files
+	 * @param vertices
+	 * 		The file holding the vertices
+	 * @param vSize
+	 * 		The size of a record in the vertex file
+	 * @param edges
+	 * 		The file holding the edges
+	 * @param eSize
+	 * 		The size of a record in the edge file
+	 * @param incidences
+	 * 		The file holding the incidences
+	 * @param strings
+	 * 		The heap holding the Strings of the vertices and edges
+	 */
+	public StorageReorganizer(GraphDatabaseBaseImpl graphdb, FileAccess vertices, int vSize,
+			FileAccess edges, int eSize, FileAccess incidences, StringHeap strings){
+		this.graphdb = graphdb;
+		this.vertices = vertices;
+		this.vSize = vSize;
+		this.edges = edges;
+		this.eSize = eSize;
+		this.incidences = incidences;
+		this.strings = strings;
+	}
+
+	/**
+	 * Renumbers all elements and rewrites the files.
+	 *
+	 * @param order
+	 * 		The order in which the elements are numbered
+	 */
+	public void reorganize(Order order){
+		checkNoRemoteReferences();
+
+		FreeIndexList freeVertices = graphdb.getFreeVertexList();
+		FreeIndexList freeEdges = graphdb.getFreeEdgeList();
+		FreeIndexList freeIncidences = graphdb.getFreeIncidenceList();
+
+		BitSet usedVertices = getUsedIndices(freeVertices);
+		BitSet usedEdges = getUsedIndices(freeEdges);
+		BitSet usedIncidences = getUsedIndices(freeIncidences);
+
+		vertexMap = new int[usedVertices.length() + 1];
+		edgeMap = new int[usedEdges.length() + 1];
+		incidenceMap = new int[usedIncidences.length() + 1];
+		vertexOrder = new int[vertexMap.length];
+
+		if (order == Order.BREADTH_FIRST){
+			numberBreadthFirst();
+		}
+		else {
+			numberBySequence();
+		}
+
+		//elements that can't be reached from the sequences keep their
+		//relative order, the slots of deleted elements are moved behind them
+		numVertices = completeNumbering(vertexMap, usedVertices, numVertices, vertexOrder);
+		numEdges = completeNumbering(edgeMap, usedEdges, numEdges, null);
+
+		for (int i = 1; i <= numVertices; i++){
+			numberIncidenceChain(vertexOrder[i]);
+		}
+		numIncidences = completeNumbering(incidenceMap, usedIncidences, numIncidences, null);
+
+		permute(vertices, vSize, vertexMap, usedVertices, vertexMap);
+		permute(edges, eSize, edgeMap, usedEdges, edgeMap);
+		permute(incidences, iSize, incidenceMap, usedIncidences, null);
+
+		vertices.truncate((long) (numVertices + 1) * vSize);
+		edges.truncate((long) (numEdges + 1) * eSize);
+		incidences.truncate((long) (numIncidences + 1) * iSize);
+
+		for (GraphData data : graphdb.localSubgraphData){
+			data.firstVertexId = mapId(data.firstVertexId, vertexMap);
+			data.lastVertexId = mapId(data.lastVertexId, vertexMap);
+			data.firstEdgeId = mapId(data.firstEdgeId, edgeMap);
+			data.lastEdgeId = mapId(data.lastEdgeId, edgeMap);
+			data.containingElementId = mapSigma(data.containingElementId);
+		}
+
+		compactFreeList(freeVertices);
+		compactFreeList(freeEdges);
+		compactFreeList(freeIncidences);
+
+		graphdb.vertexListModified();
+		graphdb.edgeListModified();
+	}
+
+	/**
+	 * Elements of other partial graphs refer to local elements by their
+	 * ids, which would become invalid.
+	 */
+	private void checkNoRemoteReferences(){
+		if (graphdb.partialGraphDatabases.size() > 1){
+			throw new RuntimeException("Cannot reorganize a graph database that is connected to other partial graphs");
+		}
+		for (GraphData data : graphdb.localSubgraphData){
+			if (data.partialGraphs != null && !data.partialGraphs.isEmpty()){
+				throw new RuntimeException("Cannot reorganize a graph database that is connected to other partial graphs");
+			}
+		}
+	}
+
+	/**
+	 * Numbers the vertices in breadth-first order and the edges in the
+	 * order they are reached.
+	 */
+	private void numberBreadthFirst(){
+		int[] queue = new int[vertexMap.length];
+		int head = 0;
+		int tail = 0;
+
+		long root = getToplevelGraphData().firstVertexId;
+		while (isLocal(root)){
+			int start = GraphDatabaseElementaryMethods.convertToLocalId(root);
+			if (vertexMap[start] == 0){
+				numberVertex(start);
+				queue[tail++] = start;
+
+				while (head < tail){
+					int vertex = queue[head++];
+
+					long inc = readId(vertices, vSize, vertex, FIRST_INCIDENCE);
+					while (isLocal(inc)){
+						int incKey = GraphDatabaseElementaryMethods.convertToLocalId(inc);
+						long edge = readId(incidences, iSize, incKey, EDGE);
+
+						if (isLocal(edge)){
+							int edgeKey = GraphDatabaseElementaryMethods.convertToLocalId(edge);
+							if (edgeMap[edgeKey] == 0){
+								edgeMap[edgeKey] = ++numEdges;
+
+								//reach the other vertices of this edge
+								long other = readId(edges, eSize, edgeKey, FIRST_INCIDENCE);
+								while (isLocal(other)){
+									int otherKey = GraphDatabaseElementaryMethods.convertToLocalId(other);
+									long neighbor = readId(incidences, iSize, otherKey, VERTEX);
+									if (isLocal(neighbor)){
+										int neighborKey = GraphDatabaseElementaryMethods.convertToLocalId(neighbor);
+										if (vertexMap[neighborKey] == 0){
+											numberVertex(neighborKey);
+											queue[tail++] = neighborKey;
+										}
+									}
+									other = readId(incidences, iSize, otherKey, NEXT_AT_EDGE);
+								}
+							}
+						}
+
+						inc = readId(incidences, iSize, incKey, NEXT_AT_VERTEX);
+					}
+				}
+			}
+			root = readId(vertices, vSize, start, NEXT_ELEMENT);
+		}
+
+		//edges without incidences are numbered in the order of the edge sequence
+		numberEdgeSequence();
+	}
+
+	/**
+	 * Numbers the vertices and edges in the order of their sequences.
+	 */
+	private void numberBySequence(){
+		long vertex = getToplevelGraphData().firstVertexId;
+		while (isLocal(vertex)){
+			int key = GraphDatabaseElementaryMethods.convertToLocalId(vertex);
+			if (vertexMap[key] != 0) break;
+			numberVertex(key);
+			vertex = readId(vertices, vSize, key, NEXT_ELEMENT);
+		}
+
+		numberEdgeSequence();
+	}
+
+	/**
+	 * Numbers all edges of the edge sequence that haven't been numbered yet.
+	 */
+	private void numberEdgeSequence(){
+		long edge = getToplevelGraphData().firstEdgeId;
+		while (isLocal(edge)){
+			int key = GraphDatabaseElementaryMethods.convertToLocalId(edge);
+			if (edgeMap[key] == 0){
+				edgeMap[key] = ++numEdges;
+			}
+			edge = readId(edges, eSize, key, NEXT_ELEMENT);
+		}
+	}
+
+	private void numberVertex(int key){
+		vertexMap[key] = ++numVertices;
+		vertexOrder[numVertices] = key;
+	}
+
+	/**
+	 * Numbers the incidences of a vertex in the order of its incidence
+	 * sequence.
+	 */
+	private void numberIncidenceChain(int vertex){
+		long inc = readId(vertices, vSize, vertex, FIRST_INCIDENCE);
+		while (isLocal(inc)){
+			int key = GraphDatabaseElementaryMethods.convertToLocalId(inc);
+			if (incidenceMap[key] != 0) break;
+			incidenceMap[key] = ++numIncidences;
+			inc = readId(incidences, iSize, key, NEXT_AT_VERTEX);
+		}
+	}
+
+	/**
+	 * Numbers all used indices that haven't been numbered yet in ascending
+	 * order, followed by all unused indices, so the map becomes a
+	 * permutation.
+	 *
+	 * @param map
+	 * 		The map from old to new indices
+	 * @param used
+	 * 		The used indices
+	 * @param count
+	 * 		The number of indices that have been numbered already
+	 * @param order
+	 * 		If not null, the old indices are stored in it at their new index
+	 * @return The number of used indices
+	 */
+	private int completeNumbering(int[] map, BitSet used, int count, int[] order){
+		for (int i = used.nextSetBit(1); i >= 0; i = used.nextSetBit(i + 1)){
+			if (map[i] == 0){
+				map[i] = ++count;
+				if (order != null){
+					order[count] = i;
+				}
+			}
+		}
+
+		int numUsed = count;
+		for (int i = 1; i < map.length; i++){
+			if (!used.get(i)){
+				map[i] = ++count;
+			}
+		}
+		return numUsed;
+	}
+
+	/**
+	 * Moves every record of a file to the position given by the map, and
+	 * translates the ids stored in it. The records of unused indices are
+	 * replaced by empty records.
+	 *
+	 * @param ownMap
+	 * 		The map for the next and previous element ids of the records, or
+	 * 		null if the file holds incidences
+	 */
+	private void permute(FileAccess file, int size, int[] map, BitSet used, int[] ownMap){
+		BitSet done = new BitSet(map.length);
+
+		for (int start = 1; start < map.length; start++){
+			if (done.get(start)) continue;
+
+			byte[] carry = loadRecord(file, size, start, used, ownMap);
+			int target = map[start];
+			done.set(start);
+
+			while (target != start){
+				//read the record at the target before it is overwritten
+				byte[] next = loadRecord(file, size, target, used, ownMap);
+				writeRecord(file, size, target, carry);
+				done.set(target);
+				carry = next;
+				target = map[target];
+			}
+
+			writeRecord(file, size, start, carry);
+		}
+	}
+
+	/**
+	 * Reads a record and translates the ids stored in it.
+	 */
+	private byte[] loadRecord(FileAccess file, int size, int key, BitSet used, int[] ownMap){
+		if (!used.get(key)){
+			if (ownMap != null){
+				releaseStrings(file, size, key);
+			}
+			return new byte[size];
+		}
+
+		byte[] bytes = file.readBytes(size, (long) key * size);
+		ByteBuffer record = ByteBuffer.wrap(bytes);
+
+		if (ownMap != null){
+			mapField(record, NEXT_ELEMENT, ownMap);
+			mapField(record, PREVIOUS_ELEMENT, ownMap);
+			mapField(record, FIRST_INCIDENCE, incidenceMap);
+			mapField(record, LAST_INCIDENCE, incidenceMap);
+			record.putLong(SIGMA, mapSigma(record.getLong(SIGMA)));
+		}
+		else {
+			mapField(record, NEXT_AT_EDGE, incidenceMap);
+			mapField(record, NEXT_AT_VERTEX, incidenceMap);
+			mapField(record, PREVIOUS_AT_EDGE, incidenceMap);
+			mapField(record, PREVIOUS_AT_VERTEX, incidenceMap);
+			mapField(record, EDGE, edgeMap);
+			mapField(record, VERTEX, vertexMap);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Releases the Strings of a dropped vertex or edge record, unless they 
+	 * have been released when the element was deleted.
+	 */
+	private void releaseStrings(FileAccess file, int size, int key){
+		long base = (long) key * size;
+		if (base + size > file.length()) return;
+
+		//a type id of zero denotes an unused record
+		int typeId = file.read(4, base).getInt(0) - 1;
+		if (typeId < 0) return;
+
+		GraphElementProfile profile = GraphElementProfile.getProfile(typeId);
+		int numStrings = profile.getNumStrings();
+		if (numStrings == 0) return;
+
+		ByteBuffer handles = file.read(numStrings * 8, base + profile.getStartOfStrings());
+		for (int i = 0; i < numStrings; i++){
+			strings.release(handles.getLong(i * 8));
+		}
+	}
+
+	private void writeRecord(FileAccess file, int size, int key, byte[] bytes){
+		file.write(ByteBuffer.wrap(bytes), (long) key * size);
+	}
+
+	private void mapField(ByteBuffer record, int position, int[] map){
+		record.putLong(position, mapId(record.getLong(position), map));
+	}
+
+	/**
+	 * Translates a global id of a local element to its new id. Ids of
+	 * elements of other partial graphs and zero are left unchanged.
+	 */
+	private long mapId(long id, int[] map){
+		if (!isLocal(id)) return id;
+		return graphdb.convertToGlobalId(map[GraphDatabaseElementaryMethods.convertToLocalId(id)]);
+	}
+
+	/**
+	 * Translates a sigma or containing element id, which denotes a vertex if
+	 * it is positive and the negated id of an edge if it is negative.
+	 */
+	private long mapSigma(long id){
+		return id >= 0 ? mapId(id, vertexMap) : -mapId(-id, edgeMap);
+	}
+
+	/**
+	 * Reads an id stored in a record.
+	 */
+	private long readId(FileAccess file, int size, int key, int position){
+		return file.read(8, (long) key * size + position).getLong(0);
+	}
+
+	private boolean isLocal(long id){
+		return id != 0 && GraphDatabaseElementaryMethods.getPartialGraphId(id)
+				== graphdb.getLocalPartialGraphId();
+	}
+
+	private GraphData getToplevelGraphData(){
+		return graphdb.getGraphData(GraphDatabaseElementaryMethods.TOPLEVEL_LOCAL_SUBGRAPH_ID);
+	}
+
+	/**
+	 * Computes the used indices of a FreeIndexList from its runs.
+	 */
+	private static BitSet getUsedIndices(FreeIndexList list){
+		BitSet used = new BitSet();
+		int index = 1;
+		for (int run : list.getRuns()){
+			if (run < 0){
+				used.set(index, index - run);
+				index -= run;
+			}
+			else {
+				index += run;
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Marks the first indices of a FreeIndexList as used, as many as
+	 * have been used before, and all others as free.
+	 */
+	private static void compactFreeList(FreeIndexList list){
+		int total = list.getSize();
+		int used = list.getUsed();
+
+		if (used == 0){
+			list.reinitialize(new int[] { total });
+		}
+		else if (used == total){
+			list.reinitialize(new int[] { -used });
+		}
+		else {
+			list.reinitialize(new int[] { -used, total - used });
+		}
+	}
+}
@@ -0,0 +1,462 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Manages the Strings stored in strings.dst.
+ *
+ * Records of graph elements don't store the position of a String in the
+ * file, but a handle. The heap maps every handle to a slot in the file,
+ * which consists of the length of the String followed by its bytes in
+ * UTF-8, so the file doesn't depend on the platform's charset. Since
+ * only the heap knows the positions of the slots, the slots can be moved
+ * by {@link #compact()} without touching the records.
+ *
+ * Short Strings are interned: storing a String that is already stored
+ * returns the handle of the existing slot. Every slot counts the records
+ * that reference it. If the count drops to zero, the slot is freed and
+ * can be reused by another String of at most the same size.
+ */
+public class StringHeap {
+
+	/**
+	 * Strings with at most this amount of bytes are interned
+	 */
+	private static final int MAX_INTERNED_LENGTH = 256;
+
+	/**
+	 * The charset of the stored Strings
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * A freed slot is only reused for a String that needs at least half of it
+	 */
+	private static final int MAX_WASTE_FACTOR = 2;
+
+	/**
+	 * A compaction is considered worthwhile if at least this amount of bytes
+	 * is free and the free bytes exceed the used bytes
+	 */
+	private static final long MIN_COMPACTION_GAIN = 1024 * 1024;
+
+	/**
+	 * The file in which the Strings are stored
+	 */
+	private final FileAccess file;
+
+	/**
+	 * The stage through which all reads and writes are performed
+	 */
+	private final WriteBehindFlusher flusher;
+
+	/**
+	 * Readers share this lock, changes to the slots and compactions
+	 * hold it exclusively
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Slot data, indexed by handle. A handle with a reference count of
+	 * zero is unused.
+	 */
+	private long[] positions = new long[1024];
+	private int[] capacities = new int[1024];
+	private int[] references = new int[1024];
+
+	/**
+	 * The values of interned slots, indexed by handle
+	 */
+	private String[] values = new String[1024];
+
+	/**
+	 * The number of handles that have been handed out so far
+	 */
+	private int handleCount;
+
+	/**
+	 * Unused handles below handleCount
+	 */
+	private int[] freeHandles = new int[64];
+	private int numFreeHandles;
+
+	/**
+	 * Maps interned Strings to their handles
+	 */
+	private final Map<String, Integer> interned = new HashMap<String, Integer>();
+
+	/**
+	 * Positions of the freed slots, by their capacity
+	 */
+	private final TreeMap<Integer, ArrayList<Long>> freeSlots = new TreeMap<Integer, ArrayList<Long>>();
+
+	/**
+	 * The amount of bytes in freed slots
+	 */
+	private long freeBytes;
+
+	/**
+	 * Pointer to the first byte behind the last slot
+	 */
+	private long end;
+
+	/**
+	 * Creates a heap for an empty file.
+	 *
+	 * @param file
+	 * 		The file in which the Strings are stored
+	 * @param flusher
+	 * 		The stage through which the file is accessed
+	 */
+	public StringHeap(FileAccess file, WriteBehindFlusher flusher){
+		this.file = file;
+		this.flusher = flusher;
+	}
+
+	/**
+	 * Stores a String and adds a reference to its slot.
+	 *
+	 * @param s
+	 * 		The String to be stored
+	 * @return The handle of the String, or -1 if the String was null
+	 */
+	public long store(String s){
+		if (s == null) return -1;
+
+		byte[] bytes = s.getBytes(UTF_8);
+		boolean intern = bytes.length <= MAX_INTERNED_LENGTH;
+
+		lock.writeLock().lock();
+		try {
+			if (intern){
+				Integer existing = interned.get(s);
+				if (existing != null){
+					references[existing]++;
+					return existing;
+				}
+			}
+
+			int handle = allocateHandle();
+			long position = allocateSlot(handle, 4 + bytes.length);
+			references[handle] = 1;
+
+			ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+			buf.putInt(bytes.length);
+			buf.put(bytes);
+			flusher.submit(file, buf, position);
+
+			if (intern){
+				values[handle] = s;
+				interned.put(s, handle);
+			}
+
+			return handle;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a reference to a slot. If the slot isn't referenced anymore,
+	 * it is freed.
+	 *
+	 * @param handle
+	 * 		The handle of the String, may be -1
+	 */
+	public void release(long handle){
+		if (handle < 0) return;
+
+		lock.writeLock().lock();
+		try {
+			int h = (int) handle;
+			if (h >= handleCount || references[h] == 0){
+				throw new IllegalArgumentException("Released unused String handle " + handle);
+			}
+
+			if (--references[h] > 0) return;
+
+			if (values[h] != null){
+				interned.remove(values[h]);
+				values[h] = null;
+			}
+
+			addFreeSlot(positions[h], capacities[h]);
+
+			if (numFreeHandles == freeHandles.length){
+				freeHandles = Arrays.copyOf(freeHandles, numFreeHandles * 2);
+			}
+			freeHandles[numFreeHandles++] = h;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads a String. Interned Strings are returned without accessing
+	 * the file.
+	 *
+	 * @param handle
+	 * 		The handle of the String
+	 * @return The String, or a nullpointer if the handle was less than zero
+	 */
+	public String read(long handle){
+		if (handle < 0) return null;
+
+		lock.readLock().lock();
+		try {
+			int h = (int) handle;
+			if (values[h] != null) return values[h];
+
+			long position = positions[h];
+			int length = flusher.read(file, 4, position).getInt(0);
+			return new String(flusher.readBytes(file, length, position + 4), UTF_8);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks if a compaction would shrink the file considerably.
+	 *
+	 * @return true if there are more free than used bytes in the file
+	 */
+	public boolean needsCompaction(){
+		lock.readLock().lock();
+		try {
+			return freeBytes >= MIN_COMPACTION_GAIN && freeBytes > end - freeBytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves all used slots to the start of the file, in the order of their
+	 * positions, and truncates the file behind the last slot. Readers and
+	 * writers are blocked while the heap is compacted. The slots are moved
+	 * by writes through the flusher, so a logged storage logs them. If the
+	 * flusher holds back writes, the file is not truncated until
+	 * {@link #truncate()} is called, since the slots behind the new end 
+	 * are needed until the moves have been logged.
+	 */
+	public void compact(){
+		lock.writeLock().lock();
+		try {
+			//no write to strings.dst must be pending while slots are moved
+			flusher.drain();
+
+			Integer[] used = new Integer[handleCount];
+			int numUsed = 0;
+			for (int h = 0; h < handleCount; h++){
+				if (references[h] > 0) used[numUsed++] = h;
+			}
+			Arrays.sort(used, 0, numUsed, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return positions[a] < positions[b] ? -1
+							: positions[a] == positions[b] ? 0 : 1;
+				}
+			});
+
+			//slots only move towards the start of the file, so every slot
+			//is read before it could be overwritten
+			long pointer = 0;
+			for (int i = 0; i < numUsed; i++){
+				int h = used[i];
+				int length = file.read(4, positions[h]).getInt(0);
+				if (positions[h] != pointer){
+					flusher.submit(file, ByteBuffer.wrap(file.readBytes(4 + length, positions[h])), pointer);
+					positions[h] = pointer;
+				}
+				capacities[h] = 4 + length;
+				pointer += 4 + length;
+			}
+
+			freeSlots.clear();
+			freeBytes = 0;
+			end = pointer;
+			if (!flusher.isHoldingWrites()){
+				flusher.drain();
+				file.truncate(end);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Truncates the file behind the last slot. Must only be called when
+	 * no write to strings.dst is pending.
+	 */
+	public void truncate(){
+		lock.writeLock().lock();
+		try {
+			if (file.length() > end){
+				file.truncate(end);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the slot table of this heap.
+	 *
+	 * @param out
+	 * 		The stream the table is written to
+	 */
+	public void writeIndex(DataOutputStream out) throws IOException {
+		lock.readLock().lock();
+		try {
+			out.writeLong(end);
+			out.writeInt(handleCount);
+			for (int h = 0; h < handleCount; h++){
+				out.writeInt(references[h]);
+				if (references[h] > 0){
+					out.writeLong(positions[h]);
+					out.writeInt(capacities[h]);
+				}
+			}
+
+			int numFreeSlots = 0;
+			for (ArrayList<Long> slots : freeSlots.values()){
+				numFreeSlots += slots.size();
+			}
+			out.writeInt(numFreeSlots);
+			for (Map.Entry<Integer, ArrayList<Long>> e : freeSlots.entrySet()){
+				for (long position : e.getValue()){
+					out.writeLong(position);
+					out.writeInt(e.getKey());
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Restores the slot table written by {@link #writeIndex(DataOutputStream)}
+	 * and interns the short Strings again.
+	 *
+	 * @param in
+	 * 		The stream the table is read from
+	 */
+	public void readIndex(DataInputStream in) throws IOException {
+		lock.writeLock().lock();
+		try {
+			end = in.readLong();
+			handleCount = 0;
+			numFreeHandles = 0;
+			interned.clear();
+			freeSlots.clear();
+			freeBytes = 0;
+
+			int numHandles = in.readInt();
+			ensureHandleCapacity(numHandles);
+			for (int h = 0; h < numHandles; h++){
+				handleCount++;
+				references[h] = in.readInt();
+				values[h] = null;
+				if (references[h] > 0){
+					positions[h] = in.readLong();
+					capacities[h] = in.readInt();
+
+					int length = file.read(4, positions[h]).getInt(0);
+					if (length <= MAX_INTERNED_LENGTH){
+						values[h] = new String(file.readBytes(length, positions[h] + 4), UTF_8);
+						interned.put(values[h], h);
+					}
+				}
+				else {
+					if (numFreeHandles == freeHandles.length){
+						freeHandles = Arrays.copyOf(freeHandles, numFreeHandles * 2);
+					}
+					freeHandles[numFreeHandles++] = h;
+				}
+			}
+
+			int numFreeSlots = in.readInt();
+			for (int i = 0; i < numFreeSlots; i++){
+				long position = in.readLong();
+				addFreeSlot(position, in.readInt());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns an unused handle. Must be called with the write lock held.
+	 */
+	private int allocateHandle(){
+		if (numFreeHandles > 0){
+			return freeHandles[--numFreeHandles];
+		}
+		ensureHandleCapacity(handleCount + 1);
+		return handleCount++;
+	}
+
+	/**
+	 * Grows the slot arrays if needed. Must be called with the write lock held.
+	 */
+	private void ensureHandleCapacity(int capacity){
+		if (capacity > positions.length){
+			int newLength = Math.max(capacity, positions.length * 2);
+			positions = Arrays.copyOf(positions, newLength);
+			capacities = Arrays.copyOf(capacities, newLength);
+			references = Arrays.copyOf(references, newLength);
+			values = Arrays.copyOf(values, newLength);
+		}
+	}
+
+	/**
+	 * Assigns a slot of at least the given size to a handle, reusing the
+	 * smallest fitting freed slot if possible. Must be called with the
+	 * write lock held.
+	 *
+	 * @return The position of the slot
+	 */
+	private long allocateSlot(int handle, int size){
+		Map.Entry<Integer, ArrayList<Long>> fit = freeSlots.ceilingEntry(size);
+
+		if (fit != null && fit.getKey() <= size * MAX_WASTE_FACTOR){
+			ArrayList<Long> slots = fit.getValue();
+			long position = slots.remove(slots.size() - 1);
+			if (slots.isEmpty()){
+				freeSlots.remove(fit.getKey());
+			}
+			freeBytes -= fit.getKey();
+			positions[handle] = position;
+			capacities[handle] = fit.getKey();
+			return position;
+		}
+
+		positions[handle] = end;
+		capacities[handle] = size;
+		end += size;
+		return positions[handle];
+	}
+
+	/**
+	 * Adds a slot to the free slots. Must be called with the write lock held.
+	 */
+	private void addFreeSlot(long position, int capacity){
+		ArrayList<Long> slots = freeSlots.get(capacity);
+		if (slots == null){
+			slots = new ArrayList<Long>();
+			freeSlots.put(capacity, slots);
+		}
+		slots.add(position);
+		freeBytes += capacity;
+	}
+}
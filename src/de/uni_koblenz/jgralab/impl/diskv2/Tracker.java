@@ -1,7 +1,6 @@
 package de.uni_koblenz.jgralab.impl.diskv2;
 
 import java.nio.ByteBuffer;
-import java.util.List;
 
 /**
  * Abstract class used to track a graph object. Every tracker tracks
@@ -89,7 +88,7 @@ public abstract class Tracker {
 	public abstract String[] getStrings();
 	
 	/**
-	 * Method to access the Lists.
+	 * Method to access the Lists, Sets and Maps.
 	 */
-	public abstract List[] getLists();
+	public abstract Object[] getLists();
 }
@@ -122,6 +122,11 @@ public abstract class VertexImpl extends
 	public GraphElementTracker getTracker(){
 		return ((MemStorageManager) getStorage()).getVertexTracker(getLocalId());
 	}
+	
+	@Override
+	public Object getTrackerLock(){
+		return ((MemStorageManager) getStorage()).getVertexLock(getLocalId());
+	}
 
 	/**
 	 * Puts <code>nextVertex</code> after this {@link Vertex} in the sequence of
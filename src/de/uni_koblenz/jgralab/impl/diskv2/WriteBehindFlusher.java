@@ -0,0 +1,435 @@
+package de.uni_koblenz.jgralab.impl.diskv2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Background stage that writes the data of evicted graph elements to the
+ * disk, so the thread that evicts an element doesn't have to wait for the
+ * write.
+ *
+ * Writes are submitted as copies of the buffers to be written and are kept
+ * in a map per file, sorted by their position in the file. A write to a
+ * position that is still pending replaces the pending write. The flusher
+ * thread collects the pending writes, and writes contiguous buffers of a
+ * file with a single gathering write, so bulk loads result in sequential
+ * I/O instead of many single-record writes.
+ *
+ * Reads have to go through {@link #read(FileAccess, int, long)}, which
+ * overlays pending writes on the data read from the file. If too many
+ * bytes are pending, submitting threads are blocked until the flusher has
+ * caught up.
+ *
+ * If the storage is logged by a {@link RedoLog}, the flusher holds back
+ * all writes until they have been logged, see {@link #holdWrites()}.
+ */
+public class WriteBehindFlusher implements Runnable {
+
+	/**
+	 * If this amount of bytes is pending, submitting threads are blocked
+	 */
+	private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * If less than this amount of bytes is pending, the flusher waits for
+	 * BATCH_DELAY milliseconds to collect more writes
+	 */
+	private static final long BATCH_BYTES = 1024 * 1024;
+
+	private static final long BATCH_DELAY = 10;
+
+	/**
+	 * Guards all pending writes
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Pending writes per file, sorted by their position in the file
+	 */
+	private final Map<FileAccess, TreeMap<Long, ByteBuffer>> pending
+		= new HashMap<FileAccess, TreeMap<Long, ByteBuffer>>();
+
+	/**
+	 * The total amount of pending bytes
+	 */
+	private long pendingBytes;
+
+	/**
+	 * If true, writes are only written to the files once they have been
+	 * released
+	 */
+	private boolean holding;
+
+	/**
+	 * Pending writes that have not been released yet, only used if the 
+	 * flusher holds back writes
+	 */
+	private Map<FileAccess, TreeMap<Long, ByteBuffer>> unreleased
+		= new HashMap<FileAccess, TreeMap<Long, ByteBuffer>>();
+
+	/**
+	 * Pending writes that have been released, only used if the flusher 
+	 * holds back writes
+	 */
+	private final Map<FileAccess, TreeMap<Long, ByteBuffer>> released
+		= new HashMap<FileAccess, TreeMap<Long, ByteBuffer>>();
+
+	/**
+	 * The amount of bytes that have been released but not written yet
+	 */
+	private long releasedBytes;
+
+	/**
+	 * True while the flusher thread writes a batch outside of the lock
+	 */
+	private boolean writing;
+
+	/**
+	 * The exception that stopped the flusher thread, if any
+	 */
+	private RuntimeException failure;
+
+	private final Thread thread;
+
+	/**
+	 * Creates and starts a new flusher.
+	 *
+	 * @param name
+	 * 		The name of the flusher thread
+	 */
+	public WriteBehindFlusher(String name){
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Submits a write. The content of the buffer is copied, so the buffer
+	 * may be reused by the caller.
+	 *
+	 * @param file
+	 * 		The file to write to
+	 * @param content
+	 * 		The bytes to write, from position zero up to the buffer's capacity
+	 * @param index
+	 * 		The position in the file
+	 */
+	public void submit(FileAccess file, ByteBuffer content, long index){
+		ByteBuffer copy = ByteBuffer.allocate(content.capacity());
+		ByteBuffer source = content.duplicate();
+		source.clear();
+		copy.put(source);
+		copy.clear();
+
+		synchronized (lock){
+			checkFailure();
+			while (writableBytes() > MAX_PENDING_BYTES){
+				waitForFlusher();
+			}
+
+			ByteBuffer replaced = put(pending, file, index, copy);
+			if (replaced != null){
+				pendingBytes -= replaced.capacity();
+			}
+			pendingBytes += copy.capacity();
+
+			if (holding){
+				put(unreleased, file, index, copy);
+			}
+
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Reads from a file, taking pending writes into account.
+	 *
+	 * @param file
+	 * 		The file to read from
+	 * @param numBytes
+	 * 		The amount of bytes to be read
+	 * @param index
+	 * 		The position in the file from which to start reading
+	 * @return A byte buffer containing the requested bytes
+	 */
+	public ByteBuffer read(FileAccess file, int numBytes, long index){
+		List<Long> overlayPositions = null;
+		List<ByteBuffer> overlays = null;
+
+		//collect the overlapping writes before reading the file, so a write
+		//that completes in between is either read from the file or overlaid
+		synchronized (lock){
+			TreeMap<Long, ByteBuffer> writes = pending.get(file);
+			if (writes != null && !writes.isEmpty()){
+				Long from = writes.floorKey(index);
+				Map<Long, ByteBuffer> candidates = writes.subMap(
+						from == null ? index : from, index + numBytes);
+				for (Map.Entry<Long, ByteBuffer> e : candidates.entrySet()){
+					if (e.getKey() + e.getValue().capacity() > index){
+						if (overlays == null){
+							overlayPositions = new ArrayList<Long>();
+							overlays = new ArrayList<ByteBuffer>();
+						}
+						overlayPositions.add(e.getKey());
+						overlays.add(e.getValue());
+					}
+				}
+			}
+		}
+
+		ByteBuffer buf = file.read(numBytes, index);
+
+		if (overlays != null){
+			//the buffer read from the file may share its content with the
+			//file, so the pending writes are overlaid on a copy
+			byte[] target = FileAccess.getBytes(buf);
+			for (int i = 0; i < overlays.size(); i++){
+				long start = overlayPositions.get(i);
+				byte[] source = overlays.get(i).array();
+				long from = Math.max(start, index);
+				long to = Math.min(start + source.length, index + numBytes);
+				System.arraycopy(source, (int) (from - start), target,
+						(int) (from - index), (int) (to - from));
+			}
+			buf = ByteBuffer.wrap(target);
+		}
+
+		return buf;
+	}
+
+	/**
+	 * Reads from a file into a new array, taking pending writes into account.
+	 *
+	 * @param file
+	 * 		The file to read from
+	 * @param numBytes
+	 * 		The amount of bytes to be read
+	 * @param index
+	 * 		The position in the file from which to start reading
+	 * @return An array containing the requested bytes
+	 */
+	public byte[] readBytes(FileAccess file, int numBytes, long index){
+		ByteBuffer buf = read(file, numBytes, index);
+		if (buf.hasArray() && buf.arrayOffset() == 0 && buf.array().length == numBytes){
+			return buf.array();
+		}
+		return FileAccess.getBytes(buf);
+	}
+
+	/**
+	 * Blocks until all writes submitted before have been written to the
+	 * files. If the flusher holds back writes, only the writes released 
+	 * before are waited for.
+	 */
+	public void drain(){
+		synchronized (lock){
+			while (writableBytes() > 0 || writing){
+				checkFailure();
+				waitForFlusher();
+			}
+			checkFailure();
+		}
+	}
+
+	/**
+	 * Makes the flusher hold back all writes submitted from now on, until
+	 * they are released. The writes are still visible to reads.
+	 */
+	public void holdWrites(){
+		synchronized (lock){
+			holding = true;
+		}
+	}
+
+	/**
+	 * Checks if the flusher holds back writes.
+	 * 
+	 * @return true if writes are only written once they have been released
+	 */
+	public boolean isHoldingWrites(){
+		synchronized (lock){
+			return holding;
+		}
+	}
+
+	/**
+	 * Returns all writes that are held back and have not been taken 
+	 * before. Writes submitted afterwards are collected anew.
+	 * 
+	 * @return The writes per file, sorted by their positions in the file
+	 */
+	public Map<FileAccess, TreeMap<Long, ByteBuffer>> takeUnreleased(){
+		synchronized (lock){
+			Map<FileAccess, TreeMap<Long, ByteBuffer>> taken = unreleased;
+			unreleased = new HashMap<FileAccess, TreeMap<Long, ByteBuffer>>();
+			return taken;
+		}
+	}
+
+	/**
+	 * Releases writes taken by {@link #takeUnreleased()}, so the flusher 
+	 * thread writes them to the files. Writes must be released in the 
+	 * order they were taken.
+	 * 
+	 * @param writes
+	 * 		The writes to release
+	 */
+	public void release(Map<FileAccess, TreeMap<Long, ByteBuffer>> writes){
+		synchronized (lock){
+			for (Map.Entry<FileAccess, TreeMap<Long, ByteBuffer>> e : writes.entrySet()){
+				for (Map.Entry<Long, ByteBuffer> w : e.getValue().entrySet()){
+					ByteBuffer replaced = put(released, e.getKey(), w.getKey(), w.getValue());
+					if (replaced != null){
+						releasedBytes -= replaced.capacity();
+					}
+					releasedBytes += w.getValue().capacity();
+				}
+			}
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void run(){
+		while (true){
+			Map<FileAccess, TreeMap<Long, ByteBuffer>> batch;
+
+			synchronized (lock){
+				try {
+					while (writableBytes() == 0){
+						lock.wait();
+					}
+					if (writableBytes() < BATCH_BYTES){
+						lock.wait(BATCH_DELAY);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				batch = new HashMap<FileAccess, TreeMap<Long, ByteBuffer>>();
+				for (Map.Entry<FileAccess, TreeMap<Long, ByteBuffer>> e 
+						: (holding ? released : pending).entrySet()){
+					if (!e.getValue().isEmpty()){
+						batch.put(e.getKey(), new TreeMap<Long, ByteBuffer>(e.getValue()));
+					}
+				}
+				writing = true;
+			}
+
+			try {
+				for (Map.Entry<FileAccess, TreeMap<Long, ByteBuffer>> e : batch.entrySet()){
+					writeSorted(e.getKey(), e.getValue());
+				}
+			} catch (RuntimeException e) {
+				synchronized (lock){
+					failure = e;
+					writing = false;
+					lock.notifyAll();
+				}
+				return;
+			}
+
+			synchronized (lock){
+				//remove the written buffers, unless they have been replaced
+				//by newer writes in the meantime
+				for (Map.Entry<FileAccess, TreeMap<Long, ByteBuffer>> e : batch.entrySet()){
+					TreeMap<Long, ByteBuffer> writes = pending.get(e.getKey());
+					for (Map.Entry<Long, ByteBuffer> w : e.getValue().entrySet()){
+						if (writes.get(w.getKey()) == w.getValue()){
+							writes.remove(w.getKey());
+							pendingBytes -= w.getValue().capacity();
+						}
+						if (holding){
+							TreeMap<Long, ByteBuffer> releasedWrites = released.get(e.getKey());
+							if (releasedWrites.get(w.getKey()) == w.getValue()){
+								releasedWrites.remove(w.getKey());
+								releasedBytes -= w.getValue().capacity();
+							}
+						}
+					}
+				}
+				writing = false;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns the amount of bytes the flusher thread may write. Must be
+	 * called with the lock held.
+	 */
+	private long writableBytes(){
+		return holding ? releasedBytes : pendingBytes;
+	}
+
+	/**
+	 * Adds a write to a map of writes per file. Must be called with the
+	 * lock held.
+	 * 
+	 * @return The write that has been replaced, or null
+	 */
+	private static ByteBuffer put(Map<FileAccess, TreeMap<Long, ByteBuffer>> map,
+			FileAccess file, long index, ByteBuffer content){
+		TreeMap<Long, ByteBuffer> writes = map.get(file);
+		if (writes == null){
+			writes = new TreeMap<Long, ByteBuffer>();
+			map.put(file, writes);
+		}
+		return writes.put(index, content);
+	}
+
+	/**
+	 * Writes the buffers of a file in the order of their positions. Buffers
+	 * that are adjacent in the file are written with one gathering write.
+	 */
+	private void writeSorted(FileAccess file, TreeMap<Long, ByteBuffer> writes){
+		List<ByteBuffer> run = new ArrayList<ByteBuffer>();
+		long runStart = -1;
+		long runEnd = -1;
+
+		for (Map.Entry<Long, ByteBuffer> w : writes.entrySet()){
+			long start = w.getKey();
+			ByteBuffer content = w.getValue();
+
+			if (start != runEnd && !run.isEmpty()){
+				file.write(run.toArray(new ByteBuffer[run.size()]), runStart);
+				run.clear();
+			}
+			if (run.isEmpty()){
+				runStart = start;
+			}
+			run.add(content.duplicate());
+			runEnd = start + content.capacity();
+		}
+
+		if (!run.isEmpty()){
+			file.write(run.toArray(new ByteBuffer[run.size()]), runStart);
+		}
+	}
+
+	/**
+	 * Waits until the flusher thread signals progress. Must be called with
+	 * the lock held.
+	 */
+	private void waitForFlusher(){
+		try {
+			lock.wait();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Interrupted while waiting for pending writes");
+		}
+	}
+
+	/**
+	 * Rethrows the exception that stopped the flusher thread. Must be called
+	 * with the lock held.
+	 */
+	private void checkFailure(){
+		if (failure != null){
+			throw new RuntimeException("Write-behind failed", failure);
+		}
+	}
+}
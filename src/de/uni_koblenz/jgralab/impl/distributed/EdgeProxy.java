@@ -46,7 +46,7 @@ import de.uni_koblenz.jgralab.GraphIOException;
 import de.uni_koblenz.jgralab.Incidence;
 import de.uni_koblenz.jgralab.NoSuchAttributeException;
 import de.uni_koblenz.jgralab.Vertex;
-import de.uni_koblenz.jgralab.impl.IncidenceIterableAtEdge;
+import de.uni_koblenz.jgralab.impl.IncidenceChainIterable;
 import de.uni_koblenz.jgralab.impl.IncidentVertexIterable;
 import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccess;
 import de.uni_koblenz.jgralab.schema.EdgeClass;
@@ -473,59 +473,63 @@ public abstract class EdgeProxy extends
 	@Override
 	public final Iterable<Incidence> getIncidences() {
 		assert isValid();
-		return new IncidenceIterableAtEdge<Incidence>(this);
+		return getIncidenceChainIterable(
+				localGraphDatabase.getTraversalContext(), null, null);
 	}
 
 	@Override
 	public final <T extends Incidence> Iterable<T> getIncidences(
 			Class<T> anIncidenceClass) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<T>(this, anIncidenceClass);
+		return getIncidenceChainIterable(
+				localGraphDatabase.getTraversalContext(),
+				anIncidenceClass, null);
 	}
 
 
 	@Override
 	public final Iterable<Incidence> getIncidences(Direction direction) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<Incidence>(this, direction);
+		return getIncidenceChainIterable(
+				localGraphDatabase.getTraversalContext(), null, direction);
 	}
 
 	@Override
 	public final Iterable<Incidence> getIncidences(Graph traversalContext) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<Incidence>(traversalContext, this);
+		return getIncidenceChainIterable(traversalContext, null, null);
 	}
 
 	@Override
 	public final <T extends Incidence> Iterable<T> getIncidences(
 			Graph traversalContext, Class<T> anIncidenceClass) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<T>(traversalContext, this,
-				anIncidenceClass);
+		return getIncidenceChainIterable(traversalContext,
+				anIncidenceClass, null);
 	}
 
 	@Override
 	public final Iterable<Incidence> getIncidences(Graph traversalContext,
 			Direction direction) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<Incidence>(traversalContext, this,
-				direction);
+		return getIncidenceChainIterable(traversalContext, null, direction);
 	}
 
 	@Override
 	public final Iterable<Incidence> getIncidences(Graph traversalContext,
 			IncidenceClass anIncidenceClass) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<Incidence>(traversalContext, this,
-				anIncidenceClass.getM1Class());
+		return getIncidenceChainIterable(traversalContext,
+				anIncidenceClass.getM1Class(), null);
 	}
 
 	@Override
 	public final Iterable<Incidence> getIncidences(
 			IncidenceClass anIncidenceClass) {
 		assert isValid();
-		return new IncidenceIterableAtEdge<Incidence>(this,
-				anIncidenceClass.getM1Class());
+		return getIncidenceChainIterable(
+				localGraphDatabase.getTraversalContext(),
+				anIncidenceClass.getM1Class(), null);
 	}
 
 	//
@@ -792,6 +796,49 @@ public abstract class EdgeProxy extends
 				getIncidenceClassForRolename(adjacentRole), other);
 	}
 
+	/**
+	 * @return an {@link Iterable} for the incidences of this edge, which have
+	 *         been retrieved with a single call to the partial graph storing
+	 *         it
+	 */
+	private <T extends Incidence> Iterable<T> getIncidenceChainIterable(
+			Graph traversalContext, Class<? extends Incidence> ic,
+			Direction direction) {
+		long incidenceListVersion = getIncidenceListVersion();
+		return new IncidenceChainIterable<T>(this, incidenceListVersion,
+				getIncidenceChain(traversalContext), ic, direction);
+	}
+
+	/**
+	 * Retrieves the incidences of this edge with a single call to the
+	 * partial graph storing it, instead of one call per incidence.
+	 * 
+	 * @return the incidences whose vertexs belong to
+	 *         <code>traversalContext</code>, in the order of the lambda
+	 *         sequence
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Incidence> getIncidenceChain(Graph traversalContext) {
+		long[] chain;
+		try {
+			chain = storingGraphDatabase.getIncidenceChainAtEdgeId(elementId);
+		} catch (RemoteException e) {
+			throw new RuntimeException(e);
+		}
+		List<Incidence> incidences = new ArrayList<Incidence>();
+		for (int r = 0; r < chain.length; r += RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE) {
+			if (traversalContext != null
+					&& !traversalContext.containsVertex(localGraphDatabase
+							.getVertexObject(chain[r + 3]))) {
+				continue;
+			}
+			incidences.add(localGraphDatabase.getIncidenceObject(chain[r],
+					(Class<? extends Incidence>) localGraphDatabase.getSchema()
+							.getM1ClassForId((int) chain[r + 1])));
+		}
+		return incidences;
+	}
+
 	@Override
 	public final int getDegree() {
 		return getDegree(localGraphDatabase.getTraversalContext());
@@ -814,13 +861,7 @@ public abstract class EdgeProxy extends
 
 	@Override
 	public final int getDegree(Graph traversalContext) {
-		int d = 0;
-		Incidence i = getFirstIncidence(traversalContext);
-		while (i != null) {
-			d++;
-			i = i.getNextIncidenceAtEdge(traversalContext);
-		}
-		return d;
+		return getIncidenceChain(traversalContext).size();
 	}
 
 	@Override
@@ -829,10 +870,10 @@ public abstract class EdgeProxy extends
 		assert ic != null;
 		assert isValid();
 		int degree = 0;
-		Incidence i = getFirstIncidence(traversalContext, ic, noSubClasses);
-		while (i != null) {
-			++degree;
-			i = i.getNextIncidenceAtEdge(traversalContext, ic, noSubClasses);
+		for (Incidence i : getIncidenceChain(traversalContext)) {
+			if (noSubClasses ? i.getM1Class() == ic : ic.isInstance(i)) {
+				++degree;
+			}
 		}
 		return degree;
 	}
@@ -844,12 +885,10 @@ public abstract class EdgeProxy extends
 			return getDegree();
 		}
 		int d = 0;
-		Incidence i = getFirstIncidence(traversalContext);
-		while (i != null) {
+		for (Incidence i : getIncidenceChain(traversalContext)) {
 			if (direction == Direction.BOTH || i.getDirection() == direction) {
 				d++;
 			}
-			i = i.getNextIncidenceAtEdge(traversalContext);
 		}
 		return d;
 	}
@@ -859,13 +898,7 @@ public abstract class EdgeProxy extends
 			boolean noSubClasses) {
 		assert ic != null;
 		assert isValid();
-		int degree = 0;
-		Incidence i = getFirstIncidence(traversalContext, ic, noSubClasses);
-		while (i != null) {
-			++degree;
-			i = i.getNextIncidenceAtEdge(traversalContext, ic, noSubClasses);
-		}
-		return degree;
+		return getDegree(traversalContext, ic.getM1Class(), noSubClasses);
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package de.uni_koblenz.jgralab.impl.distributed;
 
 import java.lang.reflect.Constructor;
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -1346,6 +1347,109 @@ public abstract class GraphDatabaseBaseImpl extends
 		return i.getLastIncidenceId();
 	}
 
+	@Override
+	public long[] getIncidenceChainAtVertexId(long vertexId) {
+		int partialGraphId = getPartialGraphId(vertexId);
+		if (partialGraphId != localPartialGraphId) {
+			try {
+				return getGraphDatabase(partialGraphId)
+						.getIncidenceChainAtVertexId(vertexId);
+			} catch (RemoteException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return getIncidenceChain(getFirstIncidenceIdAtVertexId(vertexId), true);
+	}
+
+	@Override
+	public long[] getIncidenceChainAtEdgeId(long edgeId) {
+		int partialGraphId = getPartialGraphId(edgeId);
+		if (partialGraphId != localPartialGraphId) {
+			try {
+				return getGraphDatabase(partialGraphId)
+						.getIncidenceChainAtEdgeId(edgeId);
+			} catch (RemoteException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return getIncidenceChain(getFirstIncidenceIdAtEdgeId(edgeId), false);
+	}
+
+	@Override
+	public long[] getIncidenceRunAtVertexId(long incidenceId) {
+		return getIncidenceRun(incidenceId, true);
+	}
+
+	@Override
+	public long[] getIncidenceRunAtEdgeId(long incidenceId) {
+		return getIncidenceRun(incidenceId, false);
+	}
+
+	/**
+	 * Collects the records of a lambda sequence starting at the incidence
+	 * <code>incidenceId</code>. The runs of incidences stored in other
+	 * partial graphs are requested from these with one call per run.
+	 */
+	private long[] getIncidenceChain(long incidenceId, boolean atVertex) {
+		long[] chain = new long[8 * RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE];
+		int size = 0;
+		while (incidenceId != 0) {
+			int partialGraphId = getPartialGraphId(incidenceId);
+			long[] run;
+			if (partialGraphId == localPartialGraphId) {
+				run = getIncidenceRun(incidenceId, atVertex);
+			} else {
+				RemoteGraphDatabaseAccess remoteDb = getGraphDatabase(partialGraphId);
+				try {
+					run = atVertex ? remoteDb
+							.getIncidenceRunAtVertexId(incidenceId) : remoteDb
+							.getIncidenceRunAtEdgeId(incidenceId);
+				} catch (RemoteException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			// the last value of a run is the id of the incidence following it
+			int records = run.length - 1;
+			if (size + records > chain.length) {
+				chain = Arrays.copyOf(chain,
+						Math.max(2 * chain.length, size + records));
+			}
+			System.arraycopy(run, 0, chain, size, records);
+			size += records;
+			incidenceId = run[records];
+		}
+		return Arrays.copyOf(chain, size);
+	}
+
+	/**
+	 * Collects the records of the incidences of a lambda sequence that start
+	 * at the local incidence <code>incidenceId</code> and are stored in this
+	 * partial graph, followed by the id of the next incidence
+	 */
+	private long[] getIncidenceRun(long incidenceId, boolean atVertex) {
+		if (getPartialGraphId(incidenceId) != localPartialGraphId) {
+			throw new IllegalArgumentException("The incidence " + incidenceId
+					+ " is not stored in the partial graph "
+					+ localPartialGraphId);
+		}
+		long[] run = new long[8 * RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE + 1];
+		int size = 0;
+		while (incidenceId != 0
+				&& getPartialGraphId(incidenceId) == localPartialGraphId) {
+			if (size + RemoteGraphDatabaseAccess.INCIDENCE_RECORD_SIZE >= run.length) {
+				run = Arrays.copyOf(run, 2 * run.length);
+			}
+			run[size++] = incidenceId;
+			run[size++] = getIncidenceTypeId(incidenceId);
+			run[size++] = getEdgeIdAtIncidenceId(incidenceId);
+			run[size++] = getVertexIdAtIncidenceId(incidenceId);
+			incidenceId = atVertex ? getNextIncidenceIdAtVertexId(incidenceId)
+					: getNextIncidenceIdAtEdgeId(incidenceId);
+		}
+		run[size++] = incidenceId;
+		return Arrays.copyOf(run, size);
+	}
+
 	@Override
 	public long getNextIncidenceIdAtVertexId(long id) {
 		int partialGraphId = getPartialGraphId(id);
@@ -1818,6 +1922,24 @@ public abstract class GraphDatabaseBaseImpl extends
 		}
 	}
 
+	@Override
+	public Object[] getVertexAttributes(long[] vertexIds, String attributeName) {
+		Object[] values = new Object[vertexIds.length];
+		for (int i = 0; i < vertexIds.length; i++) {
+			values[i] = getVertexAttribute(vertexIds[i], attributeName);
+		}
+		return values;
+	}
+
+	@Override
+	public Object[] getEdgeAttributes(long[] edgeIds, String attributeName) {
+		Object[] values = new Object[edgeIds.length];
+		for (int i = 0; i < edgeIds.length; i++) {
+			values[i] = getEdgeAttribute(edgeIds[i], attributeName);
+		}
+		return values;
+	}
+
 
 
 	public Graph createViewGraph(Graph g, int kappa) {
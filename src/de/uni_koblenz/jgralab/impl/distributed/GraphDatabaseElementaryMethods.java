@@ -544,6 +544,17 @@ public abstract class GraphDatabaseElementaryMethods implements
 	 *         object may be either a local one or a proxy for a remote one
 	 */
 	public Incidence getIncidenceObject(long id) {
+		return getIncidenceObject(id, null);
+	}
+
+	/**
+	 * @return an object realizing the incidence with the given global id. If
+	 *         the class of the incidence is known already, e.g. from an
+	 *         incidence chain, creating a proxy does not need to retrieve it
+	 *         from the remote partial graph.
+	 */
+	public Incidence getIncidenceObject(long id,
+			Class<? extends Incidence> incidenceClass) {
 		if (id == 0)
 			return null;
 		int partialGraphId = getPartialGraphId(id);
@@ -558,7 +569,8 @@ public abstract class GraphDatabaseElementaryMethods implements
 		if (proxy == null) {
 			// create new vertex proxy
 			RemoteGraphDatabaseAccess remoteDatabase = getGraphDatabase(partialGraphId);
-			Class<? extends Incidence> vc = getIncidenceType(id);
+			Class<? extends Incidence> vc = incidenceClass != null ? incidenceClass
+					: getIncidenceType(id);
 			proxy = graphFactory.createIncidenceProxy_DistributedStorage(vc, id,
 					(GraphDatabaseBaseImpl) this, remoteDatabase);
 			ref = new WeakReference<Incidence>(proxy);
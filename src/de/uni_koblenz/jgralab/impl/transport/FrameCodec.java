@@ -0,0 +1,287 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.rmi.Remote;
+
+/**
+ * Encodes the calls and their results which are sent by the
+ * {@link NioTransport}. Every message is a frame, an int holding the length
+ * of the rest of the frame followed by
+ *
+ * <ul>
+ * <li>a call: the byte {@link #CALL}, the long id of the call, the long id of
+ * the called object, the int key of the called method and the arguments</li>
+ * <li>a result: the byte {@link #RETURN} or {@link #THROW}, the long id of the
+ * call and the returned value or the thrown exception</li>
+ * </ul>
+ *
+ * Each value starts with a tag byte. The ids, the primitive values and the
+ * strings, which are the arguments and results of almost all calls, are
+ * written in binary, the other values are serialized, whereby exported
+ * objects are replaced by their stubs. The classes of serialized values are
+ * loaded by the class loader of the schema, like the attribute values stored
+ * by the disk storage.
+ */
+final class FrameCodec {
+
+	static final byte CALL = 1;
+
+	static final byte RETURN = 2;
+
+	static final byte THROW = 3;
+
+	private static final byte NULL = 0;
+
+	private static final byte BOOLEAN = 1;
+
+	private static final byte INT = 2;
+
+	private static final byte LONG = 3;
+
+	private static final byte DOUBLE = 4;
+
+	private static final byte STRING = 5;
+
+	private static final byte LONG_ARRAY = 6;
+
+	private static final byte INT_ARRAY = 7;
+
+	private static final byte SERIALIZED = 8;
+
+	private FrameCodec() {
+	}
+
+	/**
+	 * @return the key the method is called by, which is the same for the
+	 *         methods of different interfaces with the same signature
+	 */
+	static int getMethodKey(Method method) {
+		StringBuilder signature = new StringBuilder(method.getName());
+		for (Class<?> parameterType : method.getParameterTypes()) {
+			signature.append(',').append(parameterType.getName());
+		}
+		return signature.toString().hashCode();
+	}
+
+	/**
+	 * @return the frame of the call, ready to be written
+	 */
+	static ByteBuffer encodeCall(long callId, long objectId, int methodKey,
+			Object[] args, NioTransport transport) throws IOException {
+		FrameOutput frame = new FrameOutput();
+		DataOutputStream out = new DataOutputStream(frame);
+		out.writeByte(CALL);
+		out.writeLong(callId);
+		out.writeLong(objectId);
+		out.writeInt(methodKey);
+		int count = args == null ? 0 : args.length;
+		out.writeByte(count);
+		for (int i = 0; i < count; i++) {
+			writeValue(out, args[i], transport);
+		}
+		out.flush();
+		return frame.toFrame();
+	}
+
+	/**
+	 * @return the frame of the result of a call, ready to be written
+	 */
+	static ByteBuffer encodeResult(byte kind, long callId, Object value,
+			NioTransport transport) throws IOException {
+		FrameOutput frame = new FrameOutput();
+		DataOutputStream out = new DataOutputStream(frame);
+		out.writeByte(kind);
+		out.writeLong(callId);
+		writeValue(out, value, transport);
+		out.flush();
+		return frame.toFrame();
+	}
+
+	/**
+	 * @return a stream to read the content of a received frame from
+	 */
+	static DataInputStream decode(byte[] frame) {
+		return new DataInputStream(new ByteArrayInputStream(frame));
+	}
+
+	/**
+	 * @param loader
+	 *            the class loader of the schema the called object belongs
+	 *            to, which loads the classes of serialized arguments, or null
+	 */
+	static Object[] readArguments(DataInputStream in, ClassLoader loader)
+			throws IOException {
+		int count = in.readUnsignedByte();
+		Object[] args = new Object[count];
+		for (int i = 0; i < count; i++) {
+			args[i] = readValue(in, loader);
+		}
+		return args;
+	}
+
+	private static void writeValue(DataOutputStream out, Object value,
+			NioTransport transport) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof String) {
+			byte[] chars = ((String) value).getBytes("UTF-8");
+			out.writeByte(STRING);
+			out.writeInt(chars.length);
+			out.write(chars);
+		} else if (value instanceof long[]) {
+			long[] values = (long[]) value;
+			out.writeByte(LONG_ARRAY);
+			out.writeInt(values.length);
+			for (long l : values) {
+				out.writeLong(l);
+			}
+		} else if (value instanceof int[]) {
+			int[] values = (int[]) value;
+			out.writeByte(INT_ARRAY);
+			out.writeInt(values.length);
+			for (int i : values) {
+				out.writeInt(i);
+			}
+		} else {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			MarshalOutputStream objectOut = new MarshalOutputStream(bytes,
+					transport);
+			objectOut.writeObject(value);
+			objectOut.close();
+			out.writeByte(SERIALIZED);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+		}
+	}
+
+	/**
+	 * @param loader
+	 *            the class loader of the schema, which loads the classes of
+	 *            serialized values, e.g. records and enums, or null
+	 */
+	static Object readValue(DataInputStream in, final ClassLoader loader)
+			throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case BOOLEAN:
+			return in.readBoolean();
+		case INT:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case DOUBLE:
+			return in.readDouble();
+		case STRING:
+			byte[] chars = new byte[in.readInt()];
+			in.readFully(chars);
+			return new String(chars, "UTF-8");
+		case LONG_ARRAY:
+			long[] longs = new long[in.readInt()];
+			for (int i = 0; i < longs.length; i++) {
+				longs[i] = in.readLong();
+			}
+			return longs;
+		case INT_ARRAY:
+			int[] ints = new int[in.readInt()];
+			for (int i = 0; i < ints.length; i++) {
+				ints[i] = in.readInt();
+			}
+			return ints;
+		case SERIALIZED:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			ObjectInputStream input = new ObjectInputStream(
+					new ByteArrayInputStream(bytes)) {
+				@Override
+				protected Class<?> resolveClass(ObjectStreamClass desc)
+						throws IOException, ClassNotFoundException {
+					if (loader != null) {
+						try {
+							return Class.forName(desc.getName(), false, loader);
+						} catch (ClassNotFoundException e) {
+							// not a class of the schema
+						}
+					}
+					return super.resolveClass(desc);
+				}
+			};
+			try {
+				return input.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Cannot read value", e);
+			}
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	/*
+	 * replaces exported objects by their stubs, as RMI does
+	 */
+	private static final class MarshalOutputStream extends ObjectOutputStream {
+
+		private final NioTransport transport;
+
+		MarshalOutputStream(OutputStream out, NioTransport transport)
+				throws IOException {
+			super(out);
+			this.transport = transport;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof Remote) {
+				Remote stub = transport.getStub((Remote) obj);
+				if (stub != null) {
+					return stub;
+				}
+			}
+			return obj;
+		}
+
+	}
+
+	/*
+	 * collects a frame, whose first four bytes are reserved for its length
+	 */
+	private static final class FrameOutput extends ByteArrayOutputStream {
+
+		FrameOutput() {
+			super(64);
+			count = 4;
+		}
+
+		ByteBuffer toFrame() {
+			ByteBuffer frame = ByteBuffer.wrap(buf, 0, count);
+			frame.putInt(0, count - 4);
+			return frame;
+		}
+
+	}
+
+}
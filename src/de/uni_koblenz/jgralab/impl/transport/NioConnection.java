@@ -0,0 +1,238 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.MarshalException;
+import java.rmi.RemoteException;
+import java.rmi.UnexpectedException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection of a {@link NioTransport} to the transport of another JVM,
+ * which is shared by all threads calling objects exported by that transport.
+ * Calls are pipelined: a call is written as soon as it is made, and the
+ * results are read by a separate thread and handed over to the waiting
+ * callers, so several calls may be outstanding at the same time.
+ */
+final class NioConnection {
+
+	private final String endpoint;
+
+	private final SocketChannel channel;
+
+	private final NioTransport transport;
+
+	private final Object writeLock = new Object();
+
+	private final AtomicLong nextCallId = new AtomicLong();
+
+	private final ConcurrentHashMap<Long, PendingCall> pendingCalls = new ConcurrentHashMap<Long, PendingCall>();
+
+	private volatile IOException failure = null;
+
+	/* the keys of the called methods */
+	private static final ConcurrentHashMap<Method, Integer> methodKeys = new ConcurrentHashMap<Method, Integer>();
+
+	/**
+	 * Connects to the transport listening on <code>host:port</code>
+	 *
+	 * @param transport
+	 *            the local transport, whose exported objects are replaced by
+	 *            their stubs in arguments, or null
+	 */
+	NioConnection(String host, int port, NioTransport transport)
+			throws RemoteException {
+		endpoint = host + ":" + port;
+		this.transport = transport;
+		try {
+			channel = SocketChannel.open(new InetSocketAddress(host, port));
+			channel.socket().setTcpNoDelay(true);
+		} catch (IOException e) {
+			throw new ConnectException("Cannot connect to " + endpoint, e);
+		}
+		Thread reader = new Thread("JGraLab connection to " + endpoint) {
+			@Override
+			public void run() {
+				readResults();
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * @return true if the connection has failed and has to be replaced
+	 */
+	boolean isBroken() {
+		return failure != null;
+	}
+
+	/**
+	 * Calls <code>method</code> on the remote object <code>objectId</code>
+	 * and waits for the result
+	 */
+	Object invoke(long objectId, Method method, Object[] args)
+			throws Throwable {
+		Integer methodKey = methodKeys.get(method);
+		if (methodKey == null) {
+			methodKey = FrameCodec.getMethodKey(method);
+			methodKeys.put(method, methodKey);
+		}
+		long callId = nextCallId.incrementAndGet();
+		ByteBuffer frame;
+		try {
+			frame = FrameCodec.encodeCall(callId, objectId, methodKey, args,
+					transport);
+		} catch (IOException e) {
+			throw new MarshalException("Cannot marshal arguments of "
+					+ method.getName(), e);
+		}
+		PendingCall call = new PendingCall();
+		pendingCalls.put(callId, call);
+		try {
+			synchronized (writeLock) {
+				while (frame.hasRemaining()) {
+					channel.write(frame);
+				}
+			}
+		} catch (IOException e) {
+			pendingCalls.remove(callId);
+			fail(e);
+			throw new ConnectIOException("Cannot send call to " + endpoint, e);
+		}
+		if (failure != null) {
+			// the reader may have failed before the call was registered
+			pendingCalls.remove(callId);
+			throw new ConnectIOException("Connection to " + endpoint
+					+ " failed", failure);
+		}
+		Object result;
+		boolean completed = false;
+		try {
+			result = call.await();
+			completed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RemoteException("Interrupted while waiting for the result of "
+					+ method.getName(), e);
+		} finally {
+			if (!completed) {
+				// the result is dropped by the reader if it arrives later
+				pendingCalls.remove(callId);
+			}
+		}
+		if (!call.thrown) {
+			return result;
+		}
+		Throwable thrown = (Throwable) result;
+		if (thrown instanceof RuntimeException || thrown instanceof Error) {
+			throw thrown;
+		}
+		for (Class<?> exceptionType : method.getExceptionTypes()) {
+			if (exceptionType.isInstance(thrown)) {
+				throw thrown;
+			}
+		}
+		throw new UnexpectedException("Undeclared exception thrown by "
+				+ method.getName(), (Exception) thrown);
+	}
+
+	/**
+	 * @return the number of calls waiting for their results
+	 */
+	int getPendingCallCount() {
+		return pendingCalls.size();
+	}
+
+	private void readResults() {
+		ByteBuffer header = ByteBuffer.allocate(4);
+		try {
+			while (true) {
+				header.clear();
+				readFully(header);
+				byte[] frame = new byte[header.getInt(0)];
+				readFully(ByteBuffer.wrap(frame));
+				DataInputStream in = FrameCodec.decode(frame);
+				byte kind = in.readByte();
+				long callId = in.readLong();
+				PendingCall call = pendingCalls.remove(callId);
+				Object value;
+				try {
+					value = FrameCodec.readValue(in, transport == null ? null
+							: transport.getResultClassLoader());
+				} catch (IOException e) {
+					kind = FrameCodec.THROW;
+					value = new MarshalException("Cannot unmarshal result", e);
+				}
+				if (call != null) {
+					call.complete(value, kind == FrameCodec.THROW);
+				}
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("Connection to " + endpoint
+						+ " closed");
+			}
+		}
+	}
+
+	/*
+	 * closes the connection and fails all outstanding calls
+	 */
+	private void fail(IOException cause) {
+		if (failure == null) {
+			failure = cause;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the connection is given up anyway
+		}
+		for (Long callId : pendingCalls.keySet()) {
+			PendingCall call = pendingCalls.remove(callId);
+			if (call != null) {
+				call.complete(new ConnectIOException("Connection to "
+						+ endpoint + " failed", cause), true);
+			}
+		}
+	}
+
+	private static final class PendingCall {
+
+		private boolean done = false;
+
+		private boolean thrown;
+
+		private Object result;
+
+		synchronized void complete(Object result, boolean thrown) {
+			this.result = result;
+			this.thrown = thrown;
+			done = true;
+			notifyAll();
+		}
+
+		synchronized Object await() throws InterruptedException {
+			while (!done) {
+				wait();
+			}
+			return result;
+		}
+
+	}
+
+}
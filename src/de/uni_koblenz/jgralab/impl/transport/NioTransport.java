@@ -0,0 +1,528 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.MarshalException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.uni_koblenz.jgralab.RemoteJGraLabServer;
+
+/**
+ * A transport by non-blocking sockets, which avoids the costs of RMI for the
+ * many small calls between the partial graphs: the calls and their results
+ * are sent as compact binary frames (see {@link FrameCodec}), each JVM keeps
+ * a small pool of connections to each other JVM, and several calls may be
+ * outstanding on a connection at the same time.
+ *
+ * The transport listens on the port of the local hostname for calls, which
+ * are read by a single selector thread and executed by a pool of worker
+ * threads, so calls may call back into the calling JVM. Exported objects
+ * are kept as long as the JVM runs.
+ */
+public class NioTransport extends RemoteTransport {
+
+	/* the number of connections to each other JVM */
+	private static final int CONNECTIONS_PER_HOST = 2;
+
+	/* the id the JGraLab server is exported by */
+	private static final long SERVER_OBJECT_ID = 0;
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/* the transport of this JVM */
+	private static volatile NioTransport localTransport = null;
+
+	/* the connections to the other JVMs by their endpoints */
+	private static final ConcurrentHashMap<String, NioConnection[]> connections = new ConcurrentHashMap<String, NioConnection[]>();
+
+	private static final AtomicInteger nextConnection = new AtomicInteger();
+
+	/* the methods of the exported objects by their classes and method keys */
+	private static final ConcurrentHashMap<Class<?>, Map<Integer, Method>> methodTables = new ConcurrentHashMap<Class<?>, Map<Integer, Method>>();
+
+	private final String host;
+
+	private final int port;
+
+	private final Selector selector;
+
+	private final ConcurrentHashMap<Long, Remote> exportedObjects = new ConcurrentHashMap<Long, Remote>();
+
+	/* the class loaders of the schemas of the exported objects by their ids */
+	private final ConcurrentHashMap<Long, ClassLoader> classLoaders = new ConcurrentHashMap<Long, ClassLoader>();
+
+	/* loads the classes of the results by the schemas of this JVM */
+	private final ClassLoader resultClassLoader = new SchemaClassLoaders();
+
+	/* the stubs of the exported objects, guarded by itself */
+	private final Map<Remote, Remote> stubs = new IdentityHashMap<Remote, Remote>();
+
+	private long nextObjectId = SERVER_OBJECT_ID + 1;
+
+	/* connections that have results to be written by the selector thread */
+	private final ConcurrentLinkedQueue<ServerConnection> pendingWrites = new ConcurrentLinkedQueue<ServerConnection>();
+
+	private final ExecutorService workers = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread worker = new Thread(r, "JGraLab call worker "
+							+ count.incrementAndGet());
+					worker.setDaemon(true);
+					return worker;
+				}
+			});
+
+	/**
+	 * Creates the transport of this JVM, which listens on the port of
+	 * <code>localHostname</code>
+	 *
+	 * @param localHostname
+	 *            the name of the local host other hosts connect to,
+	 *            optionally followed by the port
+	 */
+	public NioTransport(String localHostname) throws IOException {
+		host = getHost(localHostname);
+		port = getPort(localHostname);
+		ServerSocketChannel serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		selector = Selector.open();
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		// keeps the JVM running as long as objects are exported, as RMI does
+		Thread selectorThread = new Thread("JGraLab transport on port "
+				+ port) {
+			@Override
+			public void run() {
+				select();
+			}
+		};
+		selectorThread.start();
+		localTransport = this;
+	}
+
+	@Override
+	public Remote exportObject(Remote object) {
+		return exportObject(object, null);
+	}
+
+	@Override
+	public Remote exportObject(Remote object, ClassLoader loader) {
+		synchronized (stubs) {
+			Remote stub = stubs.get(object);
+			if (stub == null) {
+				long objectId = nextObjectId++;
+				stub = createStub(getRemoteInterfaces(object.getClass()),
+						objectId);
+				if (loader != null) {
+					classLoaders.put(objectId, loader);
+				}
+				exportedObjects.put(objectId, object);
+				stubs.put(object, stub);
+			}
+			return stub;
+		}
+	}
+
+	@Override
+	public void bindServer(RemoteJGraLabServer server) throws RemoteException {
+		if (!Proxy.isProxyClass(server.getClass())
+				|| !(Proxy.getInvocationHandler(server) instanceof RemoteReference)) {
+			throw new NoSuchObjectException(
+					"The server has not been exported by this transport");
+		}
+		long objectId = ((RemoteReference) Proxy.getInvocationHandler(server))
+				.getObjectId();
+		exportedObjects.put(SERVER_OBJECT_ID, exportedObjects.get(objectId));
+	}
+
+	@Override
+	public RemoteJGraLabServer lookupServer(String hostname) {
+		return (RemoteJGraLabServer) createStub(
+				new Class<?>[] { RemoteJGraLabServer.class },
+				getHost(hostname), getPort(hostname), SERVER_OBJECT_ID);
+	}
+
+	/**
+	 * @return the stub of <code>object</code> if it has been exported by
+	 *         this transport, or null otherwise
+	 */
+	Remote getStub(Remote object) {
+		synchronized (stubs) {
+			return stubs.get(object);
+		}
+	}
+
+	/**
+	 * @return the class loader of the results of calls to other JVMs, which
+	 *         loads the classes of the schemas of the objects exported by
+	 *         this transport, as a JVM calls partial graphs of the schemas of
+	 *         its own partial graphs
+	 */
+	ClassLoader getResultClassLoader() {
+		return resultClassLoader;
+	}
+
+	private Remote createStub(Class<?>[] interfaces, long objectId) {
+		return createStub(interfaces, host, port, objectId);
+	}
+
+	private static Remote createStub(Class<?>[] interfaces, String host,
+			int port, long objectId) {
+		return (Remote) Proxy.newProxyInstance(
+				interfaces[0].getClassLoader(), interfaces,
+				new RemoteReference(host, port, objectId));
+	}
+
+	/**
+	 * @return all interfaces of <code>c</code> which extend {@link Remote}
+	 */
+	private static Class<?>[] getRemoteInterfaces(Class<?> c) {
+		List<Class<?>> interfaces = new ArrayList<Class<?>>();
+		for (Class<?> current = c; current != null; current = current
+				.getSuperclass()) {
+			for (Class<?> i : current.getInterfaces()) {
+				if (Remote.class.isAssignableFrom(i)
+						&& !interfaces.contains(i)) {
+					interfaces.add(i);
+				}
+			}
+		}
+		if (interfaces.isEmpty()) {
+			throw new IllegalArgumentException(c.getName()
+					+ " implements no remote interface");
+		}
+		return interfaces.toArray(new Class<?>[interfaces.size()]);
+	}
+
+	/**
+	 * @return the methods of all remote interfaces of <code>c</code> by their
+	 *         keys
+	 */
+	private static Map<Integer, Method> getMethodTable(Class<?> c) {
+		Map<Integer, Method> table = methodTables.get(c);
+		if (table == null) {
+			table = new HashMap<Integer, Method>();
+			for (Class<?> i : getRemoteInterfaces(c)) {
+				for (Method method : i.getMethods()) {
+					Integer key = FrameCodec.getMethodKey(method);
+					Method other = table.get(key);
+					if (other == null) {
+						table.put(key, method);
+					} else if (!other.getName().equals(method.getName())
+							|| !Arrays.equals(
+									other.getParameterTypes(),
+									method.getParameterTypes())) {
+						throw new IllegalStateException("The methods "
+								+ other + " and " + method
+								+ " have the same key");
+					}
+				}
+			}
+			methodTables.put(c, table);
+		}
+		return table;
+	}
+
+	/**
+	 * @return a connection to the transport listening on
+	 *         <code>host:port</code>, which is shared with other threads
+	 */
+	static NioConnection getConnection(String host, int port)
+			throws RemoteException {
+		String endpoint = host + ":" + port;
+		NioConnection[] pool = connections.get(endpoint);
+		if (pool == null) {
+			connections.putIfAbsent(endpoint,
+					new NioConnection[CONNECTIONS_PER_HOST]);
+			pool = connections.get(endpoint);
+		}
+		int i = (nextConnection.getAndIncrement() & Integer.MAX_VALUE)
+				% pool.length;
+		synchronized (pool) {
+			if (pool[i] == null || pool[i].isBroken()) {
+				pool[i] = new NioConnection(host, port, localTransport);
+			}
+			return pool[i];
+		}
+	}
+
+	/*
+	 * ==================== Receiving calls ====================
+	 */
+
+	private void select() {
+		try {
+			while (true) {
+				selector.select();
+				ServerConnection pending;
+				while ((pending = pendingWrites.poll()) != null) {
+					if (pending.key.isValid()) {
+						pending.key.interestOps(SelectionKey.OP_READ
+								| SelectionKey.OP_WRITE);
+					}
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept((ServerSocketChannel) key.channel());
+						continue;
+					}
+					ServerConnection connection = (ServerConnection) key
+							.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.flush();
+						}
+					} catch (IOException e) {
+						connection.close();
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("The transport on port " + port
+					+ " failed", e);
+		}
+	}
+
+	private void accept(ServerSocketChannel serverChannel) throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		ServerConnection connection = new ServerConnection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ,
+				connection);
+	}
+
+	/*
+	 * executes a received call and sends its result
+	 */
+	private void execute(ServerConnection connection, byte[] frame) {
+		long callId;
+		long objectId;
+		int methodKey;
+		Object[] args;
+		byte kind = FrameCodec.RETURN;
+		Object result;
+		try {
+			DataInputStream in = FrameCodec.decode(frame);
+			in.readByte();
+			callId = in.readLong();
+			objectId = in.readLong();
+			methodKey = in.readInt();
+			try {
+				Remote target = exportedObjects.get(objectId);
+				ClassLoader loader = classLoaders.get(objectId);
+				args = FrameCodec.readArguments(in,
+						loader != null ? loader : resultClassLoader);
+				Method method = target == null ? null : getMethodTable(
+						target.getClass()).get(methodKey);
+				if (method == null) {
+					kind = FrameCodec.THROW;
+					result = new NoSuchObjectException("No method " + methodKey
+							+ " of object " + objectId);
+				} else {
+					result = method.invoke(target, args);
+				}
+			} catch (InvocationTargetException e) {
+				kind = FrameCodec.THROW;
+				result = e.getCause();
+			} catch (IOException e) {
+				kind = FrameCodec.THROW;
+				result = new MarshalException("Cannot unmarshal arguments", e);
+			} catch (Exception e) {
+				kind = FrameCodec.THROW;
+				result = new RemoteException("Cannot invoke method", e);
+			} catch (Error e) {
+				kind = FrameCodec.THROW;
+				result = new ServerError("Error while invoking method", e);
+			}
+		} catch (IOException e) {
+			// the frame is corrupt, so the call can't be answered
+			connection.close();
+			return;
+		}
+		ByteBuffer response;
+		try {
+			response = FrameCodec.encodeResult(kind, callId, result, this);
+		} catch (IOException e) {
+			try {
+				response = FrameCodec.encodeResult(FrameCodec.THROW, callId,
+						new MarshalException("Cannot marshal result", e), this);
+			} catch (IOException e2) {
+				connection.close();
+				return;
+			}
+		}
+		try {
+			connection.send(response);
+		} catch (IOException e) {
+			connection.close();
+		}
+	}
+
+	/*
+	 * loads the classes by the class loaders of the schemas of the exported
+	 * objects before the class loader of the transport, as the arguments of
+	 * a call are loaded by the class loader of the called object first
+	 */
+	private final class SchemaClassLoaders extends ClassLoader {
+
+		SchemaClassLoaders() {
+			super(NioTransport.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve)
+				throws ClassNotFoundException {
+			for (ClassLoader loader : classLoaders.values()) {
+				try {
+					return Class.forName(name, false, loader);
+				} catch (ClassNotFoundException e) {
+					// not a class of this schema
+				}
+			}
+			return super.loadClass(name, resolve);
+		}
+
+	}
+
+	private final class ServerConnection {
+
+		private final SocketChannel channel;
+
+		private SelectionKey key;
+
+		private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+		/* results not written yet, guarded by this connection */
+		private final LinkedList<ByteBuffer> output = new LinkedList<ByteBuffer>();
+
+		ServerConnection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/*
+		 * reads the available data, and hands the complete frames over to
+		 * the workers
+		 */
+		void read() throws IOException {
+			if (channel.read(input) < 0) {
+				close();
+				return;
+			}
+			input.flip();
+			while (input.remaining() >= 4) {
+				int length = input.getInt(input.position());
+				if (input.remaining() < 4 + length) {
+					if (4 + length > input.capacity()) {
+						ByteBuffer larger = ByteBuffer.allocate(4 + length);
+						larger.put(input);
+						input = larger;
+						return;
+					}
+					break;
+				}
+				input.getInt();
+				final byte[] frame = new byte[length];
+				input.get(frame);
+				workers.execute(new Runnable() {
+					@Override
+					public void run() {
+						execute(ServerConnection.this, frame);
+					}
+				});
+			}
+			input.compact();
+		}
+
+		/*
+		 * writes the result at once if possible, or lets the selector
+		 * thread write it when the channel is writable
+		 */
+		void send(ByteBuffer frame) throws IOException {
+			synchronized (this) {
+				if (output.isEmpty()) {
+					channel.write(frame);
+					if (!frame.hasRemaining()) {
+						return;
+					}
+				}
+				output.add(frame);
+			}
+			pendingWrites.add(this);
+			selector.wakeup();
+		}
+
+		/*
+		 * called by the selector thread when the channel is writable
+		 */
+		void flush() throws IOException {
+			synchronized (this) {
+				while (!output.isEmpty()) {
+					ByteBuffer frame = output.getFirst();
+					channel.write(frame);
+					if (frame.hasRemaining()) {
+						return;
+					}
+					output.removeFirst();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		void close() {
+			if (key != null) {
+				key.cancel();
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// the connection is given up anyway
+			}
+		}
+
+	}
+
+}
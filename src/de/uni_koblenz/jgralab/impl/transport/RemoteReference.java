@@ -0,0 +1,66 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * The handler of the stubs of objects exported by a {@link NioTransport},
+ * which forwards the calls of the stub to the exported object. The handler
+ * is serialized with the stub and identifies the exported object by the
+ * endpoint of the exporting transport and the id of the object.
+ */
+final class RemoteReference implements InvocationHandler, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String host;
+
+	private final int port;
+
+	private final long objectId;
+
+	RemoteReference(String host, int port, long objectId) {
+		this.host = host;
+		this.port = port;
+		this.objectId = objectId;
+	}
+
+	long getObjectId() {
+		return objectId;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if (method.getName().equals("equals")) {
+				return args[0] != null && Proxy.isProxyClass(args[0].getClass())
+						&& equals(Proxy.getInvocationHandler(args[0]));
+			} else if (method.getName().equals("hashCode")) {
+				return hashCode();
+			} else {
+				return "Stub[" + host + ":" + port + ", " + objectId + "]";
+			}
+		}
+		return NioTransport.getConnection(host, port).invoke(objectId, method,
+				args);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof RemoteReference)) {
+			return false;
+		}
+		RemoteReference other = (RemoteReference) obj;
+		return objectId == other.objectId && port == other.port
+				&& host.equals(other.host);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (objectId ^ (objectId >>> 32)) * 31 + port;
+	}
+
+}
@@ -0,0 +1,88 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import de.uni_koblenz.jgralab.RemoteJGraLabServer;
+
+/**
+ * The transport used for the communication between the JGraLab servers and
+ * the graph databases of the partial graphs. A transport exports local
+ * objects, which are then accessed from other JVMs by stubs, and finds the
+ * server of a host.
+ *
+ * Hostnames may contain a port, e.g. <code>localhost:1100</code>, so several
+ * servers may be run on the same host.
+ */
+public abstract class RemoteTransport {
+
+	/**
+	 * The port a server listens on if its hostname doesn't contain one
+	 */
+	public static final int DEFAULT_PORT = 1099;
+
+	/**
+	 * Makes <code>object</code> accessible for other JVMs.
+	 *
+	 * @return a stub, which implements all remote interfaces of the object
+	 *         and may be passed to other JVMs
+	 */
+	public abstract Remote exportObject(Remote object) throws RemoteException;
+
+	/**
+	 * Makes <code>object</code> accessible for other JVMs like
+	 * {@link #exportObject(Remote)}. The values passed to the object and
+	 * returned by the objects of other JVMs may be instances of classes loaded
+	 * by <code>loader</code>, the class loader of the schema of a graph.
+	 *
+	 * RMI resolves the classes by itself, so <code>loader</code> is ignored
+	 * by default.
+	 *
+	 * @return a stub, which implements all remote interfaces of the object
+	 *         and may be passed to other JVMs
+	 */
+	public Remote exportObject(Remote object, ClassLoader loader)
+			throws RemoteException {
+		return exportObject(object);
+	}
+
+	/**
+	 * Makes the stub <code>server</code> of the local JGraLab server
+	 * accessible for {@link #lookupServer(String)} in other JVMs
+	 */
+	public abstract void bindServer(RemoteJGraLabServer server)
+			throws RemoteException;
+
+	/**
+	 * @return a stub of the JGraLab server running on the host
+	 *         <code>hostname</code>
+	 */
+	public abstract RemoteJGraLabServer lookupServer(String hostname)
+			throws RemoteException;
+
+	/**
+	 * @return the host part of <code>hostname</code>
+	 */
+	protected static String getHost(String hostname) {
+		int colon = hostname.lastIndexOf(':');
+		return colon < 0 ? hostname : hostname.substring(0, colon);
+	}
+
+	/**
+	 * @return the port part of <code>hostname</code>, or
+	 *         {@link #DEFAULT_PORT} if it doesn't contain a port
+	 */
+	protected static int getPort(String hostname) {
+		int colon = hostname.lastIndexOf(':');
+		if (colon < 0) {
+			return DEFAULT_PORT;
+		}
+		try {
+			return Integer.parseInt(hostname.substring(colon + 1));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid port in hostname "
+					+ hostname, e);
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import java.net.MalformedURLException;
+import java.rmi.AlreadyBoundException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+import de.uni_koblenz.jgralab.RemoteJGraLabServer;
+
+/**
+ * The transport by Java RMI. The server is bound in an RMI registry, which
+ * is created on the port of the local hostname.
+ */
+public class RmiTransport extends RemoteTransport {
+
+	private static final String JGRALAB_SERVER_IDENTIFIER = "JGraLabServer";
+
+	private final int port;
+
+	/**
+	 * @param localHostname
+	 *            the name of the local host, optionally followed by the port
+	 *            of the registry
+	 */
+	public RmiTransport(String localHostname) {
+		port = getPort(localHostname);
+	}
+
+	@Override
+	public Remote exportObject(Remote object) throws RemoteException {
+		return UnicastRemoteObject.exportObject(object, 0);
+	}
+
+	@Override
+	public void bindServer(RemoteJGraLabServer server) throws RemoteException {
+		Registry registry = LocateRegistry.createRegistry(port);
+		try {
+			registry.bind(JGRALAB_SERVER_IDENTIFIER, server);
+		} catch (AlreadyBoundException e) {
+			throw new RemoteException("A server is bound already", e);
+		}
+	}
+
+	@Override
+	public RemoteJGraLabServer lookupServer(String hostname)
+			throws RemoteException {
+		try {
+			return (RemoteJGraLabServer) Naming.lookup("rmi://" + hostname
+					+ "/" + JGRALAB_SERVER_IDENTIFIER);
+		} catch (MalformedURLException e) {
+			throw new RuntimeException("Error in URL", e);
+		} catch (NotBoundException e) {
+			throw new RuntimeException("Error in service name", e);
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package de.uni_koblenz.jgralab.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.GraphIOException;
+import de.uni_koblenz.jgralab.ImplementationType;
+import de.uni_koblenz.jgralab.RemoteJGraLabServer;
+import de.uni_koblenz.jgralab.impl.transport.RemoteTransport;
+
+/**
+ * Tests that the partial graphs of a graph are loaded on all their hosts at
+ * the same time. The servers of the hosts are stubs of a transport which
+ * only counts the calls.
+ */
+public class PartialGraphLoadingTest {
+
+	private static final String UID = "graph-uid";
+
+	private static final String HOST_A = "a:1100";
+
+	private static final String HOST_B = "b:1100";
+
+	private static final String FAILING_HOST = "c:1100";
+
+	private static final String BROKEN_HOST = "d:1100";
+
+	/* the calls of getGraphDatabase each host has received */
+	private final ConcurrentMap<String, AtomicInteger> loads = new ConcurrentHashMap<String, AtomicInteger>();
+
+	/* counted down by each host when it is asked to load its partition */
+	private final CountDownLatch loading = new CountDownLatch(2);
+
+	private final RemoteTransport hosts = new RemoteTransport() {
+
+		@Override
+		public Remote exportObject(Remote object) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void bindServer(RemoteJGraLabServer server) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public RemoteJGraLabServer lookupServer(final String hostname)
+				throws RemoteException {
+			if (hostname.equals(BROKEN_HOST)) {
+				// e.g. the schema is not compiled on the host
+				throw new NoClassDefFoundError("Schema of " + UID);
+			}
+			return (RemoteJGraLabServer) Proxy.newProxyInstance(
+					PartialGraphLoadingTest.class.getClassLoader(),
+					new Class<?>[] { RemoteJGraLabServer.class },
+					new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method,
+								Object[] args) throws Exception {
+							assertEquals("getGraphDatabase", method.getName());
+							assertEquals(UID, args[0]);
+							loads.putIfAbsent(hostname, new AtomicInteger());
+							loads.get(hostname).incrementAndGet();
+							if (hostname.equals(FAILING_HOST)) {
+								throw new RemoteException(hostname
+										+ " is not reachable");
+							}
+							// the other host is loading at the same time
+							loading.countDown();
+							if (!loading.await(30, TimeUnit.SECONDS)) {
+								throw new RemoteException(
+										"The hosts are loaded one after the other");
+							}
+							return null;
+						}
+					});
+		}
+
+	};
+
+	private int loadsOf(String hostname) {
+		AtomicInteger calls = loads.get(hostname);
+		return calls == null ? 0 : calls.get();
+	}
+
+	@Test(timeout = 60000)
+	public void testEveryHostIsContactedOnce() throws GraphIOException {
+		// partial graphs 1, 3 and 4 are stored on the same host
+		JGraLabServerImpl.loadPartialGraphs(hosts, UID, Arrays.asList(HOST_A,
+				HOST_B, HOST_A, HOST_A), ImplementationType.DISK);
+		assertEquals(1, loadsOf(HOST_A));
+		assertEquals(1, loadsOf(HOST_B));
+		assertEquals(2, loads.size());
+	}
+
+	@Test(timeout = 60000)
+	public void testFailingHostsAreReported() {
+		try {
+			JGraLabServerImpl.loadPartialGraphs(hosts, UID, Arrays.asList(
+					HOST_A, FAILING_HOST, HOST_B), ImplementationType.DISK);
+			fail("The failure of " + FAILING_HOST + " has not been reported");
+		} catch (GraphIOException e) {
+			assertTrue(e.getMessage().contains(FAILING_HOST));
+			assertSame(RemoteException.class, e.getCause().getClass());
+		}
+		// the other hosts have loaded their partitions anyway
+		assertEquals(1, loadsOf(HOST_A));
+		assertEquals(1, loadsOf(HOST_B));
+		assertEquals(1, loadsOf(FAILING_HOST));
+	}
+
+	@Test(timeout = 60000)
+	public void testErrorsOfHostsAreReported() {
+		try {
+			JGraLabServerImpl.loadPartialGraphs(hosts, UID, Arrays.asList(
+					HOST_A, BROKEN_HOST, HOST_B), ImplementationType.DISK);
+			fail("The failure of " + BROKEN_HOST + " has not been reported");
+		} catch (GraphIOException e) {
+			assertTrue(e.getMessage().contains(BROKEN_HOST));
+			assertSame(NoClassDefFoundError.class, e.getCause().getClass());
+		}
+	}
+
+}
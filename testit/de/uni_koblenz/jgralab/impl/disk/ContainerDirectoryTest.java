@@ -0,0 +1,81 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests the growable directory of the disk storage.
+ */
+public class ContainerDirectoryTest {
+
+	private static final class Entry {
+		int id;
+		int[] data;
+
+		Entry(int id) {
+			this.id = id;
+			data = new int[] { id, -id };
+		}
+	}
+
+	@Test
+	public void testDirectoryGrows() {
+		ContainerDirectory<Entry> directory = new ContainerDirectory<Entry>();
+		assertNull(directory.get(0));
+		assertNull(directory.get(1 << 20));
+
+		// clearing an id beyond the end doesn't grow the directory
+		directory.set(5000, null);
+		assertNull(directory.get(5000));
+
+		Entry[] entries = new Entry[20000];
+		for (int id = 0; id < entries.length; id += 7) {
+			entries[id] = new Entry(id);
+			directory.set(id, entries[id]);
+		}
+		for (int id = 0; id < entries.length; id++) {
+			assertSame(entries[id], directory.get(id));
+		}
+		directory.set(7, null);
+		assertNull(directory.get(7));
+		assertSame(entries[14], directory.get(14));
+	}
+
+	@Test(timeout = 60000)
+	public void testReadersSeeInitializedEntries() throws InterruptedException {
+		final ContainerDirectory<Entry> directory = new ContainerDirectory<Entry>();
+		final int count = 200000;
+		final AtomicReference<AssertionError> failure = new AtomicReference<AssertionError>();
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				int id = 0;
+				while (id < count) {
+					Entry e = directory.get(id);
+					if (e == null) {
+						continue;
+					}
+					if (e.id != id || e.data == null || e.data[1] != -id) {
+						failure.set(new AssertionError("Entry " + id
+								+ " is not initialized"));
+						return;
+					}
+					id++;
+				}
+			}
+		};
+		reader.start();
+		for (int id = 0; id < count; id++) {
+			directory.set(id, new Entry(id));
+		}
+		reader.join();
+		assertNull(failure.get());
+		assertEquals(count - 1, directory.get(count - 1).id);
+	}
+
+}
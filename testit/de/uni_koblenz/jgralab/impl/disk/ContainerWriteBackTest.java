@@ -0,0 +1,141 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.GraphElement;
+import de.uni_koblenz.jgralab.impl.disk.DiskStorageManager.ReclaimPolicy;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that the containers of a disk storage are written back when they
+ * have been collected, and reloaded afterwards. The collection of a
+ * container is simulated by clearing and enqueuing its reference.
+ */
+public class ContainerWriteBackTest {
+
+	private static final int NODES = 100;
+
+	private Diskv2TestGraph graph;
+
+	private DiskStorageManager storage;
+
+	private long[] nodeIds;
+
+	private long[] linkIds;
+
+	@Before
+	public void createGraph() {
+		graph = Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_DiskBasedStorage();
+		storage = ((GraphBaseImpl) graph).getGraphDatabase().getLocalStorage();
+		// the collected containers are written by the test thread
+		storage.setReclaimPolicy(ReclaimPolicy.CALLER);
+
+		nodeIds = new long[NODES];
+		linkIds = new long[NODES - 1];
+		Node previous = null;
+		for (int i = 0; i < NODES; i++) {
+			Node n = graph.createNode();
+			n.set_count(i);
+			n.set_label("node " + i);
+			nodeIds[i] = n.getGlobalId();
+			if (previous != null) {
+				Link l = graph.createLink();
+				l.set_name("link " + i);
+				l.connect(Link_source.class, previous);
+				l.connect(Link_target.class, n);
+				linkIds[i - 1] = l.getGlobalId();
+			}
+			previous = n;
+		}
+	}
+
+	private static int containerOf(GraphElement<?, ?, ?, ?> element) {
+		return DiskStorageManager.getContainerId(GraphDatabaseElementaryMethods
+				.convertToLocalId(element.getGlobalId()));
+	}
+
+	/*
+	 * lets the container of the element appear collected, so it is written
+	 * back by the next access to the storage
+	 */
+	private static void collect(ContainerReference<?> ref) {
+		ref.clear();
+		assertTrue(ref.enqueue());
+	}
+
+	private void checkGraph() {
+		for (int i = 0; i < NODES; i++) {
+			Node n = (Node) graph.getVertex(nodeIds[i]);
+			assertEquals(i, n.get_count());
+			assertEquals("node " + i, n.get_label());
+		}
+		for (int i = 0; i < NODES - 1; i++) {
+			Link l = (Link) graph.getEdge(linkIds[i]);
+			assertEquals("link " + (i + 1), l.get_name());
+			assertEquals(nodeIds[i], l.getFirst_source().getVertex()
+					.getGlobalId());
+			assertEquals(nodeIds[i + 1], l.getFirst_target().getVertex()
+					.getGlobalId());
+		}
+	}
+
+	@Test
+	public void testCollectedContainersAreReloaded() {
+		Node first = (Node) graph.getVertex(nodeIds[0]);
+		Link link = (Link) graph.getEdge(linkIds[0]);
+		collect(storage.vertexStorages.get(containerOf(first)));
+		collect(storage.edgeStorages.get(containerOf(link)));
+		first = null;
+		link = null;
+
+		long writeBacks = storage.getMetrics().getWriteBacks();
+		checkGraph();
+		assertEquals(writeBacks + 2, storage.getMetrics().getWriteBacks());
+	}
+
+	@Test(timeout = 30000)
+	public void testFailedWriteBackKeepsContainer() {
+		// the attributes of the container exceed their slot in the file
+		char[] chars = new char[3 * 1024 * 1024];
+		Arrays.fill(chars, 'x');
+		String huge = new String(chars);
+		Node n = (Node) graph.getVertex(nodeIds[0]);
+		n.set_label(huge);
+		collect(storage.vertexStorages.get(containerOf(n)));
+		n = null;
+
+		long writeBacks = storage.getMetrics().getWriteBacks();
+		try {
+			graph.getVertex(nodeIds[1]);
+			fail("The failed write-back has not been reported");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().startsWith("Writing back evicted containers failed"));
+		}
+		assertEquals(writeBacks, storage.getMetrics().getWriteBacks());
+
+		// the failure is reported once, and the container is kept
+		assertEquals(huge, ((Node) graph.getVertex(nodeIds[0])).get_label());
+		((Node) graph.getVertex(nodeIds[0])).set_label("node 0");
+		checkGraph();
+
+		// the container is written once its attributes fit again
+		collect(storage.vertexStorages.get(containerOf(graph
+				.getVertex(nodeIds[0]))));
+		checkGraph();
+		assertEquals(writeBacks + 1, storage.getMetrics().getWriteBacks());
+	}
+
+}
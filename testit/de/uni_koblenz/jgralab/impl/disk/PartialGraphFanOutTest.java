@@ -0,0 +1,225 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.AsyncGraphDatabaseAccess;
+import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccessWithInternalMethods;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that the counts and the attribute values of a graph with a remote
+ * partial graph are requested from the partial graph by one call each. The
+ * remote partial graph is the graph database of a second graph in the same
+ * JVM, whose ids are mapped to the ids of the partial graph.
+ */
+public class PartialGraphFanOutTest {
+
+	/* the partial graph id of the remote partial graph */
+	private static final int REMOTE_ID = 2;
+
+	private static final int LOCAL_NODES = 3;
+
+	private static final int REMOTE_NODES = 4;
+
+	private Diskv2TestGraph graph;
+
+	private GraphDatabaseBaseImpl database;
+
+	private RemoteGraphDatabaseAccessWithInternalMethods remoteDatabase;
+
+	/* the calls of each method which have reached the remote partial graph */
+	private final ConcurrentMap<String, AtomicInteger> remoteCalls = new ConcurrentHashMap<String, AtomicInteger>();
+
+	/*
+	 * the remote partial graph fails all calls but the ones for its partial
+	 * graph ids if set
+	 */
+	private final AtomicBoolean remoteFails = new AtomicBoolean(false);
+
+	private long[] localNodeIds;
+
+	private long[] remoteNodeIds;
+
+	@Before
+	public void createPartialGraphs() {
+		graph = Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_DiskBasedStorage();
+		database = ((GraphBaseImpl) graph).getGraphDatabase();
+		localNodeIds = createNodes(graph, LOCAL_NODES, 0);
+
+		Diskv2TestGraph remoteGraph = Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_DiskBasedStorage();
+		final GraphDatabaseBaseImpl storingDatabase = ((GraphBaseImpl) remoteGraph)
+				.getGraphDatabase();
+		final int storingId = storingDatabase.getLocalPartialGraphId();
+		remoteNodeIds = createNodes(remoteGraph, REMOTE_NODES, 100);
+		for (int i = 0; i < REMOTE_NODES; i++) {
+			remoteNodeIds[i] = toPartialGraph(remoteNodeIds[i], REMOTE_ID);
+		}
+
+		remoteDatabase = (RemoteGraphDatabaseAccessWithInternalMethods) Proxy
+				.newProxyInstance(PartialGraphFanOutTest.class
+						.getClassLoader(),
+						new Class<?>[] { RemoteGraphDatabaseAccessWithInternalMethods.class },
+						new InvocationHandler() {
+							@Override
+							public Object invoke(Object proxy, Method method,
+									Object[] args) throws Throwable {
+								countCall(method.getName());
+								if (remoteFails.get()
+										&& !method.getName().equals(
+												"getPartialGraphIds")) {
+									throw new RemoteException("Partial graph "
+											+ REMOTE_ID + " is not reachable");
+								}
+								mapIds(args, storingId);
+								try {
+									return method.invoke(storingDatabase, args);
+								} catch (InvocationTargetException e) {
+									throw e.getCause();
+								}
+							}
+						});
+		database.partialGraphDatabases.put(REMOTE_ID, remoteDatabase);
+		database.setRemoteElementCaching(false);
+		database.addPartialGraphId(graph.getGlobalId(), REMOTE_ID);
+	}
+
+	private static long[] createNodes(Diskv2TestGraph g, int count,
+			int firstCount) {
+		long[] ids = new long[count];
+		Node previous = null;
+		for (int i = 0; i < count; i++) {
+			Node n = g.createNode();
+			n.set_count(firstCount + i);
+			if (previous != null) {
+				Link l = g.createLink();
+				l.connect(Link_source.class, previous);
+				l.connect(Link_target.class, n);
+			}
+			previous = n;
+			ids[i] = n.getGlobalId();
+		}
+		return ids;
+	}
+
+	private static long toPartialGraph(long globalId, int partialGraphId) {
+		return (((long) partialGraphId) << 32)
+				+ GraphDatabaseElementaryMethods.convertToLocalId(globalId);
+	}
+
+	/* maps the ids of the remote partial graph to the storing graph's ones */
+	private static void mapIds(Object[] args, int storingId) {
+		if (args == null) {
+			return;
+		}
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] instanceof Long
+					&& GraphDatabaseElementaryMethods
+							.getPartialGraphId((Long) args[i]) == REMOTE_ID) {
+				args[i] = toPartialGraph((Long) args[i], storingId);
+			} else if (args[i] instanceof long[]) {
+				long[] ids = ((long[]) args[i]).clone();
+				for (int j = 0; j < ids.length; j++) {
+					ids[j] = toPartialGraph(ids[j], storingId);
+				}
+				args[i] = ids;
+			}
+		}
+	}
+
+	private void countCall(String methodName) {
+		remoteCalls.putIfAbsent(methodName, new AtomicInteger());
+		remoteCalls.get(methodName).incrementAndGet();
+	}
+
+	private int remoteCallsOf(String methodName) {
+		AtomicInteger calls = remoteCalls.get(methodName);
+		return calls == null ? 0 : calls.get();
+	}
+
+	@Test
+	public void testCountsAreSummedOverThePartialGraphs() {
+		assertEquals(LOCAL_NODES + REMOTE_NODES, graph.getVCount());
+		assertEquals(1, remoteCallsOf("getVCount"));
+		assertEquals(LOCAL_NODES - 1 + REMOTE_NODES - 1, graph.getECount());
+		assertEquals(1, remoteCallsOf("getECount"));
+
+		assertEquals(LOCAL_NODES, ((GraphBaseImpl) graph).getLocalVCount());
+		assertEquals(LOCAL_NODES - 1, ((GraphBaseImpl) graph).getLocalECount());
+
+		List<Integer> partialGraphIds = Arrays.asList(database
+				.getLocalPartialGraphId(), REMOTE_ID);
+		assertEquals(LOCAL_NODES + REMOTE_NODES, database
+				.getVCountOfPartialGraphs(partialGraphIds));
+		assertEquals(REMOTE_NODES - 1, database.getECountOfPartialGraphs(Arrays
+				.asList(REMOTE_ID)));
+	}
+
+	@Test
+	public void testAttributeValuesKeepTheOrderOfTheIds() {
+		long[] ids = new long[] { remoteNodeIds[2], localNodeIds[0],
+				remoteNodeIds[0], remoteNodeIds[3], localNodeIds[2],
+				localNodeIds[1], remoteNodeIds[1] };
+		Object[] values = database.getVertexAttributes(ids, "count");
+		assertArrayEquals(new Object[] { 102, 0, 100, 103, 2, 1, 101 }, values);
+		// all values of the remote partial graph are read by one call
+		assertEquals(1, remoteCallsOf("getVertexAttributes"));
+		assertEquals(0, remoteCallsOf("getVertexAttribute"));
+
+		assertArrayEquals(new Object[0], database.getVertexAttributes(
+				new long[0], "count"));
+		assertEquals(1, remoteCallsOf("getVertexAttributes"));
+	}
+
+	@Test
+	public void testRemoteFailuresAreRethrown() {
+		remoteFails.set(true);
+		try {
+			graph.getVCount();
+			fail("The failure of the remote partial graph has been ignored");
+		} catch (RuntimeException e) {
+			assertSame(RemoteException.class, e.getCause().getClass());
+		}
+		try {
+			database.getVertexAttributes(new long[] { localNodeIds[0],
+					remoteNodeIds[0] }, "count");
+			fail("The failure of the remote partial graph has been ignored");
+		} catch (RuntimeException e) {
+			assertSame(RemoteException.class, e.getCause().getClass());
+		}
+		try {
+			AsyncGraphDatabaseAccess.await(new AsyncGraphDatabaseAccess(
+					remoteDatabase).getECount(GraphDatabaseElementaryMethods
+					.getToplevelGraphForPartialGraphId(REMOTE_ID)));
+			fail("The failure of the remote partial graph has been ignored");
+		} catch (RuntimeException e) {
+			assertEquals("Partial graph " + REMOTE_ID + " is not reachable", e
+					.getCause().getMessage());
+		}
+	}
+
+}
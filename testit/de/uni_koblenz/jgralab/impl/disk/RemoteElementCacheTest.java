@@ -0,0 +1,218 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.RemoteGraphDatabaseAccessWithInternalMethods;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that the cache of the element data of a remote partial graph is
+ * invalidated by the changes of the partial graph storing the data. The
+ * two partial graphs are the graph databases of two graphs in the same JVM,
+ * which call each other directly instead of by the transport.
+ */
+public class RemoteElementCacheTest {
+
+	/* the partial graph id of the caching graph database */
+	private static final int READER_ID = 2;
+
+	private static final int NODES = 10;
+
+	private Diskv2TestGraph storingGraph;
+
+	private GraphDatabaseBaseImpl storingDatabase;
+
+	private RemoteElementCache cache;
+
+	private RemoteGraphDatabaseAccessWithInternalMethods cachingDatabase;
+
+	/* the calls that have reached the storing graph database */
+	private final AtomicInteger forwardedCalls = new AtomicInteger();
+
+	private long[] nodeIds;
+
+	/*
+	 * the node whose count is read by the next callback of the storing
+	 * graph database, which happens while its data is changed, or -1
+	 */
+	private final AtomicInteger readWhileChanged = new AtomicInteger(-1);
+
+	@Before
+	public void createPartialGraphs() {
+		Diskv2TestGraph readingGraph = Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_DiskBasedStorage();
+		storingGraph = Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_DiskBasedStorage();
+		storingDatabase = ((GraphBaseImpl) storingGraph).getGraphDatabase();
+		nodeIds = new long[NODES];
+		for (int i = 0; i < NODES; i++) {
+			Node n = storingGraph.createNode();
+			n.set_count(i);
+			nodeIds[i] = n.getGlobalId();
+		}
+
+		cache = new RemoteElementCache(
+				((GraphBaseImpl) readingGraph).getGraphDatabase(),
+				storingDatabase.getLocalPartialGraphId(), remoteAccess(
+						new InvocationHandler() {
+							@Override
+							public Object invoke(Object proxy, Method method,
+									Object[] args) throws Throwable {
+								forwardedCalls.incrementAndGet();
+								if (method.getName().equals(
+										"registerRemoteCache")) {
+									args[0] = READER_ID;
+								}
+								try {
+									return method.invoke(storingDatabase, args);
+								} catch (InvocationTargetException e) {
+									throw e.getCause();
+								}
+							}
+						}));
+		cachingDatabase = cache.getGraphDatabase();
+
+		// the storing graph database calls the cache back
+		storingDatabase.partialGraphDatabases.put(READER_ID, remoteAccess(
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws RemoteException {
+						if (method.getName().equals("invalidateRemoteCache")) {
+							cache.invalidate();
+							int node = readWhileChanged.getAndSet(-1);
+							if (node >= 0) {
+								cachedCount(node);
+							}
+						} else if (method.getReturnType() != void.class) {
+							throw new UnsupportedOperationException(method
+									.getName());
+						}
+						// other notifications are not needed by the cache
+						return null;
+					}
+				}));
+	}
+
+	private static RemoteGraphDatabaseAccessWithInternalMethods remoteAccess(
+			InvocationHandler handler) {
+		return (RemoteGraphDatabaseAccessWithInternalMethods) Proxy
+				.newProxyInstance(RemoteElementCacheTest.class.getClassLoader(),
+						new Class<?>[] {
+								RemoteGraphDatabaseAccessWithInternalMethods.class,
+								RemoteCacheAccess.class }, handler);
+	}
+
+	private int cachedCount(int node) throws RemoteException {
+		return (Integer) cachingDatabase.getVertexAttribute(nodeIds[node],
+				"count");
+	}
+
+	@Test
+	public void testValuesAreCachedUntilTheyAreChanged() throws RemoteException {
+		assertEquals(3, cachedCount(3));
+		int calls = forwardedCalls.get();
+		assertEquals(3, cachedCount(3));
+		assertEquals(calls, forwardedCalls.get());
+
+		((Node) storingGraph.getVertex(nodeIds[3])).set_count(-3);
+		assertEquals(-3, cachedCount(3));
+
+		// structural changes invalidate the cache as well
+		assertEquals(0, cachingDatabase.getNextVertexId(nodeIds[NODES - 1]));
+		Node added = storingGraph.createNode();
+		assertEquals(added.getGlobalId(), cachingDatabase
+				.getNextVertexId(nodeIds[NODES - 1]));
+	}
+
+	@Test
+	public void testValuesReadWhileChangedAreNotKept() throws RemoteException {
+		assertEquals(5, cachedCount(5));
+		// the cache registers and reads the old value during the change
+		readWhileChanged.set(5);
+		((Node) storingGraph.getVertex(nodeIds[5])).set_count(50);
+		assertEquals(-1, readWhileChanged.get());
+		assertEquals(50, cachedCount(5));
+	}
+
+	@Test
+	public void testInvalidationDropsTheRegistration() throws RemoteException {
+		cachedCount(0);
+		((Node) storingGraph.getVertex(nodeIds[0])).set_count(100);
+		// the cache has been called back, the next change doesn't call it
+		storingDatabase.partialGraphDatabases.remove(READER_ID);
+		((Node) storingGraph.getVertex(nodeIds[1])).set_count(101);
+		assertEquals(100, cachedCount(0));
+		assertEquals(101, cachedCount(1));
+	}
+
+	@Test(timeout = 60000)
+	public void testReadersFollowAConcurrentWriter()
+			throws InterruptedException, RemoteException {
+		final int rounds = 2000;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread reader = new Thread() {
+				@Override
+				public void run() {
+					try {
+						int last = -1;
+						while (!done.get()) {
+							for (int node = 0; node < NODES; node++) {
+								int count = cachedCount(node);
+								if (node == 0) {
+									// the counts of node 0 only increase
+									if (count < last) {
+										throw new AssertionError("Read "
+												+ count + " after " + last);
+									}
+									last = count;
+								}
+							}
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			readers.add(reader);
+			reader.start();
+		}
+
+		Node node = (Node) storingGraph.getVertex(nodeIds[0]);
+		try {
+			for (int round = 1; round <= rounds && failure.get() == null; round++) {
+				node.set_count(round);
+				// a value read while the count was changed must not be kept
+				assertEquals(round, cachedCount(0));
+			}
+		} finally {
+			done.set(true);
+			for (Thread reader : readers) {
+				reader.join();
+			}
+		}
+		assertNull(failure.get());
+		assertEquals(rounds, cachedCount(0));
+	}
+
+}
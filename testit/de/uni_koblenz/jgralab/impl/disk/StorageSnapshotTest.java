@@ -0,0 +1,205 @@
+package de.uni_koblenz.jgralab.impl.disk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that a {@link StorageSnapshot} shows the graph as it was when the
+ * snapshot was created, while the graph is changed.
+ */
+public class StorageSnapshotTest {
+
+	private static final int NODES = 50;
+
+	private Diskv2TestGraph graph;
+
+	private GraphDatabaseBaseImpl database;
+
+	private long[] nodeIds;
+
+	@Before
+	public void createGraph() {
+		graph = Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_DiskBasedStorage();
+		database = ((GraphBaseImpl) graph).getGraphDatabase();
+		nodeIds = new long[NODES];
+		Node previous = null;
+		for (int i = 0; i < NODES; i++) {
+			Node n = graph.createNode();
+			n.set_count(i);
+			n.set_label("node " + i);
+			nodeIds[i] = n.getGlobalId();
+			if (previous != null) {
+				Link l = graph.createLink();
+				l.connect(Link_source.class, previous);
+				l.connect(Link_target.class, n);
+			}
+			previous = n;
+		}
+	}
+
+	private Node node(int i) {
+		return (Node) graph.getVertex(nodeIds[i]);
+	}
+
+	/**
+	 * Checks the state of the graph created by {@link #createGraph()}.
+	 */
+	private void checkOriginalGraph() {
+		assertEquals(NODES, graph.getVCount());
+		assertEquals(NODES - 1, graph.getECount());
+		int i = 0;
+		for (Vertex v : graph.getVertices()) {
+			Node n = (Node) v;
+			assertEquals(nodeIds[i], n.getGlobalId());
+			assertEquals(i, n.get_count());
+			assertEquals("node " + i, n.get_label());
+			assertEquals(i == 0 || i == NODES - 1 ? 1 : 2, n.getDegree());
+			i++;
+		}
+		assertEquals(NODES, i);
+	}
+
+	@Test
+	public void testSnapshotShowsOldAttributes() {
+		StorageSnapshot snapshot = database.createSnapshot();
+		for (int i = 0; i < NODES; i++) {
+			node(i).set_count(-i);
+			node(i).set_label("changed " + i);
+		}
+
+		snapshot.enter();
+		try {
+			checkOriginalGraph();
+		} finally {
+			snapshot.exit();
+		}
+		assertEquals(-3, node(3).get_count());
+		assertEquals("changed 3", node(3).get_label());
+		snapshot.release();
+	}
+
+	@Test
+	public void testSnapshotShowsOldStructure() {
+		StorageSnapshot snapshot = database.createSnapshot();
+		Node added = graph.createNode();
+		added.set_count(NODES);
+		Link l = graph.createLink();
+		l.connect(Link_source.class, node(NODES - 1));
+		l.connect(Link_target.class, added);
+
+		snapshot.enter();
+		try {
+			checkOriginalGraph();
+			assertNull(graph.getVertex(added.getGlobalId()));
+			assertNull(graph.getEdge(l.getGlobalId()));
+		} finally {
+			snapshot.exit();
+		}
+		assertEquals(NODES + 1, graph.getVCount());
+		assertEquals(NODES, graph.getECount());
+		assertEquals(2, node(NODES - 1).getDegree());
+		assertEquals(added.getGlobalId(), graph.getLastVertex().getGlobalId());
+		snapshot.release();
+	}
+
+	@Test
+	public void testChangesInSnapshotAreRejected() {
+		StorageSnapshot snapshot = database.createSnapshot();
+		snapshot.enter();
+		try {
+			node(0).set_count(100);
+			fail("A thread in a snapshot has changed the graph");
+		} catch (IllegalStateException e) {
+			// expected
+		} finally {
+			snapshot.exit();
+		}
+		snapshot.release();
+		try {
+			snapshot.enter();
+			fail("A released snapshot has been entered");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		node(0).set_count(100);
+		assertEquals(100, node(0).get_count());
+	}
+
+	@Test(timeout = 60000)
+	public void testReadersInSnapshotsFollowAWriter() throws InterruptedException {
+		final List<StorageSnapshot> snapshots = new ArrayList<StorageSnapshot>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int i = 0; i < NODES; i++) {
+			node(i).set_count(0);
+		}
+		for (int round = 0; round < 20; round++) {
+			// all counts are equal to round in the snapshot
+			final StorageSnapshot snapshot = database.createSnapshot();
+			snapshots.add(snapshot);
+			final int expected = round;
+			Thread reader = new Thread() {
+				@Override
+				public void run() {
+					snapshot.enter();
+					try {
+						for (int pass = 0; pass < 5; pass++) {
+							for (Vertex v : graph.getVertices()) {
+								Node n = (Node) v;
+								if (n.get_count() != expected) {
+									throw new AssertionError("Node "
+											+ n.getGlobalId() + " has count "
+											+ n.get_count() + " instead of "
+											+ expected);
+								}
+							}
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						snapshot.exit();
+					}
+				}
+			};
+			readers.add(reader);
+			reader.start();
+			for (int i = 0; i < NODES; i++) {
+				node(i).set_count(round + 1);
+			}
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		for (StorageSnapshot snapshot : snapshots) {
+			snapshot.release();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+		assertEquals(20, node(NODES - 1).get_count());
+		assertFalse(snapshots.get(0).getGraphVersion() == snapshots.get(19)
+				.getGraphVersion());
+		assertTrue(snapshots.get(0).getGraphVersion() < database
+				.getGraphVersion());
+	}
+
+}
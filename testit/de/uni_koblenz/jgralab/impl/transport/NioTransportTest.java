@@ -0,0 +1,390 @@
+package de.uni_koblenz.jgralab.impl.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the {@link NioTransport} by calls of objects exported by the
+ * transport of this JVM, which are sent to the transport over a socket as
+ * calls from another JVM would be, and by calls of an object exported by a
+ * second JVM.
+ */
+public class NioTransportTest {
+
+	public interface Echo extends Remote {
+
+		public Object echo(Object value) throws RemoteException;
+
+		public long add(long a, int b) throws RemoteException;
+
+		public String callBack(Echo caller, String value)
+				throws RemoteException;
+
+		public void fail(String message) throws IOException;
+
+		public boolean isSchemaValue(Object value) throws RemoteException;
+
+		public void pause() throws RemoteException;
+
+	}
+
+	private static final class EchoImpl implements Echo {
+
+		private final ClassLoader schemaLoader;
+
+		/* counted down when pause has been called */
+		private final CountDownLatch paused = new CountDownLatch(1);
+
+		/* lets the calls of pause return */
+		private final CountDownLatch resumed = new CountDownLatch(1);
+
+		EchoImpl(ClassLoader schemaLoader) {
+			this.schemaLoader = schemaLoader;
+		}
+
+		@Override
+		public Object echo(Object value) {
+			return value;
+		}
+
+		@Override
+		public long add(long a, int b) {
+			return a + b;
+		}
+
+		@Override
+		public String callBack(Echo caller, String value)
+				throws RemoteException {
+			return "called back " + caller.echo(value);
+		}
+
+		@Override
+		public void fail(String message) throws IOException {
+			throw new IOException(message);
+		}
+
+		@Override
+		public boolean isSchemaValue(Object value) {
+			return value.getClass().getClassLoader() == schemaLoader;
+		}
+
+		@Override
+		public void pause() throws RemoteException {
+			paused.countDown();
+			try {
+				resumed.await();
+			} catch (InterruptedException e) {
+				throw new RemoteException("Interrupted", e);
+			}
+		}
+
+	}
+
+	/**
+	 * A value of an attribute whose class is loaded by a schema class loader
+	 */
+	public static final class Value implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int number;
+
+		public Value(int number) {
+			this.number = number;
+		}
+
+		@Override
+		public String toString() {
+			return "value " + number;
+		}
+
+	}
+
+	/*
+	 * defines its own Value class, as the class loader of a compiled schema
+	 * defines the classes of the schema
+	 */
+	private static final class SchemaLoader extends ClassLoader {
+
+		SchemaLoader() {
+			super(NioTransportTest.class.getClassLoader());
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve)
+				throws ClassNotFoundException {
+			if (!name.equals(Value.class.getName())) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				try {
+					InputStream in = getParent().getResourceAsStream(
+							name.replace('.', '/') + ".class");
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buffer = new byte[4096];
+					int n;
+					while ((n = in.read(buffer)) > 0) {
+						bytes.write(buffer, 0, n);
+					}
+					in.close();
+					c = defineClass(name, bytes.toByteArray(), 0, bytes.size());
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+			return c;
+		}
+
+	}
+
+	/*
+	 * the id of the object exported by the JVM started by
+	 * testCallsBetweenJVMs, which is the first object of its transport
+	 */
+	private static final long REMOTE_OBJECT_ID = 1;
+
+	private static int port;
+
+	private static NioTransport transport;
+
+	private static SchemaLoader schemaLoader;
+
+	private static EchoImpl echo;
+
+	/* the stub of echo, whose calls are sent over the socket */
+	private static Echo stub;
+
+	@BeforeClass
+	public static void createTransport() throws IOException {
+		port = getFreePort();
+		transport = new NioTransport("localhost:" + port);
+		schemaLoader = new SchemaLoader();
+		echo = new EchoImpl(schemaLoader);
+		stub = (Echo) transport.exportObject(echo, schemaLoader);
+	}
+
+	private static int getFreePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int freePort = socket.getLocalPort();
+		socket.close();
+		return freePort;
+	}
+
+	/**
+	 * The other JVM of {@link NioTransportTest#testCallsBetweenJVMs()},
+	 * which exports an {@link Echo} on the port given as argument and runs
+	 * until its input is closed.
+	 */
+	public static final class RemoteSide {
+
+		public static void main(String[] args) throws IOException {
+			NioTransport remoteTransport = new NioTransport("localhost:"
+					+ args[0]);
+			SchemaLoader remoteSchemaLoader = new SchemaLoader();
+			remoteTransport.exportObject(new EchoImpl(remoteSchemaLoader),
+					remoteSchemaLoader);
+			System.out.println("ready");
+			System.out.flush();
+			while (System.in.read() >= 0) {
+				// waits for the end of the test
+			}
+			System.exit(0);
+		}
+
+	}
+
+	@Test
+	public void testValuesAreSent() throws RemoteException {
+		assertNull(stub.echo(null));
+		assertEquals(true, stub.echo(true));
+		assertEquals(-7, stub.echo(-7));
+		assertEquals(Long.MAX_VALUE, stub.echo(Long.MAX_VALUE));
+		assertEquals(0.25, stub.echo(0.25));
+		assertEquals("\u00e4\u00f6\u00fc", stub.echo("\u00e4\u00f6\u00fc"));
+		assertArrayEquals(new long[] { 1, -2, 3 }, (long[]) stub
+				.echo(new long[] { 1, -2, 3 }));
+		assertArrayEquals(new int[] { 4, 5 }, (int[]) stub
+				.echo(new int[] { 4, 5 }));
+		assertEquals(Arrays.asList("a", "b"), stub.echo(new ArrayList<String>(
+				Arrays.asList("a", "b"))));
+		assertEquals(5000000000L + 3, stub.add(5000000000L, 3));
+	}
+
+	@Test
+	public void testExceptionsAreThrownByTheCaller() throws RemoteException {
+		try {
+			stub.fail("failed");
+			fail("The exception has not been thrown by the stub");
+		} catch (IOException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		// the connection is still usable
+		assertEquals(3, stub.add(1, 2));
+	}
+
+	@Test
+	public void testValuesAreLoadedByTheSchemaClassLoader() throws Exception {
+		Object value = schemaLoader.loadClass(Value.class.getName())
+				.getConstructor(int.class).newInstance(42);
+		assertNotSame(Value.class, value.getClass());
+
+		assertTrue(stub.isSchemaValue(value));
+		Object result = stub.echo(value);
+		assertSame(value.getClass(), result.getClass());
+		assertEquals("value 42", result.toString());
+	}
+
+	@Test
+	public void testExportedObjectsAreCalledBack() throws RemoteException {
+		EchoImpl caller = new EchoImpl(schemaLoader);
+		transport.exportObject(caller);
+		// the caller is replaced by its stub, and called by a worker
+		assertEquals("called back x", stub.callBack(caller, "x"));
+		assertEquals("called back y", stub.callBack(caller, "y"));
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentCallsGetTheirResults()
+			throws InterruptedException {
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> callers = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			final int offset = t * 1000000;
+			Thread caller = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 2000; i++) {
+							long sum = stub.add(offset, i);
+							if (sum != offset + i) {
+								throw new AssertionError("Received " + sum
+										+ " instead of " + (offset + i));
+							}
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			callers.add(caller);
+			caller.start();
+		}
+		for (Thread caller : callers) {
+			caller.join();
+		}
+		assertNull(failure.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testInterruptedCallsAreGivenUp() throws Throwable {
+		final NioConnection connection = new NioConnection("localhost", port,
+				transport);
+		final long objectId = ((RemoteReference) Proxy
+				.getInvocationHandler(stub)).getObjectId();
+		final Method pause = Echo.class.getMethod("pause");
+		final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+		final AtomicBoolean interrupted = new AtomicBoolean(false);
+		Thread caller = new Thread() {
+			@Override
+			public void run() {
+				try {
+					connection.invoke(objectId, pause, null);
+				} catch (Throwable e) {
+					thrown.set(e);
+					interrupted.set(isInterrupted());
+				}
+			}
+		};
+		caller.start();
+		echo.paused.await();
+		// an interrupt while the call is written would close the channel
+		while (caller.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		caller.interrupt();
+		caller.join();
+		assertTrue(thrown.get() instanceof RemoteException);
+		assertTrue(interrupted.get());
+		assertEquals(0, connection.getPendingCallCount());
+
+		// the late result is dropped, and the connection is still usable
+		echo.resumed.countDown();
+		assertEquals(3L, connection.invoke(objectId, Echo.class.getMethod(
+				"add", long.class, int.class), new Object[] { 1L, 2 }));
+		assertEquals(0, connection.getPendingCallCount());
+	}
+
+	@Test(timeout = 120000)
+	public void testCallsBetweenJVMs() throws Exception {
+		int remotePort = getFreePort();
+		Process remote = new ProcessBuilder(System.getProperty("java.home")
+				+ File.separator + "bin" + File.separator + "java", "-cp",
+				System.getProperty("java.class.path"),
+				RemoteSide.class.getName(), Integer.toString(remotePort))
+				.redirectErrorStream(true).start();
+		try {
+			BufferedReader output = new BufferedReader(new InputStreamReader(
+					remote.getInputStream()));
+			assertEquals("ready", output.readLine());
+			Echo remoteStub = (Echo) Proxy.newProxyInstance(Echo.class
+					.getClassLoader(), new Class<?>[] { Echo.class },
+					new RemoteReference("localhost", remotePort,
+							REMOTE_OBJECT_ID));
+
+			assertEquals("\u00e4\u00f6\u00fc", remoteStub
+					.echo("\u00e4\u00f6\u00fc"));
+			assertEquals(5000000000L + 3, remoteStub.add(5000000000L, 3));
+			try {
+				remoteStub.fail("failed remotely");
+				fail("The exception has not been thrown by the stub");
+			} catch (IOException e) {
+				assertEquals("failed remotely", e.getMessage());
+			}
+
+			// the value is loaded by the schema class loaders of both JVMs
+			Object value = schemaLoader.loadClass(Value.class.getName())
+					.getConstructor(int.class).newInstance(7);
+			assertTrue(remoteStub.isSchemaValue(value));
+			Object result = remoteStub.echo(value);
+			assertSame(value.getClass(), result.getClass());
+			assertEquals("value 7", result.toString());
+
+			// the local object is replaced by its stub, which calls this JVM
+			EchoImpl caller = new EchoImpl(schemaLoader);
+			transport.exportObject(caller);
+			assertEquals("called back z", remoteStub.callBack(caller, "z"));
+		} finally {
+			remote.getOutputStream().close();
+			remote.waitFor();
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.diskv2.StorageOptions;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests a diskv2 storage that keeps its incidences compressed.
+ */
+public class CompressedIncidenceTest extends Diskv2StorageTest {
+
+	private static final int NODES = 500;
+
+	/**
+	 * Connects every node to the following three nodes.
+	 */
+	private long[] createGraph(Diskv2TestGraph graph) {
+		long[] ids = new long[NODES];
+		Node[] nodes = new Node[NODES];
+		for (int i = 0; i < NODES; i++) {
+			nodes[i] = graph.createNode();
+			nodes[i].set_count(i);
+			ids[i] = nodes[i].getGlobalId();
+		}
+		for (int i = 0; i < NODES; i++) {
+			for (int j = 1; j <= 3; j++) {
+				Link l = graph.createLink();
+				l.set_w(j);
+				l.connect(Link_source.class, nodes[i]);
+				l.connect(Link_target.class, nodes[(i + j) % NODES]);
+			}
+		}
+		return ids;
+	}
+
+	private void checkGraph(Diskv2TestGraph graph, long[] ids) {
+		assertEquals(NODES, graph.getVCount());
+		assertEquals(3 * NODES, graph.getECount());
+		for (int i = 0; i < NODES; i++) {
+			Node n = (Node) graph.getVertex(ids[i]);
+			assertEquals(i, n.get_count());
+			assertEquals(6, n.getDegree());
+			int links = 0;
+			for (Link_source out = n.getFirst_source(); out != null; out = out
+					.getNextSourceAtVertex()) {
+				Link l = out.getEdge();
+				Node target = l.getFirst_target().getVertex();
+				assertEquals((i + (int) l.get_w()) % NODES, target.get_count());
+				links++;
+			}
+			assertEquals(3, links);
+		}
+	}
+
+	@Test
+	public void testCompressedIncidencesAreReopened() {
+		Diskv2TestGraph graph = openGraph(new StorageOptions()
+				.withCompressedIncidences());
+		long[] ids = createGraph(graph);
+		getGraphDatabase(graph).flushStorage();
+
+		assertTrue(new File(directory, "incidences-compressed.dst").exists());
+		assertFalse(new File(directory, "incidences.dst").exists());
+		checkGraph(graph, ids);
+
+		// the stored format wins over the options of the reopened graph
+		checkGraph(openGraph(), ids);
+	}
+
+	@Test
+	public void testOptionsAreKeptPerStorage() throws IOException {
+		StorageOptions options = new StorageOptions();
+		options.setCompressIncidences(true);
+		Diskv2TestGraph compressed = openGraph(options);
+		long[] compressedIds = createGraph(compressed);
+
+		// the options are copied, and don't affect other storages
+		options.setCompressIncidences(false);
+		File other = createTemporaryDirectory();
+		try {
+			Diskv2TestGraph plain = Diskv2TestSchema.instance()
+					.createDiskv2TestGraph_Diskv2BasedStorage(other);
+			long[] plainIds = createGraph(plain);
+			getGraphDatabase(compressed).flushStorage();
+			getGraphDatabase(plain).flushStorage();
+
+			assertTrue(new File(directory, "incidences-compressed.dst")
+					.exists());
+			assertTrue(new File(other, "incidences.dst").exists());
+			assertFalse(new File(other, "incidences-compressed.dst").exists());
+			checkGraph(compressed, compressedIds);
+			checkGraph(plain, plainIds);
+		} finally {
+			delete(other);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that changes made to cached elements while other threads flush the
+ * cache are neither lost nor written back twice.
+ */
+public class ConcurrentCacheAccessTest extends Diskv2StorageTest {
+
+	private static final int WRITERS = 4;
+
+	private static final int VERTICES_PER_WRITER = 500;
+
+	private static final int ROUNDS = 20;
+
+	@Test(timeout = 120000)
+	public void testChangesDuringFlushAreNotLost() throws Throwable {
+		final Diskv2TestGraph graph = openGraph();
+		final long[][] ids = new long[WRITERS][VERTICES_PER_WRITER];
+		for (int w = 0; w < WRITERS; w++) {
+			for (int i = 0; i < VERTICES_PER_WRITER; i++) {
+				Node n = graph.createNode();
+				n.set_label("initial");
+				ids[w][i] = n.getGlobalId();
+			}
+		}
+		getGraphDatabase(graph).flushStorage();
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final List<Throwable> failures = Collections
+				.synchronizedList(new ArrayList<Throwable>());
+
+		Thread flusher = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (running.get()) {
+						getGraphDatabase(graph).flushStorage();
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				}
+			}
+		};
+		Thread[] writers = new Thread[WRITERS];
+		for (int w = 0; w < WRITERS; w++) {
+			final long[] own = ids[w];
+			writers[w] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int r = 1; r <= ROUNDS; r++) {
+							for (int i = 0; i < own.length; i++) {
+								Node n = (Node) graph.getVertex(own[i]);
+								n.set_count(r);
+								n.set_label("round " + r);
+							}
+						}
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			};
+		}
+
+		flusher.start();
+		for (Thread writer : writers) {
+			writer.start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		running.set(false);
+		flusher.join();
+		if (!failures.isEmpty()) {
+			throw failures.get(0);
+		}
+		getGraphDatabase(graph).flushStorage();
+
+		Diskv2TestGraph reopened = openGraph();
+		for (int w = 0; w < WRITERS; w++) {
+			for (int i = 0; i < VERTICES_PER_WRITER; i++) {
+				Node n = (Node) reopened.getVertex(ids[w][i]);
+				assertEquals(ROUNDS, n.get_count());
+				assertEquals("round " + ROUNDS, n.get_label());
+			}
+		}
+	}
+
+}
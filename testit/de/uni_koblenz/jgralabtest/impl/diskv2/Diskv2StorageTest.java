@@ -0,0 +1,74 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+
+import de.uni_koblenz.jgralab.impl.diskv2.GraphBaseImpl;
+import de.uni_koblenz.jgralab.impl.diskv2.GraphDatabaseBaseImpl;
+import de.uni_koblenz.jgralab.impl.diskv2.StorageOptions;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+
+/**
+ * Base class of the tests of the diskv2 storage, which provides a fresh
+ * storage directory for every test.
+ */
+public abstract class Diskv2StorageTest {
+
+	protected File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = createTemporaryDirectory();
+	}
+
+	@After
+	public void deleteDirectory() {
+		delete(directory);
+	}
+
+	/**
+	 * Creates a new graph in the storage directory of the test, or reopens
+	 * the graph stored there.
+	 */
+	protected Diskv2TestGraph openGraph() {
+		return Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_Diskv2BasedStorage(directory);
+	}
+
+	/**
+	 * Like {@link #openGraph()}, but opens the storage with the given
+	 * options.
+	 */
+	protected Diskv2TestGraph openGraph(StorageOptions options) {
+		return Diskv2TestSchema.instance()
+				.createDiskv2TestGraph_Diskv2BasedStorage(directory, options);
+	}
+
+	protected static GraphDatabaseBaseImpl getGraphDatabase(
+			Diskv2TestGraph graph) {
+		return ((GraphBaseImpl) graph).getGraphDatabase();
+	}
+
+	protected static File createTemporaryDirectory() throws IOException {
+		File dir = File.createTempFile("jgralabtest-diskv2-", "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Unable to create directory " + dir);
+		}
+		return dir;
+	}
+
+	protected static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
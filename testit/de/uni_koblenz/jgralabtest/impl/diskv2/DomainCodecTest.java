@@ -0,0 +1,127 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.diskv2.DomainCodec;
+import de.uni_koblenz.jgralab.schema.Domain;
+import de.uni_koblenz.jgralab.schema.Schema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Color;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Point;
+
+/**
+ * Tests that values of every kind of domain survive an encoding and
+ * decoding by the {@link DomainCodec}.
+ */
+public class DomainCodecTest {
+
+	private final Schema schema = Diskv2TestSchema.instance();
+
+	private Object roundTrip(Domain domain, Object value) {
+		DomainCodec codec = DomainCodec.forDomain(domain);
+		return codec.decode(codec.encode(value));
+	}
+
+	private void assertRoundTrip(Domain domain, Object value) {
+		assertEquals(value, roundTrip(domain, value));
+	}
+
+	@Test
+	public void testBasicDomains() {
+		for (boolean b : new boolean[] { true, false }) {
+			assertRoundTrip(schema.getBooleanDomain(), b);
+		}
+		for (int i : new int[] { 0, 1, -1, 63, -64, 64, Integer.MAX_VALUE,
+				Integer.MIN_VALUE }) {
+			assertRoundTrip(schema.getIntegerDomain(), i);
+		}
+		for (long l : new long[] { 0, -1, 1L << 40, Long.MAX_VALUE,
+				Long.MIN_VALUE }) {
+			assertRoundTrip(schema.getLongDomain(), l);
+		}
+		for (double d : new double[] { 0.0, -0.5, Double.MAX_VALUE,
+				Double.NaN, Double.NEGATIVE_INFINITY }) {
+			assertRoundTrip(schema.getDoubleDomain(), d);
+		}
+		assertRoundTrip(schema.getStringDomain(), "");
+		assertRoundTrip(schema.getStringDomain(), "Gr\u00fc\u00dfe \u2603");
+		assertNull(roundTrip(schema.getStringDomain(), null));
+	}
+
+	@Test
+	public void testIntegersAreEncodedCompactly() {
+		DomainCodec codec = DomainCodec.forDomain(schema.getIntegerDomain());
+		assertEquals(1, codec.encode(-64).length);
+		assertEquals(2, codec.encode(64).length);
+		assertEquals(5, codec.encode(Integer.MIN_VALUE).length);
+	}
+
+	@Test
+	public void testEnumAndRecordDomains() {
+		Domain color = schema.getDomain("Color");
+		for (Color c : Color.values()) {
+			assertRoundTrip(color, c);
+		}
+		assertNull(roundTrip(color, null));
+
+		Domain point = schema.getDomain("Point");
+		assertRoundTrip(point, new Point(1.5, -2.0));
+		assertNull(roundTrip(point, null));
+	}
+
+	@Test
+	public void testCollectionDomains() {
+		Domain ints = schema.getDomain("List<Integer>");
+		assertRoundTrip(ints, Arrays.asList(3, -1, 0, 1000000));
+		assertRoundTrip(ints, Collections.emptyList());
+		assertNull(roundTrip(ints, null));
+
+		Domain strings = schema.getDomain("List<String>");
+		assertRoundTrip(strings, Arrays.asList("a", "", "\u03a9"));
+
+		Domain tags = schema.getDomain("Set<String>");
+		Object set = roundTrip(tags, new HashSet<String>(Arrays.asList("x",
+				"y", "z")));
+		assertEquals(new HashSet<String>(Arrays.asList("x", "y", "z")), set);
+
+		List<Integer> large = new ArrayList<Integer>();
+		for (int i = 0; i < 10000; i++) {
+			large.add(i * 31);
+		}
+		assertRoundTrip(ints, large);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullElementsOfPrimitiveDomainsAreRejected() {
+		DomainCodec.forDomain(schema.getDomain("List<Integer>")).encode(
+				Arrays.asList(1, null, 2));
+	}
+
+	@Test
+	public void testMapDomain() {
+		// the test schema has no Map attribute
+		Domain map = schema.createMapDomain(schema.getStringDomain(), schema
+				.getDomain("Color"));
+		Map<String, Color> value = new HashMap<String, Color>();
+		value.put("first", Color.RED);
+		value.put("second", Color.GREEN);
+		value.put("third", Color.BLUE);
+		Object decoded = roundTrip(map, value);
+		assertTrue(decoded instanceof Map);
+		assertEquals(value, decoded);
+		assertRoundTrip(map, new HashMap<String, Color>());
+	}
+
+}
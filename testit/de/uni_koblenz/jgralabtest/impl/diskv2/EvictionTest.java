@@ -0,0 +1,167 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.StorageMetrics;
+import de.uni_koblenz.jgralab.impl.StorageMetrics.ElementKind;
+import de.uni_koblenz.jgralab.impl.diskv2.CacheEntry;
+import de.uni_koblenz.jgralab.impl.diskv2.ElementCache;
+import de.uni_koblenz.jgralab.impl.diskv2.MemoryBudget;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that a memory budget bounds the objects kept by the caches of the
+ * diskv2 storage.
+ */
+public class EvictionTest extends Diskv2StorageTest {
+
+	private static final int ENTRY_SIZE = 100;
+
+	/**
+	 * A cached value whose hash code is its key.
+	 */
+	private static final class Value {
+		private final int key;
+
+		Value(int key) {
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return key;
+		}
+	}
+
+	/**
+	 * A cache with four stripes that "reads" a new value for every key.
+	 */
+	private static final class TestCache extends ElementCache<Value> {
+		int written;
+
+		TestCache() {
+			super(2, 4, new StorageMetrics("test"), ElementKind.VERTEX);
+		}
+
+		@Override
+		protected void writeToDisk(CacheEntry<Value> entry) {
+			written++;
+		}
+
+		@Override
+		protected Value readFromDisk(int key) {
+			return new Value(key);
+		}
+	}
+
+	private static int collect(List<WeakReference<Value>> refs) {
+		int cleared = 0;
+		for (int i = 0; i < 10 && cleared < refs.size(); i++) {
+			System.gc();
+			cleared = 0;
+			for (WeakReference<Value> ref : refs) {
+				if (ref.get() == null) {
+					cleared++;
+				}
+			}
+		}
+		return cleared;
+	}
+
+	@Test
+	public void testBudgetIsMet() {
+		TestCache cache = new TestCache();
+		MemoryBudget budget = new MemoryBudget(50 * ENTRY_SIZE);
+		cache.setMemoryBudget(budget, ENTRY_SIZE);
+
+		for (int key = 0; key < 1000; key++) {
+			assertNotNull(cache.get(key));
+			assertTrue(budget.getUsed() <= budget.getLimit());
+		}
+	}
+
+	@Test
+	public void testEvictedValuesAreCollected() {
+		TestCache cache = new TestCache();
+		MemoryBudget budget = new MemoryBudget(50 * ENTRY_SIZE);
+		cache.setMemoryBudget(budget, ENTRY_SIZE);
+
+		List<WeakReference<Value>> evicted = new ArrayList<WeakReference<Value>>();
+		for (int key = 0; key < 1000; key++) {
+			Value value = cache.get(key);
+			if (key < 500) {
+				evicted.add(new WeakReference<Value>(value));
+			}
+		}
+		assertEquals(evicted.size(), collect(evicted));
+
+		// collected values are read again
+		for (int key = 0; key < 500; key++) {
+			assertEquals(key, cache.get(key).hashCode());
+		}
+	}
+
+	@Test
+	public void testOtherStripesAreSwept() {
+		TestCache cache = new TestCache();
+		MemoryBudget budget = new MemoryBudget(50 * ENTRY_SIZE);
+		cache.setMemoryBudget(budget, ENTRY_SIZE);
+
+		// the whole budget is used by the second stripe
+		List<WeakReference<Value>> idle = new ArrayList<WeakReference<Value>>();
+		for (int i = 0; i < 50; i++) {
+			idle.add(new WeakReference<Value>(cache.get(i * 4 + 1)));
+		}
+
+		// the first stripe keeps accessing its own entries
+		List<Value> used = new ArrayList<Value>();
+		for (int round = 0; round < 4; round++) {
+			for (int i = 0; i < 40; i++) {
+				Value value = cache.get(i * 4);
+				if (round == 0) {
+					used.add(value);
+				}
+			}
+		}
+		assertTrue(collect(idle) >= 40);
+		for (int i = 0; i < 40; i++) {
+			assertTrue(used.get(i) == cache.get(i * 4));
+		}
+	}
+
+	@Test
+	public void testChangesOfEvictedElementsAreKept() {
+		Diskv2TestGraph graph = openGraph();
+		getGraphDatabase(graph).setMemoryBudget(64 * 1024);
+
+		long[] ids = new long[5000];
+		for (int i = 0; i < ids.length; i++) {
+			Node n = graph.createNode();
+			n.set_count(i);
+			n.set_label("node " + i);
+			ids[i] = n.getGlobalId();
+		}
+		StorageMetrics metrics = getGraphDatabase(graph).getStorageMetrics();
+		assertTrue(metrics.getWriteBacks() > 0);
+
+		for (int i = 0; i < ids.length; i++) {
+			Node n = (Node) graph.getVertex(ids[i]);
+			assertEquals(i, n.get_count());
+			assertEquals("node " + i, n.get_label());
+			n.set_count(-i);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(-i, ((Node) graph.getVertex(ids[i])).get_count());
+		}
+	}
+
+}
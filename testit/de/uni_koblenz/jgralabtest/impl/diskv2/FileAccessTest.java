@@ -0,0 +1,55 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.diskv2.FileAccess;
+
+/**
+ * Tests the access to the files of the diskv2 storage.
+ */
+public class FileAccessTest extends Diskv2StorageTest {
+
+	private static ByteBuffer bytes(int length, int offset) {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		for (int i = 0; i < length; i++) {
+			buf.put(i, (byte) (i + offset));
+		}
+		return buf;
+	}
+
+	@Test
+	public void testReadReturnsWrittenBytes() {
+		FileAccess file = FileAccess.createFileAccess(directory, "test", true);
+		file.write(bytes(100, 0), 0);
+		file.write(new ByteBuffer[] { bytes(10, 1), bytes(10, 2) }, 5000);
+
+		assertArrayEquals(bytes(100, 0).array(), file.readBytes(100, 0));
+		assertArrayEquals(bytes(10, 1).array(), file.readBytes(10, 5000));
+		assertArrayEquals(bytes(10, 2).array(), file.readBytes(10, 5010));
+	}
+
+	@Test
+	public void testSlicesSurviveTruncation() {
+		FileAccess file = FileAccess.createFileAccess(directory, "test", true);
+		file.write(bytes(100, 0), 0);
+		ByteBuffer slice = file.read(100, 0);
+
+		// the segment the slice points into is retired
+		file.truncate(4096);
+		assertEquals(4096, file.length());
+		for (int i = 0; i < 100; i++) {
+			assertEquals((byte) i, slice.get(i));
+		}
+
+		// the file is mapped again
+		file.write(bytes(10, 7), 200);
+		assertArrayEquals(bytes(10, 7).array(), file.readBytes(10, 200));
+		assertEquals((byte) 99, slice.get(99));
+	}
+
+}
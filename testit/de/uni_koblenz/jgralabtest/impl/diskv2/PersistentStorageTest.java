@@ -0,0 +1,158 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.Edge;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Color;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Point;
+
+/**
+ * Tests that a graph stored in a persistent diskv2 storage directory can be
+ * reopened with all its elements, attribute values and free lists.
+ */
+public class PersistentStorageTest extends Diskv2StorageTest {
+
+	private static final int VERTICES = 500;
+
+	private long[] createGraph(Diskv2TestGraph graph) {
+		graph.set_name("stored graph");
+		graph.set_revision(42);
+		graph.set_keywords(Arrays.asList("a", "b", "c"));
+
+		long[] ids = new long[VERTICES];
+		Node[] nodes = new Node[VERTICES];
+		for (int i = 0; i < VERTICES; i++) {
+			Node n = graph.createNode();
+			n.set_flag(i % 2 == 0);
+			n.set_count(i);
+			n.set_big(i * 1000000000L);
+			n.set_weight(i / 4.0);
+			n.set_label("node " + i);
+			n.set_tags(new HashSet<String>(Arrays.asList("t" + i, "all")));
+			n.set_ints(Arrays.asList(i, i + 1, i + 2));
+			n.set_color(Color.values()[i % 3]);
+			n.set_position(new Point(i, -i));
+			nodes[i] = n;
+			ids[i] = n.getGlobalId();
+		}
+		for (int i = 0; i < VERTICES; i++) {
+			Link l = graph.createLink();
+			l.set_w(i);
+			l.set_name("link " + i);
+			l.connect(Link_source.class, nodes[i]);
+			l.connect(Link_target.class, nodes[(i * 7 + 1) % VERTICES]);
+		}
+		return ids;
+	}
+
+	private void checkNode(Node n, int i) {
+		assertEquals(i % 2 == 0, n.is_flag());
+		assertEquals(i, n.get_count());
+		assertEquals(i * 1000000000L, n.get_big());
+		assertEquals(i / 4.0, n.get_weight(), 0.0);
+		assertEquals("node " + i, n.get_label());
+		assertEquals(new HashSet<String>(Arrays.asList("t" + i, "all")),
+				n.get_tags());
+		assertEquals(Arrays.asList(i, i + 1, i + 2), n.get_ints());
+		assertEquals(Color.values()[i % 3], n.get_color());
+		assertEquals(new Point(i, -i), n.get_position());
+	}
+
+	@Test
+	public void testReopenRestoresElementsAndAttributes() {
+		Diskv2TestGraph graph = openGraph();
+		long[] ids = createGraph(graph);
+		getGraphDatabase(graph).flushStorage();
+
+		Diskv2TestGraph reopened = openGraph();
+		assertEquals(VERTICES, reopened.getVCount());
+		assertEquals(VERTICES, reopened.getECount());
+		for (int i = 0; i < VERTICES; i++) {
+			Node n = (Node) reopened.getVertex(ids[i]);
+			checkNode(n, i);
+			int expectedDegree = 1 + (i * 7 + 1 == i ? 1 : 0);
+			for (int j = 0; j < VERTICES; j++) {
+				if (j != i && (j * 7 + 1) % VERTICES == i) {
+					expectedDegree++;
+				}
+			}
+			assertEquals(expectedDegree, n.getDegree());
+		}
+		int edges = 0;
+		for (Edge e : reopened.getEdges()) {
+			Link l = (Link) e;
+			assertEquals("link " + (int) l.get_w(), l.get_name());
+			assertEquals(2, l.getDegree());
+			edges++;
+		}
+		assertEquals(VERTICES, edges);
+	}
+
+	@Test
+	public void testReopenRestoresGraphAttributes() {
+		Diskv2TestGraph graph = openGraph();
+		createGraph(graph);
+		getGraphDatabase(graph).flushStorage();
+
+		Diskv2TestGraph reopened = openGraph();
+		assertEquals("stored graph", reopened.get_name());
+		assertEquals(42, reopened.get_revision());
+		assertEquals(Arrays.asList("a", "b", "c"), reopened.get_keywords());
+
+		reopened.set_name("changed");
+		reopened.set_keywords(null);
+		getGraphDatabase(reopened).flushStorage();
+
+		Diskv2TestGraph again = openGraph();
+		assertEquals("changed", again.get_name());
+		assertNull(again.get_keywords());
+	}
+
+	@Test
+	public void testReopenRestoresFreeLists() {
+		Diskv2TestGraph graph = openGraph();
+		long[] ids = new long[VERTICES];
+		for (int i = 0; i < VERTICES; i++) {
+			Node n = graph.createNode();
+			n.set_count(i);
+			n.set_label("node " + i);
+			ids[i] = n.getGlobalId();
+		}
+		HashSet<Long> deleted = new HashSet<Long>();
+		for (int i = 0; i < VERTICES; i += 5) {
+			graph.getVertex(ids[i]).delete();
+			deleted.add(ids[i]);
+		}
+		getGraphDatabase(graph).flushStorage();
+
+		Diskv2TestGraph reopened = openGraph();
+		assertEquals(VERTICES - deleted.size(), reopened.getVCount());
+		for (int i = 0; i < VERTICES; i++) {
+			Node n = (Node) reopened.getVertex(ids[i]);
+			if (i % 5 == 0) {
+				assertNull(n);
+			} else {
+				assertEquals(i, n.get_count());
+				assertEquals("node " + i, n.get_label());
+			}
+		}
+
+		// the ids of the deleted vertices are reused
+		for (int i = 0; i < deleted.size(); i++) {
+			assertTrue(deleted.remove(reopened.createNode().getGlobalId()));
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.diskv2.StorageOptions;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestSchema;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that a logged diskv2 storage is restored to the state of its last
+ * commit if it is reopened after a crash. A crash is simulated by opening
+ * the storage directory again while the first graph is still open, so
+ * neither its pending writes nor a header reach the files.
+ */
+public class RedoLogTest extends Diskv2StorageTest {
+
+	private static final int NODES = 200;
+
+	private static final String[] DATA_FILES = { "vertices.dst",
+			"edges.dst", "incidences.dst", "strings.dst", "lists.dst" };
+
+	private long[] createChain(Diskv2TestGraph graph) {
+		long[] ids = new long[NODES];
+		Node previous = null;
+		for (int i = 0; i < NODES; i++) {
+			Node n = graph.createNode();
+			n.set_count(i);
+			n.set_label("node " + i);
+			ids[i] = n.getGlobalId();
+			if (previous != null) {
+				Link l = graph.createLink();
+				l.connect(Link_source.class, previous);
+				l.connect(Link_target.class, n);
+			}
+			previous = n;
+		}
+		return ids;
+	}
+
+	private void checkChain(Diskv2TestGraph graph, long[] ids) {
+		assertEquals(NODES, graph.getVCount());
+		assertEquals(NODES - 1, graph.getECount());
+		for (int i = 0; i < NODES; i++) {
+			Node n = (Node) graph.getVertex(ids[i]);
+			assertEquals(i, n.get_count());
+			assertEquals("node " + i, n.get_label());
+			Link_source out = n.getFirst_source();
+			if (i + 1 < NODES) {
+				assertEquals(ids[i + 1], out.getEdge().getFirst_target()
+						.getVertex().getGlobalId());
+			} else {
+				assertNull(out);
+			}
+		}
+	}
+
+	@Test
+	public void testCommittedStateIsReplayed() {
+		Diskv2TestGraph graph = openGraph(new StorageOptions()
+				.withRedoLogging());
+		assertTrue(new File(directory, "redo.log").exists());
+		long[] ids = createChain(graph);
+		getGraphDatabase(graph).commitStorage();
+
+		// uncommitted changes, which are evicted to the held writes
+		getGraphDatabase(graph).setMemoryBudget(1);
+		for (int i = 0; i < NODES; i++) {
+			((Node) graph.getVertex(ids[i])).set_count(-i);
+		}
+		graph.createNode().set_label("uncommitted");
+
+		// none of the writes has reached the data files before the crash
+		assertFalse(new File(directory, "header.dst").exists());
+		for (String name : DATA_FILES) {
+			new File(directory, name).delete();
+		}
+
+		Diskv2TestGraph reopened = openGraph(new StorageOptions()
+				.withRedoLogging());
+		checkChain(reopened, ids);
+		assertTrue(new File(directory, "redo.log").exists());
+	}
+
+	@Test
+	public void testLogIsDeletedAfterReplayWithoutLogging() {
+		Diskv2TestGraph graph = openGraph(new StorageOptions()
+				.withRedoLogging());
+		long[] ids = createChain(graph);
+		getGraphDatabase(graph).commitStorage();
+
+		File log = new File(directory, "redo.log");
+		assertTrue(log.exists());
+		Diskv2TestGraph reopened = openGraph();
+		assertFalse(log.exists());
+		checkChain(reopened, ids);
+
+		// the replayed state is stored without a log from now on
+		getGraphDatabase(reopened).flushStorage();
+		checkChain(openGraph(), ids);
+	}
+
+	@Test
+	public void testStoragesAreLoggedIndependently() throws IOException {
+		Diskv2TestGraph logged = openGraph(new StorageOptions()
+				.withRedoLogging());
+		File other = createTemporaryDirectory();
+		try {
+			Diskv2TestSchema.instance()
+					.createDiskv2TestGraph_Diskv2BasedStorage(other);
+			assertTrue(new File(directory, "redo.log").exists());
+			assertFalse(new File(other, "redo.log").exists());
+			getGraphDatabase(logged).commitStorage();
+		} finally {
+			delete(other);
+		}
+	}
+
+}
@@ -0,0 +1,14 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses( { PersistentStorageTest.class,
+		ConcurrentCacheAccessTest.class, EvictionTest.class,
+		WriteBehindFlusherTest.class, StringHeapTest.class,
+		DomainCodecTest.class, FileAccessTest.class,
+		StorageReorganizerTest.class, CompressedIncidenceTest.class, RedoLogTest.class })
+public class RunDiskv2Tests {
+
+}
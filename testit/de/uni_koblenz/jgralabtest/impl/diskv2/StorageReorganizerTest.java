@@ -0,0 +1,136 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.Vertex;
+import de.uni_koblenz.jgralab.impl.diskv2.GraphDatabaseElementaryMethods;
+import de.uni_koblenz.jgralab.impl.diskv2.StorageReorganizer.Order;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_source;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Link_target;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests that the reorganization of a diskv2 storage renumbers the elements
+ * in the requested order and translates all ids stored in the records.
+ */
+public class StorageReorganizerTest extends Diskv2StorageTest {
+
+	private static final int CHAIN = 300;
+
+	/**
+	 * Creates a chain of nodes, whose successors have been created in a
+	 * random order, and some deleted nodes in between.
+	 */
+	private void createChain(Diskv2TestGraph graph) {
+		List<Node> nodes = new ArrayList<Node>();
+		List<Long> deleted = new ArrayList<Long>();
+		for (int i = 0; i < CHAIN; i++) {
+			Node n = graph.createNode();
+			nodes.add(n);
+			if (i % 3 == 1) {
+				deleted.add(graph.createNode().getGlobalId());
+			}
+		}
+		for (long id : deleted) {
+			graph.getVertex(id).delete();
+		}
+
+		// the first node stays the head of the chain
+		List<Node> chain = new ArrayList<Node>(nodes.subList(1, CHAIN));
+		Collections.shuffle(chain, new Random(42));
+		chain.add(0, nodes.get(0));
+		for (int i = 0; i < CHAIN; i++) {
+			chain.get(i).set_count(i);
+			chain.get(i).set_label("node " + i);
+		}
+		for (int i = 0; i + 1 < CHAIN; i++) {
+			Link l = graph.createLink();
+			l.set_name("link " + i);
+			l.connect(Link_source.class, chain.get(i));
+			l.connect(Link_target.class, chain.get(i + 1));
+		}
+	}
+
+	private static int localId(long globalId) {
+		return GraphDatabaseElementaryMethods.convertToLocalId(globalId);
+	}
+
+	/**
+	 * Walks along the chain and checks the attributes, and that the
+	 * elements are numbered in the order of the chain.
+	 */
+	private void checkChainIsNumberedInOrder(Diskv2TestGraph graph) {
+		assertEquals(CHAIN, graph.getVCount());
+		assertEquals(CHAIN - 1, graph.getECount());
+
+		Node n = (Node) graph.getFirstVertex();
+		for (int i = 0; i < CHAIN; i++) {
+			assertEquals(i, n.get_count());
+			assertEquals("node " + i, n.get_label());
+			assertEquals(i + 1, localId(n.getGlobalId()));
+
+			Link_source out = n.getFirst_source();
+			if (i + 1 == CHAIN) {
+				assertNull(out);
+				break;
+			}
+			Link l = out.getEdge();
+			assertEquals("link " + i, l.get_name());
+			assertEquals(i + 1, localId(l.getGlobalId()));
+			n = l.getFirst_target().getVertex();
+		}
+	}
+
+	@Test
+	public void testBreadthFirstOrderFollowsTheChain() {
+		Diskv2TestGraph graph = openGraph();
+		createChain(graph);
+
+		getGraphDatabase(graph).reorganize(Order.BREADTH_FIRST);
+		checkChainIsNumberedInOrder(graph);
+
+		// new elements are appended behind the used records
+		Node added = graph.createNode();
+		assertEquals(CHAIN + 1, localId(added.getGlobalId()));
+		added.delete();
+
+		getGraphDatabase(graph).flushStorage();
+		checkChainIsNumberedInOrder(openGraph());
+	}
+
+	@Test
+	public void testHierarchyOrderFollowsTheVertexSequence() {
+		Diskv2TestGraph graph = openGraph();
+		createChain(graph);
+
+		getGraphDatabase(graph).reorganize(Order.HIERARCHY);
+
+		int expected = 1;
+		for (Vertex v : graph.getVertices()) {
+			assertEquals(expected++, localId(v.getGlobalId()));
+		}
+		assertEquals(CHAIN + 1, expected);
+
+		// the links still connect the same nodes
+		for (Vertex v : graph.getVertices()) {
+			Node n = (Node) v;
+			Link_source out = n.getFirst_source();
+			if (out != null) {
+				Node next = out.getEdge().getFirst_target().getVertex();
+				assertEquals(n.get_count() + 1, next.get_count());
+				assertEquals("link " + n.get_count(), out.getEdge().get_name());
+			}
+		}
+	}
+
+}
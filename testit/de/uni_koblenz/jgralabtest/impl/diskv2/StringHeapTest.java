@@ -0,0 +1,166 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.diskv2.FileAccess;
+import de.uni_koblenz.jgralab.impl.diskv2.StringHeap;
+import de.uni_koblenz.jgralab.impl.diskv2.WriteBehindFlusher;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Diskv2TestGraph;
+import de.uni_koblenz.jgralabtest.diskv2.schema.Node;
+
+/**
+ * Tests the String heap of the diskv2 storage, on its own and through the
+ * Strings of deleted elements.
+ */
+public class StringHeapTest extends Diskv2StorageTest {
+
+	private static final String SHORT = "Gr\u00fc\u00dfe, \u03a9 \u2603";
+
+	private static String longString(int i) {
+		char[] chars = new char[600];
+		Arrays.fill(chars, (char) ('\u00e0' + i % 16));
+		return i + new String(chars);
+	}
+
+	private FileAccess file;
+
+	private WriteBehindFlusher flusher;
+
+	private StringHeap createHeap() {
+		file = FileAccess.createFileAccess(directory, "strings", true);
+		flusher = new WriteBehindFlusher("test flusher");
+		return new StringHeap(file, flusher);
+	}
+
+	@Test
+	public void testStringsAreStoredInUtf8() {
+		StringHeap heap = createHeap();
+		long shortHandle = heap.store(SHORT);
+		long longHandle = heap.store(longString(1));
+		assertEquals(-1, heap.store(null));
+
+		flusher.drain();
+		// four characters need two and one needs three bytes
+		assertEquals(SHORT.length() + 5, file.read(4, 0).getInt(0));
+
+		assertEquals(SHORT, heap.read(shortHandle));
+		assertEquals(longString(1), heap.read(longHandle));
+		assertNull(heap.read(-1));
+	}
+
+	@Test
+	public void testShortStringsAreInterned() {
+		StringHeap heap = createHeap();
+		long handle = heap.store(SHORT);
+		assertEquals(handle, heap.store(new String(SHORT)));
+		assertTrue(handle != heap.store(longString(2)));
+
+		// the slot is kept until the last reference is released
+		heap.release(handle);
+		assertEquals(SHORT, heap.read(handle));
+		heap.release(handle);
+
+		// afterwards, the handle is reused for another String
+		assertEquals(handle, heap.store(SHORT + "!"));
+		assertEquals(SHORT + "!", heap.read(handle));
+	}
+
+	@Test
+	public void testIndexIsRestored() throws IOException {
+		StringHeap heap = createHeap();
+		long shortHandle = heap.store(SHORT);
+		long longHandle = heap.store(longString(3));
+		flusher.drain();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		heap.writeIndex(new DataOutputStream(bytes));
+		StringHeap restored = new StringHeap(file, flusher);
+		restored.readIndex(new DataInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())));
+
+		assertEquals(SHORT, restored.read(shortHandle));
+		assertEquals(longString(3), restored.read(longHandle));
+		assertEquals(shortHandle, restored.store(SHORT));
+	}
+
+	@Test
+	public void testCompactionMovesUsedSlots() {
+		StringHeap heap = createHeap();
+		long[] handles = new long[3000];
+		for (int i = 0; i < handles.length; i++) {
+			handles[i] = heap.store(longString(i));
+		}
+		for (int i = 0; i < handles.length; i++) {
+			if (i % 10 != 0) {
+				heap.release(handles[i]);
+			}
+		}
+		assertTrue(heap.needsCompaction());
+
+		heap.compact();
+		assertFalse(heap.needsCompaction());
+		long length = file.length();
+		assertTrue(length < handles.length / 10 * (4 + 2 * 600 + 8));
+		for (int i = 0; i < handles.length; i += 10) {
+			assertEquals(longString(i), heap.read(handles[i]));
+		}
+
+		// freed space behind the moved slots is not reused
+		long handle = heap.store(longString(-1));
+		flusher.drain();
+		assertTrue(file.length() > length);
+		assertEquals(longString(-1), heap.read(handle));
+	}
+
+	@Test
+	public void testStringsOfDeletedElementsAreReleased() {
+		Diskv2TestGraph graph = openGraph();
+		long[] ids = new long[2000];
+		for (int i = 0; i < ids.length; i++) {
+			Node n = graph.createNode();
+			n.set_label(longString(i));
+			ids[i] = n.getGlobalId();
+		}
+		getGraphDatabase(graph).flushStorage();
+		File strings = new File(directory, "strings.dst");
+		long before = strings.length();
+
+		for (int i = 0; i < ids.length; i++) {
+			if (i % 10 != 0) {
+				graph.getVertex(ids[i]).delete();
+			}
+		}
+		// writing the header compacts the heap if most of it is free
+		getGraphDatabase(graph).flushStorage();
+		assertTrue(strings.length() < before / 5);
+
+		Diskv2TestGraph reopened = openGraph();
+		for (int i = 0; i < ids.length; i += 10) {
+			assertEquals(longString(i), ((Node) reopened.getVertex(ids[i]))
+					.get_label());
+		}
+		// the slots of the deleted vertices don't release anything again
+		for (int i = 0; i < ids.length / 2; i++) {
+			reopened.createNode().set_label(longString(i));
+		}
+		getGraphDatabase(reopened).flushStorage();
+		for (int i = 0; i < ids.length; i += 10) {
+			assertEquals(longString(i), ((Node) reopened.getVertex(ids[i]))
+					.get_label());
+		}
+	}
+
+}
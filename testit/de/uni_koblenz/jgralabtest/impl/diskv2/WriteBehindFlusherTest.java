@@ -0,0 +1,150 @@
+package de.uni_koblenz.jgralabtest.impl.diskv2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_koblenz.jgralab.impl.diskv2.FileAccess;
+import de.uni_koblenz.jgralab.impl.diskv2.WriteBehindFlusher;
+
+/**
+ * Tests that reads through a {@link WriteBehindFlusher} see the writes that
+ * are still pending.
+ */
+public class WriteBehindFlusherTest {
+
+	/**
+	 * A file in memory whose writes block while it is closed.
+	 */
+	private static final class GatedFile extends FileAccess {
+		private final byte[] content = new byte[1024];
+		private boolean open;
+		private int writes;
+		private int gatheringWrites;
+
+		@Override
+		public synchronized void write(ByteBuffer buffer, long index) {
+			while (!open) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			ByteBuffer source = buffer.duplicate();
+			source.clear();
+			source.get(content, (int) index, source.remaining());
+			writes++;
+		}
+
+		@Override
+		public synchronized void write(ByteBuffer[] contents, long index) {
+			gatheringWrites++;
+			super.write(contents, index);
+		}
+
+		@Override
+		public synchronized ByteBuffer read(int numBytes, long index) {
+			return ByteBuffer.wrap(Arrays.copyOfRange(content, (int) index,
+					(int) index + numBytes));
+		}
+
+		synchronized void open() {
+			open = true;
+			notifyAll();
+		}
+
+		synchronized byte[] stored(int from, int to) {
+			return Arrays.copyOfRange(content, from, to);
+		}
+	}
+
+	private GatedFile file;
+
+	private WriteBehindFlusher flusher;
+
+	@Before
+	public void setUp() {
+		file = new GatedFile();
+		flusher = new WriteBehindFlusher("test flusher");
+	}
+
+	private static ByteBuffer filled(int length, int value) {
+		byte[] bytes = new byte[length];
+		Arrays.fill(bytes, (byte) value);
+		return ByteBuffer.wrap(bytes);
+	}
+
+	private static byte[] bytes(int... values) {
+		byte[] result = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (byte) values[i];
+		}
+		return result;
+	}
+
+	@Test
+	public void testPendingWritesAreOverlaid() {
+		flusher.submit(file, filled(4, 1), 8);
+		flusher.submit(file, filled(4, 2), 12);
+
+		// nothing has reached the file yet
+		assertArrayEquals(new byte[8], file.stored(8, 16));
+
+		// reads overlapping the pending writes partially
+		assertArrayEquals(bytes(0, 0, 1, 1), flusher.readBytes(file, 4, 6));
+		assertArrayEquals(bytes(1, 1, 2, 2), flusher.readBytes(file, 4, 10));
+		assertArrayEquals(bytes(2, 2, 0, 0), flusher.readBytes(file, 4, 14));
+		assertArrayEquals(new byte[4], flusher.readBytes(file, 4, 20));
+
+		file.open();
+		flusher.drain();
+		assertArrayEquals(bytes(1, 1, 1, 1, 2, 2, 2, 2), file.stored(8, 16));
+		assertArrayEquals(bytes(1, 1, 2, 2), flusher.readBytes(file, 4, 10));
+	}
+
+	@Test
+	public void testLaterWriteReplacesPendingWrite() {
+		flusher.submit(file, filled(4, 1), 0);
+		ByteBuffer reused = filled(4, 3);
+		flusher.submit(file, reused, 0);
+
+		// the submitted content is copied
+		reused.put(0, (byte) 9);
+		assertArrayEquals(bytes(3, 3, 3, 3), flusher.readBytes(file, 4, 0));
+
+		file.open();
+		flusher.drain();
+		assertArrayEquals(bytes(3, 3, 3, 3), file.stored(0, 4));
+	}
+
+	@Test
+	public void testAdjacentWritesAreGathered() {
+		file.open();
+		flusher.holdWrites();
+		for (int i = 0; i < 8; i++) {
+			flusher.submit(file, filled(4, i + 1), i * 4);
+		}
+		Map<FileAccess, TreeMap<Long, ByteBuffer>> writes = flusher
+				.takeUnreleased();
+		assertEquals(8, writes.get(file).size());
+		assertEquals(0, file.writes);
+		assertArrayEquals(bytes(2, 2, 3, 3), flusher.readBytes(file, 4, 6));
+
+		flusher.release(writes);
+		flusher.drain();
+		assertEquals(1, file.gatheringWrites);
+		for (int i = 0; i < 8; i++) {
+			assertArrayEquals(filled(4, i + 1).array(), file.stored(i * 4,
+					i * 4 + 4));
+		}
+	}
+
+}